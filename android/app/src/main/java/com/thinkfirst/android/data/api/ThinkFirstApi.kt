@@ -55,7 +55,10 @@ interface ThinkFirstApi {
     
     // Quiz
     @POST("quiz/submit")
-    suspend fun submitQuiz(@Body submission: QuizSubmission): QuizResult
+    suspend fun submitQuiz(
+        @Body submission: QuizSubmission,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
+    ): QuizResult
     
     @GET("quiz/{quizId}")
     suspend fun getQuiz(@Path("quizId") quizId: Long): Quiz
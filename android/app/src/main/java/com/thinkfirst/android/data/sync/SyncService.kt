@@ -68,7 +68,8 @@ class SyncService @Inject constructor(
                     answers = answers
                 )
                 
-                api.submitQuiz(submission)
+                // Stable per local attempt, so a retry after a lost response isn't counted twice
+                api.submitQuiz(submission, "quiz-attempt-${attempt.quizId}-${attempt.timestamp}")
                 
                 // Mark as synced
                 quizAttemptDao.markAsSynced(attempt.id)
@@ -0,0 +1,253 @@
+package com.thinkfirst.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuning for the AI content cache (see AICacheService)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.cache")
+public class AICacheProperties {
+
+    private LocalConfig local = new LocalConfig();
+    private NamespaceConfig namespace = new NamespaceConfig();
+    private SweeperConfig sweeper = new SweeperConfig();
+    private SemanticConfig semantic = new SemanticConfig();
+    private CodecConfig codec = new CodecConfig();
+    private RefreshConfig refresh = new RefreshConfig();
+    private LegacyQuizConfig legacyQuiz = new LegacyQuizConfig();
+    private QuizPoolConfig quizPool = new QuizPoolConfig();
+    private WarmupConfig warmup = new WarmupConfig();
+    private AdmissionConfig admission = new AdmissionConfig();
+    private BudgetConfig budget = new BudgetConfig();
+    private KeyGranularityConfig keyGranularity = new KeyGranularityConfig();
+    private ContentStoreConfig contentStore = new ContentStoreConfig();
+    private NegativeConfig negative = new NegativeConfig();
+
+    /**
+     * In-process L1 tier holding already-deserialized values in front of Redis
+     */
+    @Data
+    public static class LocalConfig {
+        private boolean enabled = true;
+        private long maxWeightBytes = 64L * 1024 * 1024;
+        private String invalidationChannel = "thinkfirst:cache:invalidate";
+    }
+
+    /**
+     * Generation-stamped key namespaces (O(1) invalidation)
+     */
+    @Data
+    public static class NamespaceConfig {
+        private long generationRefreshSeconds = 30;
+    }
+
+    /**
+     * SCAN-based reclaimer for keys of old generations
+     */
+    @Data
+    public static class SweeperConfig {
+        private boolean enabled = true;
+        private long intervalMinutes = 60;
+        private int scanBatchSize = 500;
+    }
+
+    /**
+     * Near-duplicate (MinHash/LSH) lookup tier for responses and quizzes
+     */
+    @Data
+    public static class SemanticConfig {
+        private boolean enabled = true;
+        /** Minimum Jaccard similarity of canonical query tokens to reuse an entry */
+        private double threshold = 0.8;
+        private int numHashes = 64;
+        private int bands = 16;
+        private int maxEntriesPerPartition = 5000;
+        private int maxLocalPartitions = 10000;
+        private long localRefreshMinutes = 5;
+    }
+
+    /**
+     * Encoding of cached values in Redis (see VersionedCacheCodec)
+     */
+    @Data
+    public static class CodecConfig {
+        /** binary (compact, versioned) or json (legacy format, readable by older nodes) */
+        private String format = "binary";
+        /** Values at least this large are deflated when that makes them smaller */
+        private int compressionThresholdBytes = 512;
+    }
+
+    /**
+     * Stale-while-revalidate: after the soft TTL a cached value is still served while one
+     * background refresh regenerates it; it is only dropped at the hard TTL
+     */
+    @Data
+    public static class RefreshConfig {
+        private boolean enabled = true;
+        /** Per cache type (quiz, response, hint, subject); types without an entry keep their default TTL and never go stale */
+        private Map<String, TtlConfig> ttl = new HashMap<>(Map.of(
+                "response", new TtlConfig(Duration.ofDays(3), Duration.ofDays(7)),
+                "hint", new TtlConfig(Duration.ofDays(3), Duration.ofDays(7))));
+        /** How long one node owns a refresh; other nodes skip the key meanwhile */
+        private Duration lockTtl = Duration.ofMinutes(2);
+        private int workerThreads = 2;
+        private int queueCapacity = 100;
+    }
+
+    /**
+     * Read-through migration of quiz-with-subject results cached before composite entries existed.
+     * Those were keyed by the detected subject, so each candidate subject is probed (one MGET).
+     * Can be disabled once the legacy entries have expired (quiz TTL).
+     */
+    @Data
+    public static class LegacyQuizConfig {
+        private boolean migrationEnabled = true;
+        private List<String> subjects = new ArrayList<>(List.of(
+                "Mathematics", "Science", "English", "History", "Geography",
+                "Computer Science", "Art", "Music", "General"));
+    }
+
+    /**
+     * Pools of quiz variants per quiz key; target size grows with the key's popularity
+     */
+    @Data
+    public static class QuizPoolConfig {
+        private boolean enabled = true;
+        private int minSize = 1;
+        private int maxSize = 5;
+        /** Requests per extra variant, doubling per step (10 -> 2 variants, 30 -> 3, 70 -> 4, ...) */
+        private int requestsPerVariant = 10;
+        /** How long a node keeps a pool's variants in process before re-reading Redis */
+        private long localTtlSeconds = 60;
+        /** How long a child's served-variant history is kept */
+        private Duration servedTtl = Duration.ofDays(30);
+    }
+
+    /**
+     * Popularity tracking (decayed counts per key) and warmup of the hottest entries
+     */
+    @Data
+    public static class WarmupConfig {
+        private boolean enabled = true;
+        private boolean onStartup = true;
+        /** Hottest keys per cache type to preload */
+        private int topN = 200;
+        /** Hot entries expiring (or going stale) within this window are regenerated during warmup */
+        private Duration regenerateWithin = Duration.ofDays(1);
+        /** Local popularity increments are flushed to Redis this often */
+        private long flushIntervalSeconds = 5;
+        private long decayIntervalMinutes = 60;
+        /** Multiplier applied to every score at each decay step (0.9 per hour ~ 7 hour half-life) */
+        private double decayFactor = 0.9;
+        private int maxTrackedKeys = 10000;
+    }
+
+    /**
+     * Frequency-based admission: a new key is written to Redis only once it has repeat demand.
+     * Rejected values are still kept in the in-process tier, and existing entries are always refreshed.
+     */
+    @Data
+    public static class AdmissionConfig {
+        private boolean enabled = true;
+        /** Cache types (quiz, response, hint, subject) the filter applies to */
+        private List<String> types = new ArrayList<>(List.of("quiz", "response", "hint"));
+        /** Lookups of a key (this node's sketch, or cluster-wide popularity) needed before it is stored */
+        private int minFrequency = 2;
+        /** Counters per row of each type's count-min sketch (rounded up to a power of two) */
+        private int sketchWidth = 16384;
+    }
+
+    /**
+     * Per-type Redis memory budgets, enforced by trimming the least frequently used entries
+     */
+    @Data
+    public static class BudgetConfig {
+        private boolean enabled = true;
+        /** Budget per cache type (quiz, response, hint, subject); types without one are not trimmed */
+        private Map<String, DataSize> maxSize = new HashMap<>(Map.of(
+                "quiz", DataSize.ofMegabytes(256),
+                "response", DataSize.ofMegabytes(256),
+                "hint", DataSize.ofMegabytes(64)));
+        /** Trimming stops once a type is back under this fraction of its budget */
+        private double trimTo = 0.9;
+        private long intervalMinutes = 15;
+    }
+
+    /**
+     * How finely cache keys distinguish children: exact age, age band (app.content.age-groups),
+     * or age band plus difficulty. Banded content is generated for the band's representative age.
+     */
+    @Data
+    public static class KeyGranularityConfig {
+        /** Per cache type (quiz, response, hint); types without an entry are keyed by exact age */
+        private Map<String, KeyGranularity> types = new HashMap<>(Map.of(
+                "quiz", KeyGranularity.BAND_DIFFICULTY,
+                "response", KeyGranularity.BAND,
+                "hint", KeyGranularity.BAND));
+        /** Also read entries keyed by exact age (written before banding) and copy hits to their band key */
+        private boolean dualRead = true;
+    }
+
+    /**
+     * Node-local memory-mapped store of encoded AI content (LocalContentStore), read before Redis
+     * and kept across restarts
+     */
+    @Data
+    public static class ContentStoreConfig {
+        private boolean enabled = false;
+        private String directory = "data/content-store";
+        /** Cache types (quiz, response, hint, subject) kept in the store */
+        private List<String> types = new ArrayList<>(List.of("quiz", "response", "hint"));
+        /** Size of each memory-mapped segment file; larger values are never stored */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        /** Record bytes kept on disk; the oldest segments are dropped beyond this */
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+        /** A sealed segment is rewritten once this fraction of it is overwritten or expired */
+        private double compactGarbageRatio = 0.5;
+        private long compactionIntervalMinutes = 30;
+        /** Initial slots of the off-heap index (16 bytes each, doubled as needed) */
+        private int indexCapacity = 65536;
+    }
+
+    /**
+     * Short-lived entries for inputs every provider failed on with unusable output, so
+     * repeats fail fast instead of walking the provider chain again
+     */
+    @Data
+    public static class NegativeConfig {
+        private boolean enabled = true;
+        private Duration ttl = Duration.ofMinutes(10);
+        /** Entries kept in process on each node (Redis shares them across nodes) */
+        private int localMaxEntries = 10_000;
+    }
+
+    public enum KeyGranularity {
+        /** Exact age (and difficulty, for quizzes) - the original key format */
+        EXACT,
+        /** Age band only; quizzes of every difficulty share an entry */
+        BAND,
+        /** Age band plus difficulty (same as BAND for types without a difficulty) */
+        BAND_DIFFICULTY
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TtlConfig {
+        private Duration soft;
+        private Duration hard;
+    }
+}
@@ -0,0 +1,19 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Write-behind tracking of child and chat session activity (app.activity)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.activity")
+public class ActivityProperties {
+
+    /** Coalesce activity in memory and flush it periodically; off writes it through at once */
+    private boolean writeBehind = true;
+    /** Delay between flushes */
+    private long flushIntervalMs = 5000;
+}
@@ -0,0 +1,21 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Answering a child's repeated question from the answers they already unlocked
+ * (app.chat.answer-reuse)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.chat.answer-reuse")
+public class AnswerReuseProperties {
+
+    private boolean enabled = true;
+    /** Answers unlocked longer ago than this go through the quiz again */
+    private Duration maxAge = Duration.ofDays(30);
+}
@@ -0,0 +1,24 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Paging of chat history and session listings (app.chat.history)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.chat.history")
+public class ChatHistoryProperties {
+
+    /** Page size when the client sends a cursor but no limit */
+    private int defaultLimit = 50;
+    /** Largest page a client may ask for */
+    private int maxLimit = 200;
+    /**
+     * Requests without limit or cursor get the full, unpaginated list (for clients that
+     * predate paging). Turn off once they have moved to cursors.
+     */
+    private boolean legacyUnpaginated = true;
+}
@@ -0,0 +1,31 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Asynchronous chat jobs (app.chat.jobs): POST /api/chat/query?async=true
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.chat.jobs")
+public class ChatJobProperties {
+
+    /** Workers running chat jobs on each node */
+    private int workerThreads = 8;
+    /** Jobs waiting for a worker on each node; further submissions get 503 */
+    private int queueCapacity = 200;
+    /** How long job state and results are kept in Redis */
+    private Duration resultTtl = Duration.ofMinutes(10);
+    /** Longest long-poll wait a client may ask for */
+    private Duration maxPollWait = Duration.ofSeconds(30);
+    /** How long an SSE stream stays open waiting for the result */
+    private Duration streamTimeout = Duration.ofMinutes(2);
+    /** How long shutdown waits for queued and running jobs before failing the rest */
+    private Duration shutdownGrace = Duration.ofSeconds(20);
+    /** Pub/sub channel on which finished job ids are announced to every node */
+    private String channel = "thinkfirst:chat:jobs";
+}
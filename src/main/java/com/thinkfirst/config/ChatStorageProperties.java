@@ -0,0 +1,27 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Partitioning and archival of chat history (app.chat.storage)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.chat.storage")
+public class ChatStorageProperties {
+
+    /** Monthly chat_messages partitions kept created ahead of the current month */
+    private int partitionMonthsAhead = 3;
+    /** Minutes between partition maintenance and archival runs */
+    private int maintenanceIntervalMinutes = 60;
+
+    private boolean archiveEnabled = true;
+    /** Sessions without activity for this long have their messages moved to the archive */
+    private Duration archiveAfter = Duration.ofDays(180);
+    /** Sessions archived per transaction */
+    private int archiveBatchSize = 100;
+}
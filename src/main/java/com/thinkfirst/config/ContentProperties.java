@@ -0,0 +1,47 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content settings (app.content), including the age groups used to band children by age
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.content")
+public class ContentProperties {
+
+    private List<AgeGroup> ageGroups = new ArrayList<>();
+
+    /**
+     * Age group containing the given age, if any
+     */
+    public AgeGroup ageGroupFor(Integer age) {
+        if (age == null) {
+            return null;
+        }
+        for (AgeGroup group : ageGroups) {
+            if (age >= group.getMinAge() && age <= group.getMaxAge()) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    @Data
+    public static class AgeGroup {
+        private String name;
+        private int minAge;
+        private int maxAge;
+        /** Age content shared by the whole group is generated for (defaults to the middle of the range) */
+        private Integer representativeAge;
+
+        public int promptAge() {
+            return representativeAge != null ? representativeAge : (minAge + maxAge) / 2;
+        }
+    }
+}
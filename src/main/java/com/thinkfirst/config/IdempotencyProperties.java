@@ -0,0 +1,32 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Idempotency-Key handling for chat queries and quiz submissions (app.idempotency)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.idempotency")
+public class IdempotencyProperties {
+
+    private boolean enabled = true;
+    /** How long a completed response is replayed for repeats of its key */
+    private Duration responseTtl = Duration.ofHours(24);
+    /**
+     * How long a claim outlives the node holding it; renewed every renew-interval-ms while its
+     * request runs, so only a crashed node's claim expires
+     */
+    private Duration pendingTtl = Duration.ofMinutes(2);
+    /** How often running requests renew their claims; well below pending-ttl */
+    private long renewIntervalMs = 30000;
+    /**
+     * How long a concurrent duplicate waits for the first request before getting 409; short,
+     * as the wait holds a request thread
+     */
+    private Duration waitTimeout = Duration.ofMillis(300);
+}
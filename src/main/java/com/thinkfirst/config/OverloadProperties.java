@@ -0,0 +1,37 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Adaptive concurrency limit and degraded modes for chat queries and quiz submissions
+ * (app.overload)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.overload")
+public class OverloadProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 20;
+    private int minLimit = 2;
+    private int maxLimit = 200;
+    /** Requests slower than this shrink the limit; faster ones let it grow while it is in use */
+    private Duration targetLatency = Duration.ofSeconds(8);
+    /** Multiplicative decrease applied to the limit on a slow request */
+    private double backoffRatio = 0.9;
+    /** At most one decrease per cooldown, so a burst of slow completions doesn't collapse the limit */
+    private Duration decreaseCooldown = Duration.ofSeconds(1);
+
+    /** Share of the limit in use at which each degraded mode starts */
+    private double noLearningPathsAt = 0.6;
+    private double noHintsAt = 0.75;
+    private double cacheOnlyAt = 0.9;
+
+    /** Retry-After sent with 429 responses when requests are shed */
+    private Duration retryAfter = Duration.ofSeconds(5);
+}
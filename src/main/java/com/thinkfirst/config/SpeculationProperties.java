@@ -0,0 +1,20 @@
+package com.thinkfirst.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Generating a chat answer while its query is still in moderation (app.chat.speculation)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.chat.speculation")
+public class SpeculationProperties {
+
+    private boolean enabled = true;
+    /** Concurrent speculative generations on this node */
+    private int threads = 16;
+    /** Queries that find the pool and queue full generate after moderation, as without speculation */
+    private int queueCapacity = 16;
+}
@@ -1,7 +1,10 @@
 package com.thinkfirst.controller;
 
+import com.thinkfirst.service.OverloadGuard;
 import com.thinkfirst.service.ai.AIProviderService;
 import com.thinkfirst.service.cache.AICacheService;
+import com.thinkfirst.service.cache.CacheType;
+import com.thinkfirst.service.cache.CacheWarmer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +20,8 @@ import java.util.Map;
 public class AIProviderController {
     
     private final AIProviderService aiProviderService;
+    private final CacheWarmer cacheWarmer;
+    private final OverloadGuard overloadGuard;
     
     @GetMapping("/status")
     @Operation(summary = "Get status of all AI providers")
@@ -24,6 +29,12 @@ public class AIProviderController {
         return ResponseEntity.ok(aiProviderService.getProviderStatus());
     }
     
+    @GetMapping("/overload")
+    @Operation(summary = "Get the concurrency limit, current degraded mode and shed request counts")
+    public ResponseEntity<Map<String, Object>> getOverloadStatus() {
+        return ResponseEntity.ok(overloadGuard.snapshot());
+    }
+    
     @PostMapping("/test/{provider}")
     @Operation(summary = "Test a specific AI provider")
     public ResponseEntity<Map<String, Object>> testProvider(@PathVariable String provider) {
@@ -79,5 +90,10 @@ public class AIProviderController {
             "message", "Response cache invalidated successfully"
         ));
     }
-}
 
+    @PostMapping("/cache/warmup")
+    @Operation(summary = "Preload popular cache entries and regenerate those about to expire")
+    public ResponseEntity<Map<CacheType, CacheWarmer.WarmupResult>> warmupCache() {
+        return ResponseEntity.ok(cacheWarmer.warmup());
+    }
+}
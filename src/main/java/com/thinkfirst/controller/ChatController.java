@@ -1,18 +1,40 @@
 package com.thinkfirst.controller;
 
+import com.thinkfirst.config.ChatHistoryProperties;
+import com.thinkfirst.config.ChatJobProperties;
+import com.thinkfirst.dto.ChatJobStatus;
+import com.thinkfirst.dto.ChatMessageView;
 import com.thinkfirst.dto.ChatRequest;
 import com.thinkfirst.dto.ChatResponse;
+import com.thinkfirst.dto.ChatSearchHit;
+import com.thinkfirst.dto.ChatSessionView;
+import com.thinkfirst.dto.CursorPage;
+import com.thinkfirst.dto.PageCursor;
+import com.thinkfirst.dto.SearchCursor;
+import com.thinkfirst.exception.OverloadedException;
 import com.thinkfirst.model.ChatMessage;
-import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.service.ChatJobService;
+import com.thinkfirst.service.ChatSearchService;
 import com.thinkfirst.service.ChatService;
+import com.thinkfirst.service.IdempotencyService;
+import com.thinkfirst.service.OverloadGuard;
 import com.thinkfirst.service.RateLimitService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -21,40 +43,206 @@ public class ChatController {
 
     private final ChatService chatService;
     private final RateLimitService rateLimitService;
+    private final ChatJobService chatJobService;
+    private final ChatJobProperties jobProperties;
+    private final ChatHistoryProperties historyProperties;
+    private final IdempotencyService idempotencyService;
+    private final ChatSearchService chatSearchService;
+    private final OverloadGuard overloadGuard;
 
-    public ChatController(ChatService chatService, RateLimitService rateLimitService) {
+    public ChatController(ChatService chatService, RateLimitService rateLimitService,
+                          ChatJobService chatJobService, ChatJobProperties jobProperties,
+                          ChatHistoryProperties historyProperties, IdempotencyService idempotencyService,
+                          ChatSearchService chatSearchService, OverloadGuard overloadGuard) {
         this.chatService = chatService;
         this.rateLimitService = rateLimitService;
+        this.chatJobService = chatJobService;
+        this.jobProperties = jobProperties;
+        this.historyProperties = historyProperties;
+        this.idempotencyService = idempotencyService;
+        this.chatSearchService = chatSearchService;
+        this.overloadGuard = overloadGuard;
     }
 
     @PostMapping("/query")
-    @Operation(summary = "Send a chat query (quiz-gated)")
-    public ResponseEntity<ChatResponse> sendQuery(@Valid @RequestBody ChatRequest request) {
-        // Check rate limits
-        rateLimitService.checkChatRateLimit(request.getChildId());
-        rateLimitService.checkDailyQuestionLimit(request.getChildId());
+    @Operation(summary = "Send a chat query (quiz-gated); with async=true, queue it and return 202 with a job id")
+    public ResponseEntity<?> sendQuery(
+            @Valid @RequestBody ChatRequest request,
+            @RequestParam(defaultValue = "false") boolean async,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // A repeated key replays the first response, without counting against rate limits again
+        return idempotencyService.execute("chat:" + request.getChildId() + (async ? ":async" : ""),
+                idempotencyKey, request, () -> runQuery(request, async));
+    }
+
+    private ResponseEntity<?> runQuery(ChatRequest request, boolean async) {
+        if (!async) {
+            try {
+                return ResponseEntity.ok(overloadGuard.call("chat", mode -> admitted(request, mode)));
+            } catch (OverloadedException e) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(overloadGuard.retryAfterSeconds()))
+                        .build();
+            }
+        }
+        // Check rate limits (chat and daily question counters in one round trip each way)
+        rateLimitService.checkChatLimits(request.getChildId());
+        Optional<ChatJobStatus> job = chatJobService.submit(request);
+        if (job.isEmpty()) {
+            rateLimitService.refundChatLimits(request.getChildId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/chat/jobs/" + job.get().getJobId()))
+                .body(job.get());
+    }
+
+    /**
+     * Rate limits are counted only once the guard admits the query, so a shed 429 costs no quota;
+     * a query shed later on (a cache miss in cache-only mode) gets its count back
+     */
+    private ChatResponse admitted(ChatRequest request, OverloadGuard.Mode mode) {
+        rateLimitService.checkChatLimits(request.getChildId());
+        try {
+            return chatService.processQuery(request, mode);
+        } catch (OverloadedException e) {
+            rateLimitService.refundChatLimits(request.getChildId());
+            throw e;
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Get an async chat job; waitSeconds long-polls until it finishes")
+    public DeferredResult<ResponseEntity<ChatJobStatus>> getJob(
+            @PathVariable String jobId,
+            @RequestParam(defaultValue = "0") long waitSeconds) {
+        long timeout = Math.min(waitSeconds * 1000, jobProperties.getMaxPollWait().toMillis());
+        DeferredResult<ResponseEntity<ChatJobStatus>> result = new DeferredResult<>(Math.max(timeout, 1L));
+
+        Optional<ChatJobStatus> current = chatJobService.get(jobId);
+        if (current.isEmpty()) {
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+        if (timeout <= 0 || current.get().isFinished()) {
+            result.setResult(ResponseEntity.ok(current.get()));
+            return result;
+        }
+
+        Runnable cancel = chatJobService.awaitFinished(jobId, status -> result.setResult(ResponseEntity.ok(status)));
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(chatJobService.get(jobId).orElse(current.get()))));
+        result.onCompletion(cancel);
+        return result;
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = "text/event-stream")
+    @Operation(summary = "Stream an async chat job: a status event now, then a result event when it finishes")
+    public SseEmitter streamJob(@PathVariable String jobId) throws IOException {
+        SseEmitter emitter = new SseEmitter(jobProperties.getStreamTimeout().toMillis());
+        Optional<ChatJobStatus> current = chatJobService.get(jobId);
+        if (current.isEmpty()) {
+            emitter.completeWithError(new IllegalArgumentException("Unknown chat job: " + jobId));
+            return emitter;
+        }
+        emitter.send(SseEmitter.event().name("status").data(current.get()));
+        if (current.get().isFinished()) {
+            emitter.send(SseEmitter.event().name("result").data(current.get()));
+            emitter.complete();
+            return emitter;
+        }
 
-        return ResponseEntity.ok(chatService.processQuery(request));
+        Runnable cancel = chatJobService.awaitFinished(jobId, status -> {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(status));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onTimeout(cancel);
+        emitter.onCompletion(cancel);
+        return emitter;
     }
     
     @PostMapping("/session")
     @Operation(summary = "Create a new chat session")
-    public ResponseEntity<ChatSession> createSession(
+    public ResponseEntity<ChatSessionView> createSession(
             @RequestParam Long childId,
             @RequestParam(required = false) String title) {
-        return ResponseEntity.ok(chatService.createSession(childId, title));
+        return ResponseEntity.ok(ChatSessionView.from(chatService.createSession(childId, title)));
     }
     
     @GetMapping("/session/{sessionId}/history")
-    @Operation(summary = "Get chat history for a session")
-    public ResponseEntity<List<ChatMessage>> getChatHistory(@PathVariable Long sessionId) {
-        return ResponseEntity.ok(chatService.getChatHistory(sessionId));
+    @Operation(summary = "Get chat history for a session; latest page first, cursor pages back in time")
+    public ResponseEntity<?> getChatHistory(
+            @PathVariable Long sessionId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        if (isLegacyRequest(limit, cursor)) {
+            return ResponseEntity.ok(chatService.getChatHistory(sessionId));
+        }
+        Optional<PageCursor> position = decodeCursor(cursor);
+        if (cursor != null && position.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        CursorPage<ChatMessageView> page = chatService.getChatHistoryPage(sessionId, position.orElse(null), pageSize(limit));
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/child/{childId}/sessions")
-    @Operation(summary = "Get all sessions for a child")
-    public ResponseEntity<List<ChatSession>> getChildSessions(@PathVariable Long childId) {
-        return ResponseEntity.ok(chatService.getChildSessions(childId));
+    @Operation(summary = "Get sessions for a child, most recently active first; cursor pages further")
+    public ResponseEntity<?> getChildSessions(
+            @PathVariable Long childId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        if (isLegacyRequest(limit, cursor)) {
+            return ResponseEntity.ok(chatService.getChildSessions(childId));
+        }
+        Optional<PageCursor> position = decodeCursor(cursor);
+        if (cursor != null && position.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        CursorPage<ChatSessionView> page = chatService.getChildSessionsPage(childId, position.orElse(null), pageSize(limit));
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/child/{childId}/search")
+    @Operation(summary = "Search a child's chat history (for parents); best matches first, with highlighted snippets")
+    public ResponseEntity<?> searchHistory(
+            @PathVariable Long childId,
+            @RequestParam String q,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) ChatMessage.MessageRole role,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        Optional<SearchCursor> position = cursor == null ? Optional.empty() : SearchCursor.decode(cursor);
+        if (q.isBlank() || (cursor != null && position.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Both dates are inclusive days
+        CursorPage<ChatSearchHit> page = chatSearchService.search(childId, q,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                role, position.orElse(null), pageSize(limit));
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Clients that send neither limit nor cursor predate paging and expect a plain list
+     */
+    private boolean isLegacyRequest(Integer limit, String cursor) {
+        return historyProperties.isLegacyUnpaginated() && limit == null && cursor == null;
     }
-}
 
+    private Optional<PageCursor> decodeCursor(String cursor) {
+        return cursor == null ? Optional.empty() : PageCursor.decode(cursor);
+    }
+
+    private int pageSize(Integer limit) {
+        int requested = limit != null ? limit : historyProperties.getDefaultLimit();
+        return Math.max(1, Math.min(requested, historyProperties.getMaxLimit()));
+    }
+}
@@ -1,13 +1,17 @@
 package com.thinkfirst.controller;
 
-import com.thinkfirst.dto.QuizResult;
 import com.thinkfirst.dto.QuizSubmission;
-import com.thinkfirst.model.Quiz;
+import com.thinkfirst.dto.QuizView;
+import com.thinkfirst.exception.OverloadedException;
+import com.thinkfirst.service.IdempotencyService;
+import com.thinkfirst.service.OverloadGuard;
 import com.thinkfirst.service.QuizService;
 import com.thinkfirst.service.RateLimitService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,26 +22,40 @@ public class QuizController {
 
     private final QuizService quizService;
     private final RateLimitService rateLimitService;
+    private final IdempotencyService idempotencyService;
+    private final OverloadGuard overloadGuard;
 
-    public QuizController(QuizService quizService, RateLimitService rateLimitService) {
+    public QuizController(QuizService quizService, RateLimitService rateLimitService,
+                          IdempotencyService idempotencyService, OverloadGuard overloadGuard) {
         this.quizService = quizService;
         this.rateLimitService = rateLimitService;
+        this.idempotencyService = idempotencyService;
+        this.overloadGuard = overloadGuard;
     }
 
     @PostMapping("/submit")
-    @Operation(summary = "Submit quiz answers for evaluation")
-    public ResponseEntity<QuizResult> submitQuiz(@Valid @RequestBody QuizSubmission submission) {
-        // Check quiz submission rate limit
-        rateLimitService.checkQuizRateLimit(submission.getChildId());
+    @Operation(summary = "Submit quiz answers for evaluation; retries with the same Idempotency-Key are not re-counted")
+    public ResponseEntity<?> submitQuiz(
+            @Valid @RequestBody QuizSubmission submission,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("quiz:" + submission.getChildId(), idempotencyKey, submission, () -> {
+            // Check quiz submission rate limit
+            rateLimitService.checkQuizRateLimit(submission.getChildId());
 
-        return ResponseEntity.ok(quizService.evaluateQuiz(submission));
+            try {
+                return ResponseEntity.ok(overloadGuard.call("quiz", mode -> quizService.evaluateQuiz(submission, mode)));
+            } catch (OverloadedException e) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(overloadGuard.retryAfterSeconds()))
+                        .build();
+            }
+        });
     }
     
     @GetMapping("/{quizId}")
     @Operation(summary = "Get quiz by ID")
-    public ResponseEntity<Quiz> getQuiz(@PathVariable Long quizId) {
-        Quiz quiz = quizService.getQuizById(quizId);
-        return ResponseEntity.ok(quiz);
+    public ResponseEntity<QuizView> getQuiz(@PathVariable Long quizId) {
+        return ResponseEntity.ok(quizService.getQuizView(quizId));
     }
 }
 
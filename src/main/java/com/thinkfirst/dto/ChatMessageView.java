@@ -0,0 +1,19 @@
+package com.thinkfirst.dto;
+
+import com.thinkfirst.model.ChatMessage;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a chat message, loaded by a constructor-expression query so no entity or
+ * lazy association is touched when it is serialized
+ */
+public record ChatMessageView(
+        Long id,
+        ChatMessage.MessageRole role,
+        String content,
+        Long quizId,
+        Boolean requiresQuizCompletion,
+        String contentModeration,
+        LocalDateTime createdAt) {
+}
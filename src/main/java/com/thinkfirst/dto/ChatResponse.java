@@ -16,7 +16,7 @@ public class ChatResponse {
 
     private String message;
     private ResponseType responseType;
-    private Quiz quiz;
+    private QuizView quiz;
     private String hint;
     private Long messageId;
     private MascotMessageDTO mascotMessage;
@@ -32,7 +32,7 @@ public class ChatResponse {
     public static ChatResponse withQuiz(Quiz quiz) {
         return ChatResponse.builder()
                 .responseType(ResponseType.QUIZ_REQUIRED)
-                .quiz(quiz)
+                .quiz(QuizView.from(quiz))
                 .message("Please complete this quiz before I can help you with that topic!")
                 .build();
     }
@@ -41,7 +41,7 @@ public class ChatResponse {
         return ChatResponse.builder()
                 .responseType(ResponseType.FULL_ANSWER)
                 .message(answer)
-                .quiz(verificationQuiz)
+                .quiz(QuizView.from(verificationQuiz))
                 .build();
     }
     
@@ -0,0 +1,19 @@
+package com.thinkfirst.dto;
+
+import com.thinkfirst.model.ChatMessage;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chat message matching a history search, with the matching passage highlighted in snippet
+ * (between « and »)
+ */
+public record ChatSearchHit(
+        Long messageId,
+        Long sessionId,
+        String sessionTitle,
+        ChatMessage.MessageRole role,
+        LocalDateTime createdAt,
+        String snippet,
+        float rank) {
+}
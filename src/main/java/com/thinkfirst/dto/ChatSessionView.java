@@ -0,0 +1,31 @@
+package com.thinkfirst.dto;
+
+import com.thinkfirst.model.ChatSession;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a chat session; child and subject are referenced by id only
+ */
+public record ChatSessionView(
+        Long id,
+        Long childId,
+        Long subjectId,
+        String title,
+        Integer messageCount,
+        Boolean archived,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static ChatSessionView from(ChatSession session) {
+        return new ChatSessionView(
+                session.getId(),
+                session.getChild() != null ? session.getChild().getId() : null,
+                session.getSubject() != null ? session.getSubject().getId() : null,
+                session.getTitle(),
+                session.getMessageCount(),
+                session.getArchived(),
+                session.getCreatedAt(),
+                session.getUpdatedAt());
+    }
+}
@@ -0,0 +1,75 @@
+package com.thinkfirst.dto;
+
+import com.thinkfirst.model.Question;
+import com.thinkfirst.model.Quiz;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read model of a quiz and its questions. Built while the persistence context is open, so
+ * serializing it never triggers lazy loading; subject and original quiz are flattened to ids.
+ */
+public record QuizView(
+        Long id,
+        Long subjectId,
+        String subjectName,
+        Quiz.DifficultyLevel difficulty,
+        Quiz.QuizType type,
+        Long originalQuizId,
+        Integer passingScore,
+        Integer timeLimit,
+        String title,
+        String description,
+        LocalDateTime createdAt,
+        Boolean active,
+        List<QuestionView> questions) {
+
+    public static QuizView from(Quiz quiz) {
+        return from(quiz, quiz.getQuestions());
+    }
+
+    public static QuizView from(Quiz quiz, List<Question> questions) {
+        if (quiz == null) {
+            return null;
+        }
+        return new QuizView(
+                quiz.getId(),
+                quiz.getSubject() != null ? quiz.getSubject().getId() : null,
+                quiz.getSubject() != null ? quiz.getSubject().getName() : null,
+                quiz.getDifficulty(),
+                quiz.getType(),
+                quiz.getOriginalQuiz() != null ? quiz.getOriginalQuiz().getId() : null,
+                quiz.getPassingScore(),
+                quiz.getTimeLimit(),
+                quiz.getTitle(),
+                quiz.getDescription(),
+                quiz.getCreatedAt(),
+                quiz.getActive(),
+                questions != null ? questions.stream().map(QuestionView::from).toList() : List.of());
+    }
+
+    public record QuestionView(
+            Long id,
+            String questionText,
+            Question.QuestionType type,
+            List<String> options,
+            String correctAnswer,
+            Integer correctOptionIndex,
+            String explanation,
+            Integer displayOrder) {
+
+        static QuestionView from(Question question) {
+            return new QuestionView(
+                    question.getId(),
+                    question.getQuestionText(),
+                    question.getType(),
+                    question.getOptions() != null ? new ArrayList<>(question.getOptions()) : List.of(),
+                    question.getCorrectAnswer(),
+                    question.getCorrectOptionIndex(),
+                    question.getExplanation(),
+                    question.getDisplayOrder());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.thinkfirst.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Position in search results ordered by (rank, id), both descending: the last hit of the
+ * previous page. Opaque to clients, like PageCursor.
+ */
+public record SearchCursor(float rank, long id) {
+
+    public String encode() {
+        // Float.toString round-trips exactly, so the next query compares against the same rank
+        String raw = rank + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the cursor, or empty if the value was not produced by encode()
+     */
+    public static Optional<SearchCursor> decode(String value) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return Optional.of(new SearchCursor(
+                    Float.parseFloat(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1))));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.thinkfirst.exception;
+
+/**
+ * Thrown when a request is shed because the service is overloaded; answered with 429
+ */
+public class OverloadedException extends RuntimeException {
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.thinkfirst.exception;
+
+/**
+ * A provider answered, but its output cannot be used (empty, unparseable or refused).
+ * Unlike timeouts and rate limits, the same input is likely to fail the same way again.
+ */
+public class UnusableResponseException extends AIProviderException {
+
+    public UnusableResponseException(String provider, String message) {
+        super(provider, message);
+    }
+
+    public UnusableResponseException(String provider, String message, Throwable cause) {
+        super(provider, message, cause);
+    }
+}
@@ -45,7 +45,10 @@ public class ChatMessage {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Restored archive messages keep their time (and so their partition)
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
     }
 
     public enum MessageRole {
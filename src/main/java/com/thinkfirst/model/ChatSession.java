@@ -3,6 +3,7 @@ package com.thinkfirst.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -12,6 +13,7 @@ import java.util.List;
  * Chat session between child and AI
  */
 @Entity
+@DynamicUpdate // so saving a session never rewrites message_count with a stale value
 @Table(name = "chat_sessions")
 @Data
 @NoArgsConstructor
@@ -42,20 +44,19 @@ public class ChatSession {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    /** Time of the last message; kept by ActivityTracker, not by other updates of the row */
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
     private Boolean archived = false;
 
+    /** When the messages were moved to chat_session_archives; null while they are in chat_messages */
+    private LocalDateTime messagesArchivedAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
     }
-
-    @PreUpdate
-    protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
-    }
 }
 
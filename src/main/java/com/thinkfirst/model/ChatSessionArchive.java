@@ -0,0 +1,45 @@
+package com.thinkfirst.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The messages of an inactive chat session, moved out of chat_messages as one
+ * gzip-compressed JSON array of ChatMessageView
+ */
+@Entity
+@Table(name = "chat_session_archives")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSessionArchive {
+
+    @Id
+    private Long chatSessionId;
+
+    @Column(nullable = false)
+    private Integer messageCount;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Column(nullable = false)
+    private byte[] messages;
+
+    /** Quizzes the archived messages refer to, so evaluating one can find this session */
+    @ElementCollection
+    @CollectionTable(name = "chat_session_archive_quizzes", joinColumns = @JoinColumn(name = "chat_session_id"))
+    @Column(name = "quiz_id")
+    @Builder.Default
+    private Set<Long> quizIds = new HashSet<>();
+
+    /** False for archives written before quizIds existed, until the archival job fills it in */
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean quizzesIndexed = true;
+}
@@ -3,6 +3,7 @@ package com.thinkfirst.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -12,6 +13,7 @@ import java.util.List;
  * Child user entity - the learner
  */
 @Entity
+@DynamicUpdate // last_active_date and current_streak are written by ActivityTracker flushes
 @Table(name = "children")
 @Data
 @NoArgsConstructor
@@ -39,6 +39,12 @@ public class LearningPath {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String originalQuery;
 
+    /**
+     * Fingerprint of the normalized original query, used to find the path again on a retake
+     */
+    @Column(nullable = false, length = 64)
+    private String queryFingerprint;
+
     @Column(columnDefinition = "TEXT")
     private String motivationalMessage;
 
@@ -66,6 +72,16 @@ public class LearningPath {
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        if (queryFingerprint == null) {
+            queryFingerprint = fingerprint(originalQuery);
+        }
+    }
+
+    /**
+     * Fingerprint of a query as stored in query_fingerprint
+     */
+    public static String fingerprint(String query) {
+        return QueryFingerprint.of(query);
     }
 
     public boolean isCompleted() {
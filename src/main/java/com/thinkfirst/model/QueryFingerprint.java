@@ -0,0 +1,50 @@
+package com.thinkfirst.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Fixed-size fingerprint of a child's question, stored in query_fingerprint columns so
+ * repeated questions are found with an index probe instead of comparing TEXT
+ */
+public final class QueryFingerprint {
+
+    private QueryFingerprint() {
+    }
+
+    /**
+     * SHA-256 hex of the query with ASCII letters lowercased, runs of ASCII whitespace
+     * ([ \t\n\r\f\v]) collapsed to one space and leading/trailing spaces removed, so trivially
+     * different spellings of a question match. Other characters are kept as they are so that
+     * V12's SQL backfill, which does the same, gives identical fingerprints in any database locale.
+     */
+    public static String of(String query) {
+        String normalized = normalize(query);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String normalize(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B') {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return sb.toString();
+    }
+}
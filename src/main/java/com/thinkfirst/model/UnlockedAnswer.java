@@ -0,0 +1,42 @@
+package com.thinkfirst.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An answer a child has unlocked by passing its verification quiz, indexed by the
+ * fingerprint of the question so asking it again returns the answer directly
+ */
+@Entity
+@Table(name = "unlocked_answers",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"child_id", "query_fingerprint"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnlockedAnswer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "child_id", nullable = false)
+    private Child child;
+
+    @Column(nullable = false, length = 64)
+    private String queryFingerprint;
+
+    /** The message the answer was given in; null once its session is archived */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "answer_message_id")
+    private ChatMessage answerMessage;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String answerContent;
+
+    @Column(nullable = false)
+    private LocalDateTime unlockedAt;
+}
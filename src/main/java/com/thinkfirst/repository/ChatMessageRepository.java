@@ -1,11 +1,16 @@
 package com.thinkfirst.repository;
 
+import com.thinkfirst.dto.ChatMessageView;
 import com.thinkfirst.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +19,40 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     List<ChatMessage> findByChatSessionIdOrderByCreatedAtAsc(Long chatSessionId);
     Optional<ChatMessage> findByAssociatedQuizId(Long quizId);
 
+    @Modifying
+    @Query("DELETE FROM ChatMessage m WHERE m.chatSession.id IN :sessionIds")
+    int deleteBySessionIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Whole history of a session as read models, oldest first, in one statement
+     */
+    @Query("SELECT new com.thinkfirst.dto.ChatMessageView(m.id, m.role, m.content, m.associatedQuiz.id, " +
+           "m.requiresQuizCompletion, m.contentModeration, m.createdAt) FROM ChatMessage m " +
+           "WHERE m.chatSession.id = :sessionId ORDER BY m.createdAt ASC, m.id ASC")
+    List<ChatMessageView> findViewsBySessionId(@Param("sessionId") Long sessionId);
+
+    /**
+     * Newest messages of a session first; the first page of keyset-paginated history
+     * (served by idx_chat_messages_session_created)
+     */
+    @Query("SELECT new com.thinkfirst.dto.ChatMessageView(m.id, m.role, m.content, m.associatedQuiz.id, " +
+           "m.requiresQuizCompletion, m.contentModeration, m.createdAt) FROM ChatMessage m " +
+           "WHERE m.chatSession.id = :sessionId ORDER BY m.createdAt DESC, m.id DESC")
+    List<ChatMessageView> findLatestInSession(@Param("sessionId") Long sessionId, Pageable pageable);
+
+    /**
+     * Messages of a session older than the cursor (createdAt, id), newest first
+     */
+    @Query("SELECT new com.thinkfirst.dto.ChatMessageView(m.id, m.role, m.content, m.associatedQuiz.id, " +
+           "m.requiresQuizCompletion, m.contentModeration, m.createdAt) FROM ChatMessage m " +
+           "WHERE m.chatSession.id = :sessionId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ChatMessageView> findInSessionBefore(@Param("sessionId") Long sessionId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+
     /**
      * Find the USER message that came immediately before the ASSISTANT message with the quiz
      * This gets the original question, not the AI-generated answer
@@ -0,0 +1,23 @@
+package com.thinkfirst.repository;
+
+import com.thinkfirst.model.ChatSessionArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChatSessionArchiveRepository extends JpaRepository<ChatSessionArchive, Long> {
+
+    /**
+     * The archived session whose messages refer to a quiz (served by idx_chat_session_archive_quizzes_quiz)
+     */
+    @Query("SELECT a.chatSessionId FROM ChatSessionArchive a JOIN a.quizIds q WHERE q = :quizId")
+    Optional<Long> findSessionIdByQuizId(@Param("quizId") Long quizId);
+
+    List<ChatSessionArchive> findByQuizzesIndexedFalse(Pageable pageable);
+}
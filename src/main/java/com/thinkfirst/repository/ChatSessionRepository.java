@@ -1,14 +1,76 @@
 package com.thinkfirst.repository;
 
+import com.thinkfirst.dto.ChatSessionView;
 import com.thinkfirst.model.ChatSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, Long> {
     List<ChatSession> findByChildIdAndArchivedFalse(Long childId);
     List<ChatSession> findByChildIdOrderByUpdatedAtDesc(Long childId);
+
+    /**
+     * Lock sessions for an activity flush; ordered by id so concurrent flushes can't deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ChatSession s WHERE s.id IN :ids ORDER BY s.id")
+    List<ChatSession> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Sessions inactive since the cutoff whose messages are still in chat_messages, oldest first
+     * (served by idx_chat_sessions_archive_candidates)
+     */
+    @Query("SELECT s.id FROM ChatSession s WHERE s.updatedAt < :cutoff AND s.messagesArchivedAt IS NULL " +
+           "ORDER BY s.updatedAt ASC")
+    List<Long> findIdsToArchive(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Set or clear messagesArchivedAt for many sessions in one bulk UPDATE, which leaves every
+     * other column, including the updatedAt ActivityTracker keeps, as it is
+     */
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.messagesArchivedAt = :archivedAt WHERE s.id IN :ids")
+    int setMessagesArchivedAt(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+    /**
+     * All sessions of a child as read models, most recently active first
+     */
+    @Query("SELECT new com.thinkfirst.dto.ChatSessionView(s.id, s.child.id, s.subject.id, s.title, " +
+           "s.messageCount, s.archived, s.createdAt, s.updatedAt) FROM ChatSession s " +
+           "WHERE s.child.id = :childId ORDER BY s.updatedAt DESC, s.id DESC")
+    List<ChatSessionView> findViewsByChildId(@Param("childId") Long childId);
+
+    /**
+     * Most recently active sessions of a child first; the first page of keyset-paginated
+     * listing (served by idx_chat_sessions_child_updated)
+     */
+    @Query("SELECT new com.thinkfirst.dto.ChatSessionView(s.id, s.child.id, s.subject.id, s.title, " +
+           "s.messageCount, s.archived, s.createdAt, s.updatedAt) FROM ChatSession s " +
+           "WHERE s.child.id = :childId ORDER BY s.updatedAt DESC, s.id DESC")
+    List<ChatSessionView> findLatestForChild(@Param("childId") Long childId, Pageable pageable);
+
+    /**
+     * Sessions of a child last active before the cursor (updatedAt, id), most recent first
+     */
+    @Query("SELECT new com.thinkfirst.dto.ChatSessionView(s.id, s.child.id, s.subject.id, s.title, " +
+           "s.messageCount, s.archived, s.createdAt, s.updatedAt) FROM ChatSession s " +
+           "WHERE s.child.id = :childId " +
+           "AND (s.updatedAt < :updatedAt OR (s.updatedAt = :updatedAt AND s.id < :id)) " +
+           "ORDER BY s.updatedAt DESC, s.id DESC")
+    List<ChatSessionView> findForChildBefore(@Param("childId") Long childId,
+                                             @Param("updatedAt") LocalDateTime updatedAt,
+                                             @Param("id") Long id,
+                                             Pageable pageable);
 }
 
@@ -1,9 +1,14 @@
 package com.thinkfirst.repository;
 
 import com.thinkfirst.model.Child;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,5 +17,12 @@ public interface ChildRepository extends JpaRepository<Child, Long> {
     Optional<Child> findByUsername(String username);
     List<Child> findByParentId(Long parentId);
     Boolean existsByUsername(String username);
+
+    /**
+     * Lock children for an activity flush; ordered by id so concurrent flushes can't deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Child c WHERE c.id IN :ids ORDER BY c.id")
+    List<Child> findAllForUpdate(@Param("ids") Collection<Long> ids);
 }
 
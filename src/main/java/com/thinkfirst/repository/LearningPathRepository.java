@@ -14,7 +14,8 @@ public interface LearningPathRepository extends JpaRepository<LearningPath, Long
 
     Optional<LearningPath> findByIdAndChildId(Long id, Long childId);
 
-    // Get all active learning paths for a query, ordered by creation date (newest first)
-    List<LearningPath> findByOriginalQueryAndChildIdAndActiveTrueOrderByCreatedAtDesc(String originalQuery, Long childId);
+    // Get all active learning paths for a query fingerprint, ordered by creation date (newest first);
+    // served by idx_learning_paths_child_fingerprint
+    List<LearningPath> findByChildIdAndQueryFingerprintAndActiveTrueOrderByCreatedAtDesc(Long childId, String queryFingerprint);
 }
 
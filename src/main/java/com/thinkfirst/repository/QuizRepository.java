@@ -1,15 +1,30 @@
 package com.thinkfirst.repository;
 
+import com.thinkfirst.model.Question;
 import com.thinkfirst.model.Quiz;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface QuizRepository extends JpaRepository<Quiz, Long> {
     List<Quiz> findBySubjectId(Long subjectId);
     List<Quiz> findBySubjectIdAndDifficulty(Long subjectId, Quiz.DifficultyLevel difficulty);
     List<Quiz> findByType(Quiz.QuizType type);
+
+    /**
+     * Questions of a quiz with their options, the quiz and its subject, in one statement
+     * (options are the only collection fetched, so the join stays a single bag)
+     */
+    @Query("SELECT DISTINCT qu FROM Question qu JOIN FETCH qu.quiz q JOIN FETCH q.subject " +
+           "LEFT JOIN FETCH qu.options WHERE q.id = :quizId ORDER BY qu.id")
+    List<Question> findQuestionsWithQuiz(@Param("quizId") Long quizId);
+
+    @Query("SELECT q FROM Quiz q JOIN FETCH q.subject WHERE q.id = :quizId")
+    Optional<Quiz> findWithSubjectById(@Param("quizId") Long quizId);
 }
 
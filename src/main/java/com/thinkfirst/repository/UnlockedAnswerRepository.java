@@ -0,0 +1,37 @@
+package com.thinkfirst.repository;
+
+import com.thinkfirst.model.UnlockedAnswer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface UnlockedAnswerRepository extends JpaRepository<UnlockedAnswer, Long> {
+
+    Optional<UnlockedAnswer> findByChildIdAndQueryFingerprint(Long childId, String queryFingerprint);
+
+    /**
+     * Detach answers from the messages of the given sessions, before those messages are archived;
+     * the answers themselves stay unlocked
+     */
+    @Modifying
+    @Query("UPDATE UnlockedAnswer u SET u.answerMessage = NULL WHERE u.answerMessage.id IN " +
+           "(SELECT m.id FROM ChatMessage m WHERE m.chatSession.id IN :sessionIds)")
+    int detachFromSessions(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Text of the answer the child unlocked for a question since the given time; one probe of
+     * the (child_id, query_fingerprint) unique index, whether or not the message is archived
+     */
+    @Query("SELECT u.answerContent FROM UnlockedAnswer u " +
+           "WHERE u.child.id = :childId AND u.queryFingerprint = :fingerprint AND u.unlockedAt >= :since")
+    Optional<String> findAnswerContent(@Param("childId") Long childId,
+                                       @Param("fingerprint") String fingerprint,
+                                       @Param("since") LocalDateTime since);
+}
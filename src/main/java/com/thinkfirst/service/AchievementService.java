@@ -83,6 +83,7 @@ public class AchievementService {
         }
     }
     
+    @Transactional(readOnly = true)
     public List<AchievementDTO> getChildAchievements(Long childId) {
         return achievementRepository.findByChildIdOrderByEarnedAtDesc(childId)
                 .stream()
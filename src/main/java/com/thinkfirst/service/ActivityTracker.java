@@ -0,0 +1,199 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.ActivityProperties;
+import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.model.Child;
+import com.thinkfirst.repository.ChatSessionRepository;
+import com.thinkfirst.repository.ChildRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind tracking of child activity (last active date, streak) and chat session
+ * activity (message count, updated time).
+ *
+ * Chat requests used to update the child's and the session's row on every query, making
+ * them lock hotspots. Activity is now coalesced in memory per child and session and flushed
+ * every flush-interval-ms: one locking SELECT per table, then batched UPDATEs. Streaks are
+ * computed at flush time from the stored last active date. Reads that show these values
+ * merge pending activity (see currentStreak, lastActiveDate).
+ */
+@Service
+public class ActivityTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityTracker.class);
+
+    private final ChildRepository childRepository;
+    private final ChatSessionRepository chatSessionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ActivityProperties properties;
+    private final Map<Long, ChildActivity> pendingChildren = new ConcurrentHashMap<>();
+    private final Map<Long, SessionActivity> pendingSessions = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+
+    public ActivityTracker(
+            ChildRepository childRepository,
+            ChatSessionRepository chatSessionRepository,
+            PlatformTransactionManager transactionManager,
+            ActivityProperties properties,
+            MeterRegistry registry) {
+        this.childRepository = childRepository;
+        this.chatSessionRepository = chatSessionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        Gauge.builder("activity.pending", pendingChildren, Map::size)
+                .tag("type", "child")
+                .description("Children with activity not yet written to the database")
+                .register(registry);
+        Gauge.builder("activity.pending", pendingSessions, Map::size)
+                .tag("type", "session")
+                .description("Chat sessions with activity not yet written to the database")
+                .register(registry);
+        this.flushTimer = Timer.builder("activity.flush")
+                .description("Time spent writing coalesced activity")
+                .register(registry);
+    }
+
+    public void recordChildActivity(Long childId) {
+        ChildActivity activity = ChildActivity.at(LocalDateTime.now());
+        if (!properties.isWriteBehind()) {
+            write(Map.of(childId, activity), Map.of());
+            return;
+        }
+        pendingChildren.merge(childId, activity, ChildActivity::merge);
+    }
+
+    public void recordSessionMessages(Long sessionId, int messages) {
+        SessionActivity activity = new SessionActivity(messages, LocalDateTime.now());
+        if (!properties.isWriteBehind()) {
+            write(Map.of(), Map.of(sessionId, activity));
+            return;
+        }
+        pendingSessions.merge(sessionId, activity, SessionActivity::merge);
+    }
+
+    /**
+     * The child's streak including activity not yet flushed
+     */
+    public int currentStreak(Child child) {
+        int stored = child.getCurrentStreak() != null ? child.getCurrentStreak() : 0;
+        ChildActivity pending = pendingChildren.get(child.getId());
+        return pending != null ? pending.streakAfter(child.getLastActiveDate(), stored) : stored;
+    }
+
+    /**
+     * The child's last activity including activity not yet flushed
+     */
+    public LocalDateTime lastActiveDate(Child child) {
+        ChildActivity pending = pendingChildren.get(child.getId());
+        LocalDateTime stored = child.getLastActiveDate();
+        return pending != null && (stored == null || pending.last().isAfter(stored)) ? pending.last() : stored;
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.activity.flush-interval-ms:5000}",
+        fixedDelayString = "${app.activity.flush-interval-ms:5000}"
+    )
+    public void flush() {
+        Map<Long, ChildActivity> children = drain(pendingChildren);
+        Map<Long, SessionActivity> sessions = drain(pendingSessions);
+        if (children.isEmpty() && sessions.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(children, sessions);
+            log.debug("Flushed activity for {} children and {} sessions", children.size(), sessions.size());
+        } catch (Exception e) {
+            // Put it back so the next flush retries; newer activity merges in
+            log.error("Activity flush failed, will retry: {}", e.getMessage());
+            children.forEach((id, activity) -> pendingChildren.merge(id, activity, ChildActivity::merge));
+            sessions.forEach((id, activity) -> pendingSessions.merge(id, activity, SessionActivity::merge));
+        }
+    }
+
+    /**
+     * Joins the caller's transaction if there is one: without write-behind the rows are updated
+     * within the chat or quiz transaction, and a failure fails that request rather than leaving
+     * it rollback-only behind a swallowed exception
+     */
+    private void write(Map<Long, ChildActivity> children, Map<Long, SessionActivity> sessions) {
+        flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+            if (!children.isEmpty()) {
+                for (Child child : childRepository.findAllForUpdate(children.keySet())) {
+                    ChildActivity activity = children.get(child.getId());
+                    int stored = child.getCurrentStreak() != null ? child.getCurrentStreak() : 0;
+                    child.setCurrentStreak(activity.streakAfter(child.getLastActiveDate(), stored));
+                    if (child.getLastActiveDate() == null || activity.last().isAfter(child.getLastActiveDate())) {
+                        child.setLastActiveDate(activity.last());
+                    }
+                }
+            }
+            if (!sessions.isEmpty()) {
+                for (ChatSession session : chatSessionRepository.findAllForUpdate(sessions.keySet())) {
+                    SessionActivity activity = sessions.get(session.getId());
+                    int count = session.getMessageCount() != null ? session.getMessageCount() : 0;
+                    session.setMessageCount(count + activity.messages());
+                    session.setUpdatedAt(activity.last());
+                }
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static <T> Map<Long, T> drain(Map<Long, T> pending) {
+        Map<Long, T> drained = new HashMap<>();
+        for (Long id : pending.keySet()) {
+            T value = pending.remove(id);
+            if (value != null) {
+                drained.put(id, value);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * First and last activity of a child since the last flush; a flush window can span midnight
+     */
+    record ChildActivity(LocalDateTime first, LocalDateTime last) {
+
+        static ChildActivity at(LocalDateTime time) {
+            return new ChildActivity(time, time);
+        }
+
+        ChildActivity merge(ChildActivity other) {
+            return new ChildActivity(
+                    first.isBefore(other.first) ? first : other.first,
+                    last.isAfter(other.last) ? last : other.last);
+        }
+
+        int streakAfter(LocalDateTime storedLastActive, int storedStreak) {
+            int streak = ProgressTrackingService.nextStreak(storedLastActive, storedStreak, first);
+            return ProgressTrackingService.nextStreak(first, streak, last);
+        }
+    }
+
+    record SessionActivity(int messages, LocalDateTime last) {
+
+        SessionActivity merge(SessionActivity other) {
+            return new SessionActivity(messages + other.messages, last.isAfter(other.last) ? last : other.last);
+        }
+    }
+}
@@ -80,6 +80,7 @@ public class BadgeService {
     /**
      * Get all badges for a child (earned and unearned)
      */
+    @Transactional(readOnly = true)
     public List<BadgeDTO> getChildBadges(Long childId) {
         Child child = childRepository.findById(childId)
                 .orElseThrow(() -> new RuntimeException("Child not found"));
@@ -107,6 +108,7 @@ public class BadgeService {
     /**
      * Get newly earned badges that haven't been seen
      */
+    @Transactional(readOnly = true)
     public List<BadgeDTO> getUnseenBadges(Long childId) {
         Child child = childRepository.findById(childId)
                 .orElseThrow(() -> new RuntimeException("Child not found"));
@@ -0,0 +1,254 @@
+package com.thinkfirst.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.ChatStorageProperties;
+import com.thinkfirst.dto.ChatMessageView;
+import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.model.ChatSessionArchive;
+import com.thinkfirst.model.Quiz;
+import com.thinkfirst.repository.ChatMessageRepository;
+import com.thinkfirst.repository.ChatSessionArchiveRepository;
+import com.thinkfirst.repository.ChatSessionRepository;
+import com.thinkfirst.repository.QuizRepository;
+import com.thinkfirst.repository.UnlockedAnswerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive tier for chat history: the messages of sessions inactive for archive-after are moved
+ * out of chat_messages (and its indexes) into one compressed row per session.
+ *
+ * Archived history stays readable through ChatService. A new message in an archived session
+ * restores its messages to chat_messages first, so the session continues normally.
+ */
+@Service
+public class ChatArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatArchiveService.class);
+
+    private static final TypeReference<List<ChatMessageView>> MESSAGES = new TypeReference<>() { };
+
+    // search_vector is generated from content
+    private static final String RESTORE_MESSAGE = "INSERT INTO chat_messages (id, chat_session_id, role, content, " +
+            "quiz_id, requires_quiz_completion, content_moderation, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionArchiveRepository archiveRepository;
+    private final UnlockedAnswerRepository unlockedAnswerRepository;
+    private final QuizRepository quizRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatStorageProperties properties;
+
+    public ChatArchiveService(
+            ChatSessionRepository chatSessionRepository,
+            ChatMessageRepository chatMessageRepository,
+            ChatSessionArchiveRepository archiveRepository,
+            UnlockedAnswerRepository unlockedAnswerRepository,
+            QuizRepository quizRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            ChatStorageProperties properties) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.archiveRepository = archiveRepository;
+        this.unlockedAnswerRepository = unlockedAnswerRepository;
+        this.quizRepository = quizRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.chat.storage.maintenance-interval-minutes:60}",
+        fixedDelayString = "${app.chat.storage.maintenance-interval-minutes:60}",
+        timeUnit = TimeUnit.MINUTES
+    )
+    public void archiveInactiveSessions() {
+        if (!properties.isArchiveEnabled()) {
+            return;
+        }
+        indexLegacyArchives();
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getArchiveAfter());
+        int total = 0;
+        try {
+            while (true) {
+                List<Long> ids = chatSessionRepository.findIdsToArchive(
+                        cutoff, PageRequest.of(0, properties.getArchiveBatchSize()));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer archived = transactionTemplate.execute(status -> archiveBatch(ids, cutoff));
+                total += archived != null ? archived : 0;
+                if (ids.size() < properties.getArchiveBatchSize()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Chat archival failed after {} sessions: {}", total, e.getMessage(), e);
+        }
+        if (total > 0) {
+            log.info("Archived the messages of {} chat sessions inactive since {}", total, cutoff);
+        }
+    }
+
+    int archiveBatch(List<Long> ids, LocalDateTime cutoff) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> archived = new ArrayList<>();
+        // Locked so an activity flush or a new message can't interleave; re-checked under the lock
+        for (ChatSession session : chatSessionRepository.findAllForUpdate(ids)) {
+            if (session.getMessagesArchivedAt() != null || !session.getUpdatedAt().isBefore(cutoff)) {
+                continue;
+            }
+            List<ChatMessageView> messages = chatMessageRepository.findViewsBySessionId(session.getId());
+            archiveRepository.save(ChatSessionArchive.builder()
+                    .chatSessionId(session.getId())
+                    .messageCount(messages.size())
+                    .archivedAt(now)
+                    .messages(compress(messages))
+                    .quizIds(quizIds(messages))
+                    .build());
+            archived.add(session.getId());
+        }
+        if (!archived.isEmpty()) {
+            // Unlocked answers keep their text and stay usable after archival
+            unlockedAnswerRepository.detachFromSessions(archived);
+            chatMessageRepository.deleteBySessionIds(archived);
+            chatSessionRepository.setMessagesArchivedAt(archived, now);
+        }
+        return archived.size();
+    }
+
+    /**
+     * Fill in the quizzes of archives written before they were recorded, a batch per transaction
+     */
+    void indexLegacyArchives() {
+        try {
+            while (true) {
+                Integer indexed = transactionTemplate.execute(status -> {
+                    List<ChatSessionArchive> archives = archiveRepository.findByQuizzesIndexedFalse(
+                            PageRequest.of(0, properties.getArchiveBatchSize()));
+                    for (ChatSessionArchive archive : archives) {
+                        archive.getQuizIds().addAll(quizIds(decompress(archive.getMessages())));
+                        archive.setQuizzesIndexed(true);
+                    }
+                    return archives.size();
+                });
+                if (indexed == null || indexed < properties.getArchiveBatchSize()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Indexing the quizzes of chat archives failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Restore the archived session a quiz was asked in, if any, so evaluating the quiz finds its
+     * answer and question; call within the transaction that evaluates it
+     */
+    public void restoreForQuiz(Long quizId) {
+        archiveRepository.findSessionIdByQuizId(quizId)
+                .flatMap(chatSessionRepository::findById)
+                .ifPresent(this::restore);
+    }
+
+    /**
+     * Archived messages of a session, oldest first; empty if the session is not archived
+     */
+    public Optional<List<ChatMessageView>> findArchivedMessages(Long sessionId) {
+        return archiveRepository.findById(sessionId).map(archive -> decompress(archive.getMessages()));
+    }
+
+    /**
+     * Move an archived session's messages back into chat_messages; call within the transaction
+     * that adds a message to the session.
+     *
+     * Messages go back under their archived ids (taken from the sequence, so still unique):
+     * history and search cursors and stored message ids stay valid across archival.
+     */
+    public void restore(ChatSession session) {
+        // Locked like archiveBatch, so concurrent restores can't both re-insert the messages
+        chatSessionRepository.findAllForUpdate(List.of(session.getId()));
+        Optional<ChatSessionArchive> archive = archiveRepository.findById(session.getId());
+        if (archive.isPresent()) {
+            List<ChatMessageView> views = decompress(archive.get().getMessages());
+            // Quizzes deleted while the session was archived are dropped from their messages,
+            // as ON DELETE SET NULL would have done to the hot rows
+            Set<Long> existingQuizIds = quizRepository.findAllById(quizIds(views))
+                    .stream()
+                    .map(Quiz::getId)
+                    .collect(Collectors.toSet());
+            List<Object[]> rows = new ArrayList<>(views.size());
+            for (ChatMessageView view : views) {
+                rows.add(new Object[] {
+                        view.id(),
+                        session.getId(),
+                        view.role().name(),
+                        view.content(),
+                        existingQuizIds.contains(view.quizId()) ? view.quizId() : null,
+                        view.requiresQuizCompletion(),
+                        view.contentModeration(),
+                        Timestamp.valueOf(view.createdAt())
+                });
+            }
+            jdbcTemplate.batchUpdate(RESTORE_MESSAGE, rows);
+            archiveRepository.delete(archive.get());
+            log.info("Restored {} archived messages of chat session {}", rows.size(), session.getId());
+        }
+        // Written with the session's activity update; the session is active again anyway
+        session.setMessagesArchivedAt(null);
+    }
+
+    private static Set<Long> quizIds(List<ChatMessageView> messages) {
+        return messages.stream()
+                .map(ChatMessageView::quizId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    private byte[] compress(List<ChatMessageView> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress chat archive", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<ChatMessageView> decompress(byte[] data) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(gzip, MESSAGES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read chat archive", e);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.thinkfirst.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.ChatJobProperties;
+import com.thinkfirst.dto.ChatJobStatus;
+import com.thinkfirst.dto.ChatRequest;
+import com.thinkfirst.exception.OverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous chat jobs: a submitted query is queued for a bounded worker pool that runs
+ * ChatService.processQuery, so request threads are released at once.
+ *
+ * Job state and results live in a Redis hash (chat:job:<id>) for result-ttl, so any node
+ * can answer status requests. When a job finishes, its id is published on the jobs channel
+ * and every node hands the result to the clients waiting on it (long-poll or SSE).
+ *
+ * On shutdown, queued and running jobs get shutdown-grace to finish; the rest are failed,
+ * announced and refunded like shed jobs, so no client waits on a job that will never run.
+ */
+@Service
+public class ChatJobService implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatJobService.class);
+
+    static final String KEY_PREFIX = "chat:job:";
+
+    private final ChatService chatService;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatJobProperties properties;
+    private final OverloadGuard overloadGuard;
+    private final RateLimitService rateLimitService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, List<Consumer<ChatJobStatus>>> waiters = new ConcurrentHashMap<>();
+    private final Set<Job> running = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry registry;
+    private final Timer waitTime;
+    private final Timer runTime;
+    private final Counter rejected;
+
+    public ChatJobService(
+            ChatService chatService,
+            RedisTemplate<String, String> redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            ChatJobProperties properties,
+            OverloadGuard overloadGuard,
+            RateLimitService rateLimitService) {
+        this.chatService = chatService;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.overloadGuard = overloadGuard;
+        this.rateLimitService = rateLimitService;
+        this.registry = registry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getWorkerThreads(), properties.getWorkerThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                // Not daemon threads: shutdown decides when running jobs stop, not the JVM exit
+                r -> new Thread(r, "chat-job-" + threadCount.incrementAndGet()));
+        Gauge.builder("chat.jobs.queue.depth", executor, e -> e.getQueue().size())
+                .description("Chat jobs waiting for a worker on this node")
+                .register(registry);
+        Gauge.builder("chat.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Chat jobs running on this node")
+                .register(registry);
+        this.waitTime = Timer.builder("chat.jobs.wait")
+                .description("Time chat jobs spend queued before a worker picks them up")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.runTime = Timer.builder("chat.jobs.run")
+                .description("Time spent processing chat jobs")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.rejected = Counter.builder("chat.jobs.rejected")
+                .description("Chat jobs refused because the queue was full or Redis was unavailable")
+                .register(registry);
+    }
+
+    /**
+     * Subscribe after startup; the container keeps retrying in the background if Redis is down
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        try {
+            listenerContainer.addMessageListener(this, new ChannelTopic(properties.getChannel()));
+            log.info("Subscribed to chat job channel: {}", properties.getChannel());
+        } catch (Exception e) {
+            log.warn("Could not subscribe to chat job channel (Redis unavailable?): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a chat query
+     * @return the queued job, or empty if this node cannot take it now (queue full, Redis down)
+     */
+    public Optional<ChatJobStatus> submit(ChatRequest request) {
+        String jobId = UUID.randomUUID().toString();
+        long queuedAt = System.currentTimeMillis();
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", ChatJobStatus.Status.QUEUED.name());
+        fields.put("childId", String.valueOf(request.getChildId()));
+        fields.put("sessionId", String.valueOf(request.getSessionId()));
+        fields.put("createdAt", String.valueOf(queuedAt));
+        try {
+            update(jobId, fields);
+        } catch (Exception e) {
+            rejected.increment();
+            log.warn("Could not record chat job (Redis unavailable?): {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        try {
+            executor.execute(new Job(jobId, request, queuedAt));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            redisTemplate.delete(KEY_PREFIX + jobId);
+            log.warn("Chat job queue full ({} waiting), rejecting query for child {}",
+                    executor.getQueue().size(), request.getChildId());
+            return Optional.empty();
+        }
+        return Optional.of(toStatus(jobId, fields));
+    }
+
+    public Optional<ChatJobStatus> get(String jobId) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(KEY_PREFIX + jobId);
+        if (fields == null || fields.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, String> values = new HashMap<>();
+        fields.forEach((k, v) -> values.put(String.valueOf(k), String.valueOf(v)));
+        return Optional.of(toStatus(jobId, values));
+    }
+
+    /**
+     * Call onFinished once with the job's final state, on whichever node ran it
+     * @return a handle that stops waiting (on client timeout or disconnect)
+     */
+    public Runnable awaitFinished(String jobId, Consumer<ChatJobStatus> onFinished) {
+        AtomicBoolean delivered = new AtomicBoolean();
+        Consumer<ChatJobStatus> once = status -> {
+            if (delivered.compareAndSet(false, true)) {
+                onFinished.accept(status);
+            }
+        };
+        List<Consumer<ChatJobStatus>> list = waiters.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>());
+        list.add(once);
+        // The job may have finished before we registered
+        get(jobId).filter(ChatJobStatus::isFinished).ifPresent(status -> {
+            list.remove(once);
+            once.accept(status);
+        });
+        return () -> list.remove(once);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        notifyWaiters(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void run(Job job) {
+        long startedAt = System.currentTimeMillis();
+        waitTime.record(startedAt - job.queuedAt, TimeUnit.MILLISECONDS);
+        String outcome = "succeeded";
+        boolean refund = false;
+        Map<String, String> fields = new HashMap<>();
+        try {
+            update(job.jobId, Map.of(
+                    "status", ChatJobStatus.Status.RUNNING.name(),
+                    "startedAt", String.valueOf(startedAt)));
+            // Serialize inside the transaction so lazy associations of the response can still load
+            String result = transactionTemplate.execute(
+                    status -> toJson(overloadGuard.call("chat", mode -> chatService.processQuery(job.request, mode))));
+            fields.put("status", ChatJobStatus.Status.SUCCEEDED.name());
+            fields.put("result", result);
+        } catch (OverloadedException e) {
+            outcome = "shed";
+            log.warn("Chat job {} shed: {}", job.jobId, e.getMessage());
+            // Counted when it was submitted; a shed query costs no quota
+            refund = true;
+            fields.put("status", ChatJobStatus.Status.FAILED.name());
+            fields.put("error", "Too many requests right now, please try again shortly");
+        } catch (Exception e) {
+            outcome = "failed";
+            log.error("Chat job {} failed: {}", job.jobId, e.getMessage(), e);
+            fields.put("status", ChatJobStatus.Status.FAILED.name());
+            fields.put("error", e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+        long finishedAt = System.currentTimeMillis();
+        runTime.record(finishedAt - startedAt, TimeUnit.MILLISECONDS);
+        finish(job, fields, outcome, refund);
+    }
+
+    /**
+     * Fail a job that shutdown stopped, queued or running; like a shed job it costs no quota
+     */
+    private void abandon(Job job) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", ChatJobStatus.Status.FAILED.name());
+        fields.put("error", "The server is restarting, please try again");
+        if (finish(job, fields, "abandoned", true)) {
+            log.warn("Chat job {} abandoned at shutdown", job.jobId);
+        }
+    }
+
+    /**
+     * Record a job's final state and announce it, once: a job stopped at shutdown may still
+     * complete afterwards
+     * @return false if the job was already finished
+     */
+    private boolean finish(Job job, Map<String, String> fields, String outcome, boolean refund) {
+        if (!job.finished.compareAndSet(false, true)) {
+            return false;
+        }
+        registry.counter("chat.jobs.completed", "outcome", outcome).increment();
+        if (refund) {
+            rateLimitService.refundChatLimits(job.request.getChildId());
+        }
+        fields.put("finishedAt", String.valueOf(System.currentTimeMillis()));
+        try {
+            update(job.jobId, fields);
+            redisTemplate.convertAndSend(properties.getChannel(), job.jobId);
+        } catch (Exception e) {
+            log.error("Could not record the result of chat job {}: {}", job.jobId, e.getMessage());
+        }
+        notifyWaiters(job.jobId);
+        return true;
+    }
+
+    private void notifyWaiters(String jobId) {
+        List<Consumer<ChatJobStatus>> list = waiters.remove(jobId);
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        try {
+            get(jobId).filter(ChatJobStatus::isFinished).ifPresent(status -> list.forEach(w -> w.accept(status)));
+        } catch (Exception e) {
+            log.warn("Could not deliver the result of chat job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private void update(String jobId, Map<String, String> fields) {
+        String key = KEY_PREFIX + jobId;
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, properties.getResultTtl());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize chat response", e);
+        }
+    }
+
+    private static ChatJobStatus toStatus(String jobId, Map<String, String> fields) {
+        return ChatJobStatus.builder()
+                .jobId(jobId)
+                .status(ChatJobStatus.Status.valueOf(fields.get("status")))
+                .childId(toLong(fields.get("childId")))
+                .sessionId(toLong(fields.get("sessionId")))
+                .createdAt(toTime(fields.get("createdAt")))
+                .startedAt(toTime(fields.get("startedAt")))
+                .finishedAt(toTime(fields.get("finishedAt")))
+                .result(fields.get("result"))
+                .error(fields.get("error"))
+                .build();
+    }
+
+    private static Long toLong(String value) {
+        return value != null && !value.equals("null") ? Long.valueOf(value) : null;
+    }
+
+    private static LocalDateTime toTime(String millis) {
+        Long value = toLong(millis);
+        return value != null ? LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault()) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(properties.getShutdownGrace().toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> queued = executor.shutdownNow();
+        log.warn("Shutting down with {} chat jobs queued and {} running", queued.size(), running.size());
+        for (Runnable job : queued) {
+            abandon((Job) job);
+        }
+        for (Job job : running) {
+            abandon(job);
+        }
+    }
+
+    /**
+     * A queued chat query; tracked while it runs so shutdown can fail it
+     */
+    final class Job implements Runnable {
+
+        final String jobId;
+        final ChatRequest request;
+        final long queuedAt;
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        Job(String jobId, ChatRequest request, long queuedAt) {
+            this.jobId = jobId;
+            this.request = request;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            running.add(this);
+            try {
+                ChatJobService.this.run(this);
+            } finally {
+                running.remove(this);
+            }
+        }
+    }
+}
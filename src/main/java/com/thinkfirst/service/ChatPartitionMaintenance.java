@@ -0,0 +1,167 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.ChatStorageProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the monthly partitions of chat_messages (see V14) in shape: creates the coming months
+ * before any row needs them, so nothing lands in the DEFAULT partition, and drops partitions
+ * that archival has emptied. Only runs on PostgreSQL.
+ */
+@Service
+public class ChatPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatPartitionMaintenance.class);
+
+    static final String PARTITION_PREFIX = "chat_messages_p";
+    private static final String DEFAULT_PARTITION = "chat_messages_default";
+    private static final String COLUMNS = "id, chat_session_id, role, content, quiz_id, " +
+            "requires_quiz_completion, content_moderation, created_at";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatStorageProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private Boolean postgres;
+
+    public ChatPartitionMaintenance(JdbcTemplate jdbcTemplate, ChatStorageProperties properties,
+                                    PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(
+        fixedDelayString = "${app.chat.storage.maintenance-interval-minutes:60}",
+        timeUnit = TimeUnit.MINUTES
+    )
+    public void maintain() {
+        try {
+            if (!isPostgres()) {
+                return;
+            }
+        } catch (Exception e) {
+            log.error("Chat partition maintenance failed: {}", e.getMessage(), e);
+            return;
+        }
+        // Each step on its own: a month that can't be created must not block the others or the drop
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= properties.getPartitionMonthsAhead(); i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> createPartition(month));
+            } catch (Exception e) {
+                log.error("Could not create chat message partition {}: {}", partitionName(month), e.getMessage(), e);
+            }
+        }
+        try {
+            dropEmptyPartitionsBefore(YearMonth.from(LocalDate.now().minusDays(properties.getArchiveAfter().toDays())));
+        } catch (Exception e) {
+            log.error("Could not drop old chat message partitions: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A month whose rows already landed in the DEFAULT partition (the job was down over a month
+     * boundary, say) can't simply be created: PostgreSQL refuses a partition for values DEFAULT
+     * holds. DEFAULT is then detached, its rows for the month moved into the new partition and
+     * DEFAULT attached again, all under one lock on chat_messages.
+     */
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name))) {
+            return;
+        }
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        String create = String.format(
+                "CREATE TABLE %s PARTITION OF chat_messages FOR VALUES FROM ('%s') TO ('%s')", name, from, to);
+        String inMonth = String.format("created_at >= '%s' AND created_at < '%s'", from, to);
+        Boolean defaultHoldsMonth = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE " + inMonth + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(defaultHoldsMonth)) {
+            jdbcTemplate.execute(create);
+            return;
+        }
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+        jdbcTemplate.execute("LOCK TABLE chat_messages IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + DEFAULT_PARTITION);
+        jdbcTemplate.execute(create);
+        // search_vector is generated, so it is recomputed rather than copied
+        int moved = jdbcTemplate.update(
+                "INSERT INTO " + name + " (" + COLUMNS + ") SELECT " + COLUMNS +
+                " FROM " + DEFAULT_PARTITION + " WHERE " + inMonth);
+        jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE " + inMonth);
+        jdbcTemplate.execute("ALTER TABLE chat_messages ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+        log.info("Created chat message partition {} with {} rows moved out of {}", name, moved, DEFAULT_PARTITION);
+    }
+
+    /**
+     * Partitions for months entirely older than the archive cutoff are empty once archival has run,
+     * except for the messages of sessions restored since; those are kept
+     */
+    private void dropEmptyPartitionsBefore(YearMonth cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = 'chat_messages' AND c.relname LIKE '" + PARTITION_PREFIX + "%'",
+                String.class);
+        String oldest = partitionName(cutoff);
+        for (String partition : partitions) {
+            // Names sort chronologically
+            if (partition.compareTo(oldest) >= 0) {
+                continue;
+            }
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> dropIfEmpty(partition)))) {
+                    log.info("Dropped empty chat message partition {}", partition);
+                }
+            } catch (Exception e) {
+                log.warn("Could not drop chat message partition {}: {}", partition, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Check and drop under one lock, so a session restored in between (its messages go back into
+     * their original months) cannot lose them. The parent is locked first, in the order inserts
+     * take their locks, and only briefly: the lock timeout keeps chat writes from queueing behind it.
+     */
+    private boolean dropIfEmpty(String partition) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+        jdbcTemplate.execute("LOCK TABLE chat_messages, " + partition + " IN ACCESS EXCLUSIVE MODE");
+        Boolean empty = jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(empty)) {
+            return false;
+        }
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        return true;
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(SUFFIX);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgres;
+    }
+}
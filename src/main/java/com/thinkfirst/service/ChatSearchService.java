@@ -0,0 +1,99 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.dto.ChatSearchHit;
+import com.thinkfirst.dto.CursorPage;
+import com.thinkfirst.dto.SearchCursor;
+import com.thinkfirst.model.ChatMessage;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Full-text search over a child's chat history (chat_messages.search_vector, see V15).
+ *
+ * Matching probes the (chat_session_id, search_vector) GIN index of V16 once per session of the
+ * child, so only that family's messages are matched and ranked; the date range prunes monthly
+ * partitions. Hits are ranked with ts_rank and paged by (rank, id), and
+ * snippets are only built for the rows of the returned page. Archived sessions are not searched.
+ */
+@Service
+public class ChatSearchService {
+
+    private static final String SNIPPET_OPTIONS = "StartSel=«, StopSel=», MaxWords=25, MinWords=8, MaxFragments=2";
+
+    private static final RowMapper<ChatSearchHit> HIT = (rs, rowNum) -> new ChatSearchHit(
+            rs.getLong("id"),
+            rs.getLong("chat_session_id"),
+            rs.getString("title"),
+            ChatMessage.MessageRole.valueOf(rs.getString("role")),
+            rs.getTimestamp("created_at").toLocalDateTime(),
+            rs.getString("snippet"),
+            rs.getFloat("rank"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public ChatSearchService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param query search terms in web-search syntax ("volcano", "fractions -decimals", "\"solar system\"")
+     * @param from inclusive lower bound on message time, or null
+     * @param to exclusive upper bound on message time, or null
+     * @param role only messages of this role, or null for both
+     * @param after the last hit of the previous page, or null for the best matches
+     */
+    public CursorPage<ChatSearchHit> search(Long childId, String query, LocalDateTime from, LocalDateTime to,
+                                            ChatMessage.MessageRole role, SearchCursor after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("childId", childId)
+                .addValue("query", query)
+                .addValue("limit", limit + 1);
+
+        StringBuilder matches = new StringBuilder()
+                .append("SELECT m.id, m.chat_session_id, m.role, m.content, m.created_at, ")
+                .append("ts_rank(m.search_vector, q) AS rank ")
+                .append("FROM chat_sessions s ")
+                .append("JOIN chat_messages m ON m.chat_session_id = s.id ")
+                .append("CROSS JOIN websearch_to_tsquery('english', :query) q ")
+                .append("WHERE s.child_id = :childId AND m.search_vector @@ q ");
+        if (from != null) {
+            matches.append("AND m.created_at >= :from ");
+            params.addValue("from", from);
+        }
+        if (to != null) {
+            matches.append("AND m.created_at < :to ");
+            params.addValue("to", to);
+        }
+        if (role != null) {
+            matches.append("AND m.role = :role ");
+            params.addValue("role", role.name());
+        }
+
+        StringBuilder page = new StringBuilder("SELECT * FROM (").append(matches).append(") hit ");
+        if (after != null) {
+            page.append("WHERE hit.rank < :rank OR (hit.rank = :rank AND hit.id < :id) ");
+            params.addValue("rank", after.rank()).addValue("id", after.id());
+        }
+        page.append("ORDER BY hit.rank DESC, hit.id DESC LIMIT :limit");
+
+        String sql = "SELECT p.id, p.chat_session_id, s.title, p.role, p.created_at, p.rank, " +
+                "ts_headline('english', p.content, websearch_to_tsquery('english', :query), '" + SNIPPET_OPTIONS + "') AS snippet " +
+                "FROM (" + page + ") p JOIN chat_sessions s ON s.id = p.chat_session_id " +
+                "ORDER BY p.rank DESC, p.id DESC";
+
+        List<ChatSearchHit> rows = jdbcTemplate.query(sql, params, HIT);
+        boolean hasMore = rows.size() > limit;
+        List<ChatSearchHit> items = hasMore ? rows.subList(0, limit) : rows;
+        ChatSearchHit last = hasMore ? items.get(items.size() - 1) : null;
+        return CursorPage.<ChatSearchHit>builder()
+                .items(items)
+                .hasMore(hasMore)
+                .nextCursor(last != null ? new SearchCursor(last.rank(), last.messageId()).encode() : null)
+                .build();
+    }
+}
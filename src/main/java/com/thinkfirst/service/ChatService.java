@@ -1,18 +1,29 @@
 package com.thinkfirst.service;
 
+import com.thinkfirst.config.AnswerReuseProperties;
+import com.thinkfirst.dto.ChatMessageView;
 import com.thinkfirst.dto.ChatRequest;
 import com.thinkfirst.dto.ChatResponse;
+import com.thinkfirst.dto.ChatSessionView;
+import com.thinkfirst.dto.CursorPage;
 import com.thinkfirst.dto.ModerationResult;
+import com.thinkfirst.dto.PageCursor;
+import com.thinkfirst.dto.QuizView;
 import com.thinkfirst.model.*;
 import com.thinkfirst.repository.*;
+import com.thinkfirst.service.cache.CacheBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Core service implementing quiz-gated chat logic
@@ -35,6 +46,11 @@ public class ChatService {
     private final MascotService mascotService;
     private final SubjectStatisticsService subjectStatisticsService;
     private final BadgeService badgeService;
+    private final ActivityTracker activityTracker;
+    private final UnlockedAnswerRepository unlockedAnswerRepository;
+    private final AnswerReuseProperties answerReuseProperties;
+    private final ChatArchiveService chatArchiveService;
+    private final SpeculativeResponseService speculativeResponseService;
 
     public ChatService(
             ChatSessionRepository chatSessionRepository,
@@ -49,7 +65,12 @@ public class ChatService {
             LearningPathService learningPathService,
             MascotService mascotService,
             SubjectStatisticsService subjectStatisticsService,
-            BadgeService badgeService) {
+            BadgeService badgeService,
+            ActivityTracker activityTracker,
+            UnlockedAnswerRepository unlockedAnswerRepository,
+            AnswerReuseProperties answerReuseProperties,
+            ChatArchiveService chatArchiveService,
+            SpeculativeResponseService speculativeResponseService) {
         this.chatSessionRepository = chatSessionRepository;
         this.chatMessageRepository = chatMessageRepository;
         this.childRepository = childRepository;
@@ -63,13 +84,80 @@ public class ChatService {
         this.mascotService = mascotService;
         this.subjectStatisticsService = subjectStatisticsService;
         this.badgeService = badgeService;
+        this.activityTracker = activityTracker;
+        this.unlockedAnswerRepository = unlockedAnswerRepository;
+        this.answerReuseProperties = answerReuseProperties;
+        this.chatArchiveService = chatArchiveService;
+        this.speculativeResponseService = speculativeResponseService;
     }
     
+    /**
+     * Session subject if set, otherwise General (the AI infers the specific subject from the query,
+     * so there is no separate subject analysis call)
+     */
+    private Subject resolveSubject(ChatSession session) {
+        Subject subject = sessionSubject(session);
+        session.setSubject(subject);
+        return subject;
+    }
+
+    /**
+     * The subject resolveSubject would pick, without assigning it to the session
+     */
+    private Subject sessionSubject(ChatSession session) {
+        if (session.getSubject() != null) {
+            log.info("Using existing session subject: {}", session.getSubject().getName());
+            return session.getSubject();
+        }
+        log.info("Using General subject for new session");
+        return subjectRepository.findByName("General")
+                .orElseThrow(() -> new RuntimeException("Default subject not found"));
+    }
+
+    private Optional<String> findUnlockedAnswer(Long childId, String query) {
+        if (!answerReuseProperties.isEnabled()) {
+            return Optional.empty();
+        }
+        return unlockedAnswerRepository.findAnswerContent(childId, QueryFingerprint.of(query),
+                LocalDateTime.now().minus(answerReuseProperties.getMaxAge()));
+    }
+
+    private ChatResponse replyWithUnlockedAnswer(Child child, ChatSession session, String query, String answer) {
+        chatMessageRepository.save(ChatMessage.builder()
+                .chatSession(session)
+                .role(ChatMessage.MessageRole.USER)
+                .content(query)
+                .contentModeration("APPROVED")
+                .build());
+        chatMessageRepository.save(ChatMessage.builder()
+                .chatSession(session)
+                .role(ChatMessage.MessageRole.ASSISTANT)
+                .content(answer)
+                .contentModeration("APPROVED")
+                .build());
+        activityTracker.recordSessionMessages(session.getId(), 2);
+        activityTracker.recordChildActivity(child.getId());
+
+        return ChatResponse.builder()
+                .message(answer)
+                .responseType(ChatResponse.ResponseType.FULL_ANSWER)
+                .build();
+    }
+
     /**
      * Process a chat query with quiz-gating logic
      */
     @Transactional
     public ChatResponse processQuery(ChatRequest request) {
+        return processQuery(request, OverloadGuard.Mode.NORMAL);
+    }
+
+    /**
+     * Process a chat query in the mode the overload guard admitted it in: in cache-only mode
+     * the answer and quizzes come from the cache, and a miss is shed
+     */
+    @Transactional
+    public ChatResponse processQuery(ChatRequest request, OverloadGuard.Mode mode) {
         Child child = childRepository.findById(request.getChildId())
                 .orElseThrow(() -> new RuntimeException("Child not found"));
         
@@ -78,159 +166,206 @@ public class ChatService {
         
         String query = request.getQuery();
 
-        // Step 1: Content Moderation - Check if query is appropriate
-        ModerationResult moderationResult = contentModerationService.moderateContent(query);
+        // Continuing a long-inactive session: bring its history back before adding to it
+        if (session.getMessagesArchivedAt() != null) {
+            chatArchiveService.restore(session);
+        }
 
-        if (moderationResult.isFlagged()) {
-            log.warn("Query flagged by moderation for child {}: {}", child.getId(), moderationResult.getReason());
+        // A question this child already unlocked: the answer passed moderation and the quiz
+        // when it was first asked, so return it without calling moderation or AI again
+        Optional<String> unlockedAnswer = findUnlockedAnswer(child.getId(), query);
+        if (unlockedAnswer.isPresent()) {
+            log.info("Returning previously unlocked answer to child {}", child.getId());
+            return replyWithUnlockedAnswer(child, session, query, unlockedAnswer.get());
+        }
 
-            // Save flagged user message
-            ChatMessage flaggedMessage = ChatMessage.builder()
-                    .chatSession(session)
-                    .role(ChatMessage.MessageRole.USER)
-                    .content(query)
-                    .contentModeration("FLAGGED: " + moderationResult.getReason())
-                    .build();
-            chatMessageRepository.save(flaggedMessage);
+        // Speculative mode: when the query will get a direct answer, start producing it now and
+        // let moderation run alongside; the answer is only kept (and cached) if moderation approves,
+        // and a new session's subject is only assigned then
+        Subject subject = null;
+        boolean hasPrerequisite = false;
+        SpeculativeResponseService.Speculation speculation = null;
+        boolean allowGeneration = mode.allowsGeneration();
+        if (allowGeneration && speculativeResponseService.isEnabled()) {
+            subject = sessionSubject(session);
+            hasPrerequisite = progressTrackingService.checkPrerequisite(child.getId(), subject.getId());
+            if (hasPrerequisite) {
+                speculation = speculativeResponseService.start(query, child.getAge(), subject.getName());
+            }
+        }
 
-            // Return error response
-            String safetyMessage = "I'm sorry, but I can't help with that question. " +
-                    "Let's talk about something educational and appropriate instead! " +
-                    "What would you like to learn about today?";
+        // From here the speculation is either confirmed or discarded: a flagged query, a retake or
+        // an exception before confirm (saving the message, the learning path lookup, ...) must not
+        // leave it running
+        boolean confirmed = false;
+        try {
+            // Step 1: Content Moderation - Check if query is appropriate
+            long moderationStart = System.nanoTime();
+            ModerationResult moderationResult = contentModerationService.moderateContent(query);
+            long moderationNanos = System.nanoTime() - moderationStart;
+
+            if (moderationResult.isFlagged()) {
+                log.warn("Query flagged by moderation for child {}: {}", child.getId(), moderationResult.getReason());
+                speculativeResponseService.discard(speculation, "flagged");
+                speculation = null;
+
+                // Save flagged user message
+                ChatMessage flaggedMessage = ChatMessage.builder()
+                        .chatSession(session)
+                        .role(ChatMessage.MessageRole.USER)
+                        .content(query)
+                        .contentModeration("FLAGGED: " + moderationResult.getReason())
+                        .build();
+                chatMessageRepository.save(flaggedMessage);
+
+                // Return error response
+                String safetyMessage = "I'm sorry, but I can't help with that question. " +
+                        "Let's talk about something educational and appropriate instead! " +
+                        "What would you like to learn about today?";
+
+                ChatMessage safetyResponse = ChatMessage.builder()
+                        .chatSession(session)
+                        .role(ChatMessage.MessageRole.ASSISTANT)
+                        .content(safetyMessage)
+                        .build();
+                chatMessageRepository.save(safetyResponse);
+
+                return ChatResponse.builder()
+                        .message(safetyMessage)
+                        .responseType(ChatResponse.ResponseType.FULL_ANSWER)
+                        .build();
+            }
 
-            ChatMessage safetyResponse = ChatMessage.builder()
+            // Save approved user message
+            ChatMessage userMessage = ChatMessage.builder()
                     .chatSession(session)
-                    .role(ChatMessage.MessageRole.ASSISTANT)
-                    .content(safetyMessage)
-                    .build();
-            chatMessageRepository.save(safetyResponse);
-
-            return ChatResponse.builder()
-                    .message(safetyMessage)
-                    .responseType(ChatResponse.ResponseType.FULL_ANSWER)
+                    .role(ChatMessage.MessageRole.USER)
+                    .content(query)
+                    .contentModeration("APPROVED")
                     .build();
-        }
+            chatMessageRepository.save(userMessage);
 
-        // Save approved user message
-        ChatMessage userMessage = ChatMessage.builder()
-                .chatSession(session)
-                .role(ChatMessage.MessageRole.USER)
-                .content(query)
-                .contentModeration("APPROVED")
-                .build();
-        chatMessageRepository.save(userMessage);
+            // OPTIMIZATION: Check if there's an active learning path for this exact query
+            // This handles the "Retake Quiz" scenario - reuse the same quiz!
+            Optional<com.thinkfirst.model.LearningPath> existingPath =
+                    learningPathService.findActiveLearningPath(query, child.getId());
 
-        // OPTIMIZATION: Check if there's an active learning path for this exact query
-        // This handles the "Retake Quiz" scenario - reuse the same quiz!
-        Optional<com.thinkfirst.model.LearningPath> existingPath =
-                learningPathService.findActiveLearningPath(query, child.getId());
+            if (existingPath.isPresent()) {
+                com.thinkfirst.model.LearningPath learningPath = existingPath.get();
+                Quiz existingQuiz = learningPath.getQuiz();
 
-        if (existingPath.isPresent()) {
-            com.thinkfirst.model.LearningPath learningPath = existingPath.get();
-            Quiz existingQuiz = learningPath.getQuiz();
+                log.info("RETAKE QUIZ: Reusing existing quiz {} for query: {}", existingQuiz.getId(), query);
 
-            log.info("RETAKE QUIZ: Reusing existing quiz {} for query: {}", existingQuiz.getId(), query);
+                // Return the SAME quiz - don't generate new questions or reveal answer
+                return ChatResponse.builder()
+                        .responseType(ChatResponse.ResponseType.QUIZ_REQUIRED)
+                        .quiz(QuizView.from(existingQuiz))
+                        .message("Let's try this quiz again! You've completed the learning journey - show me what you've learned!")
+                        .build();
 
-            // Return the SAME quiz - don't generate new questions or reveal answer
-            return ChatResponse.builder()
-                    .responseType(ChatResponse.ResponseType.QUIZ_REQUIRED)
-                    .quiz(existingQuiz)
-                    .message("Let's try this quiz again! You've completed the learning journey - show me what you've learned!")
-                    .build();
+                // Don't save a new chat message - we're just retaking the quiz
+                // The answer is already stored in the original ChatMessage
+            }
 
-            // Don't save a new chat message - we're just retaking the quiz
-            // The answer is already stored in the original ChatMessage
-        }
+            if (subject == null) {
+                // Step 1: Determine subject
+                subject = resolveSubject(session);
 
-        // Step 1: Determine subject - use session subject if available, otherwise use General
-        // OPTIMIZATION: Skip AI subject analysis - we'll let the quiz/answer generation infer subject from query
-        Subject subject;
-        if (session.getSubject() != null) {
-            subject = session.getSubject();
-            log.info("Using existing session subject: {}", subject.getName());
-        } else {
-            // Default to General subject - the AI will handle subject-specific content based on the query
-            subject = subjectRepository.findByName("General")
-                    .orElseThrow(() -> new RuntimeException("Default subject not found"));
-            session.setSubject(subject);
-            log.info("Using General subject for new session");
-        }
+                // Step 2: Check if child has prerequisite knowledge
+                hasPrerequisite = progressTrackingService.checkPrerequisite(child.getId(), subject.getId());
+            } else {
+                session.setSubject(subject);
+            }
         
-        // Step 2: Check if child has prerequisite knowledge
-        boolean hasPrerequisite = progressTrackingService.checkPrerequisite(child.getId(), subject.getId());
+            ChatResponse response;
         
-        ChatResponse response;
+            if (!hasPrerequisite) {
+                // Step 3: Generate prerequisite quiz
+                Quiz quiz = quizService.generatePrerequisiteQuiz(child.getId(), child.getAge(), subject, query,
+                        allowGeneration);
+
+                // Record question in subject statistics
+                try {
+                    subjectStatisticsService.recordQuestion(child.getId(), subject.getId());
+                } catch (Exception e) {
+                    log.error("Failed to record question statistics for child {} in subject {}: {}",
+                        child.getId(), subject.getId(), e.getMessage());
+                    // Continue - don't fail the whole request if statistics tracking fails
+                }
+
+                response = ChatResponse.withQuiz(quiz);
+
+                // Add Quizzy's quiz start message
+                response.setMascotMessage(mascotService.getQuizStartMessage(subject));
+
+                // Save assistant message with quiz requirement
+                ChatMessage assistantMessage = ChatMessage.builder()
+                        .chatSession(session)
+                        .role(ChatMessage.MessageRole.ASSISTANT)
+                        .content(response.getMessage())
+                        .associatedQuiz(quiz)
+                        .requiresQuizCompletion(true)
+                        .build();
+                chatMessageRepository.save(assistantMessage);
+
+            } else {
+                // The cache state this path reads (answer, verification quiz and its variant pool) is
+                // fetched in one round trip and its writes sent in one more on close; the answer's is
+                // left out if it is being produced speculatively
+                CacheBatch batch = aiProviderService.cacheBatch();
+                if (speculation == null) {
+                    batch.response(query, child.getAge(), subject.getName());
+                }
+                String aiResponse;
+                Quiz verificationQuiz;
+                try (CacheBatch.Scope cacheBatch = batch
+                        .quizVariant(QuizService.verificationTopic(query), subject.getName(),
+                                QuizService.VERIFICATION_QUESTION_COUNT,
+                                SkillLevel.DifficultyLevel.BEGINNER.name(), child.getAge(), child.getId())
+                        .open()) {
+                    // Step 4: Generate AI response (but don't send it yet)
+                    confirmed = true;
+                    aiResponse = speculation != null
+                            ? speculativeResponseService.confirm(speculation, moderationNanos)
+                            : aiProviderService.generateEducationalResponse(query, child.getAge(), subject.getName(),
+                                    allowGeneration);
+
+                    // Step 5: Generate verification quiz
+                    verificationQuiz = quizService.generateVerificationQuiz(
+                            query, aiResponse, child.getId(), subject, allowGeneration
+                    );
+                }
+
+                // DON'T send the answer yet - student must pass verification quiz first
+                response = ChatResponse.builder()
+                        .responseType(ChatResponse.ResponseType.QUIZ_REQUIRED)
+                        .quiz(QuizView.from(verificationQuiz))
+                        .message("I have an answer for you! But first, let me make sure you're ready to understand it. Please complete this quick quiz.")
+                        .build();
+
+                // Save assistant message with the answer stored but not shown
+                ChatMessage assistantMessage = ChatMessage.builder()
+                        .chatSession(session)
+                        .role(ChatMessage.MessageRole.ASSISTANT)
+                        .content(aiResponse)  // Store the answer for later
+                        .associatedQuiz(verificationQuiz)
+                        .requiresQuizCompletion(true)  // Changed to true - quiz must be completed
+                        .build();
+
+                ChatMessage savedMessage = chatMessageRepository.save(assistantMessage);
+                response.setMessageId(savedMessage.getId());
+            }
         
-        if (!hasPrerequisite) {
-            // Step 3: Generate prerequisite quiz
-            Quiz quiz = quizService.generatePrerequisiteQuiz(child.getId(), child.getAge(), subject, query);
-
-            // Record question in subject statistics
-            try {
-                subjectStatisticsService.recordQuestion(child.getId(), subject.getId());
-            } catch (Exception e) {
-                log.error("Failed to record question statistics for child {} in subject {}: {}",
-                    child.getId(), subject.getId(), e.getMessage());
-                // Continue - don't fail the whole request if statistics tracking fails
+            // Session message count and child activity are written behind, coalesced per flush
+            activityTracker.recordSessionMessages(session.getId(), 2);
+            activityTracker.recordChildActivity(child.getId());
+
+            return response;
+        } finally {
+            if (!confirmed) {
+                speculativeResponseService.discard(speculation, "unused");
             }
-
-            response = ChatResponse.withQuiz(quiz);
-
-            // Add Quizzy's quiz start message
-            response.setMascotMessage(mascotService.getQuizStartMessage(subject));
-
-            // Save assistant message with quiz requirement
-            ChatMessage assistantMessage = ChatMessage.builder()
-                    .chatSession(session)
-                    .role(ChatMessage.MessageRole.ASSISTANT)
-                    .content(response.getMessage())
-                    .associatedQuiz(quiz)
-                    .requiresQuizCompletion(true)
-                    .build();
-            chatMessageRepository.save(assistantMessage);
-
-        } else {
-            // Step 4: Generate AI response (but don't send it yet)
-            String aiResponse = aiProviderService.generateEducationalResponse(
-                    query, child.getAge(), subject.getName()
-            );
-
-            // Step 5: Generate verification quiz
-            Quiz verificationQuiz = quizService.generateVerificationQuiz(
-                    query, aiResponse, child.getId(), subject
-            );
-
-            // DON'T send the answer yet - student must pass verification quiz first
-            response = ChatResponse.builder()
-                    .responseType(ChatResponse.ResponseType.QUIZ_REQUIRED)
-                    .quiz(verificationQuiz)
-                    .message("I have an answer for you! But first, let me make sure you're ready to understand it. Please complete this quick quiz.")
-                    .build();
-
-            // Save assistant message with the answer stored but not shown
-            ChatMessage assistantMessage = ChatMessage.builder()
-                    .chatSession(session)
-                    .role(ChatMessage.MessageRole.ASSISTANT)
-                    .content(aiResponse)  // Store the answer for later
-                    .associatedQuiz(verificationQuiz)
-                    .requiresQuizCompletion(true)  // Changed to true - quiz must be completed
-                    .build();
-
-            ChatMessage savedMessage = chatMessageRepository.save(assistantMessage);
-            response.setMessageId(savedMessage.getId());
         }
-        
-        // Update session
-        session.setMessageCount(session.getMessageCount() + 2);
-        session.setUpdatedAt(LocalDateTime.now());
-        chatSessionRepository.save(session);
-        
-        // Update child activity
-        child.setLastActiveDate(LocalDateTime.now());
-        progressTrackingService.updateStreak(child);
-        childRepository.save(child);
-        
-        return response;
     }
     
     /**
@@ -244,6 +379,9 @@ public class ChatService {
         Quiz quiz = quizService.quizRepository.findById(quizId)
                 .orElseThrow(() -> new RuntimeException("Quiz not found"));
 
+        // Asked in a session archived since: bring its messages back before looking up the answer
+        chatArchiveService.restoreForQuiz(quizId);
+
         // Find the chat message associated with this quiz to get the stored answer
         ChatMessage messageWithAnswer = chatMessageRepository.findByAssociatedQuizId(quizId)
                 .orElse(null);
@@ -310,15 +448,79 @@ public class ChatService {
     /**
      * Get chat history for a session
      */
-    public List<ChatMessage> getChatHistory(Long sessionId) {
-        return chatMessageRepository.findByChatSessionIdOrderByCreatedAtAsc(sessionId);
+    public List<ChatMessageView> getChatHistory(Long sessionId) {
+        List<ChatMessageView> messages = chatMessageRepository.findViewsBySessionId(sessionId);
+        // No hot messages: the session may be archived (only then is the archive read)
+        return messages.isEmpty()
+                ? chatArchiveService.findArchivedMessages(sessionId).orElse(messages)
+                : messages;
     }
     
     /**
      * Get all sessions for a child
      */
-    public List<ChatSession> getChildSessions(Long childId) {
-        return chatSessionRepository.findByChildIdOrderByUpdatedAtDesc(childId);
+    public List<ChatSessionView> getChildSessions(Long childId) {
+        return chatSessionRepository.findViewsByChildId(childId);
+    }
+
+    /**
+     * Get one page of a session's history: the latest messages older than the cursor (or the
+     * latest overall), in chronological order. nextCursor pages further back in time.
+     */
+    public CursorPage<ChatMessageView> getChatHistoryPage(Long sessionId, PageCursor before, int limit) {
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<ChatMessageView> rows = before == null
+                ? chatMessageRepository.findLatestInSession(sessionId, page)
+                : chatMessageRepository.findInSessionBefore(sessionId, before.timestamp(), before.id(), page);
+        if (rows.isEmpty()) {
+            rows = chatArchiveService.findArchivedMessages(sessionId)
+                    .map(archived -> archivedPage(archived, before, limit + 1))
+                    .orElse(rows);
+        }
+        CursorPage<ChatMessageView> result = toPage(rows, limit, m -> new PageCursor(m.createdAt(), m.id()));
+        List<ChatMessageView> chronological = new ArrayList<>(result.getItems());
+        Collections.reverse(chronological);
+        result.setItems(chronological);
+        return result;
+    }
+
+    /**
+     * Get one page of a child's sessions, most recently active first
+     */
+    public CursorPage<ChatSessionView> getChildSessionsPage(Long childId, PageCursor after, int limit) {
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<ChatSessionView> rows = after == null
+                ? chatSessionRepository.findLatestForChild(childId, page)
+                : chatSessionRepository.findForChildBefore(childId, after.timestamp(), after.id(), page);
+        return toPage(rows, limit, s -> new PageCursor(s.updatedAt(), s.id()));
+    }
+
+    /**
+     * The rows findLatestInSession / findInSessionBefore would return for an archived history
+     */
+    private static List<ChatMessageView> archivedPage(List<ChatMessageView> chronological, PageCursor before, int size) {
+        List<ChatMessageView> newestFirst = new ArrayList<>();
+        for (int i = chronological.size() - 1; i >= 0 && newestFirst.size() < size; i--) {
+            ChatMessageView m = chronological.get(i);
+            if (before == null || m.createdAt().isBefore(before.timestamp())
+                    || (m.createdAt().isEqual(before.timestamp()) && m.id() < before.id())) {
+                newestFirst.add(m);
+            }
+        }
+        return newestFirst;
+    }
+
+    /**
+     * Rows were fetched with limit + 1 so the extra one tells whether another page exists
+     */
+    private static <T> CursorPage<T> toPage(List<T> rows, int limit, Function<T, PageCursor> cursorOf) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? rows.subList(0, limit) : rows;
+        return CursorPage.<T>builder()
+                .items(items)
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? cursorOf.apply(items.get(items.size() - 1)).encode() : null)
+                .build();
     }
 }
 
@@ -23,6 +23,7 @@ public class ChildService {
     private final ChildRepository childRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ActivityTracker activityTracker;
 
     @Transactional
     public ChildResponse createChild(ChildRequest request) {
@@ -68,18 +69,21 @@ public class ChildService {
         return mapToResponse(child);
     }
 
+    @Transactional(readOnly = true)
     public List<ChildResponse> getParentChildren(Long parentId) {
         return childRepository.findByParentId(parentId).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<ChildResponse> getAllChildren() {
         return childRepository.findAll().stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public ChildResponse getChild(Long childId) {
         Child child = childRepository.findById(childId)
                 .orElseThrow(() -> new RuntimeException("Child not found"));
@@ -133,11 +137,11 @@ public class ChildService {
                 .age(child.getAge())
                 .gradeLevel(child.getGradeLevel() != null ? child.getGradeLevel().name() : null)
                 .parentId(child.getParent().getId())
-                .currentStreak(child.getCurrentStreak() != null ? child.getCurrentStreak() : 0)
+                .currentStreak(activityTracker.currentStreak(child))
                 .totalQuestionsAnswered(child.getTotalQuestionsAnswered() != null ? child.getTotalQuestionsAnswered() : 0)
                 .totalQuizzesCompleted(child.getTotalQuizzesCompleted() != null ? child.getTotalQuizzesCompleted() : 0)
                 .totalTimeSpentMinutes(child.getTotalTimeSpentMinutes() != null ? child.getTotalTimeSpentMinutes() : 0)
-                .lastActiveDate(child.getLastActiveDate())
+                .lastActiveDate(activityTracker.lastActiveDate(child))
                 .active(child.getActive())
                 .createdAt(child.getCreatedAt())
                 .build();
@@ -0,0 +1,269 @@
+package com.thinkfirst.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.IdempotencyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support: the first request with a key runs and its response is stored in
+ * Redis for response-ttl; repeats get the stored response without running again.
+ *
+ * A key is claimed with SET NX while its request runs, so concurrent duplicates don't race it:
+ * they wait briefly (wait-timeout) for a fast first request, then get 409 with Retry-After
+ * rather than holding a request thread for the whole run. The claim carries a token of its own and is renewed while the
+ * request runs; the response is stored, or the key released for failed requests (exceptions,
+ * non-2xx) so the client can retry, only while the claim is still this request's. Reusing a
+ * key with a different body is rejected with 422. If Redis is unavailable requests run
+ * normally, without deduplication.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+
+    static final String PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    /** Each of these acts only while KEYS[1] still holds the claim ARGV[1] */
+    static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+                    + "return 0",
+            Long.class);
+    static final RedisScript<Long> COMPLETE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) "
+                    + "return 1 end "
+                    + "return 0",
+            Long.class);
+    static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+                    + "return 0",
+            Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+    private final MeterRegistry registry;
+    /** Claims held by requests running on this node: the claim's stored value to its key */
+    private final Map<String, String> claims = new ConcurrentHashMap<>();
+
+    public IdempotencyService(
+            RedisTemplate<String, String> redisTemplate,
+            ObjectMapper objectMapper,
+            IdempotencyProperties properties,
+            MeterRegistry registry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    /**
+     * Run action once per (scope, key); without a key it simply runs
+     * @param scope separates keys of different endpoints and callers (e.g. "quiz:42")
+     * @param request request body, fingerprinted to detect a key reused for another request
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (!properties.isEnabled() || key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        String redisKey = PREFIX + scope + ":" + key;
+        String fingerprint = fingerprint(request);
+        long deadline = System.currentTimeMillis() + properties.getWaitTimeout().toMillis();
+        long backoff = 50;
+
+        while (true) {
+            String claim;
+            Entry entry = null;
+            try {
+                claim = claim(redisKey, fingerprint);
+                if (claim == null) {
+                    entry = read(redisKey);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Idempotency store unavailable, running request without deduplication: {}", e.getMessage());
+                return action.get();
+            }
+            if (claim != null) {
+                return runAndStore(redisKey, claim, fingerprint, action);
+            }
+
+            if (entry != null && !entry.fingerprint().equals(fingerprint)) {
+                record(scope, "mismatch");
+                return ResponseEntity.unprocessableEntity().build();
+            }
+            if (entry != null && entry.completed()) {
+                record(scope, "replayed");
+                return replay(entry);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                record(scope, "timeout");
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build();
+            }
+            // Still running elsewhere; or, if the entry is gone, the first request failed and
+            // released the key, so the next pass claims it
+            if (entry != null) {
+                sleep(Math.min(backoff, Math.max(1, deadline - System.currentTimeMillis())));
+                backoff = Math.min(backoff * 2, 200);
+            }
+        }
+    }
+
+    /**
+     * @return the claim's stored value, or null if the key is taken
+     */
+    private String claim(String redisKey, String fingerprint) {
+        String pending = write(new Entry(fingerprint, false, 0, null, null, UUID.randomUUID().toString()));
+        boolean claimed = Boolean.TRUE.equals(
+                redisTemplate.opsForValue().setIfAbsent(redisKey, pending, properties.getPendingTtl()));
+        return claimed ? pending : null;
+    }
+
+    private ResponseEntity<?> runAndStore(String redisKey, String claim, String fingerprint,
+                                          Supplier<ResponseEntity<?>> action) {
+        claims.put(claim, redisKey);
+        try {
+            ResponseEntity<?> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                release(redisKey, claim);
+                throw e;
+            }
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                release(redisKey, claim);
+                return response;
+            }
+            try {
+                String location = response.getHeaders().getLocation() != null
+                        ? response.getHeaders().getLocation().toString() : null;
+                String body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+                Entry done = new Entry(fingerprint, true, response.getStatusCode().value(), location, body, null);
+                Long stored = redisTemplate.execute(COMPLETE, List.of(redisKey), claim, write(done),
+                        String.valueOf(properties.getResponseTtl().toMillis()));
+                if (!Long.valueOf(1).equals(stored)) {
+                    log.warn("Claim on {} was lost before its request finished; response not stored", redisKey);
+                }
+            } catch (Exception e) {
+                log.warn("Could not store idempotent response for {}: {}", redisKey, e.getMessage());
+                release(redisKey, claim);
+            }
+            return response;
+        } finally {
+            claims.remove(claim);
+        }
+    }
+
+    /**
+     * Keep the claims of requests still running from expiring
+     */
+    @Scheduled(
+        initialDelayString = "${app.idempotency.renew-interval-ms:30000}",
+        fixedDelayString = "${app.idempotency.renew-interval-ms:30000}"
+    )
+    public void renewClaims() {
+        String ttl = String.valueOf(properties.getPendingTtl().toMillis());
+        claims.forEach((claim, redisKey) -> {
+            try {
+                redisTemplate.execute(RENEW, List.of(redisKey), claim, ttl);
+            } catch (Exception e) {
+                log.debug("Could not renew idempotency claim {}: {}", redisKey, e.getMessage());
+            }
+        });
+    }
+
+    private ResponseEntity<?> replay(Entry entry) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(entry.status());
+        if (entry.location() != null) {
+            builder.header(HttpHeaders.LOCATION, entry.location());
+        }
+        if (entry.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(entry.body());
+    }
+
+    private void release(String redisKey, String claim) {
+        try {
+            redisTemplate.execute(RELEASE, List.of(redisKey), claim);
+        } catch (Exception e) {
+            log.debug("Could not release idempotency key {}: {}", redisKey, e.getMessage());
+        }
+    }
+
+    private Entry read(String redisKey) {
+        String value = redisTemplate.opsForValue().get(redisKey);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(value, Entry.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable idempotency entry " + redisKey, e);
+        }
+    }
+
+    private String write(Entry entry) {
+        try {
+            return objectMapper.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize idempotency entry", e);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            return DigestUtils.md5DigestAsHex(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void record(String scope, String outcome) {
+        String endpoint = scope.contains(":") ? scope.substring(0, scope.indexOf(':')) : scope;
+        registry.counter("idempotency.duplicates", "endpoint", endpoint, "outcome", outcome).increment();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for duplicate request", e);
+        }
+    }
+
+    /**
+     * Stored state of a key: claimed by a running request (token identifies the claim), or its
+     * completed response
+     */
+    record Entry(String fingerprint, boolean completed, int status, String location, String body, String token) {
+    }
+}
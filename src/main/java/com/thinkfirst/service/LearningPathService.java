@@ -45,11 +45,12 @@ public class LearningPathService {
     }
 
     /**
-     * Find active learning path by original query and child ID
+     * Find active learning path by original query and child ID, ignoring case and whitespace differences
      * Returns the most recent one if multiple exist
      */
     public Optional<LearningPath> findActiveLearningPath(String originalQuery, Long childId) {
-        List<LearningPath> paths = learningPathRepository.findByOriginalQueryAndChildIdAndActiveTrueOrderByCreatedAtDesc(originalQuery, childId);
+        List<LearningPath> paths = learningPathRepository.findByChildIdAndQueryFingerprintAndActiveTrueOrderByCreatedAtDesc(
+                childId, LearningPath.fingerprint(originalQuery));
 
         if (paths.isEmpty()) {
             return Optional.empty();
@@ -177,6 +178,7 @@ public class LearningPathService {
     /**
      * Get learning path by ID
      */
+    @Transactional(readOnly = true)
     public LearningPathResponse getLearningPath(Long childId, Long learningPathId) {
         LearningPath learningPath = learningPathRepository.findByIdAndChildId(learningPathId, childId)
                 .orElseThrow(() -> new RuntimeException("Learning path not found"));
@@ -0,0 +1,196 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.OverloadProperties;
+import com.thinkfirst.exception.OverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Adaptive concurrency limit in front of chat queries and quiz submissions, which share the
+ * AI providers' capacity.
+ *
+ * The limit follows observed latency (AIMD): a request slower than target-latency cuts it by
+ * backoff-ratio, at most once per cooldown; faster requests raise it by 1/limit while at least
+ * half of it is in use. As requests in flight approach the limit, new ones run in a degraded
+ * mode, each dropping more AI work: no learning paths, then no hints, then cached answers only
+ * (a cache miss is shed). Beyond the limit requests are shed with 429 and Retry-After.
+ *
+ * The mode a request was admitted in is handed to it; background work checks currentLevel().
+ */
+@Service
+public class OverloadGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(OverloadGuard.class);
+
+    /**
+     * Service levels from full to none; each one also drops what the previous ones dropped
+     */
+    public enum Mode {
+        NORMAL,
+        NO_LEARNING_PATHS,
+        NO_HINTS,
+        CACHE_ONLY,
+        SHED;
+
+        public boolean allowsLearningPaths() {
+            return this.compareTo(NO_LEARNING_PATHS) < 0;
+        }
+
+        public boolean allowsHints() {
+            return this.compareTo(NO_HINTS) < 0;
+        }
+
+        public boolean allowsGeneration() {
+            return this.compareTo(CACHE_ONLY) < 0;
+        }
+    }
+
+    private final OverloadProperties properties;
+    private final MeterRegistry registry;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private double limit;
+    private long lastDecreaseNanos;
+
+    public OverloadGuard(OverloadProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+        this.limit = properties.getInitialLimit();
+        this.lastDecreaseNanos = System.nanoTime() - properties.getDecreaseCooldown().toNanos();
+        Gauge.builder("overload.limit", this, OverloadGuard::limit)
+                .description("Current adaptive concurrency limit")
+                .register(registry);
+        Gauge.builder("overload.inflight", inflight, AtomicInteger::get)
+                .description("Chat queries and quiz submissions in progress")
+                .register(registry);
+        Gauge.builder("overload.mode", this, guard -> guard.currentLevel().ordinal())
+                .description("Mode a new request would run in (0 = normal, 4 = shed)")
+                .register(registry);
+    }
+
+    /**
+     * Run a request under the limit
+     * @param endpoint metrics tag ("chat", "quiz")
+     * @param action the request, given the mode it was admitted in
+     * @throws OverloadedException if the request is shed, before or (cache-only) during the action
+     */
+    public <T> T call(String endpoint, Function<Mode, T> action) {
+        if (!properties.isEnabled()) {
+            return action.apply(Mode.NORMAL);
+        }
+        int position = inflight.incrementAndGet();
+        Mode mode = modeAt(position);
+        if (mode == Mode.SHED) {
+            inflight.decrementAndGet();
+            shed(endpoint, mode);
+            throw new OverloadedException("Overloaded: " + (position - 1) + " requests in flight");
+        }
+        if (mode != Mode.NORMAL) {
+            registry.counter("overload.degraded", "endpoint", endpoint, "mode", mode.name()).increment();
+        }
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.apply(mode);
+        } catch (OverloadedException e) {
+            // Shed in cache-only mode: says nothing about latency
+            inflight.decrementAndGet();
+            shed(endpoint, mode);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            // A fast failure (rate limit, validation, ...) never reached a provider, so it must not
+            // count as a fast request and raise the limit; a slow one spent its time downstream
+            inflight.decrementAndGet();
+            long latency = System.nanoTime() - start;
+            if (latency > properties.getTargetLatency().toNanos()) {
+                onSample(latency, position);
+            }
+            throw e;
+        }
+        inflight.decrementAndGet();
+        onSample(System.nanoTime() - start, position);
+        return result;
+    }
+
+    public long retryAfterSeconds() {
+        return properties.getRetryAfter().toSeconds();
+    }
+
+    public double limit() {
+        synchronized (this) {
+            return limit;
+        }
+    }
+
+    /**
+     * Current limit, load, mode and shed counts, for the status endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("mode", currentLevel());
+        snapshot.put("limit", (int) limit());
+        snapshot.put("inflight", inflight.get());
+        Map<String, Double> shed = new LinkedHashMap<>();
+        for (Counter counter : registry.find("overload.shed").counters()) {
+            shed.merge(counter.getId().getTag("endpoint"), counter.count(), Double::sum);
+        }
+        snapshot.put("shed", shed);
+        return snapshot;
+    }
+
+    /**
+     * The mode a request admitted now would run in (NORMAL while the guard is disabled)
+     */
+    public Mode currentLevel() {
+        if (!properties.isEnabled()) {
+            return Mode.NORMAL;
+        }
+        return modeAt(inflight.get() + 1);
+    }
+
+    private Mode modeAt(int position) {
+        int current = (int) limit();
+        if (position > current) {
+            return Mode.SHED;
+        }
+        double utilization = (double) position / current;
+        if (utilization >= properties.getCacheOnlyAt()) {
+            return Mode.CACHE_ONLY;
+        }
+        if (utilization >= properties.getNoHintsAt()) {
+            return Mode.NO_HINTS;
+        }
+        if (utilization >= properties.getNoLearningPathsAt()) {
+            return Mode.NO_LEARNING_PATHS;
+        }
+        return Mode.NORMAL;
+    }
+
+    private synchronized void onSample(long latencyNanos, int position) {
+        long now = System.nanoTime();
+        if (latencyNanos > properties.getTargetLatency().toNanos()) {
+            if (now - lastDecreaseNanos >= properties.getDecreaseCooldown().toNanos()) {
+                double previous = limit;
+                limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+                lastDecreaseNanos = now;
+                log.debug("Slow request ({} ms), concurrency limit {} -> {}",
+                        latencyNanos / 1_000_000, (int) previous, (int) limit);
+            }
+        } else if (position * 2 >= limit) {
+            limit = Math.min(properties.getMaxLimit(), limit + 1.0 / limit);
+        }
+    }
+
+    private void shed(String endpoint, Mode mode) {
+        registry.counter("overload.shed", "endpoint", endpoint, "mode", mode.name()).increment();
+    }
+}
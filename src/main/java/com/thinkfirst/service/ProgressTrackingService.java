@@ -29,18 +29,21 @@ public class ProgressTrackingService {
     private final QuizAttemptRepository quizAttemptRepository;
     private final AchievementRepository achievementRepository;
     private final SubjectRepository subjectRepository;
+    private final ActivityTracker activityTracker;
 
     public ProgressTrackingService(
             ChildRepository childRepository,
             SkillLevelRepository skillLevelRepository,
             QuizAttemptRepository quizAttemptRepository,
             AchievementRepository achievementRepository,
-            SubjectRepository subjectRepository) {
+            SubjectRepository subjectRepository,
+            ActivityTracker activityTracker) {
         this.childRepository = childRepository;
         this.skillLevelRepository = skillLevelRepository;
         this.quizAttemptRepository = quizAttemptRepository;
         this.achievementRepository = achievementRepository;
         this.subjectRepository = subjectRepository;
+        this.activityTracker = activityTracker;
     }
     
     /**
@@ -70,37 +73,30 @@ public class ProgressTrackingService {
     }
     
     /**
-     * Update child's daily streak
+     * Daily streak after activity at the given time, given the previous activity and streak:
+     * unchanged on the same day, +1 on the next day, restarted at 1 after a gap
      */
-    @Transactional
-    public void updateStreak(Child child) {
-        LocalDateTime lastActive = child.getLastActiveDate();
-        LocalDateTime now = LocalDateTime.now();
-        
+    static int nextStreak(LocalDateTime lastActive, int currentStreak, LocalDateTime activity) {
         if (lastActive == null) {
             // First activity
-            child.setCurrentStreak(1);
-        } else {
-            long daysBetween = ChronoUnit.DAYS.between(lastActive.toLocalDate(), now.toLocalDate());
-            
-            if (daysBetween == 0) {
-                // Same day, no change
-                return;
-            } else if (daysBetween == 1) {
-                // Consecutive day, increment streak
-                child.setCurrentStreak(child.getCurrentStreak() + 1);
-            } else {
-                // Streak broken, reset
-                child.setCurrentStreak(1);
-            }
+            return 1;
         }
-        
-        childRepository.save(child);
+        long daysBetween = ChronoUnit.DAYS.between(lastActive.toLocalDate(), activity.toLocalDate());
+        if (daysBetween <= 0) {
+            // Same day (or already counted by a later flush), no change
+            return Math.max(currentStreak, 1);
+        } else if (daysBetween == 1) {
+            // Consecutive day, increment streak
+            return currentStreak + 1;
+        }
+        // Streak broken, reset
+        return 1;
     }
     
     /**
      * Get comprehensive progress report for a child
      */
+    @Transactional(readOnly = true)
     public ProgressReport getProgressReport(Long childId) {
         Child child = childRepository.findById(childId)
                 .orElseThrow(() -> new RuntimeException("Child not found"));
@@ -132,7 +128,7 @@ public class ProgressTrackingService {
         return ProgressReport.builder()
                 .childId(child.getId())
                 .childUsername(child.getUsername())
-                .currentStreak(child.getCurrentStreak() != null ? child.getCurrentStreak() : 0)
+                .currentStreak(activityTracker.currentStreak(child))
                 .totalQuizzesCompleted(child.getTotalQuizzesCompleted() != null ? child.getTotalQuizzesCompleted() : 0)
                 .totalQuestionsAnswered(child.getTotalQuestionsAnswered() != null ? child.getTotalQuestionsAnswered() : 0)
                 .totalTimeSpentMinutes(child.getTotalTimeSpentMinutes() != null ? child.getTotalTimeSpentMinutes() : 0)
@@ -19,16 +19,24 @@ public class QuizService {
 
     private static final Logger log = LoggerFactory.getLogger(QuizService.class);
 
+    /** Verification quizzes are a few beginner questions on the answered query */
+    static final int VERIFICATION_QUESTION_COUNT = 3;
+
+    private static final String GENERIC_HINT =
+            "You're making progress! Review the questions you got wrong and try to understand the concepts better.";
+
     public final QuizRepository quizRepository;
     private final QuizAttemptRepository quizAttemptRepository;
     private final ChildRepository childRepository;
     private final SubjectRepository subjectRepository;
     private final SkillLevelRepository skillLevelRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final UnlockedAnswerRepository unlockedAnswerRepository;
+    private final ChatArchiveService chatArchiveService;
     private final com.thinkfirst.service.ai.AIProviderService aiProviderService;
     private final AchievementService achievementService;
     private final LearningPathService learningPathService;
-    private final ProgressTrackingService progressTrackingService;
+    private final ActivityTracker activityTracker;
     private final MascotService mascotService;
     private final SubjectStatisticsService subjectStatisticsService;
     private final BadgeService badgeService;
@@ -46,10 +54,12 @@ public class QuizService {
             SubjectRepository subjectRepository,
             SkillLevelRepository skillLevelRepository,
             ChatMessageRepository chatMessageRepository,
+            UnlockedAnswerRepository unlockedAnswerRepository,
+            ChatArchiveService chatArchiveService,
             com.thinkfirst.service.ai.AIProviderService aiProviderService,
             AchievementService achievementService,
             LearningPathService learningPathService,
-            ProgressTrackingService progressTrackingService,
+            ActivityTracker activityTracker,
             MascotService mascotService,
             SubjectStatisticsService subjectStatisticsService,
             BadgeService badgeService) {
@@ -59,10 +69,12 @@ public class QuizService {
         this.subjectRepository = subjectRepository;
         this.skillLevelRepository = skillLevelRepository;
         this.chatMessageRepository = chatMessageRepository;
+        this.unlockedAnswerRepository = unlockedAnswerRepository;
+        this.chatArchiveService = chatArchiveService;
         this.aiProviderService = aiProviderService;
         this.achievementService = achievementService;
         this.learningPathService = learningPathService;
-        this.progressTrackingService = progressTrackingService;
+        this.activityTracker = activityTracker;
         this.mascotService = mascotService;
         this.subjectStatisticsService = subjectStatisticsService;
         this.badgeService = badgeService;
@@ -76,12 +88,35 @@ public class QuizService {
                 .orElseThrow(() -> new RuntimeException("Quiz not found with ID: " + quizId));
     }
 
+    /**
+     * Get a quiz with its questions as a read model, loaded in a single statement
+     */
+    @Transactional(readOnly = true)
+    public QuizView getQuizView(Long quizId) {
+        List<Question> questions = quizRepository.findQuestionsWithQuiz(quizId);
+        if (!questions.isEmpty()) {
+            return QuizView.from(questions.get(0).getQuiz(), questions);
+        }
+        Quiz quiz = quizRepository.findWithSubjectById(quizId)
+                .orElseThrow(() -> new RuntimeException("Quiz not found with ID: " + quizId));
+        return QuizView.from(quiz, List.of());
+    }
+
     /**
      * Generate a prerequisite quiz for a subject
      * OPTIMIZED: Detects subject from query in the same API call as question generation
      */
     @Transactional
     public Quiz generatePrerequisiteQuiz(Long childId, Integer age, Subject subject, String query) {
+        return generatePrerequisiteQuiz(childId, age, subject, query, true);
+    }
+
+    /**
+     * Prerequisite quiz; without allowGeneration (cache-only mode) only a cached quiz is served
+     */
+    @Transactional
+    public Quiz generatePrerequisiteQuiz(Long childId, Integer age, Subject subject, String query,
+                                         boolean allowGeneration) {
         Child child = childRepository.findById(childId)
                 .orElseThrow(() -> new RuntimeException("Child not found"));
 
@@ -94,7 +129,9 @@ public class QuizService {
                 query,
                 defaultQuestionCount,
                 skillLevel.getCurrentLevel().name(),
-                age
+                age,
+                childId,
+                allowGeneration
         );
 
         // Update session subject if AI detected a more specific subject
@@ -136,6 +173,15 @@ public class QuizService {
      */
     @Transactional
     public Quiz generateVerificationQuiz(String query, String answer, Long childId, Subject subject) {
+        return generateVerificationQuiz(query, answer, childId, subject, true);
+    }
+
+    /**
+     * Verification quiz; without allowGeneration (cache-only mode) only a cached quiz is served
+     */
+    @Transactional
+    public Quiz generateVerificationQuiz(String query, String answer, Long childId, Subject subject,
+                                         boolean allowGeneration) {
         long startTime = System.currentTimeMillis();
         log.info("Starting verification quiz generation for query: {}", query);
 
@@ -145,11 +191,13 @@ public class QuizService {
         // Generate 2-3 quick verification questions using AI provider
         long aiStartTime = System.currentTimeMillis();
         List<Question> questions = aiProviderService.generateQuestions(
-                "Verification questions for: " + query,
+                verificationTopic(query),
                 subject.getName(),
-                3,
+                VERIFICATION_QUESTION_COUNT,
                 SkillLevel.DifficultyLevel.BEGINNER.name(),
-                child.getAge()
+                child.getAge(),
+                childId,
+                allowGeneration
         );
         long aiEndTime = System.currentTimeMillis();
         log.info("AI question generation took {} ms", (aiEndTime - aiStartTime));
@@ -181,16 +229,57 @@ public class QuizService {
         return savedQuiz;
     }
     
+    /**
+     * Index the answer under the question it answered, so ChatService can return it directly
+     * when the child asks again
+     */
+    private void recordUnlockedAnswer(Child child, Quiz quiz, ChatMessage answer) {
+        List<ChatMessage> userMessages = chatMessageRepository.findUserMessagesBeforeQuiz(quiz.getId());
+        if (userMessages.isEmpty()) {
+            return;
+        }
+        String fingerprint = QueryFingerprint.of(userMessages.get(0).getContent());
+        UnlockedAnswer unlocked = unlockedAnswerRepository.findByChildIdAndQueryFingerprint(child.getId(), fingerprint)
+                .orElseGet(() -> UnlockedAnswer.builder().child(child).queryFingerprint(fingerprint).build());
+        unlocked.setAnswerMessage(answer);
+        unlocked.setAnswerContent(answer.getContent());
+        unlocked.setUnlockedAt(LocalDateTime.now());
+        unlockedAnswerRepository.save(unlocked);
+    }
+
+    /**
+     * Topic a verification quiz for a query is generated (and cached) under
+     */
+    static String verificationTopic(String query) {
+        return "Verification questions for: " + query;
+    }
+
     /**
      * Evaluate a quiz submission
      */
     @Transactional
     public QuizResult evaluateQuiz(QuizSubmission submission) {
+        return evaluateQuiz(submission, OverloadGuard.Mode.NORMAL);
+    }
+
+    /**
+     * Evaluate a quiz submission in the mode the overload guard admitted it in: degraded modes
+     * drop the AI hint and the learning path
+     */
+    @Transactional
+    public QuizResult evaluateQuiz(QuizSubmission submission, OverloadGuard.Mode mode) {
         Child child = childRepository.findById(submission.getChildId())
                 .orElseThrow(() -> new RuntimeException("Child not found"));
         
         Quiz quiz = quizRepository.findById(submission.getQuizId())
                 .orElseThrow(() -> new RuntimeException("Quiz not found"));
+
+        // Asked (or, for a retake, first asked) in a session archived since: bring its messages
+        // back before the answer and the question are looked up below
+        if (quiz.getType() == Quiz.QuizType.VERIFICATION) {
+            chatArchiveService.restoreForQuiz(
+                    quiz.getOriginalQuiz() != null ? quiz.getOriginalQuiz().getId() : quiz.getId());
+        }
         
         Map<Long, String> answers = submission.getAnswers();
         List<QuizResult.QuestionResult> questionResults = new ArrayList<>();
@@ -280,10 +369,9 @@ public class QuizService {
         }
 
         child.setTotalQuestionsAnswered(currentQuestions + totalQuestions);
-        child.setLastActiveDate(LocalDateTime.now());
 
-        // Update streak
-        progressTrackingService.updateStreak(child);
+        // Last active date and streak are written behind
+        activityTracker.recordChildActivity(child.getId());
 
         // Update total time spent (convert seconds to minutes for storage)
         log.info("Time tracking - submission.timeSpentSeconds: {}", submission.getTimeSpentSeconds());
@@ -332,9 +420,12 @@ public class QuizService {
             Quiz quizToGetAnswerFrom = quiz.getOriginalQuiz() != null ? quiz.getOriginalQuiz() : quiz;
 
             // Find the chat message that contains the answer
-            answerMessage = chatMessageRepository.findByAssociatedQuizId(quizToGetAnswerFrom.getId())
-                    .map(ChatMessage::getContent)
+            ChatMessage answer = chatMessageRepository.findByAssociatedQuizId(quizToGetAnswerFrom.getId())
                     .orElse(null);
+            if (answer != null) {
+                answerMessage = answer.getContent();
+                recordUnlockedAnswer(child, quizToGetAnswerFrom, answer);
+            }
 
             log.info("Student passed quiz {} (original: {}), retrieving answer message (length: {} chars)",
                     quiz.getId(), quizToGetAnswerFrom.getId(),
@@ -373,12 +464,16 @@ public class QuizService {
                 }
                 hintPrompt.append("\nProvide a helpful hint that guides them toward understanding these concepts without giving away the answers directly.");
 
-                // Generate hint using AI focused on incorrect questions
-                hintMessage = aiProviderService.generateHint(
-                        hintPrompt.toString(),
-                        quiz.getSubject().getName(),
-                        child.getAge()
-                );
+                // Generate hint using AI focused on incorrect questions (a generic one while overloaded)
+                if (!mode.allowsHints()) {
+                    hintMessage = GENERIC_HINT;
+                } else {
+                    hintMessage = aiProviderService.generateHint(
+                            hintPrompt.toString(),
+                            quiz.getSubject().getName(),
+                            child.getAge()
+                    );
+                }
 
                 log.info("Generated hint for child {} focusing on {} incorrect questions (length: {} chars)",
                         child.getId(), incorrectQuestions.size(), hintMessage != null ? hintMessage.length() : 0);
@@ -424,13 +519,15 @@ public class QuizService {
                 }
             } catch (Exception e) {
                 log.error("Failed to generate hint or retake quiz: {}", e.getMessage(), e);
-                hintMessage = "You're making progress! Review the questions you got wrong and try to understand the concepts better.";
+                hintMessage = GENERIC_HINT;
             }
         }
 
-        // Generate learning path if student failed badly (score < 40%)
+        // Generate learning path if student failed badly (score < 40%); skipped while overloaded,
+        // as it is the most expensive AI call of a submission
         com.thinkfirst.dto.LearningPathResponse learningPath = null;
-        if (!passed && score < 40 && quiz.getType() == Quiz.QuizType.VERIFICATION) {
+        if (!passed && score < 40 && quiz.getType() == Quiz.QuizType.VERIFICATION
+                && mode.allowsLearningPaths()) {
             try {
                 // Get the original USER query (not the AI-generated answer)
                 // Take the first (most recent) USER message before the quiz
@@ -3,10 +3,15 @@ package com.thinkfirst.service;
 import com.thinkfirst.exception.RateLimitException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,6 +30,17 @@ public class RateLimitService {
     private static final int QUIZ_SUBMISSIONS_PER_HOUR = 10;
     private static final int AUTH_ATTEMPTS_PER_HOUR = 5;
     private static final int DAILY_QUESTIONS_LIMIT = 50;
+
+    /**
+     * DECR of each counter that is still there and positive; one that expired meanwhile is left
+     * alone rather than recreated at -1 without a TTL
+     */
+    private static final RedisScript<Long> REFUND = new DefaultRedisScript<>(
+            "for _, key in ipairs(KEYS) do "
+                    + "if tonumber(redis.call('GET', key) or '0') > 0 then redis.call('DECR', key) end "
+                    + "end "
+                    + "return 0",
+            Long.class);
     
     /**
      * Check if chat request is within rate limit
@@ -41,6 +57,63 @@ public class RateLimitService {
         }
     }
     
+    /**
+     * Check the hourly chat limit and the daily question limit of a chat query together:
+     * one MGET reads both counters and one pipeline increments them
+     * @param childId The child ID
+     * @throws RateLimitException if either limit is exceeded
+     */
+    public void checkChatLimits(Long childId) {
+        String chatKey = "rate_limit:chat:" + childId;
+        String dailyKey = "rate_limit:daily_questions:" + childId;
+        try {
+            List<Object> counts = redisTemplate.opsForValue().multiGet(List.of(chatKey, dailyKey));
+            int chatCount = count(counts, 0);
+            int dailyCount = count(counts, 1);
+            if (chatCount >= CHAT_REQUESTS_PER_HOUR) {
+                throw exceeded(chatKey, CHAT_REQUESTS_PER_HOUR, Duration.ofHours(1), "Chat requests");
+            }
+            if (dailyCount >= DAILY_QUESTIONS_LIMIT) {
+                throw exceeded(dailyKey, DAILY_QUESTIONS_LIMIT, Duration.ofDays(1), "Daily questions");
+            }
+
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.opsForValue().increment(chatKey);
+                    ops.opsForValue().increment(dailyKey);
+                    // Set expiration if this is the first request
+                    if (chatCount == 0) {
+                        ops.expire(chatKey, Duration.ofHours(1));
+                    }
+                    if (dailyCount == 0) {
+                        ops.expire(dailyKey, Duration.ofDays(1));
+                    }
+                    return null;
+                }
+            });
+        } catch (RateLimitException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Chat rate limit check failed (Redis unavailable?): {}", e.getMessage());
+            // Fail open - allow the request if Redis is unavailable
+        }
+    }
+
+    /**
+     * Give back the chat query that checkChatLimits counted, for a query that was shed after all
+     * @param childId The child ID
+     */
+    public void refundChatLimits(Long childId) {
+        try {
+            redisTemplate.execute(REFUND, List.of("rate_limit:chat:" + childId, "rate_limit:daily_questions:" + childId));
+        } catch (Exception e) {
+            log.warn("Chat rate limit refund failed (Redis unavailable?): {}", e.getMessage());
+        }
+    }
+
     /**
      * Check if quiz submission is within rate limit
      * @param childId The child ID
@@ -96,13 +169,7 @@ public class RateLimitService {
             int currentCount = countObj != null ? Integer.parseInt(countObj.toString()) : 0;
             
             if (currentCount >= maxRequests) {
-                Long ttl = redisTemplate.getExpire(key, TimeUnit.SECONDS);
-                String message = String.format(
-                    "%s rate limit exceeded. Maximum %d requests per %s. Try again in %d seconds.",
-                    limitType, maxRequests, formatDuration(duration), ttl != null ? ttl : 0
-                );
-                log.warn("Rate limit exceeded for key: {}", key);
-                throw new RateLimitException("RateLimit", message);
+                throw exceeded(key, maxRequests, duration, limitType);
             }
             
             // Increment counter
@@ -121,6 +188,21 @@ public class RateLimitService {
         }
     }
     
+    private RateLimitException exceeded(String key, int maxRequests, Duration duration, String limitType) {
+        Long ttl = redisTemplate.getExpire(key, TimeUnit.SECONDS);
+        String message = String.format(
+            "%s rate limit exceeded. Maximum %d requests per %s. Try again in %d seconds.",
+            limitType, maxRequests, formatDuration(duration), ttl != null ? ttl : 0
+        );
+        log.warn("Rate limit exceeded for key: {}", key);
+        return new RateLimitException("RateLimit", message);
+    }
+
+    private static int count(List<Object> counts, int index) {
+        Object countObj = counts != null && counts.size() > index ? counts.get(index) : null;
+        return countObj != null ? Integer.parseInt(countObj.toString()) : 0;
+    }
+
     /**
      * Reset rate limit for a specific key
      * @param childId The child ID
@@ -0,0 +1,167 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.SpeculationProperties;
+import com.thinkfirst.exception.AIProviderException;
+import com.thinkfirst.service.ai.AIProviderService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speculative answers: the educational response to a chat query is looked up in the cache or
+ * generated on a worker thread while the request thread waits for moderation, so moderation's
+ * latency is hidden behind generation's instead of adding to it.
+ *
+ * A speculation leaves no state behind until confirm(): the cache is only peeked at (no access is
+ * recorded, no refresh or migration scheduled), and neither a generated answer nor a negative-cache
+ * entry is written before moderation approves the query. discard() cancels a generation still in
+ * flight and drops whatever it held back.
+ */
+@Service
+public class SpeculativeResponseService {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeculativeResponseService.class);
+
+    /**
+     * An answer being produced for a query in moderation
+     */
+    public static final class Speculation {
+        private final String query;
+        private final int age;
+        private final String subject;
+        private final Future<Result> future;
+        private final List<Runnable> deferredWrites;
+
+        private Speculation(String query, int age, String subject, Future<Result> future,
+                            List<Runnable> deferredWrites) {
+            this.query = query;
+            this.age = age;
+            this.subject = subject;
+            this.future = future;
+            this.deferredWrites = deferredWrites;
+        }
+    }
+
+    private record Result(String response, boolean cached, long elapsedNanos) { }
+
+    private final AIProviderService aiProviderService;
+    private final SpeculationProperties properties;
+    private final MeterRegistry registry;
+    private final ThreadPoolExecutor executor;
+    private final Timer hidden;
+
+    public SpeculativeResponseService(AIProviderService aiProviderService, SpeculationProperties properties,
+                                      MeterRegistry registry) {
+        this.aiProviderService = aiProviderService;
+        this.properties = properties;
+        this.registry = registry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getThreads(), properties.getThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "chat-speculation-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        Gauge.builder("chat.speculation.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Speculative answers being produced on this node")
+                .register(registry);
+        this.hidden = Timer.builder("chat.speculation.hidden")
+                .description("Moderation latency overlapped by speculative answer generation")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Start producing the answer to a query that is about to go through moderation
+     * @return the speculation, or null if disabled or the pool is full (generate after moderation)
+     */
+    public Speculation start(String query, int age, String subject) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        List<Runnable> deferredWrites = new CopyOnWriteArrayList<>();
+        FutureTask<Result> task = new FutureTask<>(() -> {
+            Optional<String> cached = aiProviderService.peekCachedResponse(query, age, subject);
+            String response = cached.isPresent() ? cached.get()
+                    : aiProviderService.regenerateResponse(query, age, subject, deferredWrites::add);
+            return new Result(response, cached.isPresent(), System.nanoTime() - start);
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            registry.counter("chat.speculation.rejected").increment();
+            log.debug("Speculation pool full, answer will be generated after moderation");
+            return null;
+        }
+        return new Speculation(query, age, subject, task, deferredWrites);
+    }
+
+    /**
+     * Moderation approved the query: wait for the answer, then make the cache writes it held back
+     * (record the cache hit, or cache the generated answer or its failure)
+     * @param moderationNanos how long moderation took, overlapped by the speculation
+     * @throws RuntimeException whatever generation failed with, as a direct call would have
+     */
+    public String confirm(Speculation speculation, long moderationNanos) {
+        Result result;
+        try {
+            result = speculation.future.get();
+        } catch (InterruptedException e) {
+            speculation.future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AIProviderException("ALL_PROVIDERS", "Interrupted waiting for the speculative response", e);
+        } catch (ExecutionException e) {
+            speculation.deferredWrites.forEach(Runnable::run);
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new AIProviderException("ALL_PROVIDERS", "Speculative response failed", e.getCause());
+        }
+
+        hidden.record(Math.min(moderationNanos, result.elapsedNanos()), TimeUnit.NANOSECONDS);
+        registry.counter("chat.speculation.used", "source", result.cached() ? "cache" : "generated").increment();
+        if (result.cached()) {
+            // The regular lookup records the access (popularity, admission, stale refresh); the
+            // peeked answer stands in if the entry went away since
+            return aiProviderService.findCachedResponse(speculation.query, speculation.age, speculation.subject)
+                    .orElse(result.response());
+        }
+        aiProviderService.cacheResponse(speculation.query, speculation.age, speculation.subject, result.response());
+        return result.response();
+    }
+
+    /**
+     * The answer is not needed: cancel it if still in flight; nothing it produced is kept
+     * @param reason metrics tag ("flagged", "unused")
+     */
+    public void discard(Speculation speculation, String reason) {
+        if (speculation == null) {
+            return;
+        }
+        boolean cancelled = speculation.future.cancel(true);
+        registry.counter("chat.speculation.wasted", "reason", reason, "cancelled", String.valueOf(cancelled)).increment();
+        log.debug("Discarded speculative answer ({}, in flight: {})", reason, cancelled);
+    }
+}
@@ -129,6 +129,7 @@ public class SubjectStatisticsService {
     /**
      * Get learning profile for a child
      */
+    @Transactional(readOnly = true)
     public LearningProfileDTO getLearningProfile(Long childId) {
         Child child = childRepository.findById(childId)
                 .orElseThrow(() -> new RuntimeException("Child not found"));
@@ -3,24 +3,33 @@ package com.thinkfirst.service.ai;
 import com.thinkfirst.config.AIProviderConfig;
 import com.thinkfirst.dto.QuizGenerationResult;
 import com.thinkfirst.exception.AIProviderException;
+import com.thinkfirst.exception.OverloadedException;
 import com.thinkfirst.exception.RateLimitException;
+import com.thinkfirst.exception.UnusableResponseException;
 import com.thinkfirst.model.Question;
 import com.thinkfirst.service.cache.AICacheService;
+import com.thinkfirst.service.cache.CacheBatch;
+import com.thinkfirst.service.cache.CacheRefreshSource;
+import com.thinkfirst.service.cache.CacheType;
+import com.thinkfirst.service.cache.ProviderFailureCache;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Hybrid AI Provider Service that manages multiple AI providers with fallback logic.
  * Priority: Gemini (free) → Groq (free) → DeepSeek (cheap) → OpenAI (paid)
  */
 @Service
-public class AIProviderService {
+public class AIProviderService implements CacheRefreshSource {
 
     private static final Logger log = LoggerFactory.getLogger(AIProviderService.class);
 
@@ -54,37 +63,101 @@ public class AIProviderService {
         providers.put("deepseek", deepSeekService);
         providers.put("openai", openAIService);
     }
+
+    /**
+     * Let the cache regenerate stale responses and hints through this service
+     */
+    @PostConstruct
+    void registerCacheRefreshSource() {
+        cacheService.registerRefreshSource(this);
+    }
     
     /**
      * Generate educational response with automatic fallback and caching
      */
     public String generateEducationalResponse(String query, int age, String subject) {
+        return generateEducationalResponse(query, age, subject, true);
+    }
+
+    /**
+     * Educational response; without allowGeneration (cache-only mode) a cache miss is shed
+     * @throws OverloadedException on a cache miss when generation is not allowed
+     */
+    public String generateEducationalResponse(String query, int age, String subject, boolean allowGeneration) {
         // Try cache first
-        Optional<String> cached = cacheService.getCachedResponse(query, age, subject);
+        Optional<String> cached = findCachedResponse(query, age, subject);
         if (cached.isPresent()) {
-            log.info("Using cached response for query (saved API call)");
             return cached.get();
         }
 
         // Cache miss - call AI provider
-        String response = executeWithFallback(
-            provider -> provider.generateEducationalResponse(query, age, subject),
-            "generateEducationalResponse"
-        );
+        requireGeneration(allowGeneration, "generateEducationalResponse");
+        String response = regenerateResponse(query, age, subject);
 
         // Cache the response
-        cacheService.cacheResponse(query, age, subject, response);
+        cacheResponse(query, age, subject, response);
 
         return response;
     }
 
+    /**
+     * Cached educational response, without generating one on a miss
+     */
+    public Optional<String> findCachedResponse(String query, int age, String subject) {
+        Optional<String> cached = cacheService.getCachedResponse(query, age, subject);
+        if (cached.isPresent()) {
+            log.info("Using cached response for query (saved API call)");
+            cacheService.recordApiCallSaved("generateEducationalResponse");
+        }
+        return cached;
+    }
+
+    /**
+     * Cached educational response for a query moderation has not approved yet: read-only, so a
+     * flagged query leaves no trace (findCachedResponse records the access once it is approved)
+     */
+    public Optional<String> peekCachedResponse(String query, int age, String subject) {
+        return cacheService.peekCachedResponse(query, age, subject);
+    }
+
+    /**
+     * Cache a response generated with regenerateResponse
+     */
+    public void cacheResponse(String query, int age, String subject, String response) {
+        cacheService.cacheResponse(query, age, subject, response);
+    }
+
+    /**
+     * Generate an educational response from the providers, bypassing the cache
+     */
+    @Override
+    public String regenerateResponse(String query, int age, String subject) {
+        return regenerateResponse(query, age, subject, Runnable::run);
+    }
+
+    /**
+     * Generate an educational response from the providers for a query still in moderation: the
+     * negative-cache write of an unusable-output failure is handed to deferredWrites, to be run
+     * only if the query is approved
+     */
+    public String regenerateResponse(String query, int age, String subject, Consumer<Runnable> deferredWrites) {
+        int promptAge = promptAge(CacheType.RESPONSE, age);
+        return executeWithFallback(
+            provider -> provider.generateEducationalResponse(query, promptAge, subject),
+            "generateEducationalResponse",
+            Arrays.asList(query, promptAge, subject),
+            deferredWrites
+        );
+    }
+
     /**
      * Generate detailed learning lessons with automatic fallback (no caching - lessons are unique)
      */
     public String generateLearningLessons(String prompt, int age, String subject) {
         return executeWithFallback(
             provider -> provider.generateLearningLessons(prompt, age, subject),
-            "generateLearningLessons"
+            "generateLearningLessons",
+            Arrays.asList(prompt, age, subject)
         );
     }
 
@@ -92,18 +165,22 @@ public class AIProviderService {
      * Generate quiz questions with automatic fallback and caching
      */
     public List<Question> generateQuestions(String query, String subject, int count, String difficulty, Integer age) {
+        return cachedOrGeneratedQuestions(query, subject, count, difficulty, age, true);
+    }
+
+    private List<Question> cachedOrGeneratedQuestions(String query, String subject, int count, String difficulty,
+                                                      Integer age, boolean allowGeneration) {
         // Try cache first
         Optional<List<Question>> cached = cacheService.getCachedQuiz(query, subject, count, difficulty, age);
         if (cached.isPresent()) {
             log.info("Using cached quiz for topic: {} (saved API call)", query);
+            cacheService.recordApiCallSaved("generateQuestions");
             return cached.get();
         }
 
         // Cache miss - call AI provider
-        List<Question> questions = executeWithFallback(
-            provider -> provider.generateQuestions(query, subject, count, difficulty, age),
-            "generateQuestions"
-        );
+        requireGeneration(allowGeneration, "generateQuestions");
+        List<Question> questions = regenerateQuestions(query, subject, count, difficulty, age);
 
         // Cache the questions
         cacheService.cacheQuiz(query, subject, count, difficulty, questions, age);
@@ -111,40 +188,128 @@ public class AIProviderService {
         return questions;
     }
 
+    /**
+     * Generate quiz questions for a specific child, served from the key's variant pool when possible
+     * so repeat askers get a quiz they have not seen yet
+     */
+    public List<Question> generateQuestions(String query, String subject, int count, String difficulty, Integer age,
+                                            Long childId) {
+        return generateQuestions(query, subject, count, difficulty, age, childId, true);
+    }
+
+    /**
+     * Quiz questions for a specific child; without allowGeneration (cache-only mode) a cache miss is shed
+     * @throws OverloadedException on a cache miss when generation is not allowed
+     */
+    public List<Question> generateQuestions(String query, String subject, int count, String difficulty, Integer age,
+                                            Long childId, boolean allowGeneration) {
+        Optional<List<Question>> variant = cacheService.getCachedQuizVariant(query, subject, count, difficulty, age, childId);
+        if (variant.isPresent()) {
+            log.info("Using cached quiz variant for topic: {} (saved API call)", query);
+            cacheService.recordApiCallSaved("generateQuestions");
+            return variant.get();
+        }
+        return cachedOrGeneratedQuestions(query, subject, count, difficulty, age, allowGeneration);
+    }
+
+    /**
+     * Generate quiz questions from the providers, bypassing the cache
+     */
+    @Override
+    public List<Question> regenerateQuestions(String query, String subject, int count, String difficulty, Integer age) {
+        Integer promptAge = promptAge(CacheType.QUIZ, age);
+        return executeWithFallback(
+            provider -> provider.generateQuestions(query, subject, count, difficulty, promptAge),
+            "generateQuestions",
+            Arrays.asList(query, subject, count, difficulty, promptAge)
+        );
+    }
+
     /**
      * Generate quiz questions with subject detection in a single call
      * This is more efficient as it saves one API call by detecting subject and generating questions together
      */
     public QuizGenerationResult generateQuestionsWithSubject(String query, int count, String difficulty, Integer age) {
-        // Try cache first - we'll use "unknown" as subject for cache key since we don't know it yet
-        Optional<List<Question>> cached = cacheService.getCachedQuiz(query, "unknown", count, difficulty, age);
+        return cachedOrGeneratedQuestionsWithSubject(query, count, difficulty, age, true);
+    }
+
+    private QuizGenerationResult cachedOrGeneratedQuestionsWithSubject(String query, int count, String difficulty,
+                                                                       Integer age, boolean allowGeneration) {
+        Optional<QuizGenerationResult> cached = findCachedQuestionsWithSubject(query, count, difficulty, age);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        return generateQuestionsWithSubjectUncached(query, count, difficulty, age, allowGeneration);
+    }
+
+    private Optional<QuizGenerationResult> findCachedQuestionsWithSubject(String query, int count, String difficulty,
+                                                                          Integer age) {
+        // The composite entry holds both the detected subject and the questions
+        Optional<QuizGenerationResult> cached = cacheService.getCachedQuizWithSubject(query, count, difficulty, age);
         if (cached.isPresent()) {
             log.info("Using cached quiz for query: {} (saved API call)", query);
-            // For cached results, we need to infer subject from the query
-            String subject = executeWithFallback(
-                provider -> provider.analyzeQuerySubject(query),
-                "analyzeQuerySubject"
-            );
-            return QuizGenerationResult.builder()
-                    .detectedSubject(subject)
-                    .questions(cached.get())
-                    .build();
+            cacheService.recordApiCallSaved("generateQuestionsWithSubject");
         }
+        return cached;
+    }
 
+    private QuizGenerationResult generateQuestionsWithSubjectUncached(String query, int count, String difficulty,
+                                                                      Integer age, boolean allowGeneration) {
         // Cache miss - call AI provider with subject detection
+        requireGeneration(allowGeneration, "generateQuestionsWithSubject");
         log.info("Generating quiz with subject detection for query: {}", query);
+        Integer promptAge = promptAge(CacheType.QUIZ, age);
         QuizGenerationResult result = executeWithFallback(
-            provider -> provider.generateQuestionsWithSubject(query, count, difficulty, age),
-            "generateQuestionsWithSubject"
+            provider -> provider.generateQuestionsWithSubject(query, count, difficulty, promptAge),
+            "generateQuestionsWithSubject",
+            Arrays.asList(query, count, difficulty, promptAge)
         );
 
-        // Cache the questions with the detected subject
-        cacheService.cacheQuiz(query, result.getDetectedSubject(), count, difficulty, result.getQuestions(), age);
+        // Cache the questions with the detected subject, and the subject on its own for analyzeQuerySubject
+        cacheService.cacheQuizWithSubject(query, count, difficulty, age, result.getDetectedSubject(), result.getQuestions());
+        cacheService.cacheSubject(query, result.getDetectedSubject());
+        cacheService.addQuizVariant(query, result.getDetectedSubject(), count, difficulty, age, result.getQuestions());
 
         log.info("Quiz generated with detected subject: {}", result.getDetectedSubject());
         return result;
     }
 
+    /**
+     * Quiz with subject detection for a specific child: the detected subject selects the
+     * variant pool, so repeat askers get a quiz they have not seen yet
+     */
+    public QuizGenerationResult generateQuestionsWithSubject(String query, int count, String difficulty, Integer age,
+                                                             Long childId) {
+        return generateQuestionsWithSubject(query, count, difficulty, age, childId, true);
+    }
+
+    /**
+     * Quiz with subject detection for a specific child; without allowGeneration (cache-only mode)
+     * a cache miss is shed
+     * @throws OverloadedException on a cache miss when generation is not allowed
+     */
+    public QuizGenerationResult generateQuestionsWithSubject(String query, int count, String difficulty, Integer age,
+                                                             Long childId, boolean allowGeneration) {
+        Optional<QuizGenerationResult> cached = findCachedQuestionsWithSubject(query, count, difficulty, age);
+        if (cached.isEmpty()) {
+            // Freshly generated (and pooled if admitted): serve it, not another pooled or near-duplicate quiz
+            return generateQuestionsWithSubjectUncached(query, count, difficulty, age, allowGeneration);
+        }
+        QuizGenerationResult result = cached.get();
+        String subject = result.getDetectedSubject();
+
+        Optional<List<Question>> variant = cacheService.getCachedQuizVariant(query, subject, count, difficulty, age, childId);
+        if (variant.isPresent()) {
+            return QuizGenerationResult.builder()
+                    .detectedSubject(subject)
+                    .questions(variant.get())
+                    .build();
+        }
+        // Composite entries cached before pools existed seed the pool
+        cacheService.addQuizVariant(query, subject, count, difficulty, age, result.getQuestions());
+        return result;
+    }
+
     /**
      * Generate hint with automatic fallback and caching
      */
@@ -153,14 +318,12 @@ public class AIProviderService {
         Optional<String> cached = cacheService.getCachedHint(query, subject, age);
         if (cached.isPresent()) {
             log.info("Using cached hint (saved API call)");
+            cacheService.recordApiCallSaved("generateHint");
             return cached.get();
         }
 
         // Cache miss - call AI provider
-        String hint = executeWithFallback(
-            provider -> provider.generateHint(query, subject, age),
-            "generateHint"
-        );
+        String hint = regenerateHint(query, subject, age);
 
         // Cache the hint
         cacheService.cacheHint(query, subject, age, hint);
@@ -168,6 +331,19 @@ public class AIProviderService {
         return hint;
     }
     
+    /**
+     * Generate a hint from the providers, bypassing the cache
+     */
+    @Override
+    public String regenerateHint(String query, String subject, int age) {
+        int promptAge = promptAge(CacheType.HINT, age);
+        return executeWithFallback(
+            provider -> provider.generateHint(query, subject, promptAge),
+            "generateHint",
+            Arrays.asList(query, subject, promptAge)
+        );
+    }
+
     /**
      * Analyze query subject with automatic fallback and caching
      */
@@ -176,13 +352,15 @@ public class AIProviderService {
         Optional<String> cached = cacheService.getCachedSubject(query);
         if (cached.isPresent()) {
             log.info("Using cached subject classification (saved API call)");
+            cacheService.recordApiCallSaved("analyzeQuerySubject");
             return cached.get();
         }
 
         // Cache miss - call AI provider
         String subject = executeWithFallback(
             provider -> provider.analyzeQuerySubject(query),
-            "analyzeQuerySubject"
+            "analyzeQuerySubject",
+            List.of(query)
         );
 
         // Cache the subject
@@ -192,12 +370,50 @@ public class AIProviderService {
     }
     
     /**
-     * Execute operation with automatic provider fallback
+     * Age to prompt with: banded cache entries are shared by the whole band, so they are
+     * generated for the band's representative age
+     */
+    private Integer promptAge(CacheType type, Integer age) {
+        Integer promptAge = cacheService.promptAge(type, age);
+        return promptAge != null ? promptAge : age;
+    }
+
+    /**
+     * A cache miss while the caller serves cached answers only (overload) is where it gets shed
      */
-    private <T> T executeWithFallback(ProviderOperation<T> operation, String operationName) {
+    private static void requireGeneration(boolean allowGeneration, String operationName) {
+        if (!allowGeneration) {
+            throw new OverloadedException("Overloaded: serving cached answers only, no " + operationName);
+        }
+    }
+
+    /**
+     * Execute operation with automatic provider fallback.
+     * Repeats of an input every provider recently answered with unusable output fail fast
+     * instead of walking the chain again (negative cache, keyed by operation and input).
+     */
+    private <T> T executeWithFallback(ProviderOperation<T> operation, String operationName, List<?> input) {
+        return executeWithFallback(operation, operationName, input, Runnable::run);
+    }
+
+    /**
+     * @param cacheWrites runs the negative-cache write, or holds it back for a speculative call
+     */
+    private <T> T executeWithFallback(ProviderOperation<T> operation, String operationName, List<?> input,
+                                      Consumer<Runnable> cacheWrites) {
+        Optional<ProviderFailureCache.Failure> known = cacheService.getProviderFailure(operationName, input);
+        if (known.isPresent()) {
+            log.info("Skipping {}: every provider recently failed on this input", operationName);
+            throw new UnusableResponseException("ALL_PROVIDERS", String.format(
+                "All AI providers recently failed for operation '%s'. Last error: %s",
+                operationName, known.get().reason()));
+        }
+
         List<String> providerPriority = config.getProviderPriority();
         
         Exception lastException = null;
+        int attempts = 0;
+        boolean allUnusable = true;
         
         for (String providerName : providerPriority) {
             AIProvider provider = providers.get(providerName.toLowerCase());
@@ -211,9 +427,15 @@ public class AIProviderService {
                 log.debug("Provider '{}' is not available, trying next", providerName);
                 continue;
             }
+
+            // Cancelled (speculative generation for a query moderation flagged): stop, cache nothing
+            if (Thread.currentThread().isInterrupted() || isInterrupt(lastException)) {
+                throw new AIProviderException("ALL_PROVIDERS", "Cancelled " + operationName, lastException);
+            }
             
             try {
                 log.info("Attempting {} with provider: {}", operationName, provider.getProviderName());
+                attempts++;
                 T result = operation.execute(provider);
                 log.info("Successfully executed {} with provider: {}", operationName, provider.getProviderName());
                 return result;
@@ -221,16 +443,19 @@ public class AIProviderService {
             } catch (RateLimitException e) {
                 log.warn("Rate limit exceeded for provider '{}': {}", provider.getProviderName(), e.getMessage());
                 lastException = e;
+                allUnusable = false;
                 // Continue to next provider
                 
             } catch (AIProviderException e) {
                 log.error("Error with provider '{}': {}", provider.getProviderName(), e.getMessage());
                 lastException = e;
+                allUnusable &= isUnusable(e);
                 // Continue to next provider
                 
             } catch (Exception e) {
                 log.error("Unexpected error with provider '{}': {}", provider.getProviderName(), e.getMessage(), e);
                 lastException = e;
+                allUnusable = false;
                 // Continue to next provider
             }
         }
@@ -242,8 +467,41 @@ public class AIProviderService {
             lastException != null ? lastException.getMessage() : "Unknown error"
         );
         log.error(errorMessage);
+        if (attempts > 0 && allUnusable) {
+            int providerCalls = attempts;
+            String reason = lastException.getMessage();
+            cacheWrites.accept(() -> cacheService.cacheProviderFailure(operationName, input, providerCalls, reason));
+            throw new UnusableResponseException("ALL_PROVIDERS", errorMessage, lastException);
+        }
         throw new AIProviderException("ALL_PROVIDERS", errorMessage, lastException);
     }
+
+    /**
+     * Whether a provider call failed because its thread was interrupted (block() clears the flag)
+     */
+    private static boolean isInterrupt(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a provider failure came from its output (possibly wrapped) rather than the call
+     */
+    private static boolean isUnusable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RateLimitException) {
+                return false;
+            }
+            if (t instanceof UnusableResponseException) {
+                return true;
+            }
+        }
+        return false;
+    }
     
     /**
      * Get the status of all providers
@@ -297,6 +555,13 @@ public class AIProviderService {
         }
     }
 
+    /**
+     * Batch of cache keys a caller is about to use, fetched in one round trip (see CacheBatch)
+     */
+    public CacheBatch cacheBatch() {
+        return cacheService.batch();
+    }
+
     /**
      * Get cache statistics
      */
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thinkfirst.config.AIProviderConfig;
 import com.thinkfirst.exception.AIProviderException;
+import com.thinkfirst.exception.UnusableResponseException;
 import com.thinkfirst.exception.RateLimitException;
 import com.thinkfirst.model.Question;
 import org.slf4j.Logger;
@@ -202,7 +203,7 @@ public class DeepSeekService implements AIProvider {
                     .block();
 
             if (response == null || response.isEmpty()) {
-                throw new AIProviderException("DeepSeek", "Empty response from API");
+                throw new UnusableResponseException("DeepSeek", "Empty response from API");
             }
 
             return extractContentFromResponse(response);
@@ -228,7 +229,7 @@ public class DeepSeekService implements AIProvider {
             return root.path("choices").get(0).path("message").path("content").asText();
         } catch (Exception e) {
             log.error("Failed to parse DeepSeek response: {}", response, e);
-            throw new AIProviderException("DeepSeek", "Failed to parse response: " + e.getMessage());
+            throw new UnusableResponseException("DeepSeek", "Failed to parse response: " + e.getMessage());
         }
     }
 
@@ -268,7 +269,7 @@ public class DeepSeekService implements AIProvider {
             return questions;
         } catch (Exception e) {
             log.error("Failed to parse questions from JSON: {}", jsonResponse, e);
-            throw new AIProviderException("DeepSeek", "Failed to parse questions: " + e.getMessage());
+            throw new UnusableResponseException("DeepSeek", "Failed to parse questions: " + e.getMessage());
         }
     }
 }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thinkfirst.config.AIProviderConfig;
 import com.thinkfirst.exception.AIProviderException;
 import com.thinkfirst.exception.RateLimitException;
+import com.thinkfirst.exception.UnusableResponseException;
 import com.thinkfirst.model.Question;
 import com.thinkfirst.model.Question.QuestionType;
 import org.slf4j.Logger;
@@ -155,6 +156,9 @@ public class GeminiService implements AIProvider {
                         return clientResponse.bodyToMono(String.class)
                                 .flatMap(body -> {
                                     log.error("Gemini API 4xx error: {}", body);
+                                    if (ProviderRefusal.isPolicyError(objectMapper, body)) {
+                                        return Mono.error(new UnusableResponseException("Gemini", "Refused: " + body));
+                                    }
                                     return Mono.error(new AIProviderException("Gemini", "Client error: " + body));
                                 });
                     })
@@ -170,7 +174,7 @@ public class GeminiService implements AIProvider {
 
             return extractTextFromGeminiResponse(response);
             
-        } catch (RateLimitException e) {
+        } catch (RateLimitException | AIProviderException e) {
             throw e;
         } catch (Exception e) {
             log.error("Error calling Gemini API: {}", e.getMessage(), e);
@@ -194,11 +198,24 @@ public class GeminiService implements AIProvider {
                 if (errorCode == 429) {
                     throw new RateLimitException("Gemini", "Rate limit exceeded");
                 }
+                if (ProviderRefusal.isPolicyError(objectMapper, response)) {
+                    throw new UnusableResponseException("Gemini", "Refused: " + errorMessage);
+                }
                 throw new AIProviderException("Gemini", "API error: " + errorMessage);
             }
 
+            // Prompts blocked by the safety filters get no candidates, only a block reason
+            String blockReason = root.path("promptFeedback").path("blockReason").asText(null);
+            if (blockReason != null) {
+                throw new UnusableResponseException("Gemini", "Prompt blocked: " + blockReason);
+            }
+
             JsonNode candidates = root.path("candidates");
             if (candidates.isArray() && candidates.size() > 0) {
+                String finishReason = candidates.get(0).path("finishReason").asText(null);
+                if (ProviderRefusal.isBlockedFinishReason(finishReason)) {
+                    throw new UnusableResponseException("Gemini", "Response blocked: " + finishReason);
+                }
                 JsonNode content = candidates.get(0).path("content");
                 JsonNode parts = content.path("parts");
                 if (parts.isArray() && parts.size() > 0) {
@@ -210,13 +227,13 @@ public class GeminiService implements AIProvider {
             }
 
             log.error("Unexpected Gemini response format. Response: {}", response);
-            throw new AIProviderException("Gemini", "Unexpected response format");
+            throw new UnusableResponseException("Gemini", "Unexpected response format");
         } catch (AIProviderException e) {
             throw e;
         } catch (Exception e) {
             log.error("Error parsing Gemini response: {}", e.getMessage());
             log.error("Response was: {}", response);
-            throw new AIProviderException("Gemini", "Failed to parse response", e);
+            throw new UnusableResponseException("Gemini", "Failed to parse response", e);
         }
     }
     
@@ -252,7 +269,7 @@ public class GeminiService implements AIProvider {
             
         } catch (Exception e) {
             log.error("Error parsing questions from JSON: {}", e.getMessage());
-            throw new AIProviderException("Gemini", "Failed to parse questions from response", e);
+            throw new UnusableResponseException("Gemini", "Failed to parse questions from response", e);
         }
         
         return questions;
@@ -6,6 +6,7 @@ import com.thinkfirst.config.AIProviderConfig;
 import com.thinkfirst.dto.QuizGenerationResult;
 import com.thinkfirst.exception.AIProviderException;
 import com.thinkfirst.exception.RateLimitException;
+import com.thinkfirst.exception.UnusableResponseException;
 import com.thinkfirst.model.Question;
 import com.thinkfirst.model.Question.QuestionType;
 import org.slf4j.Logger;
@@ -198,6 +199,9 @@ public class GroqService implements AIProvider {
                                 .defaultIfEmpty("Unknown client error")
                                 .flatMap(body -> {
                                     log.error("Groq client error: {}", body);
+                                    if (ProviderRefusal.isPolicyError(objectMapper, body)) {
+                                        return Mono.error(new UnusableResponseException("Groq", "Refused: " + body));
+                                    }
                                     return Mono.error(new AIProviderException("Groq", "Client error: " + body));
                                 });
                     })
@@ -216,7 +220,7 @@ public class GroqService implements AIProvider {
                     .block();
 
             if (response == null || response.isEmpty()) {
-                throw new AIProviderException("Groq", "Empty response from API");
+                throw new UnusableResponseException("Groq", "Empty response from API");
             }
 
             return extractTextFromOpenAIResponse(response);
@@ -238,12 +242,21 @@ public class GroqService implements AIProvider {
             JsonNode root = objectMapper.readTree(response);
             JsonNode choices = root.path("choices");
             if (choices.isArray() && choices.size() > 0) {
-                return choices.get(0).path("message").path("content").asText();
+                JsonNode choice = choices.get(0);
+                String finishReason = choice.path("finish_reason").asText(null);
+                String refusal = choice.path("message").path("refusal").asText(null);
+                if (ProviderRefusal.isBlockedFinishReason(finishReason) || (refusal != null && !refusal.isEmpty())) {
+                    throw new UnusableResponseException("Groq", "Response refused: "
+                            + (refusal != null ? refusal : finishReason));
+                }
+                return choice.path("message").path("content").asText();
             }
-            throw new AIProviderException("Groq", "Unexpected response format");
+            throw new UnusableResponseException("Groq", "Unexpected response format");
+        } catch (UnusableResponseException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error parsing Groq response: {}", e.getMessage());
-            throw new AIProviderException("Groq", "Failed to parse response", e);
+            throw new UnusableResponseException("Groq", "Failed to parse response", e);
         }
     }
     
@@ -292,7 +305,7 @@ public class GroqService implements AIProvider {
 
         } catch (Exception e) {
             log.error("Failed to parse quiz generation result: {}", jsonResponse, e);
-            throw new AIProviderException("Groq", "Failed to parse quiz generation result: " + e.getMessage());
+            throw new UnusableResponseException("Groq", "Failed to parse quiz generation result: " + e.getMessage());
         }
     }
 
@@ -328,7 +341,7 @@ public class GroqService implements AIProvider {
             
         } catch (Exception e) {
             log.error("Error parsing questions from JSON: {}", e.getMessage());
-            throw new AIProviderException("Groq", "Failed to parse questions from response", e);
+            throw new UnusableResponseException("Groq", "Failed to parse questions from response", e);
         }
         
         return questions;
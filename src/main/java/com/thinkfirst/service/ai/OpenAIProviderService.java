@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thinkfirst.config.AIProviderConfig;
 import com.thinkfirst.exception.AIProviderException;
+import com.thinkfirst.exception.UnusableResponseException;
 import com.thinkfirst.exception.RateLimitException;
 import com.thinkfirst.model.Question;
 import com.thinkfirst.model.Question.QuestionType;
@@ -214,10 +215,10 @@ public class OpenAIProviderService implements AIProvider {
             if (choices.isArray() && choices.size() > 0) {
                 return choices.get(0).path("message").path("content").asText();
             }
-            throw new AIProviderException("OpenAI", "Unexpected response format");
+            throw new UnusableResponseException("OpenAI", "Unexpected response format");
         } catch (Exception e) {
             log.error("Error parsing OpenAI response: {}", e.getMessage());
-            throw new AIProviderException("OpenAI", "Failed to parse response", e);
+            throw new UnusableResponseException("OpenAI", "Failed to parse response", e);
         }
     }
     
@@ -253,7 +254,7 @@ public class OpenAIProviderService implements AIProvider {
             
         } catch (Exception e) {
             log.error("Error parsing questions from JSON: {}", e.getMessage());
-            throw new AIProviderException("OpenAI", "Failed to parse questions from response", e);
+            throw new UnusableResponseException("OpenAI", "Failed to parse questions from response", e);
         }
         
         return questions;
@@ -0,0 +1,52 @@
+package com.thinkfirst.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recognizes a provider declining the content (safety filters, usage policies) as opposed to
+ * a failed call. The same input is refused again, so these surface as UnusableResponseException.
+ */
+final class ProviderRefusal {
+
+    /**
+     * Finish reasons of an answer withheld by the provider's filters (Gemini; content_filter
+     * is the OpenAI-compatible one)
+     */
+    private static final Set<String> BLOCKED_FINISH_REASONS = Set.of(
+            "SAFETY", "RECITATION", "BLOCKLIST", "PROHIBITED_CONTENT", "SPII", "IMAGE_SAFETY", "content_filter");
+
+    /**
+     * Error codes of OpenAI-compatible APIs for requests refused under their usage policies
+     */
+    private static final Set<String> POLICY_ERROR_CODES = Set.of("content_policy_violation", "content_filter");
+
+    private ProviderRefusal() {
+    }
+
+    static boolean isBlockedFinishReason(String reason) {
+        return reason != null && BLOCKED_FINISH_REASONS.contains(reason);
+    }
+
+    /**
+     * Whether an error body ({"error": {...}}) refuses the content rather than the request
+     */
+    static boolean isPolicyError(ObjectMapper objectMapper, String body) {
+        if (body == null || body.isEmpty()) {
+            return false;
+        }
+        try {
+            JsonNode error = objectMapper.readTree(body).path("error");
+            if (POLICY_ERROR_CODES.contains(error.path("code").asText())) {
+                return true;
+            }
+            String message = error.path("message").asText().toLowerCase(Locale.ROOT);
+            return message.contains("safety") || message.contains("content policy");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -1,48 +1,129 @@
 package com.thinkfirst.service.cache;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.dto.QuizGenerationResult;
 import com.thinkfirst.model.Question;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * AI Response Caching Service
  * Caches quiz questions and educational responses to minimize AI API calls
  * Target: 70-80% cache hit rate
+ *
+ * Two tiers: an in-process L1 (LocalCacheTier) holding deserialized values in front of Redis (L2).
+ * Keys live in generation-stamped namespaces (CacheNamespace): bulk invalidation and statistics
+ * are constant-time and never touch KEYS. Invalidations are broadcast over Redis pub/sub
+ * so every node drops its L1 entries.
+ *
+ * An optional node-local content store (LocalContentStore) sits between the two: it keeps the
+ * encoded values across restarts and stands in for Redis when Redis is down or has lost a key.
+ *
+ * Response and quiz misses fall back to a near-duplicate tier (SemanticCacheIndex) that
+ * matches rephrasings of an already cached query within the same subject and age band.
+ *
+ * Responses and hints use stale-while-revalidate (CacheRefresher): past their soft TTL they are
+ * still served while one background refresh regenerates them through the registered
+ * CacheRefreshSource; Redis drops them at the hard TTL.
+ *
+ * Quizzes are additionally kept as pools of variants per key (QuizVariantPool) so children
+ * asking the same thing do not all get identical questions; pools are topped up in the background.
+ *
+ * Values are stored as bytes through CacheCodec (compact, versioned, compressed when large);
+ * entries written in the earlier JSON/plain-text format remain readable.
  */
 @Service
 public class AICacheService {
 
     private static final Logger log = LoggerFactory.getLogger(AICacheService.class);
 
+    /**
+     * SET with a TTL (PX) that also tells whether the key is new (1) or overwritten (0), so new
+     * entries are counted without a second round trip
+     */
+    private static final RedisScript<Long> UPSERT = new DefaultRedisScript<>(
+            "local created = redis.call('EXISTS', KEYS[1]) == 0 and 1 or 0 "
+                    + "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+                    + "return created",
+            Long.class);
+
     private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final RedisTemplate<String, byte[]> valueTemplate;
+    private final CacheCodec codec;
+    private final LocalCacheTier localTier;
+    private final CacheNamespace namespace;
+    private final CacheMetrics metrics;
+    private final SemanticCacheIndex semanticIndex;
+    private final CacheRefresher refresher;
+    private final QuizVariantPool variantPool;
+    private final CachePopularity popularity;
+    private final CacheAdmission admission;
+    private final CacheKeyPolicy keyPolicy;
+    private final LocalContentStore contentStore;
+    private final ProviderFailureCache failureCache;
+    private final AICacheProperties properties;
+    private volatile CacheRefreshSource refreshSource;
+    private final ThreadLocal<CacheBatch.Scope> batchScope = new ThreadLocal<>();
 
-    public AICacheService(RedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper) {
+    public AICacheService(
+            RedisTemplate<String, String> redisTemplate,
+            RedisTemplate<String, byte[]> valueTemplate,
+            CacheCodec codec,
+            LocalCacheTier localTier,
+            CacheNamespace namespace,
+            CacheMetrics metrics,
+            SemanticCacheIndex semanticIndex,
+            CacheRefresher refresher,
+            QuizVariantPool variantPool,
+            CachePopularity popularity,
+            CacheAdmission admission,
+            CacheKeyPolicy keyPolicy,
+            LocalContentStore contentStore,
+            ProviderFailureCache failureCache,
+            AICacheProperties properties) {
         this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
+        this.valueTemplate = valueTemplate;
+        this.codec = codec;
+        this.localTier = localTier;
+        this.namespace = namespace;
+        this.metrics = metrics;
+        this.semanticIndex = semanticIndex;
+        this.refresher = refresher;
+        this.variantPool = variantPool;
+        this.popularity = popularity;
+        this.admission = admission;
+        this.keyPolicy = keyPolicy;
+        this.contentStore = contentStore;
+        this.failureCache = failureCache;
+        this.properties = properties;
+    }
+
+    /**
+     * Register the component that regenerates stale responses and hints
+     */
+    public void registerRefreshSource(CacheRefreshSource source) {
+        this.refreshSource = source;
     }
-    
-    // Cache TTL configurations
-    private static final Duration QUIZ_CACHE_TTL = Duration.ofDays(30); // Quizzes rarely change
-    private static final Duration RESPONSE_CACHE_TTL = Duration.ofDays(7); // Responses can be reused
-    private static final Duration HINT_CACHE_TTL = Duration.ofDays(7);
-    private static final Duration SUBJECT_CACHE_TTL = Duration.ofDays(30); // Subject classification is stable
-    
-    // Cache key prefixes
-    private static final String QUIZ_PREFIX = "quiz:";
-    private static final String RESPONSE_PREFIX = "response:";
-    private static final String HINT_PREFIX = "hint:";
-    private static final String SUBJECT_PREFIX = "subject:";
     
     /**
      * Cache quiz questions
@@ -51,40 +132,192 @@ public class AICacheService {
     public void cacheQuiz(String topic, String subject, int count, String difficulty, List<Question> questions, Integer age) {
         try {
             String cacheKey = generateQuizCacheKey(topic, subject, count, difficulty, age);
-            String jsonValue = objectMapper.writeValueAsString(questions);
-            redisTemplate.opsForValue().set(cacheKey, jsonValue, QUIZ_CACHE_TTL);
-            log.info("Cached quiz: {} (TTL: {} days)", cacheKey, QUIZ_CACHE_TTL.toDays());
-        } catch (JsonProcessingException e) {
+            long start = System.nanoTime();
+            byte[] encoded = codec.encodeQuestions(questions);
+            metrics.recordSerialization(CacheType.QUIZ, System.nanoTime() - start);
+            // Keep a private copy locally - callers attach the originals to their own Quiz entity
+            boolean admitted = store(CacheType.QUIZ, cacheKey, encoded, copyQuestions(questions));
+            popularity.record(CacheType.QUIZ, cacheKey);
+            if (admitted) {
+                semanticIndex.add(CacheType.QUIZ, quizPartition(subject, count, difficulty, age), topic, cacheKey);
+                if (variantPool.isEnabled()) {
+                    addToPool(cacheKey, questions);
+                }
+                popularity.recordSource(CacheType.QUIZ, cacheKey,
+                        new CachePopularity.EntrySource(topic, subject, age, count, difficulty));
+            }
+            log.info("Cached quiz: {} (TTL: {} days)", cacheKey, refresher.hardTtl(CacheType.QUIZ).toDays());
+        } catch (Exception e) {
+            metrics.recordError(CacheType.QUIZ);
             log.error("Failed to cache quiz: {}", e.getMessage());
         }
     }
     
     /**
      * Get cached quiz questions
+     * Always returns fresh Question instances so callers can bind them to a new Quiz
      */
     public Optional<List<Question>> getCachedQuiz(String topic, String subject, int count, String difficulty, Integer age) {
         try {
             String cacheKey = generateQuizCacheKey(topic, subject, count, difficulty, age);
-            String jsonValue = redisTemplate.opsForValue().get(cacheKey);
+            popularity.record(CacheType.QUIZ, cacheKey);
+            Optional<List<Question>> questions = keyedQuizLookup(cacheKey, topic, subject, count, difficulty, age);
             
-            if (jsonValue != null) {
-                List<Question> questions = objectMapper.readValue(
-                    jsonValue,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, Question.class)
-                );
-                log.info("Cache HIT: {} ({} questions)", cacheKey, questions.size());
-                return Optional.of(questions);
+            if (questions.isPresent()) {
+                log.info("Cache HIT: {} ({} questions)", cacheKey, questions.get().size());
+                return Optional.of(copyQuestions(questions.get()));
+            }
+
+            questions = nearDuplicateLookup(CacheType.QUIZ, quizPartition(subject, count, difficulty, age), topic, codec::decodeQuestions);
+            if (questions.isPresent()) {
+                log.info("Cache HIT (near-duplicate): {} ({} questions)", cacheKey, questions.get().size());
+                return Optional.of(copyQuestions(questions.get()));
             }
             
             log.debug("Cache MISS: {}", cacheKey);
             return Optional.empty();
             
         } catch (Exception e) {
+            metrics.recordError(CacheType.QUIZ);
             log.error("Failed to retrieve cached quiz: {}", e.getMessage());
             return Optional.empty();
         }
     }
     
+    /**
+     * Get a quiz variant for a child from the key's variant pool
+     * Prefers variants the child has not seen; schedules a background top-up when the pool
+     * is smaller than the key's popularity warrants. Falls back to the single cached quiz.
+     */
+    public Optional<List<Question>> getCachedQuizVariant(String topic, String subject, int count, String difficulty,
+                                                         Integer age, Long childId) {
+        if (!variantPool.isEnabled()) {
+            return getCachedQuiz(topic, subject, count, difficulty, age);
+        }
+        try {
+            String cacheKey = generateQuizCacheKey(topic, subject, count, difficulty, age);
+            CacheBatch.Scope scope = batchScope.get();
+            QuizVariantPool.Prefetch prefetch = scope != null ? scope.pools.get(cacheKey) : null;
+            Optional<QuizVariantPool.Pick> pick = prefetch != null
+                    ? variantPool.pick(prefetch, childId, scope.poolWrites)
+                    : variantPool.pick(cacheKey, childId);
+
+            if (pick.isEmpty()) {
+                // Quizzes cached before pools existed seed the pool. Only this key's own entry does:
+                // a near-duplicate hit is another question's quiz, served but never pooled here
+                popularity.record(CacheType.QUIZ, cacheKey);
+                Optional<List<Question>> single = keyedQuizLookup(cacheKey, topic, subject, count, difficulty, age);
+                if (single.isEmpty()) {
+                    Optional<List<Question>> similar = nearDuplicateLookup(CacheType.QUIZ,
+                            quizPartition(subject, count, difficulty, age), topic, codec::decodeQuestions);
+                    similar.ifPresent(questions -> log.info("Cache HIT (near-duplicate): {} ({} questions)",
+                            cacheKey, questions.size()));
+                    return similar.map(AICacheService::copyQuestions);
+                }
+                if (admission.admit(CacheType.QUIZ, cacheKey)) {
+                    addToPool(cacheKey, single.get());
+                }
+                pick = Optional.of(new QuizVariantPool.Pick(single.get(), 1));
+            }
+
+            long requests = prefetch != null
+                    ? variantPool.recordRequest(prefetch, refresher.hardTtl(CacheType.QUIZ), scope.poolWrites)
+                    : variantPool.recordRequest(cacheKey, refresher.hardTtl(CacheType.QUIZ));
+            if (pick.get().poolSize() < variantPool.targetSize(requests)) {
+                topUpQuizPool(cacheKey, topic, subject, count, difficulty, age);
+            }
+
+            log.info("Cache HIT: {} (variant of {})", cacheKey, pick.get().poolSize());
+            return Optional.of(copyQuestions(pick.get().questions()));
+
+        } catch (Exception e) {
+            metrics.recordError(CacheType.QUIZ);
+            log.error("Failed to retrieve quiz variant: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Add an already generated quiz as a variant of its key's pool
+     */
+    public void addQuizVariant(String topic, String subject, int count, String difficulty, Integer age,
+                               List<Question> questions) {
+        if (variantPool.isEnabled()) {
+            String cacheKey = generateQuizCacheKey(topic, subject, count, difficulty, age);
+            if (admission.admit(CacheType.QUIZ, cacheKey)) {
+                addToPool(cacheKey, questions);
+            }
+        }
+    }
+
+    /**
+     * Add a variant to a key's pool; buffered if the current batch read the pool ahead
+     */
+    private void addToPool(String cacheKey, List<Question> questions) {
+        CacheBatch.Scope scope = batchScope.get();
+        QuizVariantPool.Prefetch prefetch = scope != null ? scope.pools.get(cacheKey) : null;
+        if (prefetch != null) {
+            variantPool.add(prefetch, questions, refresher.hardTtl(CacheType.QUIZ), scope.poolWrites);
+        } else {
+            variantPool.add(cacheKey, questions, refresher.hardTtl(CacheType.QUIZ));
+        }
+    }
+
+    /**
+     * Cache a quiz together with the subject detected for it
+     * Key: query + count + difficulty + age (the subject is part of the value)
+     */
+    public void cacheQuizWithSubject(String query, int count, String difficulty, Integer age,
+                                     String subject, List<Question> questions) {
+        try {
+            String cacheKey = generateQuizWithSubjectCacheKey(query, count, difficulty, age);
+            long start = System.nanoTime();
+            byte[] encoded = codec.encodeQuizWithSubject(subject, questions);
+            metrics.recordSerialization(CacheType.QUIZ, System.nanoTime() - start);
+            store(CacheType.QUIZ, cacheKey, encoded, new QuizGenerationResult(subject, copyQuestions(questions)));
+            log.info("Cached quiz with subject: {} -> {}", cacheKey, subject);
+        } catch (Exception e) {
+            metrics.recordError(CacheType.QUIZ);
+            log.error("Failed to cache quiz with subject: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get a cached quiz together with its detected subject
+     * Falls back to entries cached per detected subject before composite entries existed
+     * and migrates them on first read.
+     */
+    public Optional<QuizGenerationResult> getCachedQuizWithSubject(String query, int count, String difficulty, Integer age) {
+        try {
+            String cacheKey = generateQuizWithSubjectCacheKey(query, count, difficulty, age);
+            Optional<QuizGenerationResult> result = lookup(CacheType.QUIZ, cacheKey, codec::decodeQuizWithSubject, null);
+            if (result.isEmpty()) {
+                result = exactAgeLookup(CacheType.QUIZ, cacheKey,
+                        generateQuizWithSubjectCacheKey(query, count, difficulty, age, AICacheProperties.KeyGranularity.EXACT),
+                        codec::decodeQuizWithSubject);
+            }
+
+            if (result.isEmpty() && properties.getLegacyQuiz().isMigrationEnabled()) {
+                result = migrateLegacyQuiz(query, count, difficulty, age);
+            }
+
+            if (result.isPresent()) {
+                log.info("Cache HIT: {} ({} -> {} questions)", cacheKey, result.get().getDetectedSubject(),
+                        result.get().getQuestions().size());
+                return Optional.of(new QuizGenerationResult(result.get().getDetectedSubject(),
+                        copyQuestions(result.get().getQuestions())));
+            }
+
+            log.debug("Cache MISS: {}", cacheKey);
+            return Optional.empty();
+
+        } catch (Exception e) {
+            metrics.recordError(CacheType.QUIZ);
+            log.error("Failed to retrieve cached quiz with subject: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     /**
      * Cache educational response
      * Key: query + age + subject
@@ -92,9 +325,16 @@ public class AICacheService {
     public void cacheResponse(String query, int age, String subject, String response) {
         try {
             String cacheKey = generateResponseCacheKey(query, age, subject);
-            redisTemplate.opsForValue().set(cacheKey, response, RESPONSE_CACHE_TTL);
-            log.info("Cached response: {} (TTL: {} days)", cacheKey, RESPONSE_CACHE_TTL.toDays());
+            boolean admitted = storeText(CacheType.RESPONSE, cacheKey, response);
+            popularity.record(CacheType.RESPONSE, cacheKey);
+            if (admitted) {
+                semanticIndex.add(CacheType.RESPONSE, semanticIndex.partition(subject, age), query, cacheKey);
+                popularity.recordSource(CacheType.RESPONSE, cacheKey,
+                        new CachePopularity.EntrySource(query, subject, age, null, null));
+            }
+            log.info("Cached response: {} (TTL: {} days)", cacheKey, refresher.hardTtl(CacheType.RESPONSE).toDays());
         } catch (Exception e) {
+            metrics.recordError(CacheType.RESPONSE);
             log.error("Failed to cache response: {}", e.getMessage());
         }
     }
@@ -105,32 +345,74 @@ public class AICacheService {
     public Optional<String> getCachedResponse(String query, int age, String subject) {
         try {
             String cacheKey = generateResponseCacheKey(query, age, subject);
-            String response = redisTemplate.opsForValue().get(cacheKey);
+            popularity.record(CacheType.RESPONSE, cacheKey);
+            Optional<String> response = lookup(CacheType.RESPONSE, cacheKey, codec::decodeText,
+                    () -> refreshResponse(cacheKey, query, age, subject));
+            if (response.isEmpty()) {
+                response = exactAgeLookup(CacheType.RESPONSE, cacheKey,
+                        generateResponseCacheKey(query, age, subject, AICacheProperties.KeyGranularity.EXACT),
+                        codec::decodeText);
+            }
             
-            if (response != null) {
+            if (response.isPresent()) {
                 log.info("Cache HIT: {}", cacheKey);
-                return Optional.of(response);
+                return response;
+            }
+
+            response = nearDuplicateLookup(CacheType.RESPONSE, semanticIndex.partition(subject, age), query, codec::decodeText);
+            if (response.isPresent()) {
+                log.info("Cache HIT (near-duplicate): {}", cacheKey);
+                return response;
             }
             
             log.debug("Cache MISS: {}", cacheKey);
             return Optional.empty();
             
         } catch (Exception e) {
+            metrics.recordError(CacheType.RESPONSE);
             log.error("Failed to retrieve cached response: {}", e.getMessage());
             return Optional.empty();
         }
     }
     
+    /**
+     * Read a cached response without any of a lookup's side effects: no popularity or admission
+     * counts, metrics, L1 promotion, stale refresh, dual-read migration or near-duplicate index
+     * cleanup. For queries moderation has not approved yet; getCachedResponse applies them after.
+     */
+    public Optional<String> peekCachedResponse(String query, int age, String subject) {
+        try {
+            Optional<String> response = peek(CacheType.RESPONSE, generateResponseCacheKey(query, age, subject),
+                    codec::decodeText);
+            String exactKey = exactResponseKey(query, age, subject);
+            if (response.isEmpty() && exactKey != null) {
+                response = peek(CacheType.RESPONSE, exactKey, codec::decodeText);
+            }
+            if (response.isEmpty()) {
+                Optional<SemanticCacheIndex.Match> match = semanticIndex.findMatch(CacheType.RESPONSE,
+                        semanticIndex.partition(subject, age), query);
+                if (match.isPresent()) {
+                    response = peek(CacheType.RESPONSE, match.get().targetKey(), codec::decodeText);
+                }
+            }
+            return response;
+        } catch (Exception e) {
+            log.debug("Failed to peek at cached response: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     /**
      * Cache subject analysis result
      * Key: query hash
      */
     public void cacheSubjectAnalysis(String query, String subject) {
         try {
-            String cacheKey = "subject:" + query.hashCode();
-            redisTemplate.opsForValue().set(cacheKey, subject, RESPONSE_CACHE_TTL);
+            String cacheKey = namespace.key(CacheType.SUBJECT, String.valueOf(query.hashCode()));
+            storeText(CacheType.SUBJECT, cacheKey, subject, CacheType.RESPONSE.getTtl());
             log.info("Cached subject analysis: {} -> {}", cacheKey, subject);
         } catch (Exception e) {
+            metrics.recordError(CacheType.SUBJECT);
             log.error("Failed to cache subject analysis: {}", e.getMessage());
         }
     }
@@ -140,18 +422,19 @@ public class AICacheService {
      */
     public Optional<String> getCachedSubjectAnalysis(String query) {
         try {
-            String cacheKey = "subject:" + query.hashCode();
-            String subject = redisTemplate.opsForValue().get(cacheKey);
+            String cacheKey = namespace.key(CacheType.SUBJECT, String.valueOf(query.hashCode()));
+            Optional<String> subject = lookup(CacheType.SUBJECT, cacheKey, codec::decodeText, null);
 
-            if (subject != null) {
-                log.info("Cache HIT: Subject analysis for query -> {}", subject);
-                return Optional.of(subject);
+            if (subject.isPresent()) {
+                log.info("Cache HIT: Subject analysis for query -> {}", subject.get());
+                return subject;
             }
 
             log.debug("Cache MISS: Subject analysis");
             return Optional.empty();
 
         } catch (Exception e) {
+            metrics.recordError(CacheType.SUBJECT);
             log.error("Failed to retrieve cached subject analysis: {}", e.getMessage());
             return Optional.empty();
         }
@@ -164,9 +447,15 @@ public class AICacheService {
     public void cacheHint(String query, String subject, int age, String hint) {
         try {
             String cacheKey = generateHintCacheKey(query, subject, age);
-            redisTemplate.opsForValue().set(cacheKey, hint, HINT_CACHE_TTL);
-            log.info("Cached hint: {} (TTL: {} days)", cacheKey, HINT_CACHE_TTL.toDays());
+            boolean admitted = storeText(CacheType.HINT, cacheKey, hint);
+            popularity.record(CacheType.HINT, cacheKey);
+            if (admitted) {
+                popularity.recordSource(CacheType.HINT, cacheKey,
+                        new CachePopularity.EntrySource(query, subject, age, null, null));
+            }
+            log.info("Cached hint: {} (TTL: {} days)", cacheKey, refresher.hardTtl(CacheType.HINT).toDays());
         } catch (Exception e) {
+            metrics.recordError(CacheType.HINT);
             log.error("Failed to cache hint: {}", e.getMessage());
         }
     }
@@ -177,17 +466,25 @@ public class AICacheService {
     public Optional<String> getCachedHint(String query, String subject, int age) {
         try {
             String cacheKey = generateHintCacheKey(query, subject, age);
-            String hint = redisTemplate.opsForValue().get(cacheKey);
+            popularity.record(CacheType.HINT, cacheKey);
+            Optional<String> hint = lookup(CacheType.HINT, cacheKey, codec::decodeText,
+                    () -> refreshHint(cacheKey, query, subject, age));
+            if (hint.isEmpty()) {
+                hint = exactAgeLookup(CacheType.HINT, cacheKey,
+                        generateHintCacheKey(query, subject, age, AICacheProperties.KeyGranularity.EXACT),
+                        codec::decodeText);
+            }
             
-            if (hint != null) {
+            if (hint.isPresent()) {
                 log.info("Cache HIT: {}", cacheKey);
-                return Optional.of(hint);
+                return hint;
             }
             
             log.debug("Cache MISS: {}", cacheKey);
             return Optional.empty();
             
         } catch (Exception e) {
+            metrics.recordError(CacheType.HINT);
             log.error("Failed to retrieve cached hint: {}", e.getMessage());
             return Optional.empty();
         }
@@ -200,9 +497,10 @@ public class AICacheService {
     public void cacheSubject(String query, String subject) {
         try {
             String cacheKey = generateSubjectCacheKey(query);
-            redisTemplate.opsForValue().set(cacheKey, subject, SUBJECT_CACHE_TTL);
-            log.info("Cached subject: {} -> {} (TTL: {} days)", cacheKey, subject, SUBJECT_CACHE_TTL.toDays());
+            storeText(CacheType.SUBJECT, cacheKey, subject);
+            log.info("Cached subject: {} -> {} (TTL: {} days)", cacheKey, subject, refresher.hardTtl(CacheType.SUBJECT).toDays());
         } catch (Exception e) {
+            metrics.recordError(CacheType.SUBJECT);
             log.error("Failed to cache subject: {}", e.getMessage());
         }
     }
@@ -213,17 +511,18 @@ public class AICacheService {
     public Optional<String> getCachedSubject(String query) {
         try {
             String cacheKey = generateSubjectCacheKey(query);
-            String subject = redisTemplate.opsForValue().get(cacheKey);
+            Optional<String> subject = lookup(CacheType.SUBJECT, cacheKey, codec::decodeText, null);
             
-            if (subject != null) {
-                log.info("Cache HIT: {} -> {}", cacheKey, subject);
-                return Optional.of(subject);
+            if (subject.isPresent()) {
+                log.info("Cache HIT: {} -> {}", cacheKey, subject.get());
+                return subject;
             }
             
             log.debug("Cache MISS: {}", cacheKey);
             return Optional.empty();
             
         } catch (Exception e) {
+            metrics.recordError(CacheType.SUBJECT);
             log.error("Failed to retrieve cached subject: {}", e.getMessage());
             return Optional.empty();
         }
@@ -231,10 +530,13 @@ public class AICacheService {
     
     /**
      * Invalidate all quiz caches (use when quiz generation logic changes)
+     * O(1): starts a new key generation; old entries expire or are reclaimed by CacheSweeper
      */
     public void invalidateAllQuizzes() {
+        localTier.invalidateAll(CacheType.QUIZ);
         try {
-            redisTemplate.keys(QUIZ_PREFIX + "*").forEach(redisTemplate::delete);
+            namespace.bump(CacheType.QUIZ);
+            publishInvalidation(CacheType.QUIZ);
             log.info("Invalidated all quiz caches");
         } catch (Exception e) {
             log.error("Failed to invalidate quiz caches: {}", e.getMessage());
@@ -245,8 +547,10 @@ public class AICacheService {
      * Invalidate all response caches
      */
     public void invalidateAllResponses() {
+        localTier.invalidateAll(CacheType.RESPONSE);
         try {
-            redisTemplate.keys(RESPONSE_PREFIX + "*").forEach(redisTemplate::delete);
+            namespace.bump(CacheType.RESPONSE);
+            publishInvalidation(CacheType.RESPONSE);
             log.info("Invalidated all response caches");
         } catch (Exception e) {
             log.error("Failed to invalidate response caches: {}", e.getMessage());
@@ -255,41 +559,649 @@ public class AICacheService {
     
     /**
      * Get cache statistics
+     * Entry counts are approximate (maintained incrementally, see CacheNamespace)
      */
     public CacheStats getCacheStats() {
+        TierStats tiers = getTierStats();
+        Map<CacheType, CacheMetrics.TypeSnapshot> types = new EnumMap<>(CacheType.class);
+        for (CacheType type : CacheType.values()) {
+            types.put(type, metrics.snapshot(type));
+        }
         try {
-            long quizCount = redisTemplate.keys(QUIZ_PREFIX + "*").size();
-            long responseCount = redisTemplate.keys(RESPONSE_PREFIX + "*").size();
-            long hintCount = redisTemplate.keys(HINT_PREFIX + "*").size();
-            long subjectCount = redisTemplate.keys(SUBJECT_PREFIX + "*").size();
+            long quizCount = namespace.approximateCount(CacheType.QUIZ, refresher.hardTtl(CacheType.QUIZ));
+            long responseCount = namespace.approximateCount(CacheType.RESPONSE, refresher.hardTtl(CacheType.RESPONSE));
+            long hintCount = namespace.approximateCount(CacheType.HINT, refresher.hardTtl(CacheType.HINT));
+            long subjectCount = namespace.approximateCount(CacheType.SUBJECT, refresher.hardTtl(CacheType.SUBJECT));
             
-            return new CacheStats(quizCount, responseCount, hintCount, subjectCount);
+            return new CacheStats(quizCount, responseCount, hintCount, subjectCount, tiers, types, metrics.callsSaved(),
+                    metrics.failuresAvoided());
         } catch (Exception e) {
             log.error("Failed to get cache stats: {}", e.getMessage());
-            return new CacheStats(0, 0, 0, 0);
+            return new CacheStats(0, 0, 0, 0, tiers, types, metrics.callsSaved(), metrics.failuresAvoided());
+        }
+    }
+
+    /**
+     * L1/disk/L2 hit counters for this node
+     */
+    public TierStats getTierStats() {
+        long l1 = 0, l2 = 0, disk = 0, missed = 0;
+        for (CacheType type : CacheType.values()) {
+            l1 += metrics.hits(type, CacheMetrics.TIER_L1);
+            l2 += metrics.hits(type, CacheMetrics.TIER_L2);
+            disk += metrics.hits(type, CacheMetrics.TIER_DISK);
+            missed += metrics.misses(type);
+        }
+        return new TierStats(l1, l2, disk, missed, localTier.estimatedSize(), contentStore.entries());
+    }
+
+    /**
+     * Record a provider call that a cache hit made unnecessary
+     */
+    public void recordApiCallSaved(String operation) {
+        metrics.recordCallSaved(operation);
+    }
+
+    /**
+     * Age the provider should be prompted with for a request that is cached under this type
+     */
+    public Integer promptAge(CacheType type, Integer age) {
+        return keyPolicy.promptAge(type, age);
+    }
+
+    // ==================== Provider Failures ====================
+
+    /**
+     * A recent failure of every provider on this operation and input, if any
+     * Each hit counts the provider calls it saves.
+     */
+    public Optional<ProviderFailureCache.Failure> getProviderFailure(String operation, List<?> input) {
+        Optional<ProviderFailureCache.Failure> failure = failureCache.get(failureKey(operation, input));
+        failure.ifPresent(f -> metrics.recordFailureAvoided(operation, f.providerCalls()));
+        return failure;
+    }
+
+    /**
+     * Remember that every provider returned unusable output for this operation and input
+     */
+    public void cacheProviderFailure(String operation, List<?> input, int providerCalls, String reason) {
+        if (failureCache.isEnabled()) {
+            failureCache.put(failureKey(operation, input), new ProviderFailureCache.Failure(providerCalls, reason));
+            metrics.recordFailureCached(operation);
+            log.info("Cached provider failure of {} for {}", operation, properties.getNegative().getTtl());
+        }
+    }
+
+    private String failureKey(String operation, List<?> input) {
+        StringBuilder normalized = new StringBuilder(operation);
+        for (Object part : input) {
+            normalized.append(':').append(part instanceof String text ? normalizeText(text) : part);
+        }
+        return ProviderFailureCache.PREFIX + operation + ":" + hashKey(normalized.toString());
+    }
+
+    // ==================== Tiered Lookup ====================
+
+    /**
+     * Look a key up in L1, the content store, then Redis; hits are deserialized once and promoted
+     * to L1. A stale hit is still returned and onStale (if any) schedules its refresh.
+     */
+    private <T> Optional<T> lookup(CacheType type, String cacheKey, ValueReader<T> reader, Runnable onStale) throws Exception {
+        admission.recordAccess(type, cacheKey);
+        Optional<T> local = localTier.get(cacheKey);
+        CacheBatch.Scope scope = batchScope.get();
+        if (local.isPresent()) {
+            boolean prefetched = scope != null && scope.prefetched.remove(cacheKey);
+            metrics.recordHit(type, prefetched ? CacheMetrics.TIER_L2 : CacheMetrics.TIER_L1);
+            return local;
+        }
+        if (scope != null && scope.misses.contains(cacheKey)) {
+            metrics.recordMiss(type);
+            return Optional.empty();
         }
+
+        // Fresh node-local copies answer without Redis; stale ones only stand in when Redis cannot
+        Optional<byte[]> stored = contentStore.get(type, cacheKey);
+        if (stored.isPresent() && !refresher.isStale(type, codec.writtenAt(stored.get()))) {
+            return Optional.of(promote(type, cacheKey, stored.get(), reader, CacheMetrics.TIER_DISK, null));
+        }
+
+        long start = System.nanoTime();
+        byte[] raw;
+        try {
+            raw = valueTemplate.opsForValue().get(cacheKey);
+        } catch (RuntimeException e) {
+            if (stored.isEmpty()) {
+                throw e;
+            }
+            log.warn("Redis read failed, serving {} from the local content store: {}", cacheKey, e.getMessage());
+            return Optional.of(promote(type, cacheKey, stored.get(), reader, CacheMetrics.TIER_DISK, null));
+        }
+        metrics.recordRedisLatency(type, System.nanoTime() - start);
+        if (raw == null) {
+            if (stored.isPresent()) {
+                return Optional.of(promote(type, cacheKey, stored.get(), reader, CacheMetrics.TIER_DISK, onStale));
+            }
+            metrics.recordMiss(type);
+            return Optional.empty();
+        }
+
+        if (stored.isEmpty() || codec.writtenAt(stored.get()) != codec.writtenAt(raw)) {
+            long writtenAt = codec.writtenAt(raw);
+            contentStore.put(type, cacheKey, raw,
+                    (writtenAt > 0 ? writtenAt : System.currentTimeMillis()) + refresher.hardTtl(type).toMillis());
+        }
+        return Optional.of(promote(type, cacheKey, raw, reader, CacheMetrics.TIER_L2, onStale));
+    }
+
+    /**
+     * Read-only counterpart of lookup: L1, then Redis, then the content store
+     */
+    private <T> Optional<T> peek(CacheType type, String cacheKey, ValueReader<T> reader) throws Exception {
+        Optional<T> local = localTier.get(cacheKey);
+        if (local.isPresent()) {
+            return local;
+        }
+        byte[] raw = valueTemplate.opsForValue().get(cacheKey);
+        if (raw == null) {
+            raw = contentStore.get(type, cacheKey).orElse(null);
+        }
+        return raw != null ? Optional.of(reader.read(raw)) : Optional.empty();
+    }
+
+    /**
+     * Deserialize a value read from Redis or the content store and keep it in L1
+     */
+    private <T> T promote(CacheType type, String cacheKey, byte[] raw, ValueReader<T> reader, String tier,
+                          Runnable onStale) throws Exception {
+        long start = System.nanoTime();
+        T value = reader.read(raw);
+        metrics.recordSerialization(type, System.nanoTime() - start);
+        metrics.recordValueSize(type, raw.length);
+        long writtenAt = codec.writtenAt(raw);
+        localTier.put(type, cacheKey, value, localWeight(value, raw), refresher.localTtl(type, writtenAt));
+        metrics.recordHit(type, tier);
+        if (onStale != null && refresher.isStale(type, writtenAt)) {
+            onStale.run();
+        }
+        return value;
+    }
+
+    /**
+     * A quiz cached under exactly this key (or, during dual-read, its exact-age predecessor)
+     */
+    private Optional<List<Question>> keyedQuizLookup(String cacheKey, String topic, String subject, int count,
+                                                     String difficulty, Integer age) throws Exception {
+        Optional<List<Question>> questions = lookup(CacheType.QUIZ, cacheKey, codec::decodeQuestions, null);
+        if (questions.isEmpty()) {
+            questions = exactAgeLookup(CacheType.QUIZ, cacheKey,
+                    generateQuizCacheKey(topic, subject, count, difficulty, age, AICacheProperties.KeyGranularity.EXACT),
+                    codec::decodeQuestions);
+        }
+        return questions;
+    }
+
+    /**
+     * During the dual-read period, read the exact-age entry a banded key replaced and copy it
+     * to the band key (keeping its write time, so freshness is unchanged)
+     */
+    private <T> Optional<T> exactAgeLookup(CacheType type, String cacheKey, String exactKey,
+                                           ValueReader<T> reader) throws Exception {
+        if (!keyPolicy.isDualRead(type) || exactKey.equals(cacheKey)) {
+            return Optional.empty();
+        }
+        CacheBatch.Scope scope = batchScope.get();
+        byte[] raw;
+        if (scope != null && scope.exactAge.containsKey(cacheKey)) {
+            raw = scope.exactAge.remove(cacheKey); // read with the batch's MGET
+        } else {
+            long start = System.nanoTime();
+            raw = valueTemplate.opsForValue().get(exactKey);
+            metrics.recordRedisLatency(type, System.nanoTime() - start);
+        }
+        if (raw == null) {
+            return Optional.empty();
+        }
+        T value = reader.read(raw);
+        store(type, cacheKey, raw, value);
+        log.info("Migrated exact-age cache entry {} to {}", exactKey, cacheKey);
+        return Optional.of(value);
+    }
+
+    /**
+     * Probe the per-subject keys a quiz-with-subject result used to be stored under (one MGET)
+     * and rewrite the first match as a composite entry
+     */
+    private Optional<QuizGenerationResult> migrateLegacyQuiz(String query, int count, String difficulty, Integer age)
+            throws Exception {
+        List<String> subjects = properties.getLegacyQuiz().getSubjects();
+        List<String> keys = new ArrayList<>(subjects.size());
+        for (String subject : subjects) {
+            // Written before age bands existed, so under exact-age keys
+            keys.add(generateQuizCacheKey(query, subject, count, difficulty, age, AICacheProperties.KeyGranularity.EXACT));
+        }
+
+        long start = System.nanoTime();
+        List<byte[]> values = valueTemplate.opsForValue().multiGet(keys);
+        metrics.recordRedisLatency(CacheType.QUIZ, System.nanoTime() - start);
+        if (values == null) {
+            return Optional.empty();
+        }
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != null) {
+                List<Question> questions = codec.decodeQuestions(values.get(i));
+                String subject = subjects.get(i);
+                cacheQuizWithSubject(query, count, difficulty, age, subject, questions);
+                log.info("Migrated legacy quiz entry {} to a quiz-with-subject entry ({})", keys.get(i), subject);
+                return Optional.of(new QuizGenerationResult(subject, questions));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Read the entry of a near-duplicate cached query; stale index entries are dropped
+     */
+    private <T> Optional<T> nearDuplicateLookup(CacheType type, String partition, String query,
+                                                ValueReader<T> reader) throws Exception {
+        Optional<SemanticCacheIndex.Match> match = semanticIndex.findMatch(type, partition, query);
+        if (match.isEmpty()) {
+            return Optional.empty();
+        }
+        String targetKey = match.get().targetKey();
+
+        Optional<T> local = localTier.get(targetKey);
+        if (local.isPresent()) {
+            metrics.recordSemanticHit(type);
+            return local;
+        }
+
+        long start = System.nanoTime();
+        byte[] raw = valueTemplate.opsForValue().get(targetKey);
+        metrics.recordRedisLatency(type, System.nanoTime() - start);
+        if (raw == null) {
+            semanticIndex.remove(type, partition, targetKey);
+            return Optional.empty();
+        }
+
+        T value = reader.read(raw);
+        localTier.put(type, targetKey, value, localWeight(value, raw), refresher.localTtl(type, codec.writtenAt(raw)));
+        metrics.recordSemanticHit(type);
+        return Optional.of(value);
+    }
+
+    /**
+     * Regenerate an entry in the background from the inputs it was cached for (used by CacheWarmer)
+     */
+    void regenerate(CacheType type, String cacheKey, CachePopularity.EntrySource source) {
+        switch (type) {
+            case RESPONSE -> refreshResponse(cacheKey, source.query(), source.age(), source.subject());
+            case HINT -> refreshHint(cacheKey, source.query(), source.subject(), source.age());
+            case QUIZ -> {
+                CacheRefreshSource refreshSource = this.refreshSource;
+                if (refreshSource != null) {
+                    refresher.refreshAsync(CacheType.QUIZ, cacheKey,
+                            () -> refreshSource.regenerateQuestions(source.query(), source.subject(), source.count(),
+                                    source.difficulty(), source.age()),
+                            questions -> cacheQuiz(source.query(), source.subject(), source.count(),
+                                    source.difficulty(), questions, source.age()));
+                }
+            }
+            default -> log.debug("No regeneration for {} entries", type);
+        }
+    }
+
+    private void refreshResponse(String cacheKey, String query, int age, String subject) {
+        CacheRefreshSource source = refreshSource;
+        if (source != null) {
+            refresher.refreshAsync(CacheType.RESPONSE, cacheKey,
+                    () -> source.regenerateResponse(query, age, subject),
+                    response -> cacheResponse(query, age, subject, response));
+        }
+    }
+
+    private void refreshHint(String cacheKey, String query, String subject, int age) {
+        CacheRefreshSource source = refreshSource;
+        if (source != null) {
+            refresher.refreshAsync(CacheType.HINT, cacheKey,
+                    () -> source.regenerateHint(query, subject, age),
+                    hint -> cacheHint(query, subject, age, hint));
+        }
+    }
+
+    private void topUpQuizPool(String cacheKey, String topic, String subject, int count, String difficulty, Integer age) {
+        CacheRefreshSource source = refreshSource;
+        if (source != null) {
+            refresher.refreshAsync(CacheType.QUIZ, cacheKey + ":pool",
+                    () -> source.regenerateQuestions(topic, subject, count, difficulty, age),
+                    questions -> variantPool.add(cacheKey, questions, refresher.hardTtl(CacheType.QUIZ)));
+        }
+    }
+
+    private boolean storeText(CacheType type, String cacheKey, String value) throws IOException {
+        return storeText(type, cacheKey, value, refresher.hardTtl(type));
+    }
+
+    private boolean storeText(CacheType type, String cacheKey, String value, Duration ttl) throws IOException {
+        long start = System.nanoTime();
+        byte[] encoded = codec.encodeText(value);
+        metrics.recordSerialization(type, System.nanoTime() - start);
+        return store(type, cacheKey, encoded, value, ttl);
+    }
+
+    private boolean store(CacheType type, String cacheKey, byte[] raw, Object localValue) {
+        return store(type, cacheKey, raw, localValue, refresher.hardTtl(type));
+    }
+
+    /**
+     * Write an entry to Redis, the content store and L1. Keys the admission filter rejects are
+     * kept in L1 and may only overwrite an existing Redis or content store entry (SET XX), so
+     * refreshes still land but one-off keys never evict hot content from disk.
+     * @return whether the key was admitted to Redis
+     */
+    private boolean store(CacheType type, String cacheKey, byte[] raw, Object localValue, Duration ttl) {
+        boolean admitted = admission.admit(type, cacheKey);
+        boolean onDisk = admitted || contentStore.contains(type, cacheKey);
+        if (onDisk) {
+            contentStore.put(type, cacheKey, raw, System.currentTimeMillis() + ttl.toMillis());
+        }
+        CacheBatch.Scope scope = batchScope.get();
+        if (scope != null) {
+            scope.misses.remove(cacheKey);
+            scope.writes.add(new PendingWrite(type, cacheKey, raw, ttl, admitted, onDisk));
+        } else if (admitted) {
+            long start = System.nanoTime();
+            Long created = valueTemplate.execute(UPSERT, List.of(cacheKey), raw, ttlArgument(ttl));
+            if (Long.valueOf(1).equals(created)) {
+                namespace.recordNewEntry(type, ttl);
+            }
+            metrics.recordRedisLatency(type, System.nanoTime() - start);
+        } else {
+            long start = System.nanoTime();
+            Boolean overwritten = valueTemplate.opsForValue().setIfPresent(cacheKey, raw, ttl);
+            metrics.recordRedisLatency(type, System.nanoTime() - start);
+            if (Boolean.TRUE.equals(overwritten) && !onDisk) {
+                contentStore.put(type, cacheKey, raw, System.currentTimeMillis() + ttl.toMillis());
+            }
+        }
+        metrics.recordValueSize(type, raw.length);
+        Duration localTtl = refresher.localTtl(type, System.currentTimeMillis());
+        localTier.put(type, cacheKey, localValue, localWeight(localValue, raw),
+                localTtl.compareTo(ttl) < 0 ? localTtl : ttl);
+        return admitted;
+    }
+
+    private static byte[] ttlArgument(Duration ttl) {
+        return Long.toString(ttl.toMillis()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Approximate heap footprint of a deserialized value (encoded bytes may be compressed)
+     */
+    static int localWeight(Object value, byte[] raw) {
+        return value instanceof String text ? text.length() * 2 : raw.length * 4;
+    }
+
+    private void publishInvalidation(CacheType type) {
+        redisTemplate.convertAndSend(properties.getLocal().getInvalidationChannel(), type.name());
+    }
+
+    /**
+     * Detached copies of cached questions (no id, no quiz) so cached instances are never persisted
+     */
+    private static List<Question> copyQuestions(List<Question> questions) {
+        List<Question> copies = new ArrayList<>(questions.size());
+        for (Question q : questions) {
+            copies.add(Question.builder()
+                    .questionText(q.getQuestionText())
+                    .type(q.getType())
+                    .options(q.getOptions() != null ? new ArrayList<>(q.getOptions()) : new ArrayList<>())
+                    .correctAnswer(q.getCorrectAnswer())
+                    .correctOptionIndex(q.getCorrectOptionIndex())
+                    .explanation(q.getExplanation())
+                    .displayOrder(q.getDisplayOrder())
+                    .build());
+        }
+        return copies;
+    }
+
+    // ==================== Batched Access ====================
+
+    /**
+     * Start a batch for a caller that knows its keys up front. Opening the batch fetches every
+     * key in one MGET; until the scope is closed, lookups of those keys are answered from it
+     * and cache writes are buffered and sent in one pipeline on close.
+     */
+    public CacheBatch batch() {
+        return new CacheBatch(this);
+    }
+
+    CacheBatch.Scope openBatch(List<CacheBatch.Entry> entries, List<CacheBatch.PoolEntry> poolEntries) {
+        CacheBatch.Scope scope = new CacheBatch.Scope(this, batchScope.get());
+        batchScope.set(scope);
+
+        List<CacheBatch.Entry> remote = new ArrayList<>();
+        for (CacheBatch.Entry entry : entries) {
+            if (localTier.get(entry.key()).isEmpty()) {
+                remote.add(entry);
+            }
+        }
+        List<CacheBatch.PoolEntry> pools = variantPool.isEnabled() ? poolEntries : List.of();
+        if (remote.isEmpty() && pools.isEmpty()) {
+            return scope;
+        }
+        try {
+            // Exact-age keys (dual-read) and pool request counters follow the batched keys in the
+            // MGET; pool hashes go in the same pipeline
+            List<String> keys = new ArrayList<>(remote.stream().map(CacheBatch.Entry::key).toList());
+            List<CacheBatch.Entry> dualRead = remote.stream().filter(entry -> entry.exactKey() != null).toList();
+            dualRead.forEach(entry -> keys.add(entry.exactKey()));
+            pools.forEach(pool -> keys.add(QuizVariantPool.requestsKey(pool.quizKey())));
+            long start = System.nanoTime();
+            List<byte[]> values;
+            if (pools.isEmpty()) {
+                values = valueTemplate.opsForValue().multiGet(keys);
+            } else {
+                values = readAhead(scope, keys, pools);
+            }
+            metrics.recordBatch("read", keys.size(), System.nanoTime() - start);
+            if (values == null) {
+                return scope;
+            }
+            for (int i = 0; i < dualRead.size(); i++) {
+                scope.exactAge.put(dualRead.get(i).key(), values.get(remote.size() + i));
+            }
+            for (int i = 0; i < remote.size(); i++) {
+                CacheBatch.Entry entry = remote.get(i);
+                byte[] raw = values.get(i);
+                if (raw == null) {
+                    scope.misses.add(entry.key());
+                    continue;
+                }
+                scope.exactAge.remove(entry.key());
+                long writtenAt = codec.writtenAt(raw);
+                if (refresher.isStale(entry.type(), writtenAt)) {
+                    continue; // the regular lookup serves it and schedules the refresh
+                }
+                Object value = entry.type() == CacheType.QUIZ ? codec.decodeQuestions(raw) : codec.decodeText(raw);
+                metrics.recordValueSize(entry.type(), raw.length);
+                localTier.put(entry.type(), entry.key(), value, localWeight(value, raw),
+                        refresher.localTtl(entry.type(), writtenAt));
+                scope.prefetched.add(entry.key());
+            }
+        } catch (Exception e) {
+            log.warn("Batched cache lookup failed: {}", e.getMessage());
+        }
+        return scope;
+    }
+
+    /**
+     * One pipeline: the MGET of keys, then each pool's hashes; fills scope.pools and returns
+     * the MGET values
+     */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> readAhead(CacheBatch.Scope scope, List<String> keys, List<CacheBatch.PoolEntry> pools)
+            throws Exception {
+        List<Object> results = valueTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, byte[]> byteOperations = (RedisOperations<String, byte[]>) operations;
+                byteOperations.opsForValue().multiGet(keys);
+                for (CacheBatch.PoolEntry pool : pools) {
+                    variantPool.queuePrefetch(byteOperations, pool.quizKey(), pool.childId());
+                }
+                return null;
+            }
+        });
+        Iterator<Object> next = results.iterator();
+        List<byte[]> values = (List<byte[]>) next.next();
+        for (int i = 0; i < pools.size(); i++) {
+            CacheBatch.PoolEntry pool = pools.get(i);
+            byte[] requests = values != null ? values.get(keys.size() - pools.size() + i) : null;
+            scope.pools.put(pool.quizKey(), variantPool.readPrefetch(pool.quizKey(), pool.childId(), next, requests));
+        }
+        return values;
+    }
+
+    void closeBatch(CacheBatch.Scope scope) {
+        if (scope.previous != null) {
+            batchScope.set(scope.previous);
+        } else {
+            batchScope.remove();
+        }
+        if (!scope.writes.isEmpty() || !scope.poolWrites.isEmpty()) {
+            flushWrites(scope.writes, scope.poolWrites);
+        }
+    }
+
+    /**
+     * Write buffered entries and pool updates in one pipeline: UPSERT for admitted entries (new
+     * ones are counted from its result), SET XX for keys the admission filter rejected
+     */
+    private void flushWrites(List<PendingWrite> writes, List<QuizVariantPool.PoolWrite> poolWrites) {
+        try {
+            long start = System.nanoTime();
+            List<Object> results = valueTemplate.executePipelined(pipeline(writes, poolWrites));
+            for (int i = 0; i < writes.size(); i++) {
+                PendingWrite write = writes.get(i);
+                Object result = results != null && i < results.size() ? results.get(i) : null;
+                if (write.admitted() && Long.valueOf(1).equals(result)) {
+                    namespace.recordNewEntry(write.type(), write.ttl());
+                } else if (!write.admitted() && !write.onDisk() && Boolean.TRUE.equals(result)) {
+                    // A rejected key SET XX overwrote in Redis: the content store follows Redis
+                    contentStore.put(write.type(), write.key(), write.raw(),
+                            System.currentTimeMillis() + write.ttl().toMillis());
+                }
+            }
+            metrics.recordBatch("write", writes.size() + poolWrites.size(), System.nanoTime() - start);
+        } catch (Exception e) {
+            log.warn("Batched cache write failed: {}", e.getMessage());
+        }
+    }
+
+    private static SessionCallback<Object> pipeline(List<PendingWrite> writes, List<QuizVariantPool.PoolWrite> poolWrites) {
+        return new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, byte[]> byteOperations = (RedisOperations<String, byte[]>) operations;
+                ValueOperations<String, byte[]> values = byteOperations.opsForValue();
+                for (PendingWrite write : writes) {
+                    if (write.admitted()) {
+                        byteOperations.execute(UPSERT, List.of(write.key()), write.raw(), ttlArgument(write.ttl()));
+                    } else {
+                        values.setIfPresent(write.key(), write.raw(), write.ttl());
+                    }
+                }
+                // After the value writes, so results line up with writes
+                for (QuizVariantPool.PoolWrite poolWrite : poolWrites) {
+                    poolWrite.queue(byteOperations);
+                }
+                return null;
+            }
+        };
+    }
+
+    record PendingWrite(CacheType type, String key, byte[] raw, Duration ttl, boolean admitted, boolean onDisk) {}
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read(byte[] raw) throws Exception;
     }
     
     // ==================== Cache Key Generation ====================
     
-    private String generateQuizCacheKey(String topic, String subject, int count, String difficulty, Integer age) {
-        String normalized = normalizeText(topic) + ":" + normalizeText(subject) + ":" + count + ":" + difficulty.toLowerCase() + ":" + age;
-        return QUIZ_PREFIX + hashKey(normalized);
+    String generateQuizCacheKey(String topic, String subject, int count, String difficulty, Integer age) {
+        return generateQuizCacheKey(topic, subject, count, difficulty, age, keyPolicy.granularity(CacheType.QUIZ));
     }
-    
-    private String generateResponseCacheKey(String query, int age, String subject) {
-        String normalized = normalizeText(query) + ":" + age + ":" + normalizeText(subject);
-        return RESPONSE_PREFIX + hashKey(normalized);
+
+    private String generateQuizCacheKey(String topic, String subject, int count, String difficulty, Integer age,
+                                        AICacheProperties.KeyGranularity granularity) {
+        String normalized = normalizeText(topic) + ":" + normalizeText(subject) + ":" + count + ":"
+                + keyPolicy.segment(granularity, difficulty, age);
+        return namespace.key(CacheType.QUIZ, hashKey(normalized));
     }
-    
-    private String generateHintCacheKey(String query, String subject, int age) {
-        String normalized = normalizeText(query) + ":" + normalizeText(subject) + ":" + age;
-        return HINT_PREFIX + hashKey(normalized);
+
+    private String generateQuizWithSubjectCacheKey(String query, int count, String difficulty, Integer age) {
+        return generateQuizWithSubjectCacheKey(query, count, difficulty, age, keyPolicy.granularity(CacheType.QUIZ));
+    }
+
+    private String generateQuizWithSubjectCacheKey(String query, int count, String difficulty, Integer age,
+                                                   AICacheProperties.KeyGranularity granularity) {
+        String normalized = "with-subject:" + normalizeText(query) + ":" + count + ":"
+                + keyPolicy.segment(granularity, difficulty, age);
+        return namespace.key(CacheType.QUIZ, hashKey(normalized));
+    }
+
+    private String quizPartition(String subject, int count, String difficulty, Integer age) {
+        return semanticIndex.partition(subject, age, count, difficulty);
+    }
+
+    String generateResponseCacheKey(String query, int age, String subject) {
+        return generateResponseCacheKey(query, age, subject, keyPolicy.granularity(CacheType.RESPONSE));
+    }
+
+    private String generateResponseCacheKey(String query, int age, String subject,
+                                            AICacheProperties.KeyGranularity granularity) {
+        String normalized = normalizeText(query) + ":" + keyPolicy.segment(granularity, null, age) + ":" + normalizeText(subject);
+        return namespace.key(CacheType.RESPONSE, hashKey(normalized));
+    }
+
+    String generateHintCacheKey(String query, String subject, int age) {
+        return generateHintCacheKey(query, subject, age, keyPolicy.granularity(CacheType.HINT));
+    }
+
+    private String generateHintCacheKey(String query, String subject, int age, AICacheProperties.KeyGranularity granularity) {
+        String normalized = normalizeText(query) + ":" + normalizeText(subject) + ":" + keyPolicy.segment(granularity, null, age);
+        return namespace.key(CacheType.HINT, hashKey(normalized));
     }
     
-    private String generateSubjectCacheKey(String query) {
+    /**
+     * The exact-age keys banded keys replaced, while they are still dual-read (else null)
+     */
+    String exactResponseKey(String query, int age, String subject) {
+        return dualReadKey(CacheType.RESPONSE, generateResponseCacheKey(query, age, subject),
+                generateResponseCacheKey(query, age, subject, AICacheProperties.KeyGranularity.EXACT));
+    }
+
+    String exactQuizKey(String topic, String subject, int count, String difficulty, Integer age) {
+        return dualReadKey(CacheType.QUIZ, generateQuizCacheKey(topic, subject, count, difficulty, age),
+                generateQuizCacheKey(topic, subject, count, difficulty, age, AICacheProperties.KeyGranularity.EXACT));
+    }
+
+    String exactHintKey(String query, String subject, int age) {
+        return dualReadKey(CacheType.HINT, generateHintCacheKey(query, subject, age),
+                generateHintCacheKey(query, subject, age, AICacheProperties.KeyGranularity.EXACT));
+    }
+
+    private String dualReadKey(CacheType type, String cacheKey, String exactKey) {
+        return keyPolicy.isDualRead(type) && !exactKey.equals(cacheKey) ? exactKey : null;
+    }
+
+    String generateSubjectCacheKey(String query) {
         String normalized = normalizeText(query);
-        return SUBJECT_PREFIX + hashKey(normalized);
+        return namespace.key(CacheType.SUBJECT, hashKey(normalized));
     }
     
     /**
@@ -329,11 +1241,44 @@ public class AICacheService {
         long quizCount,
         long responseCount,
         long hintCount,
-        long subjectCount
+        long subjectCount,
+        TierStats tiers,
+        Map<CacheType, CacheMetrics.TypeSnapshot> types,
+        Map<String, Long> apiCallsSaved,
+        Map<String, Long> failedCallsAvoided
     ) {
         public long totalCount() {
             return quizCount + responseCount + hintCount + subjectCount;
         }
     }
-}
 
+    /**
+     * L1 (in-process), disk (LocalContentStore) and L2 (Redis) hit ratios
+     */
+    public record TierStats(
+        long l1Hits,
+        long l2Hits,
+        long diskHits,
+        long misses,
+        long l1Entries,
+        long diskEntries
+    ) {
+        public long lookups() {
+            return l1Hits + l2Hits + diskHits + misses;
+        }
+
+        @JsonProperty
+        public double l1HitRatio() {
+            return lookups() == 0 ? 0.0 : (double) l1Hits / lookups();
+        }
+
+        /**
+         * Share of L1 misses that Redis answered
+         */
+        @JsonProperty
+        public double l2HitRatio() {
+            long l2Lookups = l2Hits + misses;
+            return l2Lookups == 0 ? 0.0 : (double) l2Hits / l2Lookups;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Admission filter for new Redis cache entries.
+ *
+ * Lookups are counted in a per-type FrequencySketch on this node. A new key is admitted once
+ * its estimated frequency reaches min-frequency; otherwise the cluster-wide popularity score
+ * (CachePopularity) gets the final word, so demand spread across nodes still counts.
+ * One-off queries therefore never reach Redis, while their values stay in the in-process tier.
+ */
+@Component
+public class CacheAdmission {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheAdmission.class);
+
+    private final CachePopularity popularity;
+    private final CacheMetrics metrics;
+    private final AICacheProperties.AdmissionConfig config;
+    private final Map<CacheType, FrequencySketch> sketches = new EnumMap<>(CacheType.class);
+
+    public CacheAdmission(CachePopularity popularity, CacheMetrics metrics, AICacheProperties properties) {
+        this.popularity = popularity;
+        this.metrics = metrics;
+        this.config = properties.getAdmission();
+        for (CacheType type : CacheType.values()) {
+            if (config.getTypes().contains(type.name().toLowerCase())) {
+                sketches.put(type, new FrequencySketch(config.getSketchWidth()));
+            }
+        }
+    }
+
+    /**
+     * Count one lookup of a key
+     */
+    public void recordAccess(CacheType type, String cacheKey) {
+        FrequencySketch sketch = sketches.get(type);
+        if (config.isEnabled() && sketch != null) {
+            sketch.increment(cacheKey);
+        }
+    }
+
+    /**
+     * Whether a key not yet in Redis has enough demand to be stored there
+     */
+    public boolean admit(CacheType type, String cacheKey) {
+        FrequencySketch sketch = sketches.get(type);
+        if (!config.isEnabled() || sketch == null) {
+            return true;
+        }
+        boolean admitted = sketch.estimate(cacheKey) >= config.getMinFrequency();
+        if (!admitted) {
+            try {
+                admitted = popularity.score(type, cacheKey) >= config.getMinFrequency();
+            } catch (Exception e) {
+                log.debug("Popularity check failed during cache admission: {}", e.getMessage());
+            }
+        }
+        metrics.recordAdmission(type, admitted);
+        return admitted;
+    }
+}
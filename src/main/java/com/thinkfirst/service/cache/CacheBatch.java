@@ -0,0 +1,112 @@
+package com.thinkfirst.service.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keys a request is about to look up, fetched together with one MGET (one pipeline when quiz
+ * variant pools are read ahead too).
+ *
+ * <pre>
+ * try (CacheBatch.Scope batch = cacheService.batch()
+ *         .response(query, age, subject)
+ *         .quizVariant(topic, subject, 3, "BEGINNER", age, childId)
+ *         .open()) {
+ *     // regular getCached* / cache* calls on this thread
+ * }
+ * </pre>
+ *
+ * While the scope is open, lookups of batched keys are answered from the prefetch (misses
+ * included, so they cost no further round trip) and writes are buffered until close. During
+ * the dual-read period the exact-age keys are fetched in the same MGET.
+ * The scope is bound to the opening thread.
+ */
+public class CacheBatch {
+
+    private final AICacheService cacheService;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<PoolEntry> pools = new ArrayList<>();
+
+    CacheBatch(AICacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    public CacheBatch response(String query, int age, String subject) {
+        entries.add(new Entry(CacheType.RESPONSE, cacheService.generateResponseCacheKey(query, age, subject),
+                cacheService.exactResponseKey(query, age, subject)));
+        return this;
+    }
+
+    public CacheBatch quiz(String topic, String subject, int count, String difficulty, Integer age) {
+        entries.add(new Entry(CacheType.QUIZ, cacheService.generateQuizCacheKey(topic, subject, count, difficulty, age),
+                cacheService.exactQuizKey(topic, subject, count, difficulty, age)));
+        return this;
+    }
+
+    /**
+     * A quiz key served through getCachedQuizVariant: its variant pool, the child's served
+     * history and the request count are read ahead as well, and the pool writes are buffered
+     */
+    public CacheBatch quizVariant(String topic, String subject, int count, String difficulty, Integer age,
+                                  Long childId) {
+        String key = cacheService.generateQuizCacheKey(topic, subject, count, difficulty, age);
+        entries.add(new Entry(CacheType.QUIZ, key, cacheService.exactQuizKey(topic, subject, count, difficulty, age)));
+        pools.add(new PoolEntry(key, childId));
+        return this;
+    }
+
+    public CacheBatch hint(String query, String subject, int age) {
+        entries.add(new Entry(CacheType.HINT, cacheService.generateHintCacheKey(query, subject, age),
+                cacheService.exactHintKey(query, subject, age)));
+        return this;
+    }
+
+    public CacheBatch subject(String query) {
+        entries.add(new Entry(CacheType.SUBJECT, cacheService.generateSubjectCacheKey(query), null));
+        return this;
+    }
+
+    /**
+     * Fetch all keys and bind the batch to the current thread (fails open: nothing is prefetched)
+     */
+    public Scope open() {
+        return cacheService.openBatch(entries, pools);
+    }
+
+    /**
+     * A batched key and, during the dual-read period, the exact-age key it replaced (else null)
+     */
+    record Entry(CacheType type, String key, String exactKey) {}
+
+    record PoolEntry(String quizKey, Long childId) {}
+
+    /**
+     * Open batch; closing it flushes buffered writes in one pipeline
+     */
+    public static class Scope implements AutoCloseable {
+
+        private final AICacheService cacheService;
+        final Scope previous;
+        final Set<String> prefetched = new HashSet<>();
+        final Set<String> misses = new HashSet<>();
+        /** Exact-age values read for band keys that missed, by band key (null: read, not found) */
+        final Map<String, byte[]> exactAge = new HashMap<>();
+        final List<AICacheService.PendingWrite> writes = new ArrayList<>();
+        final Map<String, QuizVariantPool.Prefetch> pools = new HashMap<>();
+        final List<QuizVariantPool.PoolWrite> poolWrites = new ArrayList<>();
+
+        Scope(AICacheService cacheService, Scope previous) {
+            this.cacheService = cacheService;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            cacheService.closeBatch(this);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps each cache type within its Redis memory budget.
+ *
+ * Measures a type by walking its current-generation keys with SCAN and a pipelined size per
+ * batch: STRLEN for values and counters, a summing script for hashes (quiz variant pools and
+ * served times). Keys under an entry (<key>:pool, :requests, :served:<child>) count towards
+ * that entry. When a type is over budget, entries are unlinked together with the keys under
+ * them, least frequently used first by the decayed popularity scores of CachePopularity
+ * (untracked keys count as zero), until the type is back under trim-to of its budget.
+ */
+@Component
+public class CacheBudgetTrimmer {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheBudgetTrimmer.class);
+
+    /**
+     * Bytes of a hash's fields and values, summed in Redis so the pool never crosses the wire
+     */
+    private static final byte[] HASH_BYTES = ("local n = 0 "
+            + "for _, v in ipairs(redis.call('HGETALL', KEYS[1])) do n = n + #v end "
+            + "return n").getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheNamespace namespace;
+    private final CachePopularity popularity;
+    private final LocalCacheTier localTier;
+    private final CacheMetrics metrics;
+    private final AICacheProperties.BudgetConfig config;
+    private final int scanBatchSize;
+
+    public CacheBudgetTrimmer(
+            RedisTemplate<String, String> redisTemplate,
+            CacheNamespace namespace,
+            CachePopularity popularity,
+            LocalCacheTier localTier,
+            CacheMetrics metrics,
+            AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.namespace = namespace;
+        this.popularity = popularity;
+        this.localTier = localTier;
+        this.metrics = metrics;
+        this.config = properties.getBudget();
+        this.scanBatchSize = properties.getSweeper().getScanBatchSize();
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.cache.budget.interval-minutes:15}",
+        fixedDelayString = "${app.cache.budget.interval-minutes:15}",
+        timeUnit = TimeUnit.MINUTES
+    )
+    public void trimScheduled() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (CacheType type : CacheType.values()) {
+            trim(type);
+        }
+    }
+
+    /**
+     * Measure one cache type and trim it if it is over budget
+     * @return number of keys removed
+     */
+    public long trim(CacheType type) {
+        try {
+            List<Entry> entries = measure(type);
+            long total = entries.stream().mapToLong(Entry::bytes).sum();
+            DataSize budget = config.getMaxSize().get(type.name().toLowerCase());
+            if (budget == null || total <= budget.toBytes()) {
+                metrics.recordMemory(type, total);
+                return 0;
+            }
+
+            Map<String, Double> scores = popularity.scores(type);
+            entries.sort(Comparator.comparingDouble((Entry e) -> scores.getOrDefault(e.key(), 0.0))
+                    .thenComparing(Comparator.comparingLong(Entry::bytes).reversed()));
+
+            long target = (long) (budget.toBytes() * config.getTrimTo());
+            List<String> batch = new ArrayList<>();
+            long removed = 0;
+            for (Entry entry : entries) {
+                if (total <= target) {
+                    break;
+                }
+                batch.addAll(entry.keys());
+                total -= entry.bytes();
+                if (batch.size() >= scanBatchSize) {
+                    removed += unlink(batch);
+                }
+            }
+            removed += unlink(batch);
+            metrics.recordMemory(type, total);
+            metrics.recordTrimmed(type, removed);
+            log.info("Trimmed {} {} entries to stay within the {} budget", removed, type, budget);
+            return removed;
+        } catch (Exception e) {
+            log.warn("Cache budget check of {} failed (Redis unavailable?): {}", type, e.getMessage());
+            return 0;
+        }
+    }
+
+    private List<Entry> measure(CacheType type) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(type.getPrefix() + "*")
+                .count(scanBatchSize)
+                .build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            List<String> batch = new ArrayList<>();
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (namespace.isCurrent(type, key)) {
+                    batch.add(key);
+                }
+                if (batch.size() >= scanBatchSize) {
+                    addLengths(type, batch, entries);
+                }
+            }
+            addLengths(type, batch, entries);
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    private void addLengths(CacheType type, List<String> batch, Map<String, Entry> entries) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Object> lengths = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : batch) {
+                byte[] raw = key.getBytes(StandardCharsets.UTF_8);
+                if (isHashKey(key)) {
+                    connection.scriptingCommands().eval(HASH_BYTES, ReturnType.INTEGER, 1, raw);
+                } else {
+                    connection.stringCommands().strLen(raw);
+                }
+            }
+            return null;
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            Object length = i < lengths.size() ? lengths.get(i) : null;
+            if (length instanceof Long bytes && bytes > 0) {
+                String key = batch.get(i);
+                entries.computeIfAbsent(entryKey(type, key), Entry::new).add(key, bytes + key.length());
+            }
+        }
+        batch.clear();
+    }
+
+    private static boolean isHashKey(String key) {
+        return key.endsWith(":pool") || key.contains(":served:");
+    }
+
+    /**
+     * The entry a key belongs to: itself for a value, the quiz key for the keys under it
+     */
+    private static String entryKey(CacheType type, String key) {
+        int start = type.getPrefix().length();
+        if (key.startsWith("v", start)) {
+            start = key.indexOf(':', start) + 1;
+        }
+        int end = key.indexOf(':', start);
+        return end < 0 ? key : key.substring(0, end);
+    }
+
+    private long unlink(List<String> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        batch.forEach(localTier::invalidate);
+        Long count = redisTemplate.unlink(List.copyOf(batch));
+        batch.clear();
+        return count != null ? count : 0;
+    }
+
+    /**
+     * An entry and the keys under it, trimmed together
+     */
+    private static final class Entry {
+        private final String key;
+        private final List<String> keys = new ArrayList<>();
+        private long bytes;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        void add(String redisKey, long size) {
+            keys.add(redisKey);
+            bytes += size;
+        }
+
+        String key() {
+            return key;
+        }
+
+        List<String> keys() {
+            return keys;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+    }
+}
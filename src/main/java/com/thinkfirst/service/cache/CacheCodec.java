@@ -0,0 +1,34 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.dto.QuizGenerationResult;
+import com.thinkfirst.model.Question;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes cached AI content for Redis.
+ * Decoders must accept every format previously written so entries survive codec changes.
+ */
+public interface CacheCodec {
+
+    byte[] encodeText(String value) throws IOException;
+
+    String decodeText(byte[] bytes) throws IOException;
+
+    byte[] encodeQuestions(List<Question> questions) throws IOException;
+
+    List<Question> decodeQuestions(byte[] bytes) throws IOException;
+
+    /**
+     * Detected subject together with its questions (composite quiz-with-subject entries)
+     */
+    byte[] encodeQuizWithSubject(String subject, List<Question> questions) throws IOException;
+
+    QuizGenerationResult decodeQuizWithSubject(byte[] bytes) throws IOException;
+
+    /**
+     * When the value was encoded (epoch millis), or 0 if the format does not record it
+     */
+    long writtenAt(byte[] bytes);
+}
@@ -0,0 +1,66 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives cache invalidations published by any node over Redis pub/sub,
+ * re-reads the namespace generation and drops the matching entries from this node's L1 tier
+ */
+@Component
+public class CacheInvalidationListener implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationListener.class);
+
+    private final LocalCacheTier localTier;
+    private final CacheNamespace namespace;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final AICacheProperties properties;
+
+    public CacheInvalidationListener(
+            LocalCacheTier localTier,
+            CacheNamespace namespace,
+            RedisMessageListenerContainer listenerContainer,
+            AICacheProperties properties) {
+        this.localTier = localTier;
+        this.namespace = namespace;
+        this.listenerContainer = listenerContainer;
+        this.properties = properties;
+    }
+
+    /**
+     * Subscribe after startup; the container keeps retrying in the background if Redis is down
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        String channel = properties.getLocal().getInvalidationChannel();
+        try {
+            listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+            log.info("Subscribed to cache invalidation channel: {}", channel);
+        } catch (Exception e) {
+            log.warn("Could not subscribe to cache invalidation channel (Redis unavailable?): {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            CacheType type = CacheType.valueOf(body);
+            namespace.refresh(type);
+            localTier.invalidateAll(type);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unknown cache invalidation message: {}", body);
+        }
+    }
+}
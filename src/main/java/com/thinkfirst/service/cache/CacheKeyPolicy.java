@@ -0,0 +1,58 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.config.ContentProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Age (and difficulty) part of cache keys, per the configured key granularity of each type.
+ *
+ * Exact keys keep the original format ({@code <difficulty>:<age>} for quizzes, {@code <age>}
+ * otherwise); banded keys use {@code band:<group>} instead of the age. Ages outside every
+ * configured group fall back to exact keys.
+ */
+@Component
+public class CacheKeyPolicy {
+
+    private final ContentProperties contentProperties;
+    private final AICacheProperties.KeyGranularityConfig config;
+
+    public CacheKeyPolicy(ContentProperties contentProperties, AICacheProperties properties) {
+        this.contentProperties = contentProperties;
+        this.config = properties.getKeyGranularity();
+    }
+
+    public AICacheProperties.KeyGranularity granularity(CacheType type) {
+        return config.getTypes().getOrDefault(type.name().toLowerCase(), AICacheProperties.KeyGranularity.EXACT);
+    }
+
+    /**
+     * Key segment for an age and optional difficulty under the given granularity
+     */
+    public String segment(AICacheProperties.KeyGranularity granularity, String difficulty, Integer age) {
+        ContentProperties.AgeGroup group = granularity != AICacheProperties.KeyGranularity.EXACT
+                ? contentProperties.ageGroupFor(age) : null;
+        String ageSegment = group != null ? "band:" + group.getName().toLowerCase().replaceAll("\\s+", "_") : String.valueOf(age);
+        boolean withDifficulty = difficulty != null
+                && (group == null || granularity == AICacheProperties.KeyGranularity.BAND_DIFFICULTY);
+        return withDifficulty ? difficulty.toLowerCase() + ":" + ageSegment : ageSegment;
+    }
+
+    /**
+     * Age providers should be prompted with: the band's representative age for banded types
+     */
+    public Integer promptAge(CacheType type, Integer age) {
+        if (granularity(type) == AICacheProperties.KeyGranularity.EXACT) {
+            return age;
+        }
+        ContentProperties.AgeGroup group = contentProperties.ageGroupFor(age);
+        return group != null ? group.promptAge() : age;
+    }
+
+    /**
+     * Whether lookups should fall back to the exact-age key of a banded entry
+     */
+    public boolean isDualRead(CacheType type) {
+        return config.isDualRead() && granularity(type) != AICacheProperties.KeyGranularity.EXACT;
+    }
+}
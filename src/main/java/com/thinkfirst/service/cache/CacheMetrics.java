@@ -0,0 +1,316 @@
+package com.thinkfirst.service.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer instrumentation for AICacheService.
+ * Published under ai.cache.* (see /actuator/metrics) and summarized in /api/ai-provider/cache/stats.
+ */
+@Component
+public class CacheMetrics {
+
+    public static final String TIER_L1 = "l1";
+    public static final String TIER_L2 = "l2";
+    public static final String TIER_DISK = "disk";
+    public static final String TIER_SEMANTIC = "semantic";
+
+    private final MeterRegistry registry;
+    private final Map<CacheType, TypeMeters> meters = new EnumMap<>(CacheType.class);
+    private final Map<String, Counter> callsSaved = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failuresAvoided = new ConcurrentHashMap<>();
+    private final Map<String, Timer> batchLatency = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> batchKeys = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (CacheType type : CacheType.values()) {
+            meters.put(type, new TypeMeters(type, registry));
+        }
+    }
+
+    public void recordHit(CacheType type, String tier) {
+        hitCounter(meters.get(type), tier).increment();
+    }
+
+    /**
+     * Exact-key miss answered by the near-duplicate tier (counted on top of the miss)
+     */
+    public void recordSemanticHit(CacheType type) {
+        meters.get(type).semanticHits.increment();
+    }
+
+    public void recordMiss(CacheType type) {
+        meters.get(type).misses.increment();
+    }
+
+    public void recordError(CacheType type) {
+        meters.get(type).errors.increment();
+    }
+
+    /**
+     * Count a stale-while-revalidate refresh by outcome (started, succeeded, failed, deduplicated, rejected)
+     */
+    public void recordRefresh(CacheType type, String outcome) {
+        String tag = type.name().toLowerCase();
+        meters.get(type).refreshes.computeIfAbsent(outcome, o -> Counter.builder("ai.cache.refreshes")
+                .description("Background refreshes of stale cache entries")
+                .tag("type", tag)
+                .tag("outcome", o)
+                .register(registry))
+                .increment();
+    }
+
+    public void recordRedisLatency(CacheType type, long nanos) {
+        meters.get(type).redisLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSerialization(CacheType type, long nanos) {
+        meters.get(type).serialization.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count an admission decision for a new Redis entry
+     */
+    public void recordAdmission(CacheType type, boolean admitted) {
+        (admitted ? meters.get(type).admitted : meters.get(type).rejected).increment();
+    }
+
+    /**
+     * Entries removed by the memory budget trimmer
+     */
+    public void recordTrimmed(CacheType type, long entries) {
+        meters.get(type).trimmed.increment(entries);
+    }
+
+    /**
+     * Redis value bytes of a type as last measured by the budget trimmer
+     */
+    public void recordMemory(CacheType type, long bytes) {
+        meters.get(type).memoryBytes.set(bytes);
+    }
+
+    /**
+     * Record one batched round trip (an MGET or a write pipeline) and how many keys it carried
+     */
+    public void recordBatch(String operation, int keys, long nanos) {
+        batchLatency.computeIfAbsent(operation, op -> Timer.builder("ai.cache.redis.batch.latency")
+                .description("Redis round trip for batched cache reads and writes")
+                .tag("operation", op)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        batchKeys.computeIfAbsent(operation, op -> DistributionSummary.builder("ai.cache.redis.batch.keys")
+                .description("Keys per batched cache round trip")
+                .tag("operation", op)
+                .register(registry))
+                .record(keys);
+    }
+
+    public void recordValueSize(CacheType type, long bytes) {
+        meters.get(type).valueSize.record(bytes);
+    }
+
+    /**
+     * Count a provider call avoided because the cache answered (per AIProviderService operation)
+     */
+    public void recordCallSaved(String operation) {
+        callsSaved.computeIfAbsent(operation, op -> Counter.builder("ai.cache.calls.saved")
+                .description("AI provider calls avoided by the cache")
+                .tag("operation", op)
+                .register(registry))
+                .increment();
+    }
+
+    /**
+     * Count a provider call skipped because the same input recently failed on every provider
+     */
+    public void recordFailureAvoided(String operation, int providerCalls) {
+        failuresAvoided.computeIfAbsent(operation, op -> Counter.builder("ai.provider.calls.avoided")
+                .description("AI provider calls skipped because the input recently failed on every provider")
+                .tag("operation", op)
+                .register(registry))
+                .increment(providerCalls);
+    }
+
+    public void recordFailureCached(String operation) {
+        Counter.builder("ai.cache.negative.stored")
+                .description("Inputs remembered as failing on every provider")
+                .tag("operation", operation)
+                .register(registry)
+                .increment();
+    }
+
+    public Map<String, Long> failuresAvoided() {
+        Map<String, Long> result = new TreeMap<>();
+        failuresAvoided.forEach((op, counter) -> result.put(op, (long) counter.count()));
+        return result;
+    }
+
+    public long hits(CacheType type, String tier) {
+        return (long) hitCounter(meters.get(type), tier).count();
+    }
+
+    private static Counter hitCounter(TypeMeters m, String tier) {
+        return switch (tier) {
+            case TIER_L1 -> m.l1Hits;
+            case TIER_DISK -> m.diskHits;
+            default -> m.l2Hits;
+        };
+    }
+
+    public long misses(CacheType type) {
+        return (long) meters.get(type).misses.count();
+    }
+
+    public TypeSnapshot snapshot(CacheType type) {
+        TypeMeters m = meters.get(type);
+        HistogramSnapshot latency = m.redisLatency.takeSnapshot();
+        HistogramSnapshot sizes = m.valueSize.takeSnapshot();
+        return new TypeSnapshot(
+                (long) m.l1Hits.count(),
+                (long) m.l2Hits.count(),
+                (long) m.diskHits.count(),
+                (long) m.semanticHits.count(),
+                (long) m.misses.count(),
+                (long) m.errors.count(),
+                refreshes(m, "succeeded"),
+                refreshes(m, "failed"),
+                percentile(latency, 0.5, TimeUnit.MILLISECONDS),
+                percentile(latency, 0.99, TimeUnit.MILLISECONDS),
+                m.serialization.mean(TimeUnit.MILLISECONDS),
+                sizes.mean(),
+                percentile(sizes, 0.99, null),
+                (long) m.admitted.count(),
+                (long) m.rejected.count(),
+                (long) m.trimmed.count(),
+                m.memoryBytes.get()
+        );
+    }
+
+    public Map<String, Long> callsSaved() {
+        Map<String, Long> result = new TreeMap<>();
+        callsSaved.forEach((op, counter) -> result.put(op, (long) counter.count()));
+        return result;
+    }
+
+    private static long refreshes(TypeMeters m, String outcome) {
+        Counter counter = m.refreshes.get(outcome);
+        return counter != null ? (long) counter.count() : 0;
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double p, TimeUnit unit) {
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            if (v.percentile() == p) {
+                return unit != null ? v.value(unit) : v.value();
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Per cache type metrics summary
+     */
+    public record TypeSnapshot(
+        long l1Hits,
+        long l2Hits,
+        long diskHits,
+        long semanticHits,
+        long misses,
+        long errors,
+        long refreshes,
+        long failedRefreshes,
+        double redisLatencyP50Ms,
+        double redisLatencyP99Ms,
+        double serializationMeanMs,
+        double valueSizeMeanBytes,
+        double valueSizeP99Bytes,
+        long admitted,
+        long rejected,
+        long trimmed,
+        long memoryBytes
+    ) {
+        @JsonProperty
+        public double hitRatio() {
+            long lookups = l1Hits + l2Hits + diskHits + misses;
+            return lookups == 0 ? 0.0 : (double) (l1Hits + l2Hits + diskHits + semanticHits) / lookups;
+        }
+
+        /**
+         * Extra hit rate contributed by near-duplicate matches
+         */
+        @JsonProperty
+        public double semanticHitRatio() {
+            long lookups = l1Hits + l2Hits + diskHits + misses;
+            return lookups == 0 ? 0.0 : (double) semanticHits / lookups;
+        }
+    }
+
+    private static final class TypeMeters {
+        final Counter l1Hits;
+        final Counter l2Hits;
+        final Counter diskHits;
+        final Counter semanticHits;
+        final Counter misses;
+        final Counter errors;
+        final Timer redisLatency;
+        final Timer serialization;
+        final DistributionSummary valueSize;
+        final Counter admitted;
+        final Counter rejected;
+        final Counter trimmed;
+        final AtomicLong memoryBytes = new AtomicLong();
+        final Map<String, Counter> refreshes = new ConcurrentHashMap<>();
+
+        TypeMeters(CacheType type, MeterRegistry registry) {
+            String tag = type.name().toLowerCase();
+            l1Hits = Counter.builder("ai.cache.hits").tag("type", tag).tag("tier", TIER_L1).register(registry);
+            l2Hits = Counter.builder("ai.cache.hits").tag("type", tag).tag("tier", TIER_L2).register(registry);
+            diskHits = Counter.builder("ai.cache.hits").tag("type", tag).tag("tier", TIER_DISK).register(registry);
+            semanticHits = Counter.builder("ai.cache.hits").tag("type", tag).tag("tier", TIER_SEMANTIC).register(registry);
+            misses = Counter.builder("ai.cache.misses").tag("type", tag).register(registry);
+            errors = Counter.builder("ai.cache.errors").tag("type", tag).register(registry);
+            redisLatency = Timer.builder("ai.cache.redis.latency")
+                    .description("Redis round trip for cache reads and writes")
+                    .tag("type", tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            serialization = Timer.builder("ai.cache.serialization")
+                    .description("Time spent encoding and decoding cached values")
+                    .tag("type", tag)
+                    .register(registry);
+            valueSize = DistributionSummary.builder("ai.cache.value.size")
+                    .baseUnit("bytes")
+                    .tag("type", tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            admitted = Counter.builder("ai.cache.admission").tag("type", tag).tag("outcome", "admitted").register(registry);
+            rejected = Counter.builder("ai.cache.admission").tag("type", tag).tag("outcome", "rejected").register(registry);
+            trimmed = Counter.builder("ai.cache.trimmed")
+                    .description("Entries removed to keep a type within its memory budget")
+                    .tag("type", tag)
+                    .register(registry);
+            Gauge.builder("ai.cache.memory", memoryBytes, AtomicLong::get)
+                    .description("Redis value bytes per cache type (measured by the budget trimmer)")
+                    .baseUnit("bytes")
+                    .tag("type", tag)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generation-stamped key namespaces for AICacheService.
+ *
+ * Each cache type has a generation counter in Redis. Invalidating a type is a single INCR:
+ * lookups move to the new generation immediately and old keys are left to expire
+ * (or be reclaimed by CacheSweeper). Generation 0 uses the original un-versioned key format
+ * so entries written before namespacing stay readable.
+ *
+ * Entry counts are kept incrementally in per-day buckets that expire with the type TTL,
+ * so statistics never need KEYS or SCAN.
+ */
+@Component
+public class CacheNamespace {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheNamespace.class);
+
+    private static final String GENERATION_PREFIX = "cache:gen:";
+    private static final String COUNT_PREFIX = "cache:count:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Duration refreshInterval;
+    private final Map<CacheType, Generation> generations = new ConcurrentHashMap<>();
+
+    public CacheNamespace(RedisTemplate<String, String> redisTemplate, AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.refreshInterval = Duration.ofSeconds(properties.getNamespace().getGenerationRefreshSeconds());
+    }
+
+    /**
+     * Full Redis key for a hashed entry in the current generation of a type
+     */
+    public String key(CacheType type, String hash) {
+        long generation = currentGeneration(type);
+        return generation == 0
+                ? type.getPrefix() + hash
+                : type.getPrefix() + "v" + generation + ":" + hash;
+    }
+
+    /**
+     * Whether a Redis key belongs to the current generation of its type
+     */
+    public boolean isCurrent(CacheType type, String redisKey) {
+        return generationOf(type, redisKey) == currentGeneration(type);
+    }
+
+    /**
+     * Whether a Redis key belongs to a generation before the current one of its type. A key of a
+     * later generation is live: this node just has not seen the bump yet.
+     */
+    public boolean isOlder(CacheType type, String redisKey) {
+        long generation = generationOf(type, redisKey);
+        return generation >= 0 && generation < currentGeneration(type);
+    }
+
+    /**
+     * Generation a key was written in: 0 for legacy keys (a bare hex/int hash), -1 if unrecognized
+     */
+    private static long generationOf(CacheType type, String redisKey) {
+        String rest = redisKey.substring(type.getPrefix().length());
+        if (!rest.startsWith("v")) {
+            return 0;
+        }
+        int end = rest.indexOf(':');
+        try {
+            return Long.parseLong(rest.substring(1, end > 0 ? end : rest.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Start a new generation for a type - O(1) regardless of how many entries exist
+     */
+    public long bump(CacheType type) {
+        Long generation = redisTemplate.opsForValue().increment(GENERATION_PREFIX + type.name().toLowerCase());
+        long value = generation != null ? generation : 0;
+        generations.put(type, new Generation(value, System.nanoTime()));
+        log.info("Cache namespace {} moved to generation {}", type, value);
+        return value;
+    }
+
+    /**
+     * Forget the locally known generation so the next lookup re-reads it (used on pub/sub invalidation)
+     */
+    public void refresh(CacheType type) {
+        generations.remove(type);
+    }
+
+    public long currentGeneration(CacheType type) {
+        Generation cached = generations.get(type);
+        if (cached != null && System.nanoTime() - cached.fetchedAt() < refreshInterval.toNanos()) {
+            return cached.value();
+        }
+        long value = cached != null ? cached.value() : 0;
+        try {
+            String stored = redisTemplate.opsForValue().get(GENERATION_PREFIX + type.name().toLowerCase());
+            value = stored != null ? Long.parseLong(stored) : 0;
+        } catch (Exception e) {
+            log.debug("Could not read cache generation for {}, keeping {}: {}", type, value, e.getMessage());
+        }
+        generations.put(type, new Generation(value, System.nanoTime()));
+        return value;
+    }
+
+    /**
+     * Count a newly created entry in today's bucket for the current generation
+     */
+    public void recordNewEntry(CacheType type, Duration ttl) {
+        String bucket = countBucketKey(type, currentGeneration(type), LocalDate.now());
+        Long count = redisTemplate.opsForValue().increment(bucket);
+        if (count != null && count == 1) {
+            redisTemplate.expire(bucket, ttl.plusDays(1));
+        }
+    }
+
+    /**
+     * Approximate number of live entries: sum of the day buckets still inside the TTL window
+     * @param ttl the TTL entries of the type are written with (the configured hard TTL)
+     */
+    public long approximateCount(CacheType type, Duration ttl) {
+        long generation = currentGeneration(type);
+        LocalDate today = LocalDate.now();
+        long days = Math.max(1, ttl.toDays());
+        List<String> bucketKeys = new ArrayList<>();
+        for (long i = 0; i < days; i++) {
+            bucketKeys.add(countBucketKey(type, generation, today.minusDays(i)));
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(bucketKeys);
+        if (values == null) {
+            return 0;
+        }
+        return values.stream()
+                .filter(v -> v != null)
+                .mapToLong(Long::parseLong)
+                .sum();
+    }
+
+    private String countBucketKey(CacheType type, long generation, LocalDate day) {
+        return COUNT_PREFIX + type.name().toLowerCase() + ":v" + generation + ":" + day.toEpochDay();
+    }
+
+    private record Generation(long value, long fetchedAt) {
+    }
+}
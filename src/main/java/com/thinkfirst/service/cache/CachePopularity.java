@@ -0,0 +1,209 @@
+package com.thinkfirst.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.AICacheProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Popularity of cache keys as decayed counts in Redis sorted sets (cache:popular:<type>).
+ *
+ * Reads and writes in AICacheService only bump an in-process counter; counts are flushed
+ * to Redis in one pipeline every few seconds. A scheduled decay step multiplies every score
+ * (ZUNIONSTORE with a weight) and trims the set to the most popular keys.
+ * The inputs needed to regenerate an entry are kept in cache:popular:<type>:meta.
+ */
+@Component
+public class CachePopularity {
+
+    private static final Logger log = LoggerFactory.getLogger(CachePopularity.class);
+
+    private static final String KEY_PREFIX = "cache:popular:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final AICacheProperties.WarmupConfig config;
+    private final Map<CacheType, Map<String, LongAdder>> pending = new EnumMap<>(CacheType.class);
+
+    public CachePopularity(RedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper,
+                           AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.config = properties.getWarmup();
+        for (CacheType type : CacheType.values()) {
+            pending.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Count one use (hit, miss or write) of a key
+     */
+    public void record(CacheType type, String cacheKey) {
+        if (config.isEnabled()) {
+            pending.get(type).computeIfAbsent(cacheKey, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Remember how to regenerate a key (written with the entry, so once per provider call)
+     */
+    public void recordSource(CacheType type, String cacheKey, EntrySource source) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().put(metaKey(type), cacheKey, objectMapper.writeValueAsString(source));
+        } catch (Exception e) {
+            log.warn("Failed to record cache entry source: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Most popular keys of a type, hottest first
+     */
+    public List<String> top(CacheType type, int n) {
+        Set<String> members = redisTemplate.opsForZSet().reverseRange(popularKey(type), 0, n - 1L);
+        return members != null ? new ArrayList<>(members) : Collections.emptyList();
+    }
+
+    /**
+     * Decayed count of one key (0 when untracked)
+     */
+    public double score(CacheType type, String cacheKey) {
+        Double score = redisTemplate.opsForZSet().score(popularKey(type), cacheKey);
+        return score != null ? score : 0;
+    }
+
+    /**
+     * Decayed counts of every tracked key of a type
+     */
+    public Map<String, Double> scores(CacheType type) {
+        Set<ZSetOperations.TypedTuple<String>> tuples =
+                redisTemplate.opsForZSet().rangeWithScores(popularKey(type), 0, -1);
+        Map<String, Double> scores = new HashMap<>();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                scores.put(tuple.getValue(), tuple.getScore() != null ? tuple.getScore() : 0);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Regeneration inputs for keys (null where unknown)
+     */
+    public List<EntrySource> sources(CacheType type, List<String> cacheKeys) {
+        List<Object> raw = redisTemplate.opsForHash().multiGet(metaKey(type), new ArrayList<>(cacheKeys));
+        List<EntrySource> sources = new ArrayList<>(cacheKeys.size());
+        for (Object value : raw) {
+            EntrySource source = null;
+            if (value != null) {
+                try {
+                    source = objectMapper.readValue(value.toString(), EntrySource.class);
+                } catch (Exception e) {
+                    log.debug("Unreadable cache entry source: {}", e.getMessage());
+                }
+            }
+            sources.add(source);
+        }
+        return sources;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.warmup.flush-interval-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Map<byte[], Map<byte[], Long>> batch = new LinkedHashMap<>();
+        for (Map.Entry<CacheType, Map<String, LongAdder>> entry : pending.entrySet()) {
+            Map<String, LongAdder> counts = entry.getValue();
+            if (counts.isEmpty()) {
+                continue;
+            }
+            Map<byte[], Long> increments = new LinkedHashMap<>();
+            for (String cacheKey : new ArrayList<>(counts.keySet())) {
+                LongAdder adder = counts.remove(cacheKey);
+                if (adder != null) {
+                    increments.put(cacheKey.getBytes(StandardCharsets.UTF_8), adder.sum());
+                }
+            }
+            batch.put(popularKey(entry.getKey()).getBytes(StandardCharsets.UTF_8), increments);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batch.forEach((setKey, increments) -> increments.forEach((member, count) ->
+                        connection.zSetCommands().zIncrBy(setKey, count, member)));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to flush cache popularity counts: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Decay all scores and keep only the most popular keys (and their regeneration inputs)
+     */
+    @Scheduled(initialDelayString = "${app.cache.warmup.decay-interval-minutes:60}",
+            fixedDelayString = "${app.cache.warmup.decay-interval-minutes:60}", timeUnit = TimeUnit.MINUTES)
+    public void decay() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (CacheType type : CacheType.values()) {
+            try {
+                String key = popularKey(type);
+                redisTemplate.opsForZSet().unionAndStore(key, Collections.emptyList(), key,
+                        Aggregate.SUM, Weights.of(config.getDecayFactor()));
+                Set<String> dropped = redisTemplate.opsForZSet().range(key, 0, -config.getMaxTrackedKeys() - 1L);
+                if (dropped != null && !dropped.isEmpty()) {
+                    redisTemplate.opsForZSet().remove(key, dropped.toArray());
+                    redisTemplate.opsForHash().delete(metaKey(type), dropped.toArray());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to decay cache popularity for {}: {}", type, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static String popularKey(CacheType type) {
+        return KEY_PREFIX + type.name().toLowerCase();
+    }
+
+    private static String metaKey(CacheType type) {
+        return popularKey(type) + ":meta";
+    }
+
+    /**
+     * Inputs a cache entry was generated from
+     */
+    public record EntrySource(String query, String subject, Integer age, Integer count, String difficulty) {}
+}
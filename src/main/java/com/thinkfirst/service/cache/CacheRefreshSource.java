@@ -0,0 +1,18 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.model.Question;
+
+import java.util.List;
+
+/**
+ * Regenerates cached content without consulting the cache (implemented by AIProviderService).
+ * Used by AICacheService to refresh stale entries and top up quiz variant pools in the background.
+ */
+public interface CacheRefreshSource {
+
+    String regenerateResponse(String query, int age, String subject);
+
+    String regenerateHint(String query, String subject, int age);
+
+    List<Question> regenerateQuestions(String query, String subject, int count, String difficulty, Integer age);
+}
@@ -0,0 +1,158 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.service.OverloadGuard;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Soft/hard TTL policy and background refreshes for stale-while-revalidate.
+ *
+ * A refresh is deduplicated twice: per node (in-flight set) and across nodes
+ * (SET NX on cache:refresh:<key> for lockTtl). While the overload guard is above NORMAL
+ * refreshes (and with them warming and pool top-ups) are shed, so background work never
+ * competes with requests for providers. Outcomes are counted as ai.cache.refreshes{type,outcome}.
+ */
+@Component
+public class CacheRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheRefresher.class);
+
+    private static final String LOCK_PREFIX = "cache:refresh:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheMetrics metrics;
+    private final AICacheProperties.RefreshConfig config;
+    private final OverloadGuard overloadGuard;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    public CacheRefresher(RedisTemplate<String, String> redisTemplate, CacheMetrics metrics, AICacheProperties properties,
+                          OverloadGuard overloadGuard) {
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.config = properties.getRefresh();
+        this.overloadGuard = overloadGuard;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                config.getWorkerThreads(), config.getWorkerThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Time a value is kept in Redis
+     */
+    public Duration hardTtl(CacheType type) {
+        AICacheProperties.TtlConfig ttl = ttlConfig(type);
+        return ttl != null && ttl.getHard() != null ? ttl.getHard() : type.getTtl();
+    }
+
+    /**
+     * Time after which a value is served stale and refreshed, or null if the type never goes stale
+     */
+    public Duration softTtl(CacheType type) {
+        AICacheProperties.TtlConfig ttl = ttlConfig(type);
+        return config.isEnabled() && ttl != null ? ttl.getSoft() : null;
+    }
+
+    public boolean isStale(CacheType type, long writtenAtMillis) {
+        Duration soft = softTtl(type);
+        return soft != null && writtenAtMillis > 0
+                && System.currentTimeMillis() - writtenAtMillis >= soft.toMillis();
+    }
+
+    /**
+     * How long the in-process tier may keep a value written at the given time:
+     * until it goes stale, so staleness is always noticed in Redis
+     */
+    public Duration localTtl(CacheType type, long writtenAtMillis) {
+        Duration soft = softTtl(type);
+        if (soft == null || writtenAtMillis <= 0) {
+            return hardTtl(type);
+        }
+        long freshMillis = writtenAtMillis + soft.toMillis() - System.currentTimeMillis();
+        return freshMillis > 0 ? Duration.ofMillis(freshMillis) : config.getLockTtl();
+    }
+
+    /**
+     * Regenerate a stale value in the background unless another request or node already is
+     */
+    public <T> void refreshAsync(CacheType type, String cacheKey, Supplier<T> loader, Consumer<T> writer) {
+        if (degraded()) {
+            metrics.recordRefresh(type, "shed");
+            return;
+        }
+        if (!inFlight.add(cacheKey)) {
+            metrics.recordRefresh(type, "deduplicated");
+            return;
+        }
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_PREFIX + cacheKey, "1", config.getLockTtl());
+            if (!Boolean.TRUE.equals(acquired)) {
+                inFlight.remove(cacheKey);
+                metrics.recordRefresh(type, "deduplicated");
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    // The guard may have degraded while this sat in the queue
+                    if (degraded()) {
+                        metrics.recordRefresh(type, "shed");
+                        return;
+                    }
+                    T value = loader.get();
+                    if (value != null) {
+                        writer.accept(value);
+                    }
+                    metrics.recordRefresh(type, "succeeded");
+                    log.info("Refreshed stale cache entry: {}", cacheKey);
+                } catch (Exception e) {
+                    metrics.recordRefresh(type, "failed");
+                    log.warn("Failed to refresh stale cache entry {}: {}", cacheKey, e.getMessage());
+                } finally {
+                    inFlight.remove(cacheKey);
+                }
+            });
+            metrics.recordRefresh(type, "started");
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(cacheKey);
+            metrics.recordRefresh(type, "rejected");
+            log.debug("Refresh queue full, serving stale entry without refresh: {}", cacheKey);
+        } catch (Exception e) {
+            inFlight.remove(cacheKey);
+            log.warn("Failed to schedule cache refresh for {}: {}", cacheKey, e.getMessage());
+        }
+    }
+
+    private boolean degraded() {
+        return overloadGuard.currentLevel() != OverloadGuard.Mode.NORMAL;
+    }
+
+    private AICacheProperties.TtlConfig ttlConfig(CacheType type) {
+        return config.getTtl().get(type.name().toLowerCase());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
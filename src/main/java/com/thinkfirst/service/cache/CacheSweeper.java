@@ -0,0 +1,91 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background reclaimer for cache entries left behind by namespace invalidation.
+ * Walks each cache prefix with SCAN (never KEYS) and unlinks keys from older generations
+ * in small batches, so Redis is never blocked for long. Keys of a newer generation than this
+ * node knows (another node bumped it) are left alone.
+ */
+@Component
+public class CacheSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheSweeper.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheNamespace namespace;
+    private final AICacheProperties.SweeperConfig config;
+
+    public CacheSweeper(RedisTemplate<String, String> redisTemplate, CacheNamespace namespace, AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.namespace = namespace;
+        this.config = properties.getSweeper();
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.cache.sweeper.interval-minutes:60}",
+        fixedDelayString = "${app.cache.sweeper.interval-minutes:60}",
+        timeUnit = TimeUnit.MINUTES
+    )
+    public void sweepScheduled() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (CacheType type : CacheType.values()) {
+            sweep(type);
+        }
+    }
+
+    /**
+     * Remove stale-generation keys of one cache type
+     * @return number of keys reclaimed
+     */
+    public long sweep(CacheType type) {
+        long removed = 0;
+        namespace.refresh(type); // compare against the generation in Redis, not a cached one
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(type.getPrefix() + "*")
+                .count(config.getScanBatchSize())
+                .build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            List<String> batch = new ArrayList<>();
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (namespace.isOlder(type, key)) {
+                    batch.add(key);
+                }
+                if (batch.size() >= config.getScanBatchSize()) {
+                    removed += unlink(batch);
+                }
+            }
+            removed += unlink(batch);
+            if (removed > 0) {
+                log.info("Cache sweeper reclaimed {} stale {} keys", removed, type);
+            }
+        } catch (Exception e) {
+            log.warn("Cache sweep of {} failed (Redis unavailable?): {}", type, e.getMessage());
+        }
+        return removed;
+    }
+
+    private long unlink(List<String> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Long count = redisTemplate.unlink(batch);
+        batch.clear();
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,30 @@
+package com.thinkfirst.service.cache;
+
+import java.time.Duration;
+
+/**
+ * Kinds of AI content held by AICacheService, with their Redis key prefix and TTL
+ */
+public enum CacheType {
+
+    QUIZ("quiz:", Duration.ofDays(30)),         // Quizzes rarely change
+    RESPONSE("response:", Duration.ofDays(7)),  // Responses can be reused
+    HINT("hint:", Duration.ofDays(7)),
+    SUBJECT("subject:", Duration.ofDays(30));   // Subject classification is stable
+
+    private final String prefix;
+    private final Duration ttl;
+
+    CacheType(String prefix, Duration ttl) {
+        this.prefix = prefix;
+        this.ttl = ttl;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+}
@@ -0,0 +1,129 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Warms the cache from popularity data (CachePopularity) after startup or on demand.
+ *
+ * For the top-N quizzes, responses and hints it preloads present values into the in-process
+ * tier and regenerates entries that are missing (e.g. after a Redis failover), stale, or about
+ * to expire, so the first wave of classroom traffic does not stampede the AI providers.
+ * Regeneration goes through CacheRefresher, so concurrent warmups on several nodes do not
+ * duplicate provider calls.
+ */
+@Component
+public class CacheWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final List<CacheType> WARMED_TYPES = List.of(CacheType.QUIZ, CacheType.RESPONSE, CacheType.HINT);
+
+    private final CachePopularity popularity;
+    private final RedisTemplate<String, byte[]> valueTemplate;
+    private final CacheCodec codec;
+    private final LocalCacheTier localTier;
+    private final CacheNamespace namespace;
+    private final CacheRefresher refresher;
+    private final AICacheService cacheService;
+    private final AICacheProperties.WarmupConfig config;
+
+    public CacheWarmer(
+            CachePopularity popularity,
+            RedisTemplate<String, byte[]> valueTemplate,
+            CacheCodec codec,
+            LocalCacheTier localTier,
+            CacheNamespace namespace,
+            CacheRefresher refresher,
+            AICacheService cacheService,
+            AICacheProperties properties) {
+        this.popularity = popularity;
+        this.valueTemplate = valueTemplate;
+        this.codec = codec;
+        this.localTier = localTier;
+        this.namespace = namespace;
+        this.refresher = refresher;
+        this.cacheService = cacheService;
+        this.config = properties.getWarmup();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmupOnStartup() {
+        if (config.isEnabled() && config.isOnStartup()) {
+            CompletableFuture.runAsync(this::warmup);
+        }
+    }
+
+    /**
+     * Preload and regenerate the hottest entries of every warmed cache type
+     */
+    public Map<CacheType, WarmupResult> warmup() {
+        Map<CacheType, WarmupResult> results = new EnumMap<>(CacheType.class);
+        for (CacheType type : WARMED_TYPES) {
+            try {
+                results.put(type, warmup(type));
+            } catch (Exception e) {
+                log.warn("Cache warmup failed for {}: {}", type, e.getMessage());
+                results.put(type, new WarmupResult(0, 0, 0));
+            }
+        }
+        log.info("Cache warmup finished: {}", results);
+        return results;
+    }
+
+    private WarmupResult warmup(CacheType type) throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (String key : popularity.top(type, config.getTopN())) {
+            if (namespace.isCurrent(type, key)) {
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return new WarmupResult(0, 0, 0);
+        }
+
+        List<byte[]> values = valueTemplate.opsForValue().multiGet(keys);
+        List<CachePopularity.EntrySource> sources = popularity.sources(type, keys);
+        long now = System.currentTimeMillis();
+        int preloaded = 0, regenerating = 0, missing = 0;
+
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            byte[] raw = values != null ? values.get(i) : null;
+            boolean regenerate;
+            if (raw == null) {
+                missing++;
+                regenerate = true;
+            } else {
+                long writtenAt = codec.writtenAt(raw);
+                Object value = type == CacheType.QUIZ ? codec.decodeQuestions(raw) : codec.decodeText(raw);
+                localTier.put(type, key, value, AICacheService.localWeight(value, raw), refresher.localTtl(type, writtenAt));
+                preloaded++;
+                regenerate = writtenAt > 0 && (refresher.isStale(type, writtenAt)
+                        || writtenAt + refresher.hardTtl(type).toMillis() - now < config.getRegenerateWithin().toMillis());
+            }
+            CachePopularity.EntrySource source = sources.get(i);
+            if (regenerate && source != null) {
+                cacheService.regenerate(type, key, source);
+                regenerating++;
+            }
+        }
+        return new WarmupResult(preloaded, regenerating, missing);
+    }
+
+    /**
+     * Outcome of warming one cache type
+     */
+    public record WarmupResult(int preloaded, int regenerating, int missing) {}
+}
@@ -0,0 +1,65 @@
+package com.thinkfirst.service.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-min sketch of key frequencies with periodic aging (as in TinyLFU).
+ *
+ * Each key increments one counter in each of four rows; the estimate is the smallest of
+ * them, so collisions can only over-count. After 10 x width increments every counter is
+ * halved, so old popularity fades and the sketch never saturates.
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final AtomicIntegerArray counters;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    public FrequencySketch(int width) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.counters = new AtomicIntegerArray(size * DEPTH);
+        this.mask = size - 1;
+        this.sampleSize = size * 10;
+    }
+
+    public void increment(String key) {
+        long hash = key.hashCode();
+        int width = mask + 1;
+        for (int row = 0; row < DEPTH; row++) {
+            counters.incrementAndGet(row * width + index(hash, row));
+        }
+        if (additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    public int estimate(String key) {
+        long hash = key.hashCode();
+        int width = mask + 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.get(row * width + index(hash, row)));
+        }
+        return min;
+    }
+
+    private int index(long hash, int row) {
+        long h = (hash + SEEDS[row]) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        return (int) h & mask;
+    }
+
+    private void reset() {
+        additions.set(0);
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, c -> c >>> 1);
+        }
+    }
+}
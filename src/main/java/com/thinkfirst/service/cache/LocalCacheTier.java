@@ -0,0 +1,96 @@
+package com.thinkfirst.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * In-process L1 cache tier in front of Redis.
+ * Holds already-deserialized values, bounded by an approximate byte weight and
+ * evicted with Caffeine's W-TinyLFU policy. Each entry expires with the TTL of its cache type.
+ */
+@Component
+public class LocalCacheTier {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalCacheTier.class);
+
+    // Per-entry bookkeeping overhead added to the payload weight
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final boolean enabled;
+    private final Cache<String, LocalEntry> cache;
+
+    public LocalCacheTier(AICacheProperties properties) {
+        AICacheProperties.LocalConfig config = properties.getLocal();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxWeightBytes())
+                .weigher((String key, LocalEntry entry) -> entry.weight())
+                .expireAfter(new Expiry<String, LocalEntry>() {
+                    @Override
+                    public long expireAfterCreate(String key, LocalEntry entry, long currentTime) {
+                        return entry.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                        return entry.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        log.info("L1 cache tier {} (max weight: {} bytes)", enabled ? "enabled" : "disabled", config.getMaxWeightBytes());
+    }
+
+    /**
+     * Get a value previously stored under the given Redis key
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        LocalEntry entry = cache.getIfPresent(key);
+        return entry != null ? Optional.of((T) entry.value()) : Optional.empty();
+    }
+
+    /**
+     * Store a deserialized value; sizeHint is the approximate serialized size in bytes
+     */
+    public void put(CacheType type, String key, Object value, int sizeHint, Duration ttl) {
+        if (!enabled || value == null) {
+            return;
+        }
+        cache.put(key, new LocalEntry(value, type, ttl, sizeHint + key.length() * 2 + ENTRY_OVERHEAD_BYTES));
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Drop every local entry of a cache type
+     */
+    public void invalidateAll(CacheType type) {
+        cache.asMap().values().removeIf(entry -> entry.type() == type);
+        log.info("Invalidated local {} cache entries", type);
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    private record LocalEntry(Object value, CacheType type, Duration ttl, int weight) {
+    }
+}
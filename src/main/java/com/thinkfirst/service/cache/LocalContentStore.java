@@ -0,0 +1,439 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Node-local persistent tier for immutable AI content, between L1 and Redis.
+ *
+ * Encoded cache values are appended to memory-mapped segment files under the same keys as
+ * Redis, so a node serves its content after a restart or while Redis is down. The index
+ * (OffHeapIndex) lives in direct memory; lookups read the record straight from the mapped
+ * segment. Each record carries a CRC32, so recovery replays the segments and stops at the
+ * first torn record. Compaction rewrites segments that are mostly overwritten or expired,
+ * and the oldest segments are dropped whenever the store grows past max-size.
+ *
+ * Record layout: magic, key length, value length, expires-at (epoch millis), CRC32 of
+ * expires-at, key and value, then the UTF-8 key and the value bytes.
+ */
+@Component
+public class LocalContentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalContentStore.class);
+
+    private static final int MAGIC = 0x54464331; // "TFC1"
+    private static final int HEADER_BYTES = 24;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final AICacheProperties.ContentStoreConfig config;
+    private final Path directory;
+    private final long segmentBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapIndex index;
+    private volatile boolean enabled;
+    private Segment active;
+    private long totalBytes;
+
+    public LocalContentStore(AICacheProperties properties, MeterRegistry registry) {
+        this.config = properties.getContentStore();
+        this.directory = Path.of(config.getDirectory());
+        this.segmentBytes = Math.min(config.getSegmentSize().toBytes(), Integer.MAX_VALUE);
+        this.index = new OffHeapIndex(config.getIndexCapacity());
+        this.enabled = config.isEnabled();
+        if (enabled) {
+            try {
+                recover();
+                log.info("Local content store opened at {} ({} entries in {} segments)",
+                        directory, index.size(), segments.size());
+            } catch (IOException e) {
+                enabled = false;
+                log.error("Local content store disabled, could not open {}: {}", directory, e.getMessage());
+            }
+        }
+        Gauge.builder("ai.cache.disk.bytes", this, LocalContentStore::sizeBytes)
+                .description("Bytes of records in the node-local content store")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("ai.cache.disk.entries", this, LocalContentStore::entries)
+                .description("Entries in the node-local content store")
+                .register(registry);
+    }
+
+    public boolean isEnabled(CacheType type) {
+        return enabled && config.getTypes().contains(type.name().toLowerCase());
+    }
+
+    /**
+     * Encoded value stored under a key, unless it is missing or expired
+     */
+    public Optional<byte[]> get(CacheType type, String cacheKey) {
+        if (!isEnabled(type)) {
+            return Optional.empty();
+        }
+        byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            long location = index.get(OffHeapIndex.hash(cacheKey));
+            if (location == OffHeapIndex.NOT_FOUND) {
+                return Optional.empty();
+            }
+            ByteBuffer buffer = segments.get(OffHeapIndex.segment(location)).buffer;
+            int offset = OffHeapIndex.offset(location);
+            if (buffer.getLong(offset + 12) <= System.currentTimeMillis() || !keyMatches(buffer, offset, key)) {
+                return Optional.empty();
+            }
+            byte[] value = new byte[buffer.getInt(offset + 8)];
+            buffer.get(offset + HEADER_BYTES + key.length, value);
+            return Optional.of(value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether a live value is stored under a key; get without copying the value
+     */
+    public boolean contains(CacheType type, String cacheKey) {
+        if (!isEnabled(type)) {
+            return false;
+        }
+        byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            long location = index.get(OffHeapIndex.hash(cacheKey));
+            if (location == OffHeapIndex.NOT_FOUND) {
+                return false;
+            }
+            ByteBuffer buffer = segments.get(OffHeapIndex.segment(location)).buffer;
+            int offset = OffHeapIndex.offset(location);
+            return buffer.getLong(offset + 12) > System.currentTimeMillis() && keyMatches(buffer, offset, key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append a value; it replaces any earlier value of the key and is dropped at expiresAt
+     */
+    public void put(CacheType type, String cacheKey, byte[] value, long expiresAt) {
+        if (!isEnabled(type)) {
+            return;
+        }
+        byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + key.length + value.length;
+        if (length > segmentBytes) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (active.position + length > active.buffer.capacity()) {
+                roll();
+            }
+            int offset = active.position;
+            ByteBuffer buffer = active.buffer;
+            buffer.putInt(offset + 4, key.length);
+            buffer.putInt(offset + 8, value.length);
+            buffer.putLong(offset + 12, expiresAt);
+            buffer.put(offset + HEADER_BYTES, key);
+            buffer.put(offset + HEADER_BYTES + key.length, value);
+            buffer.putInt(offset + 20, checksum(buffer, offset, length));
+            buffer.putInt(offset, MAGIC); // last, so a record is never valid before it is complete
+            append(active, cacheKey, offset, length);
+            if (totalBytes > config.getMaxSize().toBytes()) {
+                evictOldest();
+            }
+        } catch (IOException e) {
+            log.warn("Local content store write failed: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.cache.content-store.compaction-interval-minutes:30}",
+        fixedDelayString = "${app.cache.content-store.compaction-interval-minutes:30}",
+        timeUnit = TimeUnit.MINUTES
+    )
+    public void compactScheduled() {
+        compact();
+    }
+
+    /**
+     * Rewrite sealed segments whose share of live records has dropped below the threshold
+     * @return number of segments compacted
+     */
+    public int compact() {
+        if (!enabled) {
+            return 0;
+        }
+        int compacted = 0;
+        List<Integer> sealed;
+        lock.readLock().lock();
+        try {
+            sealed = new ArrayList<>(segments.headMap(active.id).keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int id : sealed) {
+            lock.writeLock().lock();
+            try {
+                Segment segment = segments.get(id);
+                if (segment != null && compact(segment)) {
+                    compacted++;
+                }
+            } catch (IOException e) {
+                log.warn("Compaction of content store segment {} failed: {}", id, e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (compacted > 0) {
+            log.info("Compacted {} content store segments ({} bytes in use)", compacted, sizeBytes());
+        }
+        return compacted;
+    }
+
+    public long sizeBytes() {
+        lock.readLock().lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int entries() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            enabled = false;
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close local content store: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== Segments ====================
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        Map<Integer, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                Matcher m = SEGMENT_FILE.matcher(path.getFileName().toString());
+                if (m.matches()) {
+                    files.put(Integer.parseInt(m.group(1)), path);
+                }
+            });
+        }
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            Segment segment = open(file.getKey(), file.getValue());
+            segments.put(segment.id, segment);
+            replay(segment);
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Index the valid records of a segment; the first torn or corrupt record ends it
+     */
+    private void replay(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        long now = System.currentTimeMillis();
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity() && buffer.getInt(offset) == MAGIC) {
+            int keyLength = buffer.getInt(offset + 4);
+            int valueLength = buffer.getInt(offset + 8);
+            long length = (long) HEADER_BYTES + keyLength + valueLength;
+            if (keyLength < 0 || valueLength < 0 || offset + length > buffer.capacity()
+                    || buffer.getInt(offset + 20) != checksum(buffer, offset, (int) length)) {
+                break;
+            }
+            if (buffer.getLong(offset + 12) > now) {
+                byte[] key = new byte[keyLength];
+                buffer.get(offset + HEADER_BYTES, key);
+                append(segment, new String(key, StandardCharsets.UTF_8), offset, (int) length);
+            } else {
+                totalBytes += length;
+            }
+            offset += (int) length;
+        }
+        if (offset + 4 <= buffer.capacity() && buffer.getInt(offset) != 0) {
+            log.warn("Discarding torn record at {} of content store segment {}", offset, segment.id);
+            for (int i = offset; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        segment.position = offset;
+    }
+
+    /**
+     * Index a record just written at the end of a segment and advance the segment's position
+     */
+    private void append(Segment segment, String cacheKey, int offset, int length) {
+        segment.position = offset + length;
+        totalBytes += length;
+        index.put(OffHeapIndex.hash(cacheKey), OffHeapIndex.location(segment.id, offset));
+    }
+
+    private boolean compact(Segment segment) throws IOException {
+        long now = System.currentTimeMillis();
+        ByteBuffer buffer = segment.buffer;
+        List<Integer> live = new ArrayList<>();
+        long liveBytes = 0;
+        for (int offset = 0; offset < segment.position; offset += recordLength(buffer, offset)) {
+            String key = key(buffer, offset);
+            if (buffer.getLong(offset + 12) > now
+                    && index.get(OffHeapIndex.hash(key)) == OffHeapIndex.location(segment.id, offset)) {
+                live.add(offset);
+                liveBytes += recordLength(buffer, offset);
+            }
+        }
+        if (liveBytes > segment.position * (1 - config.getCompactGarbageRatio())) {
+            return false;
+        }
+        for (int offset : live) {
+            int length = recordLength(buffer, offset);
+            if (active.position + length > active.buffer.capacity()) {
+                roll();
+            }
+            int target = active.position;
+            active.buffer.put(target, buffer, offset, length);
+            append(active, key(buffer, offset), target, length);
+        }
+        drop(segment);
+        return true;
+    }
+
+    /**
+     * Drop the oldest sealed segments until the store is back under its size cap
+     */
+    private void evictOldest() throws IOException {
+        while (totalBytes > config.getMaxSize().toBytes() && segments.firstKey() < active.id) {
+            Segment oldest = segments.firstEntry().getValue();
+            int removed = drop(oldest);
+            log.info("Evicted content store segment {} ({} entries) to stay under {}", oldest.id, removed,
+                    config.getMaxSize());
+        }
+    }
+
+    /**
+     * Delete a segment and whatever index entries still point into it
+     * @return number of index entries removed
+     */
+    private int drop(Segment segment) throws IOException {
+        int removed = index.removeSegment(segment.id);
+        segments.remove(segment.id);
+        totalBytes -= segment.position;
+        segment.channel.close();
+        Files.deleteIfExists(segment.path); // the mapping stays valid until it is garbage collected
+        return removed;
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force();
+        active = createSegment(active.id + 1);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = open(id, directory.resolve(String.format("segment-%010d.log", id)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment open(int id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.min(Math.max(channel.size(), segmentBytes), Integer.MAX_VALUE);
+        return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    private static int recordLength(ByteBuffer buffer, int offset) {
+        return HEADER_BYTES + buffer.getInt(offset + 4) + buffer.getInt(offset + 8);
+    }
+
+    private static String key(ByteBuffer buffer, int offset) {
+        byte[] key = new byte[buffer.getInt(offset + 4)];
+        buffer.get(offset + HEADER_BYTES, key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static boolean keyMatches(ByteBuffer buffer, int offset, byte[] key) {
+        if (buffer.getInt(offset + 4) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + HEADER_BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 12, 8));
+        crc.update(buffer.slice(offset + HEADER_BYTES, length - HEADER_BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+
+        Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
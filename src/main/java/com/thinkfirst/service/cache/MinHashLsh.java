@@ -0,0 +1,92 @@
+package com.thinkfirst.service.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * MinHash signatures with banded LSH over query token sets.
+ * Seeds are fixed so every node computes identical signatures and bucket keys.
+ */
+public final class MinHashLsh {
+
+    private final int numHashes;
+    private final int bands;
+    private final int rowsPerBand;
+    private final long[] seeds;
+
+    public MinHashLsh(int numHashes, int bands) {
+        if (bands <= 0 || numHashes % bands != 0) {
+            throw new IllegalArgumentException("numHashes must be a multiple of bands");
+        }
+        this.numHashes = numHashes;
+        this.bands = bands;
+        this.rowsPerBand = numHashes / bands;
+        this.seeds = new long[numHashes];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < numHashes; i++) {
+            seed = mix(seed + i);
+            seeds[i] = seed;
+        }
+    }
+
+    /**
+     * MinHash signature of a token set
+     */
+    public long[] signature(Collection<String> tokens) {
+        long[] sig = new long[numHashes];
+        Arrays.fill(sig, Long.MAX_VALUE);
+        for (String token : tokens) {
+            long base = token.hashCode() * 0xC2B2AE3D27D4EB4FL;
+            for (int i = 0; i < numHashes; i++) {
+                long h = mix(base ^ seeds[i]);
+                if (h < sig[i]) {
+                    sig[i] = h;
+                }
+            }
+        }
+        return sig;
+    }
+
+    /**
+     * One bucket key per band; similar sets share at least one with high probability
+     */
+    public Set<Long> bucketKeys(long[] signature) {
+        Set<Long> keys = new HashSet<>(bands * 2);
+        for (int b = 0; b < bands; b++) {
+            long h = b;
+            for (int r = 0; r < rowsPerBand; r++) {
+                h = mix(h * 31 + signature[b * rowsPerBand + r]);
+            }
+            keys.add(h);
+        }
+        return keys;
+    }
+
+    /**
+     * Exact Jaccard similarity, used to verify LSH candidates
+     */
+    public static double jaccard(Collection<String> a, Collection<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        int intersection = 0;
+        Set<String> left = a instanceof Set<String> s ? s : new HashSet<>(a);
+        for (String token : b) {
+            if (left.contains(token)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / union.size();
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
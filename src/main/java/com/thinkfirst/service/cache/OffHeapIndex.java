@@ -0,0 +1,167 @@
+package com.thinkfirst.service.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Open-addressing hash table in direct (off-heap) memory, mapping 64-bit key hashes to
+ * record locations (segment id and offset) of LocalContentStore.
+ *
+ * Each slot is 16 bytes: the key hash, then segment and offset. Keys themselves live only in
+ * the segment files, so callers compare the record's key before trusting a hit. Not thread
+ * safe; LocalContentStore guards it with its lock.
+ */
+class OffHeapIndex {
+
+    static final long NOT_FOUND = -1L;
+
+    private static final int SLOT_BYTES = 16;
+    private static final long EMPTY = 0L;
+    private static final long REMOVED = 1L;
+    private static final double MAX_LOAD = 0.7;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+    private int used; // live plus removed slots
+
+    OffHeapIndex(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a key with a final avalanche step; never EMPTY or REMOVED
+     */
+    static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h == EMPTY || h == REMOVED ? h + 2 : h;
+    }
+
+    static long location(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    static int segment(long location) {
+        return (int) (location >>> 32);
+    }
+
+    static int offset(long location) {
+        return (int) location;
+    }
+
+    long get(long hash) {
+        int slot = find(hash);
+        return slot >= 0 ? slots.getLong(slot * SLOT_BYTES + 8) : NOT_FOUND;
+    }
+
+    /**
+     * @return the location previously stored for the hash, or NOT_FOUND
+     */
+    long put(long hash, long location) {
+        int slot = find(hash);
+        if (slot >= 0) {
+            long previous = slots.getLong(slot * SLOT_BYTES + 8);
+            slots.putLong(slot * SLOT_BYTES + 8, location);
+            return previous;
+        }
+        if (used + 1 > capacity * MAX_LOAD) {
+            resize(size + 1 > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity);
+        }
+        insert(hash, location);
+        return NOT_FOUND;
+    }
+
+    long remove(long hash) {
+        int slot = find(hash);
+        if (slot < 0) {
+            return NOT_FOUND;
+        }
+        long previous = slots.getLong(slot * SLOT_BYTES + 8);
+        slots.putLong(slot * SLOT_BYTES, REMOVED);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Drop every entry pointing into a segment
+     * @return number of entries removed
+     */
+    int removeSegment(int segment) {
+        int removed = 0;
+        for (int i = 0; i < capacity; i++) {
+            long h = slots.getLong(i * SLOT_BYTES);
+            if (h != EMPTY && h != REMOVED && segment(slots.getLong(i * SLOT_BYTES + 8)) == segment) {
+                slots.putLong(i * SLOT_BYTES, REMOVED);
+                size--;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long offHeapBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    private int find(long hash) {
+        int mask = capacity - 1;
+        for (int i = (int) hash & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            long h = slots.getLong(i * SLOT_BYTES);
+            if (h == EMPTY) {
+                return -1;
+            }
+            if (h == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long hash, long location) {
+        int mask = capacity - 1;
+        int i = (int) hash & mask;
+        while (true) {
+            long h = slots.getLong(i * SLOT_BYTES);
+            if (h == EMPTY || h == REMOVED) {
+                if (h == EMPTY) {
+                    used++;
+                }
+                slots.putLong(i * SLOT_BYTES, hash);
+                slots.putLong(i * SLOT_BYTES + 8, location);
+                size++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            long h = old.getLong(i * SLOT_BYTES);
+            if (h != EMPTY && h != REMOVED) {
+                insert(h, old.getLong(i * SLOT_BYTES + 8));
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+        size = 0;
+        used = 0;
+    }
+}
@@ -0,0 +1,94 @@
+package com.thinkfirst.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thinkfirst.config.AICacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Negative cache of provider failures, keyed by operation and normalized input.
+ *
+ * Only failures where every provider answered with unusable output are remembered (see
+ * UnusableResponseException); rate limits and outages say nothing about the input. Entries
+ * live in process and in Redis (so other nodes skip the input too) for a short TTL.
+ */
+@Component
+public class ProviderFailureCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProviderFailureCache.class);
+
+    static final String PREFIX = "negative:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final AICacheProperties.NegativeConfig config;
+    private final Cache<String, Failure> local;
+
+    public ProviderFailureCache(RedisTemplate<String, String> redisTemplate, AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.config = properties.getNegative();
+        this.local = Caffeine.newBuilder()
+                .maximumSize(config.getLocalMaxEntries())
+                .expireAfterWrite(config.getTtl())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public Optional<Failure> get(String key) {
+        if (!config.isEnabled()) {
+            return Optional.empty();
+        }
+        Failure failure = local.getIfPresent(key);
+        if (failure != null) {
+            return Optional.of(failure);
+        }
+        try {
+            String value = redisTemplate.opsForValue().get(key);
+            if (value == null) {
+                return Optional.empty();
+            }
+            failure = Failure.parse(value);
+            local.put(key, failure);
+            return Optional.of(failure);
+        } catch (Exception e) {
+            log.debug("Negative cache lookup failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, Failure failure) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        local.put(key, failure);
+        try {
+            redisTemplate.opsForValue().set(key, failure.format(), config.getTtl());
+        } catch (Exception e) {
+            log.debug("Failed to share negative cache entry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A remembered failure: how many provider calls it took, and the last error
+     */
+    public record Failure(int providerCalls, String reason) {
+
+        String format() {
+            return providerCalls + "|" + reason;
+        }
+
+        static Failure parse(String value) {
+            int separator = value.indexOf('|');
+            return separator < 0
+                    ? new Failure(1, value)
+                    : new Failure(Integer.parseInt(value.substring(0, separator)), value.substring(separator + 1));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.thinkfirst.service.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical form of a child's query for near-duplicate matching.
+ * Expands contractions, drops punctuation, filler and stopwords, spells numbers as digits
+ * and applies a light plural stem, so "What's photosynthesis?" and
+ * "explain photosynthesis please" reduce to the same tokens.
+ *
+ * Question words that change meaning (how, why, when, where, who, which) are kept.
+ */
+public final class QueryCanonicalizer {
+
+    private static final Map<String, String> CONTRACTIONS = Map.ofEntries(
+            Map.entry("what's", "what is"), Map.entry("whats", "what is"),
+            Map.entry("where's", "where is"), Map.entry("who's", "who is"),
+            Map.entry("how's", "how is"), Map.entry("why's", "why is"),
+            Map.entry("when's", "when is"), Map.entry("it's", "it is"),
+            Map.entry("that's", "that is"), Map.entry("there's", "there is"),
+            Map.entry("don't", "do not"), Map.entry("doesn't", "does not"),
+            Map.entry("didn't", "did not"), Map.entry("isn't", "is not"),
+            Map.entry("aren't", "are not"), Map.entry("can't", "can not"),
+            Map.entry("won't", "will not"), Map.entry("i'm", "i am"),
+            Map.entry("you're", "you are"), Map.entry("they're", "they are")
+    );
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "the", "is", "are", "was", "were", "be", "am", "do", "does", "did",
+            "what", "whats", "of", "to", "in", "on", "for", "and", "or", "it", "its", "this", "that",
+            "me", "my", "i", "you", "your", "we", "us", "please", "pls", "can", "could", "would",
+            "will", "tell", "explain", "describe", "about", "know", "want", "like", "mean", "means",
+            "meaning", "definition", "define", "some", "something", "thing", "things", "really",
+            "just", "so", "very", "hey", "hi", "hello", "thanks", "thank", "question", "help"
+    );
+
+    private static final Map<String, String> NUMBER_WORDS = Map.ofEntries(
+            Map.entry("zero", "0"), Map.entry("one", "1"), Map.entry("two", "2"),
+            Map.entry("three", "3"), Map.entry("four", "4"), Map.entry("five", "5"),
+            Map.entry("six", "6"), Map.entry("seven", "7"), Map.entry("eight", "8"),
+            Map.entry("nine", "9"), Map.entry("ten", "10"), Map.entry("eleven", "11"),
+            Map.entry("twelve", "12"), Map.entry("twenty", "20"), Map.entry("hundred", "100"),
+            Map.entry("thousand", "1000"), Map.entry("plus", "+"), Map.entry("minus", "-"),
+            Map.entry("times", "*")
+    );
+
+    // Words, numbers (incl. decimals) and arithmetic operators
+    private static final Pattern TOKEN = Pattern.compile("[a-z]+|\\d+(?:\\.\\d+)?|[+\\-*/=^%<>]");
+
+    private QueryCanonicalizer() {
+    }
+
+    /**
+     * Content tokens of the query, in order of first appearance
+     */
+    public static List<String> tokens(String query) {
+        String text = query.toLowerCase().replace('’', '\'');
+        for (Map.Entry<String, String> c : CONTRACTIONS.entrySet()) {
+            text = text.replace(c.getKey(), c.getValue());
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        Matcher m = TOKEN.matcher(text);
+        while (m.find()) {
+            String token = NUMBER_WORDS.getOrDefault(m.group(), m.group());
+            if (STOPWORDS.contains(token)) {
+                continue;
+            }
+            tokens.add(stem(token));
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Canonical single-string form (tokens joined by spaces)
+     */
+    public static String canonicalize(String query) {
+        return String.join(" ", tokens(query));
+    }
+
+    /**
+     * Numbers and operators in their original order - near-duplicates must agree on these exactly
+     */
+    public static String numericSignature(String query) {
+        StringBuilder sb = new StringBuilder();
+        Matcher m = TOKEN.matcher(query.toLowerCase());
+        while (m.find()) {
+            String token = NUMBER_WORDS.getOrDefault(m.group(), m.group());
+            if (!Character.isLetter(token.charAt(0))) {
+                sb.append(token).append(' ');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    private static String stem(String token) {
+        if (token.length() > 4 && token.endsWith("ies")) {
+            return token.substring(0, token.length() - 3) + "y";
+        }
+        if (token.length() > 4 && token.endsWith("oes")) {
+            return token.substring(0, token.length() - 2);
+        }
+        if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+}
@@ -0,0 +1,317 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.model.Question;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pools of interchangeable quiz variants stored per quiz key.
+ *
+ * Redis layout (all under the quiz key, so namespaces and the sweeper cover them):
+ * - {@code <key>:pool} hash of variant id -> encoded questions
+ * - {@code <key>:requests} request counter driving the adaptive target size
+ * - {@code <key>:served:<childId>} hash of variant id -> last served (epoch millis)
+ *
+ * A child gets a variant it has not seen yet, otherwise the one it saw longest ago.
+ *
+ * Inside a CacheBatch the pool, served and request state is read ahead with the batch (Prefetch)
+ * and the resulting writes are queued as PoolWrites for the batch's write pipeline.
+ */
+@Component
+public class QuizVariantPool {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizVariantPool.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisTemplate<String, byte[]> valueTemplate;
+    private final CacheCodec codec;
+    private final LocalCacheTier localTier;
+    private final AICacheProperties.QuizPoolConfig config;
+
+    public QuizVariantPool(
+            RedisTemplate<String, String> redisTemplate,
+            RedisTemplate<String, byte[]> valueTemplate,
+            CacheCodec codec,
+            LocalCacheTier localTier,
+            AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.valueTemplate = valueTemplate;
+        this.codec = codec;
+        this.localTier = localTier;
+        this.config = properties.getQuizPool();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Choose a variant for a child (random when the child is unknown)
+     */
+    public Optional<Pick> pick(String quizKey, Long childId) throws Exception {
+        Map<String, List<Question>> variants = variants(quizKey);
+        if (variants.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<Object, Object> served = childId != null && variants.size() > 1
+                ? redisTemplate.opsForHash().entries(servedKey(quizKey, childId))
+                : Map.of();
+        String chosen = choose(variants, served);
+        if (childId != null) {
+            String servedKey = servedKey(quizKey, childId);
+            redisTemplate.opsForHash().put(servedKey, chosen, String.valueOf(System.currentTimeMillis()));
+            redisTemplate.expire(servedKey, config.getServedTtl());
+        }
+        return Optional.of(new Pick(variants.get(chosen), variants.size()));
+    }
+
+    /**
+     * pick() from prefetched state; the served-time update is queued on writes
+     */
+    public Optional<Pick> pick(Prefetch prefetch, Long childId, List<PoolWrite> writes) {
+        if (prefetch.variants().isEmpty()) {
+            return Optional.empty();
+        }
+        String chosen = choose(prefetch.variants(), prefetch.served());
+        if (childId != null) {
+            String servedKey = servedKey(prefetch.quizKey(), childId);
+            byte[] now = servedSerializer().serialize(String.valueOf(System.currentTimeMillis()));
+            Duration servedTtl = config.getServedTtl();
+            writes.add(operations -> {
+                operations.opsForHash().put(servedKey, chosen, now);
+                operations.expire(servedKey, servedTtl);
+            });
+        }
+        return Optional.of(new Pick(prefetch.variants().get(chosen), prefetch.variants().size()));
+    }
+
+    /**
+     * A random variant, or for a known child the one it was served longest ago (never first)
+     */
+    private static String choose(Map<String, List<Question>> variants, Map<?, ?> served) {
+        List<String> ids = new ArrayList<>(variants.keySet());
+        Collections.shuffle(ids, ThreadLocalRandom.current());
+        String chosen = ids.get(0);
+        if (served.isEmpty() || ids.size() == 1) {
+            return chosen;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (String id : ids) {
+            Object last = served.get(id);
+            long lastServed = last != null ? Long.parseLong(last.toString()) : 0;
+            if (lastServed < oldest) {
+                oldest = lastServed;
+                chosen = id;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Add a variant; identical question sets are stored once and full pools are left as they are
+     */
+    public void add(String quizKey, List<Question> questions, Duration ttl) {
+        try {
+            String poolKey = poolKey(quizKey);
+            Long size = valueTemplate.opsForHash().size(poolKey);
+            if (size != null && size >= config.getMaxSize()) {
+                return;
+            }
+            valueTemplate.opsForHash().put(poolKey, variantId(questions), codec.encodeQuestions(questions));
+            valueTemplate.expire(poolKey, ttl);
+            localTier.invalidate(poolKey);
+        } catch (Exception e) {
+            log.warn("Failed to add quiz variant: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * add() for a prefetched pool; the write is queued on writes
+     */
+    public void add(Prefetch prefetch, List<Question> questions, Duration ttl, List<PoolWrite> writes) {
+        if (prefetch.variants().size() >= config.getMaxSize()) {
+            return;
+        }
+        try {
+            String poolKey = poolKey(prefetch.quizKey());
+            String id = variantId(questions);
+            byte[] encoded = codec.encodeQuestions(questions);
+            writes.add(operations -> {
+                operations.opsForHash().put(poolKey, id, encoded);
+                operations.expire(poolKey, ttl);
+            });
+            localTier.invalidate(poolKey);
+        } catch (Exception e) {
+            log.warn("Failed to add quiz variant: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Count a request for the key and return the running total
+     */
+    public long recordRequest(String quizKey, Duration ttl) {
+        String requestsKey = requestsKey(quizKey);
+        Long requests = redisTemplate.opsForValue().increment(requestsKey);
+        if (requests != null && requests == 1) {
+            redisTemplate.expire(requestsKey, ttl);
+        }
+        return requests != null ? requests : 0;
+    }
+
+    /**
+     * recordRequest() for a prefetched pool; the increment is queued on writes
+     */
+    public long recordRequest(Prefetch prefetch, Duration ttl, List<PoolWrite> writes) {
+        String requestsKey = requestsKey(prefetch.quizKey());
+        boolean first = prefetch.requests() == 0;
+        writes.add(operations -> {
+            operations.opsForValue().increment(requestsKey);
+            if (first) {
+                operations.expire(requestsKey, ttl);
+            }
+        });
+        return prefetch.requests() + 1;
+    }
+
+    /**
+     * Queue the reads a batch needs to pick from a pool: the pool hash (unless held in L1) and
+     * the child's served hash. The request counter is read with the batch's MGET (requestsKey).
+     */
+    void queuePrefetch(RedisOperations<String, byte[]> operations, String quizKey, Long childId) {
+        if (localTier.get(poolKey(quizKey)).isEmpty()) {
+            operations.opsForHash().entries(poolKey(quizKey));
+        }
+        if (childId != null) {
+            operations.opsForHash().entries(servedKey(quizKey, childId));
+        }
+    }
+
+    /**
+     * Build the Prefetch of a pool from the results of queuePrefetch (consumed from results in order)
+     */
+    @SuppressWarnings("unchecked")
+    Prefetch readPrefetch(String quizKey, Long childId, Iterator<Object> results, byte[] requests)
+            throws Exception {
+        String poolKey = poolKey(quizKey);
+        Optional<Map<String, List<Question>>> local = localTier.get(poolKey);
+        Map<String, List<Question>> variants = local.isPresent()
+                ? local.get()
+                : decodeAndKeep(poolKey, (Map<String, byte[]>) results.next());
+        Map<String, Object> served = new LinkedHashMap<>();
+        if (childId != null) {
+            Map<String, byte[]> stored = (Map<String, byte[]>) results.next();
+            if (stored != null) {
+                stored.forEach((id, last) -> served.put(id, servedSerializer().deserialize(last)));
+            }
+        }
+        long count = requests != null ? Long.parseLong(new String(requests, StandardCharsets.UTF_8)) : 0;
+        return new Prefetch(quizKey, variants, served, count);
+    }
+
+    /**
+     * Pool size a key deserves: one extra variant each time its request count doubles
+     */
+    public int targetSize(long requests) {
+        int size = config.getMinSize();
+        long threshold = config.getRequestsPerVariant();
+        while (size < config.getMaxSize() && requests >= threshold) {
+            size++;
+            threshold = threshold * 2 + config.getRequestsPerVariant();
+        }
+        return size;
+    }
+
+    private Map<String, List<Question>> variants(String quizKey) throws Exception {
+        String poolKey = poolKey(quizKey);
+        Optional<Map<String, List<Question>>> local = localTier.get(poolKey);
+        if (local.isPresent()) {
+            return local.get();
+        }
+
+        return decodeAndKeep(poolKey, valueTemplate.<String, byte[]>opsForHash().entries(poolKey));
+    }
+
+    /**
+     * Decode a stored pool hash and keep the result in L1 for local-ttl-seconds
+     */
+    private Map<String, List<Question>> decodeAndKeep(String poolKey, Map<String, byte[]> stored) throws Exception {
+        Map<String, List<Question>> variants = new LinkedHashMap<>();
+        if (stored == null) {
+            return variants;
+        }
+        int bytes = 0;
+        for (Map.Entry<String, byte[]> entry : stored.entrySet()) {
+            variants.put(entry.getKey(), codec.decodeQuestions(entry.getValue()));
+            bytes += entry.getValue().length;
+        }
+        if (!variants.isEmpty()) {
+            localTier.put(CacheType.QUIZ, poolKey, variants, bytes * 4, Duration.ofSeconds(config.getLocalTtlSeconds()));
+        }
+        return variants;
+    }
+
+    private static String poolKey(String quizKey) {
+        return quizKey + ":pool";
+    }
+
+    private static String servedKey(String quizKey, Long childId) {
+        return quizKey + ":served:" + childId;
+    }
+
+    /**
+     * Served times are written through redisTemplate elsewhere; batches use its encoding too
+     */
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> servedSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+    }
+
+    static String requestsKey(String quizKey) {
+        return quizKey + ":requests";
+    }
+
+    private static String variantId(List<Question> questions) {
+        StringBuilder sb = new StringBuilder();
+        for (Question q : questions) {
+            sb.append(q.getQuestionText()).append('\n');
+        }
+        return Integer.toHexString(sb.toString().hashCode());
+    }
+
+    /**
+     * A chosen variant and the pool size it was chosen from
+     */
+    public record Pick(List<Question> questions, int poolSize) {}
+
+    /**
+     * Pool state a batch read ahead: variants by id, when the child was last served each
+     * (epoch millis) and the key's request count
+     */
+    public record Prefetch(String quizKey, Map<String, List<Question>> variants, Map<String, Object> served,
+                           long requests) {}
+
+    /**
+     * A pool write queued for a batch's write pipeline
+     */
+    @FunctionalInterface
+    public interface PoolWrite {
+        void queue(RedisOperations<String, byte[]> operations);
+    }
+}
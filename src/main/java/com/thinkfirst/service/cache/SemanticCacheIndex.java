@@ -0,0 +1,232 @@
+package com.thinkfirst.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.config.ContentProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Near-duplicate lookup tier for AICacheService.
+ *
+ * Cached queries are indexed by MinHash/LSH over their canonical tokens (QueryCanonicalizer),
+ * partitioned by cache type, subject and age band (plus count/difficulty for quizzes) and the
+ * current key generation, so bulk invalidation also retires the index.
+ * Partitions live in-process and are persisted as Redis hashes (semantic:...) so other nodes
+ * and restarts pick them up. LSH candidates are verified with exact Jaccard similarity and
+ * must carry the same numbers in the same order ("2 + 3" never matches "3 + 2").
+ *
+ * Every near-duplicate hit is logged to the com.thinkfirst.cache.semantic.review logger
+ * so false matches can be reviewed and the threshold tuned.
+ */
+@Component
+public class SemanticCacheIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticCacheIndex.class);
+    private static final Logger reviewLog = LoggerFactory.getLogger("com.thinkfirst.cache.semantic.review");
+
+    private static final String KEY_PREFIX = "semantic:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheNamespace namespace;
+    private final ContentProperties contentProperties;
+    private final AICacheProperties.SemanticConfig config;
+    private final MinHashLsh lsh;
+    private final Cache<String, Partition> partitions;
+
+    public SemanticCacheIndex(
+            RedisTemplate<String, String> redisTemplate,
+            CacheNamespace namespace,
+            ContentProperties contentProperties,
+            AICacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.namespace = namespace;
+        this.contentProperties = contentProperties;
+        this.config = properties.getSemantic();
+        this.lsh = new MinHashLsh(config.getNumHashes(), config.getBands());
+        this.partitions = Caffeine.newBuilder()
+                .maximumSize(config.getMaxLocalPartitions())
+                .expireAfterWrite(Duration.ofMinutes(config.getLocalRefreshMinutes()))
+                .build();
+    }
+
+    /**
+     * Partition key for a subject and age (the age is reduced to its age band)
+     */
+    public String partition(String subject, Integer age, Object... extra) {
+        ContentProperties.AgeGroup group = contentProperties.ageGroupFor(age);
+        StringBuilder sb = new StringBuilder()
+                .append(subject != null ? subject.toLowerCase().trim() : "")
+                .append('|')
+                .append(group != null ? group.getName().toLowerCase() : "age-" + age);
+        for (Object part : extra) {
+            sb.append('|').append(String.valueOf(part).toLowerCase());
+        }
+        return sb.toString().replaceAll("\\s+", "_");
+    }
+
+    /**
+     * Best indexed query whose similarity clears the configured threshold
+     */
+    public Optional<Match> findMatch(CacheType type, String partitionKey, String query) {
+        if (!config.isEnabled()) {
+            return Optional.empty();
+        }
+        try {
+            List<String> tokens = QueryCanonicalizer.tokens(query);
+            if (tokens.isEmpty()) {
+                return Optional.empty();
+            }
+            String numeric = QueryCanonicalizer.numericSignature(query);
+            Partition partition = partition(type, partitionKey);
+
+            Set<String> candidates = new HashSet<>();
+            for (Long bucket : lsh.bucketKeys(lsh.signature(tokens))) {
+                candidates.addAll(partition.buckets.getOrDefault(bucket, Set.of()));
+            }
+
+            Match best = null;
+            for (String targetKey : candidates) {
+                Entry entry = partition.entries.get(targetKey);
+                if (entry == null || !entry.numeric().equals(numeric)) {
+                    continue;
+                }
+                double similarity = MinHashLsh.jaccard(tokens, entry.tokens());
+                if (similarity >= config.getThreshold() && (best == null || similarity > best.similarity())) {
+                    best = new Match(targetKey, entry.query(), similarity);
+                }
+            }
+
+            if (best != null) {
+                reviewLog.info("Near-duplicate {} match (similarity {}): \"{}\" -> \"{}\"",
+                        type.name().toLowerCase(), String.format("%.2f", best.similarity()), query, best.matchedQuery());
+            }
+            return Optional.ofNullable(best);
+
+        } catch (Exception e) {
+            log.warn("Near-duplicate lookup failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Index a freshly cached query under its exact cache key
+     */
+    public void add(CacheType type, String partitionKey, String query, String targetKey) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            List<String> tokens = QueryCanonicalizer.tokens(query);
+            if (tokens.isEmpty()) {
+                return;
+            }
+            Partition partition = partition(type, partitionKey);
+            if (partition.entries.size() >= config.getMaxEntriesPerPartition()
+                    && !partition.entries.containsKey(targetKey)) {
+                log.debug("Semantic partition {} is full, not indexing {}", partitionKey, targetKey);
+                return;
+            }
+            partition.add(targetKey, entry(query, tokens));
+
+            String redisKey = redisKey(type, partitionKey);
+            redisTemplate.opsForHash().put(redisKey, targetKey, query);
+            redisTemplate.expire(redisKey, type.getTtl());
+        } catch (Exception e) {
+            log.warn("Failed to index query for near-duplicate lookup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drop an indexed query whose cache entry no longer exists
+     */
+    public void remove(CacheType type, String partitionKey, String targetKey) {
+        try {
+            Partition partition = partitions.getIfPresent(redisKey(type, partitionKey));
+            if (partition != null) {
+                partition.remove(targetKey);
+            }
+            redisTemplate.opsForHash().delete(redisKey(type, partitionKey), targetKey);
+        } catch (Exception e) {
+            log.warn("Failed to remove near-duplicate index entry: {}", e.getMessage());
+        }
+    }
+
+    private Partition partition(CacheType type, String partitionKey) {
+        String redisKey = redisKey(type, partitionKey);
+        Partition partition = partitions.get(redisKey, this::load);
+        // load() returns null when Redis is unavailable; use an uncached empty partition
+        return partition != null ? partition : new Partition();
+    }
+
+    private Partition load(String redisKey) {
+        try {
+            Map<Object, Object> stored = redisTemplate.opsForHash().entries(redisKey);
+            Partition partition = new Partition();
+            if (stored != null) {
+                stored.forEach((targetKey, query) -> {
+                    List<String> tokens = QueryCanonicalizer.tokens(query.toString());
+                    if (!tokens.isEmpty()) {
+                        partition.add(targetKey.toString(), entry(query.toString(), tokens));
+                    }
+                });
+            }
+            return partition;
+        } catch (Exception e) {
+            log.warn("Failed to load near-duplicate index {}: {}", redisKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private Entry entry(String query, List<String> tokens) {
+        return new Entry(query, tokens, QueryCanonicalizer.numericSignature(query),
+                lsh.bucketKeys(lsh.signature(tokens)));
+    }
+
+    private String redisKey(CacheType type, String partitionKey) {
+        return KEY_PREFIX + type.getPrefix() + "v" + namespace.currentGeneration(type) + ":" + partitionKey;
+    }
+
+    /**
+     * A near-duplicate hit: the exact cache key to read and the query it was cached for
+     */
+    public record Match(String targetKey, String matchedQuery, double similarity) {}
+
+    private record Entry(String query, List<String> tokens, String numeric, Set<Long> buckets) {}
+
+    private static final class Partition {
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+        void add(String targetKey, Entry entry) {
+            remove(targetKey);
+            entries.put(targetKey, entry);
+            for (Long bucket : entry.buckets()) {
+                buckets.computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet()).add(targetKey);
+            }
+        }
+
+        void remove(String targetKey) {
+            Entry previous = entries.remove(targetKey);
+            if (previous != null) {
+                for (Long bucket : previous.buckets()) {
+                    Set<String> keys = buckets.get(bucket);
+                    if (keys != null) {
+                        keys.remove(targetKey);
+                    }
+                }
+            }
+        }
+    }
+}
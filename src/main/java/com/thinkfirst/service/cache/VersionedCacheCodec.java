@@ -0,0 +1,290 @@
+package com.thinkfirst.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.dto.QuizGenerationResult;
+import com.thinkfirst.model.Question;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Default CacheCodec.
+ *
+ * Binary values start with a 3-byte header: 0xFF (never a valid UTF-8 lead byte, so it
+ * cannot collide with legacy entries), the format version and a flags byte (bit 0: deflated).
+ * Version 1 stores text as UTF-8 and questions in a fixed schema without id, quiz or
+ * displayOrder (list order is the display order). Version 2 (written now) has the same
+ * payload, preceded by the 8-byte write timestamp used for stale-while-revalidate.
+ *
+ * Values without the header are legacy entries written before the codec existed:
+ * plain UTF-8 text, or Jackson JSON for question lists.
+ */
+@Component
+public class VersionedCacheCodec implements CacheCodec {
+
+    static final byte MAGIC = (byte) 0xFF;
+    static final byte VERSION_1 = 1;
+    static final byte VERSION_2 = 2;
+    private static final byte FLAG_DEFLATED = 1;
+    private static final int HEADER_LENGTH = 3;
+    private static final int TIMESTAMP_LENGTH = 8;
+
+    private static final Question.QuestionType[] QUESTION_TYPES = Question.QuestionType.values();
+
+    private final ObjectMapper objectMapper;
+    private final boolean binary;
+    private final int compressionThreshold;
+
+    public VersionedCacheCodec(ObjectMapper objectMapper, AICacheProperties properties) {
+        this.objectMapper = objectMapper;
+        this.binary = !"json".equalsIgnoreCase(properties.getCodec().getFormat());
+        this.compressionThreshold = properties.getCodec().getCompressionThresholdBytes();
+    }
+
+    @Override
+    public byte[] encodeText(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        return binary ? frame(utf8) : utf8;
+    }
+
+    @Override
+    public String decodeText(byte[] bytes) throws IOException {
+        if (!hasHeader(bytes)) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new String(payload(bytes), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long writtenAt(byte[] bytes) {
+        if (!hasHeader(bytes) || bytes[1] != VERSION_2 || bytes.length < HEADER_LENGTH + TIMESTAMP_LENGTH) {
+            return 0;
+        }
+        long millis = 0;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            millis = (millis << 8) | (bytes[HEADER_LENGTH + i] & 0xFF);
+        }
+        return millis;
+    }
+
+    @Override
+    public byte[] encodeQuestions(List<Question> questions) throws IOException {
+        if (!binary) {
+            return objectMapper.writeValueAsBytes(questions);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeQuestions(out, questions);
+        out.flush();
+        return frame(buffer.toByteArray());
+    }
+
+    @Override
+    public List<Question> decodeQuestions(byte[] bytes) throws IOException {
+        if (!hasHeader(bytes)) {
+            return objectMapper.readValue(bytes,
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, Question.class));
+        }
+        return readQuestions(new DataInputStream(new ByteArrayInputStream(payload(bytes))));
+    }
+
+    @Override
+    public byte[] encodeQuizWithSubject(String subject, List<Question> questions) throws IOException {
+        if (!binary) {
+            return objectMapper.writeValueAsBytes(new QuizGenerationResult(subject, questions));
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeString(out, subject);
+        writeQuestions(out, questions);
+        out.flush();
+        return frame(buffer.toByteArray());
+    }
+
+    @Override
+    public QuizGenerationResult decodeQuizWithSubject(byte[] bytes) throws IOException {
+        if (!hasHeader(bytes)) {
+            return objectMapper.readValue(bytes, QuizGenerationResult.class);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload(bytes)));
+        String subject = readString(in);
+        return new QuizGenerationResult(subject, readQuestions(in));
+    }
+
+    // ==================== Question Schema ====================
+
+    private static void writeQuestions(DataOutputStream out, List<Question> questions) throws IOException {
+        writeVarInt(out, questions.size());
+        for (Question q : questions) {
+            out.writeByte(q.getType() != null ? q.getType().ordinal() : -1);
+            writeString(out, q.getQuestionText());
+            List<String> options = q.getOptions() != null ? q.getOptions() : List.of();
+            writeVarInt(out, options.size());
+            for (String option : options) {
+                writeString(out, option);
+            }
+            writeString(out, q.getCorrectAnswer());
+            writeVarInt(out, q.getCorrectOptionIndex() != null ? q.getCorrectOptionIndex() + 1 : 0);
+            writeString(out, q.getExplanation());
+        }
+    }
+
+    private static List<Question> readQuestions(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            String text = readString(in);
+            int optionCount = readVarInt(in);
+            List<String> options = new ArrayList<>(optionCount);
+            for (int o = 0; o < optionCount; o++) {
+                options.add(readString(in));
+            }
+            String correctAnswer = readString(in);
+            int correctIndex = readVarInt(in);
+            questions.add(Question.builder()
+                    .type(type >= 0 && type < QUESTION_TYPES.length ? QUESTION_TYPES[type] : null)
+                    .questionText(text)
+                    .options(options)
+                    .correctAnswer(correctAnswer)
+                    .correctOptionIndex(correctIndex > 0 ? correctIndex - 1 : null)
+                    .explanation(readString(in))
+                    .build());
+        }
+        return questions;
+    }
+
+    // ==================== Framing ====================
+
+    private byte[] frame(byte[] payload) {
+        byte flags = 0;
+        byte[] body = payload;
+        if (payload.length >= compressionThreshold) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) {
+                body = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+        byte[] framed = new byte[HEADER_LENGTH + TIMESTAMP_LENGTH + body.length];
+        framed[0] = MAGIC;
+        framed[1] = VERSION_2;
+        framed[2] = flags;
+        long now = System.currentTimeMillis();
+        for (int i = TIMESTAMP_LENGTH - 1; i >= 0; i--) {
+            framed[HEADER_LENGTH + i] = (byte) now;
+            now >>>= 8;
+        }
+        System.arraycopy(body, 0, framed, HEADER_LENGTH + TIMESTAMP_LENGTH, body.length);
+        return framed;
+    }
+
+    private static boolean hasHeader(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    private static byte[] payload(byte[] bytes) throws IOException {
+        int offset;
+        if (bytes[1] == VERSION_1) {
+            offset = HEADER_LENGTH;
+        } else if (bytes[1] == VERSION_2) {
+            offset = HEADER_LENGTH + TIMESTAMP_LENGTH;
+        } else {
+            throw new IOException("Unsupported cache format version " + bytes[1]);
+        }
+        byte[] body = Arrays.copyOfRange(bytes, offset, bytes.length);
+        return (bytes[2] & FLAG_DEFLATED) != 0 ? inflate(body) : body;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed cache value");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed cache value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ==================== Primitives ====================
+
+    /** Length-prefixed UTF-8; length 0 means null, n + 1 means n bytes */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, utf8.length + 1);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length - 1];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in cache value");
+    }
+}
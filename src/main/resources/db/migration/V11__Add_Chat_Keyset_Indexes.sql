@@ -0,0 +1,8 @@
+-- Composite indexes for keyset-paginated chat history and session listing.
+-- Each covers the old single-column index as a prefix, so those are dropped.
+
+CREATE INDEX idx_chat_messages_session_created ON chat_messages(chat_session_id, created_at, id);
+DROP INDEX IF EXISTS idx_chat_messages_session;
+
+CREATE INDEX idx_chat_sessions_child_updated ON chat_sessions(child_id, updated_at, id);
+DROP INDEX IF EXISTS idx_chat_sessions_child;
@@ -0,0 +1,17 @@
+-- Retake lookups match learning paths by a fingerprint of the normalized query
+-- (ASCII lowercased, ASCII whitespace runs collapsed, trimmed, SHA-256 hex) instead of the
+-- raw TEXT column. Must stay in step with QueryFingerprint.of: lower() under the "C" collation
+-- and an explicit whitespace class keep the result independent of the database locale.
+
+ALTER TABLE learning_paths ADD COLUMN query_fingerprint VARCHAR(64);
+
+UPDATE learning_paths
+SET query_fingerprint = encode(
+    sha256(convert_to(btrim(regexp_replace(lower(original_query COLLATE "C"), '[ \t\n\r\f\v]+', ' ', 'g'), ' '), 'UTF8')),
+    'hex');
+
+ALTER TABLE learning_paths ALTER COLUMN query_fingerprint SET NOT NULL;
+
+-- child_id is the leading column, so the single-column index is no longer needed
+CREATE INDEX idx_learning_paths_child_fingerprint ON learning_paths(child_id, query_fingerprint, active);
+DROP INDEX IF EXISTS idx_learning_paths_child;
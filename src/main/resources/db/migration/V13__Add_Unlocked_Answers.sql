@@ -0,0 +1,13 @@
+-- Answers each child has unlocked by passing the verification quiz, by question fingerprint
+-- (see QueryFingerprint), so a repeated question is answered without moderation, AI or a new quiz.
+
+CREATE TABLE unlocked_answers (
+    id BIGSERIAL PRIMARY KEY,
+    child_id BIGINT NOT NULL REFERENCES children(id) ON DELETE CASCADE,
+    query_fingerprint VARCHAR(64) NOT NULL,
+    answer_message_id BIGINT NOT NULL REFERENCES chat_messages(id) ON DELETE CASCADE,
+    unlocked_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_unlocked_answers_child_fingerprint UNIQUE (child_id, query_fingerprint)
+);
+
+CREATE INDEX idx_unlocked_answers_message ON unlocked_answers(answer_message_id);
@@ -0,0 +1,68 @@
+-- Monthly range partitioning of chat_messages on created_at, plus an archive of inactive sessions.
+--
+-- A partitioned table's primary key and unique constraints must include the partition key, so
+-- the key becomes (id, created_at) and nothing can hold a foreign key to chat_messages(id) any
+-- more; unlocked_answers.answer_message_id keeps the id without the constraint (ChatArchiveService
+-- deletes those rows when it archives the messages).
+--
+-- Partitions: every month from the oldest message to three months ahead, and a DEFAULT partition
+-- as a safety net. ChatPartitionMaintenance keeps creating months ahead and drops old empty ones.
+
+ALTER TABLE unlocked_answers DROP CONSTRAINT IF EXISTS unlocked_answers_answer_message_id_fkey;
+
+ALTER TABLE chat_messages RENAME TO chat_messages_unpartitioned;
+
+CREATE TABLE chat_messages (
+    id BIGINT NOT NULL DEFAULT nextval('chat_messages_id_seq'),
+    chat_session_id BIGINT NOT NULL,
+    role VARCHAR(50) NOT NULL,
+    content TEXT NOT NULL,
+    quiz_id BIGINT,
+    requires_quiz_completion BOOLEAN DEFAULT FALSE,
+    content_moderation VARCHAR(50),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at),
+    FOREIGN KEY (chat_session_id) REFERENCES chat_sessions(id) ON DELETE CASCADE,
+    FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE SET NULL
+) PARTITION BY RANGE (created_at);
+
+-- The sequence was owned by the old table and would be dropped with it
+ALTER SEQUENCE chat_messages_id_seq OWNED BY chat_messages.id;
+
+DO $$
+DECLARE
+    month DATE := date_trunc('month', COALESCE((SELECT min(created_at) FROM chat_messages_unpartitioned), now()))::date;
+    last_month DATE := (date_trunc('month', now()) + interval '3 months')::date;
+BEGIN
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       'chat_messages_p' || to_char(month, 'YYYYMM'), month, (month + interval '1 month')::date);
+        month := (month + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+CREATE TABLE chat_messages_default PARTITION OF chat_messages DEFAULT;
+
+INSERT INTO chat_messages (id, chat_session_id, role, content, quiz_id, requires_quiz_completion,
+                           content_moderation, created_at)
+SELECT id, chat_session_id, role, content, quiz_id, requires_quiz_completion, content_moderation, created_at
+FROM chat_messages_unpartitioned;
+
+DROP TABLE chat_messages_unpartitioned;
+
+-- Created after the copy; partitioned indexes cascade to every partition
+CREATE INDEX idx_chat_messages_session_created ON chat_messages(chat_session_id, created_at, id);
+CREATE INDEX idx_chat_messages_quiz ON chat_messages(quiz_id);
+
+-- Archive tier: the whole history of an inactive session as one gzip-compressed JSON document
+ALTER TABLE chat_sessions ADD COLUMN messages_archived_at TIMESTAMP;
+
+CREATE TABLE chat_session_archives (
+    chat_session_id BIGINT PRIMARY KEY REFERENCES chat_sessions(id) ON DELETE CASCADE,
+    message_count INTEGER NOT NULL,
+    archived_at TIMESTAMP NOT NULL,
+    messages BYTEA NOT NULL
+);
+
+-- Sessions still waiting to be archived, oldest activity first
+CREATE INDEX idx_chat_sessions_archive_candidates ON chat_sessions(updated_at) WHERE messages_archived_at IS NULL;
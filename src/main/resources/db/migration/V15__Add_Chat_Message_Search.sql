@@ -0,0 +1,8 @@
+-- Full-text search over chat history for parents (ChatSearchService).
+-- A stored generated column is maintained by PostgreSQL on every insert and update, including
+-- rows restored from the archive; adding it rewrites each partition once.
+
+ALTER TABLE chat_messages
+    ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (to_tsvector('english', content)) STORED;
+
+CREATE INDEX idx_chat_messages_search ON chat_messages USING GIN (search_vector);
@@ -0,0 +1,10 @@
+-- Chat search scoped to one family (ChatSearchService): the GIN index leads with the session,
+-- so a search probes only the child's sessions instead of matching and ranking every family's
+-- messages. btree_gin provides the GIN operator class for the bigint column.
+
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX idx_chat_messages_session_search ON chat_messages USING GIN (chat_session_id, search_vector);
+
+-- Superseded: the session-leading index serves every search
+DROP INDEX idx_chat_messages_search;
@@ -0,0 +1,14 @@
+-- Unlocked answers outlive chat archival (ChatArchiveService): the answer text is kept with the
+-- unlocked answer, so a repeated question is answered without the message, which archival moves
+-- out of chat_messages. answer_message_id is cleared when its message is archived.
+
+ALTER TABLE unlocked_answers ADD COLUMN answer_content TEXT;
+
+UPDATE unlocked_answers u SET answer_content = m.content
+FROM chat_messages m WHERE m.id = u.answer_message_id;
+
+-- Rows whose message is already gone cannot answer anything
+DELETE FROM unlocked_answers WHERE answer_content IS NULL;
+
+ALTER TABLE unlocked_answers ALTER COLUMN answer_content SET NOT NULL;
+ALTER TABLE unlocked_answers ALTER COLUMN answer_message_id DROP NOT NULL;
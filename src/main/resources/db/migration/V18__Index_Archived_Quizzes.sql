@@ -0,0 +1,13 @@
+-- Quizzes of archived chat messages, so a quiz passed or retaken after its session was archived
+-- finds that session and restores it (ChatArchiveService.restoreForQuiz). Archives written before
+-- this table (quizzes_indexed false) are indexed by the archival job.
+
+CREATE TABLE chat_session_archive_quizzes (
+    chat_session_id BIGINT NOT NULL REFERENCES chat_session_archives(chat_session_id) ON DELETE CASCADE,
+    quiz_id BIGINT NOT NULL,
+    PRIMARY KEY (chat_session_id, quiz_id)
+);
+
+CREATE INDEX idx_chat_session_archive_quizzes_quiz ON chat_session_archive_quizzes(quiz_id);
+
+ALTER TABLE chat_session_archives ADD COLUMN quizzes_indexed BOOLEAN NOT NULL DEFAULT FALSE;
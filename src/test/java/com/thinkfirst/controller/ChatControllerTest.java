@@ -0,0 +1,142 @@
+package com.thinkfirst.controller;
+
+import com.thinkfirst.config.ChatHistoryProperties;
+import com.thinkfirst.config.ChatJobProperties;
+import com.thinkfirst.dto.ChatRequest;
+import com.thinkfirst.dto.ChatResponse;
+import com.thinkfirst.exception.OverloadedException;
+import com.thinkfirst.exception.RateLimitException;
+import com.thinkfirst.service.ChatJobService;
+import com.thinkfirst.service.ChatSearchService;
+import com.thinkfirst.service.ChatService;
+import com.thinkfirst.service.IdempotencyService;
+import com.thinkfirst.service.OverloadGuard;
+import com.thinkfirst.service.RateLimitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the chat query endpoint: rate limits against overload shedding
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatControllerTest {
+
+    @Mock
+    private ChatService chatService;
+
+    @Mock
+    private RateLimitService rateLimitService;
+
+    @Mock
+    private ChatJobService chatJobService;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private ChatSearchService chatSearchService;
+
+    @Mock
+    private OverloadGuard overloadGuard;
+
+    private ChatController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new ChatController(chatService, rateLimitService, chatJobService, new ChatJobProperties(),
+                new ChatHistoryProperties(), idempotencyService, chatSearchService, overloadGuard);
+        when(idempotencyService.execute(any(), any(), any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<ResponseEntity<?>>>getArgument(3).get());
+    }
+
+    @Test
+    void testSendQuery_AdmittedQueryCountsAgainstLimits() {
+        admitIn(OverloadGuard.Mode.NORMAL);
+        ChatResponse response = ChatResponse.builder().message("Plants use sunlight").build();
+        when(chatService.processQuery(any(), eq(OverloadGuard.Mode.NORMAL))).thenReturn(response);
+
+        ResponseEntity<?> result = controller.sendQuery(request(), false, null);
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(result.getBody()).isSameAs(response);
+        verify(rateLimitService).checkChatLimits(1L);
+        verify(rateLimitService, never()).refundChatLimits(anyLong());
+    }
+
+    @Test
+    void testSendQuery_ShedBeforeAdmissionCostsNoQuota() {
+        when(overloadGuard.call(eq("chat"), any())).thenThrow(new OverloadedException("Overloaded: 8 requests in flight"));
+        when(overloadGuard.retryAfterSeconds()).thenReturn(5L);
+
+        ResponseEntity<?> result = controller.sendQuery(request(), false, null);
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(result.getHeaders().getFirst("Retry-After")).isEqualTo("5");
+        verifyNoInteractions(rateLimitService, chatService);
+    }
+
+    @Test
+    void testSendQuery_ShedInCacheOnlyModeRefundsQuota() {
+        admitIn(OverloadGuard.Mode.CACHE_ONLY);
+        when(chatService.processQuery(any(), eq(OverloadGuard.Mode.CACHE_ONLY)))
+                .thenThrow(new OverloadedException("No cached answer"));
+
+        ResponseEntity<?> result = controller.sendQuery(request(), false, null);
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        verify(rateLimitService).checkChatLimits(1L);
+        verify(rateLimitService).refundChatLimits(1L);
+    }
+
+    @Test
+    void testSendQuery_RateLimitedQueryIsNotProcessed() {
+        admitIn(OverloadGuard.Mode.NORMAL);
+        doThrow(new RateLimitException("RateLimit", "Chat requests limit exceeded"))
+                .when(rateLimitService).checkChatLimits(1L);
+
+        assertThatThrownBy(() -> controller.sendQuery(request(), false, null))
+                .isInstanceOf(RateLimitException.class);
+        verifyNoInteractions(chatService);
+        verify(rateLimitService, never()).refundChatLimits(anyLong());
+    }
+
+    @Test
+    void testSendQuery_AsyncRejectedByFullQueueRefundsQuota() {
+        when(chatJobService.submit(any())).thenReturn(Optional.empty());
+
+        ResponseEntity<?> result = controller.sendQuery(request(), true, null);
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        verify(rateLimitService).checkChatLimits(1L);
+        verify(rateLimitService).refundChatLimits(1L);
+    }
+
+    private void admitIn(OverloadGuard.Mode mode) {
+        when(overloadGuard.call(eq("chat"), any()))
+                .thenAnswer(inv -> inv.<Function<OverloadGuard.Mode, ?>>getArgument(1).apply(mode));
+    }
+
+    private static ChatRequest request() {
+        ChatRequest request = new ChatRequest();
+        request.setChildId(1L);
+        request.setSessionId(2L);
+        request.setQuery("How do plants make food?");
+        return request;
+    }
+}
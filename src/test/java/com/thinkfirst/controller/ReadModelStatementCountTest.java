@@ -0,0 +1,165 @@
+package com.thinkfirst.controller;
+
+import com.thinkfirst.model.ChatMessage;
+import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.model.Child;
+import com.thinkfirst.model.Question;
+import com.thinkfirst.model.Quiz;
+import com.thinkfirst.model.Subject;
+import com.thinkfirst.model.User;
+import com.thinkfirst.repository.ChatMessageRepository;
+import com.thinkfirst.repository.ChatSessionRepository;
+import com.thinkfirst.repository.ChildRepository;
+import com.thinkfirst.repository.QuizRepository;
+import com.thinkfirst.repository.SubjectRepository;
+import com.thinkfirst.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements each read endpoint issues, with open-in-view off, so a lazy
+ * association creeping back into a response shows up as extra statements
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:readmodels;DB_CLOSE_DELAY=-1",
+        "spring.jpa.open-in-view=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReadModelStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChildRepository childRepository;
+
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    private Statistics statistics;
+    private Long childId;
+    private Long sessionId;
+    private Long quizId;
+
+    @BeforeAll
+    void seed() {
+        User parent = userRepository.save(User.builder()
+                .email("parent@example.com").password("secret").fullName("Pat Parent")
+                .role(User.UserRole.PARENT).active(true).emailVerified(true).build());
+        Child child = childRepository.save(Child.builder()
+                .username("sam").password("secret").age(9).parent(parent).active(true).build());
+        Subject science = subjectRepository.save(Subject.builder().name("Statement Count Science").active(true).build());
+
+        List<Question> questions = new ArrayList<>();
+        Quiz quiz = Quiz.builder().subject(science).title("Plants").type(Quiz.QuizType.PREREQUISITE)
+                .difficulty(Quiz.DifficultyLevel.BEGINNER).passingScore(70).active(true).questions(questions).build();
+        for (int i = 0; i < 3; i++) {
+            questions.add(Question.builder().quiz(quiz).questionText("Question " + i)
+                    .type(Question.QuestionType.MULTIPLE_CHOICE)
+                    .options(new ArrayList<>(List.of("Sunlight", "Rocks", "Sand", "Metal")))
+                    .correctOptionIndex(0).displayOrder(i).build());
+        }
+        quizId = quizRepository.save(quiz).getId();
+
+        ChatSession session = chatSessionRepository.save(ChatSession.builder()
+                .child(child).title("How plants eat").messageCount(0).archived(false).build());
+        chatSessionRepository.save(ChatSession.builder()
+                .child(child).subject(science).title("Science").messageCount(0).archived(false).build());
+        sessionId = session.getId();
+        childId = child.getId();
+
+        for (int i = 0; i < 6; i++) {
+            chatMessageRepository.save(ChatMessage.builder()
+                    .chatSession(session)
+                    .role(i % 2 == 0 ? ChatMessage.MessageRole.USER : ChatMessage.MessageRole.ASSISTANT)
+                    .content("Message " + i)
+                    .associatedQuiz(i == 1 ? quiz : null)
+                    .requiresQuizCompletion(i == 1)
+                    .build());
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @BeforeEach
+    void resetStatistics() {
+        statistics.clear();
+    }
+
+    @Test
+    void testHistory_OneStatement() throws Exception {
+        mockMvc.perform(get("/api/chat/session/{id}/history", sessionId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("$[1].quizId").value(quizId));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testHistoryPage_OneStatement() throws Exception {
+        mockMvc.perform(get("/api/chat/session/{id}/history", sessionId).param("limit", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(4))
+                .andExpect(jsonPath("$.hasMore").value(true));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSessions_OneStatement() throws Exception {
+        // Includes a session without a subject, so the subject id must not become an inner join
+        mockMvc.perform(get("/api/chat/child/{id}/sessions", childId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testQuiz_OneStatement() throws Exception {
+        mockMvc.perform(get("/api/quiz/{id}", quizId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.subjectName").value("Statement Count Science"))
+                .andExpect(jsonPath("$.questions.length()").value(3))
+                .andExpect(jsonPath("$.questions[0].options.length()").value(4));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,41 @@
+package com.thinkfirst.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for query normalization; V12's SQL backfill must produce the same strings
+ */
+class QueryFingerprintTest {
+
+    @Test
+    void testCaseIsIgnored() {
+        assertThat(QueryFingerprint.normalize("Why Is The SKY Blue?")).isEqualTo("why is the sky blue?");
+    }
+
+    @Test
+    void testWhitespaceRunsCollapseToOneSpace() {
+        assertThat(QueryFingerprint.normalize("why   is\t\tthe\nsky\r\nblue\f\u000B?")).isEqualTo("why is the sky blue ?");
+    }
+
+    @Test
+    void testLeadingAndTrailingWhitespaceIsRemoved() {
+        assertThat(QueryFingerprint.normalize(" \t\n why is the sky blue? \r\n ")).isEqualTo("why is the sky blue?");
+        assertThat(QueryFingerprint.normalize(" \t ")).isEmpty();
+    }
+
+    @Test
+    void testOnlyAsciiIsNormalized() {
+        // Only ASCII letters are lowercased and only ASCII whitespace collapsed, as in SQL under "C"
+        assertThat(QueryFingerprint.normalize("\u00C9T\u00C9 \u00C9t\u00E9")).isEqualTo("\u00C9t\u00C9 \u00C9t\u00E9");
+        assertThat(QueryFingerprint.normalize("a\u00A0\u0001b")).isEqualTo("a\u00A0\u0001b");
+    }
+
+    @Test
+    void testFingerprintIsSha256HexOfTheNormalizedQuery() {
+        assertThat(QueryFingerprint.of("  Hello \n WORLD "))
+                .isEqualTo(QueryFingerprint.of("hello world"))
+                .isEqualTo("b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9");
+    }
+}
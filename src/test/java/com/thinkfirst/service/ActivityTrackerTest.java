@@ -0,0 +1,112 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.ActivityProperties;
+import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.model.Child;
+import com.thinkfirst.repository.ChatSessionRepository;
+import com.thinkfirst.repository.ChildRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the write-behind ActivityTracker
+ */
+class ActivityTrackerTest {
+
+    private ChildRepository childRepository;
+    private ChatSessionRepository chatSessionRepository;
+    private ActivityTracker activityTracker;
+
+    @BeforeEach
+    void setUp() {
+        childRepository = mock(ChildRepository.class);
+        chatSessionRepository = mock(ChatSessionRepository.class);
+        activityTracker = new ActivityTracker(childRepository, chatSessionRepository,
+                mock(PlatformTransactionManager.class), new ActivityProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testFlush_CoalescesActivityIntoOneUpdatePerRow() {
+        ChatSession session = ChatSession.builder().id(7L).messageCount(10).build();
+        when(chatSessionRepository.findAllForUpdate(any())).thenReturn(List.of(session));
+
+        activityTracker.recordSessionMessages(7L, 2);
+        activityTracker.recordSessionMessages(7L, 2);
+        activityTracker.flush();
+
+        assertThat(session.getMessageCount()).isEqualTo(14);
+        assertThat(session.getUpdatedAt()).isNotNull();
+        verifyNoInteractions(childRepository);
+
+        activityTracker.flush(); // nothing pending
+        verify(chatSessionRepository, times(1)).findAllForUpdate(any());
+    }
+
+    @Test
+    void testFlush_ExtendsStreakFromStoredLastActiveDate() {
+        Child child = Child.builder().id(3L).currentStreak(4)
+                .lastActiveDate(LocalDateTime.now().minusDays(1)).build();
+        when(childRepository.findAllForUpdate(any())).thenReturn(List.of(child));
+
+        activityTracker.recordChildActivity(3L);
+        activityTracker.recordChildActivity(3L);
+        activityTracker.flush();
+
+        assertThat(child.getCurrentStreak()).isEqualTo(5);
+        assertThat(child.getLastActiveDate().toLocalDate()).isEqualTo(LocalDateTime.now().toLocalDate());
+    }
+
+    @Test
+    void testFlush_FailureKeepsActivityForNextFlush() {
+        ChatSession session = ChatSession.builder().id(7L).messageCount(0).build();
+        when(chatSessionRepository.findAllForUpdate(any()))
+                .thenThrow(new CannotAcquireLockException("lock timeout"))
+                .thenReturn(List.of(session));
+
+        activityTracker.recordSessionMessages(7L, 2);
+        activityTracker.flush();
+        activityTracker.recordSessionMessages(7L, 2);
+        activityTracker.flush();
+
+        assertThat(session.getMessageCount()).isEqualTo(4);
+    }
+
+    @Test
+    void testWriteThrough_FailureFailsTheCaller() {
+        ActivityProperties writeThrough = new ActivityProperties();
+        writeThrough.setWriteBehind(false);
+        activityTracker = new ActivityTracker(childRepository, chatSessionRepository,
+                mock(PlatformTransactionManager.class), writeThrough, new SimpleMeterRegistry());
+        when(chatSessionRepository.findAllForUpdate(any())).thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        assertThatThrownBy(() -> activityTracker.recordSessionMessages(7L, 2))
+                .isInstanceOf(CannotAcquireLockException.class);
+
+        // Nothing is queued for a later flush of the failed request
+        activityTracker.flush();
+        verify(chatSessionRepository, times(1)).findAllForUpdate(any());
+    }
+
+    @Test
+    void testReads_MergePendingActivity() {
+        Child child = Child.builder().id(3L).currentStreak(2)
+                .lastActiveDate(LocalDateTime.now().minusDays(1)).build();
+
+        activityTracker.recordChildActivity(3L);
+
+        assertThat(activityTracker.currentStreak(child)).isEqualTo(3);
+        assertThat(activityTracker.lastActiveDate(child)).isAfter(child.getLastActiveDate());
+        verifyNoInteractions(childRepository);
+    }
+}
@@ -0,0 +1,176 @@
+package com.thinkfirst.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.ChatStorageProperties;
+import com.thinkfirst.dto.ChatMessageView;
+import com.thinkfirst.model.ChatMessage;
+import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.model.ChatSessionArchive;
+import com.thinkfirst.model.Quiz;
+import com.thinkfirst.repository.ChatMessageRepository;
+import com.thinkfirst.repository.ChatSessionArchiveRepository;
+import com.thinkfirst.repository.ChatSessionRepository;
+import com.thinkfirst.repository.QuizRepository;
+import com.thinkfirst.repository.UnlockedAnswerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for moving inactive chat sessions to the compressed archive and back
+ */
+@SuppressWarnings("unchecked")
+class ChatArchiveServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 16, 0);
+
+    private ChatSessionRepository chatSessionRepository;
+    private ChatMessageRepository chatMessageRepository;
+    private ChatSessionArchiveRepository archiveRepository;
+    private UnlockedAnswerRepository unlockedAnswerRepository;
+    private QuizRepository quizRepository;
+    private JdbcTemplate jdbcTemplate;
+    private ChatArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        chatSessionRepository = mock(ChatSessionRepository.class);
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        archiveRepository = mock(ChatSessionArchiveRepository.class);
+        unlockedAnswerRepository = mock(UnlockedAnswerRepository.class);
+        quizRepository = mock(QuizRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        archiveService = new ChatArchiveService(chatSessionRepository, chatMessageRepository, archiveRepository,
+                unlockedAnswerRepository, quizRepository, jdbcTemplate, mock(PlatformTransactionManager.class),
+                new ObjectMapper().findAndRegisterModules(), new ChatStorageProperties());
+    }
+
+    @Test
+    void testArchive_CompressesHistoryAndRemovesHotRows() {
+        ChatSession inactive = ChatSession.builder().id(7L).updatedAt(T0).build();
+        ChatSession activeAgain = ChatSession.builder().id(8L).updatedAt(T0.plusYears(1)).build();
+        when(chatSessionRepository.findAllForUpdate(List.of(7L, 8L))).thenReturn(List.of(inactive, activeAgain));
+        List<ChatMessageView> history = List.of(message(1, ChatMessage.MessageRole.USER, "Why is the sky blue?"),
+                message(2, ChatMessage.MessageRole.ASSISTANT, "Sunlight scatters off air molecules..."));
+        when(chatMessageRepository.findViewsBySessionId(7L)).thenReturn(history);
+
+        int archived = archiveService.archiveBatch(List.of(7L, 8L), T0.plusMonths(6));
+
+        assertThat(archived).isEqualTo(1);
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+        assertThat(saved.getValue().getChatSessionId()).isEqualTo(7L);
+        assertThat(saved.getValue().getMessageCount()).isEqualTo(2);
+        verify(unlockedAnswerRepository).detachFromSessions(List.of(7L));
+        verify(chatMessageRepository).deleteBySessionIds(List.of(7L));
+        verify(chatSessionRepository).setMessagesArchivedAt(eq(List.of(7L)), any());
+
+        // And reads back unchanged
+        when(archiveRepository.findById(7L)).thenReturn(Optional.of(saved.getValue()));
+        assertThat(archiveService.findArchivedMessages(7L)).contains(history);
+    }
+
+    @Test
+    void testRestore_ReinsertsMessagesWithOriginalIdsAndTimes() {
+        ChatSession session = ChatSession.builder().id(7L).messagesArchivedAt(T0.plusMonths(6)).build();
+        when(chatSessionRepository.findAllForUpdate(List.of(7L))).thenReturn(List.of(
+                ChatSession.builder().id(7L).updatedAt(T0).build()));
+        when(chatMessageRepository.findViewsBySessionId(7L))
+                .thenReturn(List.of(message(1, ChatMessage.MessageRole.USER, "What is a prime number?")));
+        archiveService.archiveBatch(List.of(7L), T0.plusMonths(6));
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+        when(archiveRepository.findById(7L)).thenReturn(Optional.of(saved.getValue()));
+
+        archiveService.restore(session);
+
+        ArgumentCaptor<List<Object[]>> restored = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO chat_messages"), restored.capture());
+        // id, session, role, content, quiz, requires quiz completion, moderation, created at
+        assertThat(restored.getValue()).singleElement().isEqualTo(new Object[] {
+                1L, 7L, "USER", "What is a prime number?", null, false, "APPROVED",
+                Timestamp.valueOf(T0.plusMinutes(1))});
+        verify(archiveRepository).delete(saved.getValue());
+        assertThat(session.getMessagesArchivedAt()).isNull();
+    }
+
+    @Test
+    void testRestore_DropsQuizzesDeletedWhileArchived() {
+        ChatSession session = ChatSession.builder().id(7L).messagesArchivedAt(T0.plusMonths(6)).build();
+        when(chatSessionRepository.findAllForUpdate(List.of(7L))).thenReturn(List.of(
+                ChatSession.builder().id(7L).updatedAt(T0).build()));
+        when(chatMessageRepository.findViewsBySessionId(7L)).thenReturn(List.of(
+                message(1, ChatMessage.MessageRole.ASSISTANT, "Answer this quiz first", 40L),
+                message(2, ChatMessage.MessageRole.ASSISTANT, "And this one", 41L)));
+        archiveService.archiveBatch(List.of(7L), T0.plusMonths(6));
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+        when(archiveRepository.findById(7L)).thenReturn(Optional.of(saved.getValue()));
+        // Quiz 40 was deleted in the meantime
+        Quiz kept = Quiz.builder().id(41L).build();
+        when(quizRepository.findAllById(any())).thenReturn(List.of(kept));
+
+        archiveService.restore(session);
+
+        ArgumentCaptor<List<Object[]>> restored = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), restored.capture());
+        assertThat(restored.getValue()).extracting(row -> row[4]).containsExactly(null, 41L);
+    }
+
+    @Test
+    void testQuizPassedAfterArchival_RestoresItsSession() {
+        ChatSession session = ChatSession.builder().id(7L).updatedAt(T0).build();
+        when(chatSessionRepository.findAllForUpdate(List.of(7L))).thenReturn(List.of(session));
+        when(chatMessageRepository.findViewsBySessionId(7L)).thenReturn(List.of(
+                message(1, ChatMessage.MessageRole.USER, "How do magnets work?"),
+                message(2, ChatMessage.MessageRole.ASSISTANT, "Magnets have two poles...", 40L)));
+        archiveService.archiveBatch(List.of(7L), T0.plusMonths(6));
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+        assertThat(saved.getValue().getQuizIds()).containsExactly(40L);
+        when(archiveRepository.findSessionIdByQuizId(40L)).thenReturn(Optional.of(7L));
+        when(archiveRepository.findById(7L)).thenReturn(Optional.of(saved.getValue()));
+        when(chatSessionRepository.findById(7L)).thenReturn(Optional.of(session));
+        when(quizRepository.findAllById(any())).thenReturn(List.of(Quiz.builder().id(40L).build()));
+
+        // The child passes quiz 40 after the session was archived
+        archiveService.restoreForQuiz(40L);
+
+        ArgumentCaptor<List<Object[]>> restored = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), restored.capture());
+        assertThat(restored.getValue()).extracting(row -> row[0], row -> row[4])
+                .containsExactly(tuple(1L, null), tuple(2L, 40L));
+        verify(archiveRepository).delete(saved.getValue());
+    }
+
+    @Test
+    void testQuizNeverArchived_RestoresNothing() {
+        when(archiveRepository.findSessionIdByQuizId(40L)).thenReturn(Optional.empty());
+
+        archiveService.restoreForQuiz(40L);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static ChatMessageView message(long id, ChatMessage.MessageRole role, String content) {
+        return message(id, role, content, null);
+    }
+
+    private static ChatMessageView message(long id, ChatMessage.MessageRole role, String content, Long quizId) {
+        return new ChatMessageView(id, role, content, quizId, false, "APPROVED", T0.plusMinutes(id));
+    }
+}
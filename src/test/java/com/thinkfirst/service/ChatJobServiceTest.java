@@ -0,0 +1,194 @@
+package com.thinkfirst.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.ChatJobProperties;
+import com.thinkfirst.config.OverloadProperties;
+import com.thinkfirst.dto.ChatJobStatus;
+import com.thinkfirst.dto.ChatRequest;
+import com.thinkfirst.dto.ChatResponse;
+import com.thinkfirst.exception.OverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ChatJobService, with job state kept in an in-memory stand-in for the Redis hashes
+ */
+@SuppressWarnings("unchecked")
+class ChatJobServiceTest {
+
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+
+    private ChatService chatService;
+    private RedisTemplate<String, String> redisTemplate;
+    private ChatJobProperties properties;
+    private SimpleMeterRegistry registry;
+    private RateLimitService rateLimitService;
+    private ChatJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        chatService = mock(ChatService.class);
+        redisTemplate = mock(RedisTemplate.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        doAnswer(inv -> {
+            hashes.computeIfAbsent(inv.getArgument(0), k -> new ConcurrentHashMap<>()).putAll(inv.getArgument(1));
+            return null;
+        }).when(hashOperations).putAll(anyString(), anyMap());
+        when(hashOperations.entries(anyString())).thenAnswer(inv -> hashes.getOrDefault(inv.getArgument(0), Map.of()));
+
+        properties = new ChatJobProperties();
+        properties.setWorkerThreads(1);
+        properties.setQueueCapacity(1);
+        registry = new SimpleMeterRegistry();
+        rateLimitService = mock(RateLimitService.class);
+        jobService = new ChatJobService(chatService, redisTemplate, mock(RedisMessageListenerContainer.class),
+                mock(PlatformTransactionManager.class), new ObjectMapper(), registry, properties,
+                new OverloadGuard(new OverloadProperties(), registry), rateLimitService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    @Test
+    void testSubmit_RunsQueryAndDeliversResultToWaiter() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatService.processQuery(any(), any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return ChatResponse.builder().message("Plants use sunlight").build();
+        });
+
+        Optional<ChatJobStatus> job = jobService.submit(request());
+        assertThat(job).hasValueSatisfying(j -> assertThat(j.getStatus()).isEqualTo(ChatJobStatus.Status.QUEUED));
+        String jobId = job.get().getJobId();
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        AtomicReference<ChatJobStatus> delivered = new AtomicReference<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        jobService.awaitFinished(jobId, status -> {
+            delivered.set(status);
+            finished.countDown();
+        });
+        assertThat(jobService.get(jobId)).hasValueSatisfying(
+                j -> assertThat(j.getStatus()).isEqualTo(ChatJobStatus.Status.RUNNING));
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delivered.get().getStatus()).isEqualTo(ChatJobStatus.Status.SUCCEEDED);
+        assertThat(delivered.get().getResult()).contains("Plants use sunlight");
+        verify(redisTemplate).convertAndSend(properties.getChannel(), jobId);
+        assertThat(registry.get("chat.jobs.wait").timer().count()).isEqualTo(1);
+        assertThat(registry.get("chat.jobs.completed").tag("outcome", "succeeded").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testSubmit_RejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatService.processQuery(any(), any())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return ChatResponse.builder().message("ok").build();
+        });
+
+        assertThat(jobService.submit(request())).isPresent(); // running
+        assertThat(jobService.submit(request())).isPresent(); // queued
+        Optional<ChatJobStatus> third = jobService.submit(request());
+        release.countDown();
+
+        assertThat(third).isEmpty();
+        assertThat(registry.get("chat.jobs.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailedJob_IsReportedToLateWaiter() throws Exception {
+        when(chatService.processQuery(any(), any())).thenThrow(new RuntimeException("All AI providers failed"));
+
+        String jobId = jobService.submit(request()).orElseThrow().getJobId();
+        verify(redisTemplate, timeout(5000)).convertAndSend(eq(properties.getChannel()), eq(jobId));
+
+        // Registering after the job finished still delivers its final state
+        AtomicReference<ChatJobStatus> delivered = new AtomicReference<>();
+        jobService.awaitFinished(jobId, delivered::set);
+        assertThat(delivered.get().getStatus()).isEqualTo(ChatJobStatus.Status.FAILED);
+        assertThat(delivered.get().getError()).isEqualTo("All AI providers failed");
+    }
+
+    @Test
+    void testShedJob_RefundsChatLimits() throws Exception {
+        when(chatService.processQuery(any(), any())).thenThrow(new OverloadedException("No cached answer"));
+
+        String jobId = jobService.submit(request()).orElseThrow().getJobId();
+        verify(redisTemplate, timeout(5000)).convertAndSend(eq(properties.getChannel()), eq(jobId));
+
+        verify(rateLimitService).refundChatLimits(1L);
+        assertThat(jobService.get(jobId).orElseThrow().getStatus()).isEqualTo(ChatJobStatus.Status.FAILED);
+        assertThat(registry.get("chat.jobs.completed").tag("outcome", "shed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testShutdown_FailsAndRefundsJobsLeftAfterGrace() throws Exception {
+        properties.setShutdownGrace(Duration.ZERO);
+        CountDownLatch started = new CountDownLatch(1);
+        when(chatService.processQuery(any(), any())).thenAnswer(inv -> {
+            started.countDown();
+            new CountDownLatch(1).await(5, TimeUnit.SECONDS); // interrupted by shutdown
+            return ChatResponse.builder().message("too late").build();
+        });
+        String runningId = jobService.submit(request()).orElseThrow().getJobId();
+        String queuedId = jobService.submit(request()).orElseThrow().getJobId();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        jobService.shutdown();
+
+        for (String jobId : List.of(runningId, queuedId)) {
+            assertThat(jobService.get(jobId).orElseThrow().getStatus()).isEqualTo(ChatJobStatus.Status.FAILED);
+            verify(redisTemplate).convertAndSend(properties.getChannel(), jobId);
+        }
+        verify(rateLimitService, times(2)).refundChatLimits(1L);
+        // The interrupted job does not overwrite its abandoned state
+        verify(redisTemplate, after(500).times(2)).convertAndSend(eq(properties.getChannel()), anyString());
+        assertThat(registry.get("chat.jobs.completed").tag("outcome", "abandoned").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testSubmit_RejectsWhenRedisIsDown() {
+        HashOperations<String, Object, Object> hashOperations = redisTemplate.opsForHash();
+        doThrow(new RuntimeException("Connection refused")).when(hashOperations).putAll(anyString(), anyMap());
+
+        assertThat(jobService.submit(request())).isEmpty();
+        verifyNoInteractions(chatService);
+    }
+
+    private static ChatRequest request() {
+        ChatRequest request = new ChatRequest();
+        request.setChildId(1L);
+        request.setSessionId(2L);
+        request.setQuery("How do plants make food?");
+        return request;
+    }
+}
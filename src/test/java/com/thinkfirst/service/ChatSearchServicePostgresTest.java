@@ -0,0 +1,117 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.dto.ChatSearchHit;
+import com.thinkfirst.dto.CursorPage;
+import com.thinkfirst.dto.SearchCursor;
+import com.thinkfirst.model.ChatMessage;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Chat history search against a real PostgreSQL, migrated with the Flyway scripts into a
+ * throwaway schema: the generated SQL must parse, stay within one family and page without
+ * gaps or repeats.
+ *
+ * Opt-in: runs when test.postgres.url is set (test.postgres.user / test.postgres.password,
+ * default postgres and empty), e.g. {@code mvn test -Dtest.postgres.url=jdbc:postgresql://localhost:5432/postgres}.
+ * The server needs the btree_gin extension (part of contrib).
+ */
+class ChatSearchServicePostgresTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    private JdbcTemplate jdbcTemplate;
+    private ChatSearchService searchService;
+    private String schema;
+
+    @BeforeEach
+    void setUp() {
+        String url = System.getProperty("test.postgres.url");
+        assumeTrue(url != null, "test.postgres.url not set");
+        schema = "chat_search_test_" + System.nanoTime();
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                System.getProperty("test.postgres.user", "postgres"), System.getProperty("test.postgres.password", ""));
+        Properties connection = new Properties();
+        connection.setProperty("currentSchema", schema);
+        dataSource.setConnectionProperties(connection);
+        Flyway.configure().dataSource(dataSource).schemas(schema).createSchemas(true).load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        searchService = new ChatSearchService(new NamedParameterJdbcTemplate(jdbcTemplate));
+
+        // Ids clear of the rows the migrations seed
+        jdbcTemplate.update("INSERT INTO users (id, email, password, role) VALUES (900, 'search-test@example.com', 'x', 'PARENT')");
+        jdbcTemplate.update("INSERT INTO children (id, username, password, parent_id) VALUES "
+                + "(901, 'search-test-ada', 'x', 900), (902, 'search-test-bob', 'x', 900)");
+        jdbcTemplate.update("INSERT INTO chat_sessions (id, child_id, title) VALUES "
+                + "(10, 901, 'Volcanoes'), (11, 901, 'Rocks'), (20, 902, 'Volcanoes')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (jdbcTemplate != null) {
+            jdbcTemplate.execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void testSearch_PagesThroughOneChildsMatchesByRank() {
+        List<Long> expected = new ArrayList<>();
+        // More mentions rank higher; ids break the tie between the two equal ones
+        expected.add(message(1, 10, "USER", "volcano volcano volcano volcano: why do they erupt?", NOW.minusHours(1)));
+        expected.add(message(2, 11, "ASSISTANT", "A volcano erupts when magma rises. Every volcano is different.", NOW.minusHours(2)));
+        expected.add(message(4, 10, "ASSISTANT", "The biggest volcano on Mars is Olympus Mons.", NOW.minusHours(3)));
+        expected.add(message(3, 10, "USER", "Is there a volcano on Mars?", NOW.minusHours(4)));
+        message(5, 10, "USER", "How are rocks made?", NOW.minusHours(5));
+        message(6, 20, "USER", "volcano volcano volcano volcano volcano", NOW.minusHours(1));
+
+        List<ChatSearchHit> hits = new ArrayList<>();
+        SearchCursor after = null;
+        int pages = 0;
+        CursorPage<ChatSearchHit> page;
+        do {
+            page = searchService.search(901L, "volcanoes", null, null, null, after, 2);
+            hits.addAll(page.getItems());
+            after = SearchCursor.decode(page.getNextCursor()).orElse(null);
+            pages++;
+        } while (page.isHasMore());
+
+        assertThat(pages).isEqualTo(2);
+        assertThat(hits).extracting(ChatSearchHit::messageId).containsExactlyElementsOf(expected);
+        assertThat(hits).extracting(ChatSearchHit::sessionTitle).containsOnly("Volcanoes", "Rocks");
+        assertThat(hits.get(0).snippet()).contains("«volcano»");
+    }
+
+    @Test
+    void testSearch_AppliesDateAndRoleFilters() {
+        message(1, 10, "USER", "Why do volcanoes erupt?", NOW.minusDays(3));
+        message(2, 10, "ASSISTANT", "A volcano erupts when magma rises.", NOW.minusDays(3));
+        message(3, 10, "ASSISTANT", "Volcanoes can sleep for centuries.", NOW.minusDays(10));
+
+        CursorPage<ChatSearchHit> page = searchService.search(901L, "volcano", NOW.minusDays(5), NOW,
+                ChatMessage.MessageRole.ASSISTANT, null, 10);
+
+        assertThat(page.getItems()).extracting(ChatSearchHit::messageId).containsExactly(2L);
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    private long message(long id, long sessionId, String role, String content, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO chat_messages (id, chat_session_id, role, content, created_at) VALUES (?, ?, ?, ?, ?)",
+                id, sessionId, role, content, createdAt);
+        return id;
+    }
+}
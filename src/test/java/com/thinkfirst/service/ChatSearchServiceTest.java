@@ -0,0 +1,81 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.dto.ChatSearchHit;
+import com.thinkfirst.dto.CursorPage;
+import com.thinkfirst.dto.SearchCursor;
+import com.thinkfirst.model.ChatMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the chat history search query and its paging
+ */
+@SuppressWarnings("unchecked")
+class ChatSearchServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 16, 0);
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private ChatSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        searchService = new ChatSearchService(jdbcTemplate);
+    }
+
+    @Test
+    void testSearch_AppliesOnlyGivenFiltersAndPagesByRank() {
+        when(jdbcTemplate.query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of(hit(9L, 0.9f), hit(5L, 0.6f), hit(4L, 0.6f)));
+
+        CursorPage<ChatSearchHit> page = searchService.search(1L, "volcano", T0, null,
+                ChatMessage.MessageRole.USER, null, 2);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(sql.capture(), params.capture(), any(RowMapper.class));
+        assertThat(sql.getValue()).contains("m.created_at >= :from", "m.role = :role")
+                .doesNotContain(":to", "hit.rank < :rank");
+        assertThat(params.getValue().getValue("limit")).isEqualTo(3);
+        assertThat(params.getValue().getValue("role")).isEqualTo("USER");
+
+        assertThat(page.getItems()).extracting(ChatSearchHit::messageId).containsExactly(9L, 5L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(SearchCursor.decode(page.getNextCursor())).contains(new SearchCursor(0.6f, 5L));
+    }
+
+    @Test
+    void testSearch_CursorContinuesAfterLastHit() {
+        when(jdbcTemplate.query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(List.of(hit(4L, 0.6f)));
+
+        CursorPage<ChatSearchHit> page = searchService.search(1L, "volcano", null, null, null,
+                new SearchCursor(0.6f, 5L), 2);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(sql.capture(), params.capture(), any(RowMapper.class));
+        assertThat(sql.getValue()).contains("hit.rank < :rank OR (hit.rank = :rank AND hit.id < :id)");
+        assertThat(params.getValue().getValue("rank")).isEqualTo(0.6f);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    private static ChatSearchHit hit(long id, float rank) {
+        return new ChatSearchHit(id, 7L, "Volcanoes", ChatMessage.MessageRole.USER, T0,
+                "Why do «volcanoes» erupt?", rank);
+    }
+}
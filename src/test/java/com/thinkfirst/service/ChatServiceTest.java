@@ -0,0 +1,245 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.AnswerReuseProperties;
+import com.thinkfirst.dto.ChatMessageView;
+import com.thinkfirst.dto.ChatRequest;
+import com.thinkfirst.dto.ChatResponse;
+import com.thinkfirst.dto.ChatSessionView;
+import com.thinkfirst.dto.CursorPage;
+import com.thinkfirst.dto.ModerationResult;
+import com.thinkfirst.dto.PageCursor;
+import com.thinkfirst.model.ChatMessage;
+import com.thinkfirst.model.ChatSession;
+import com.thinkfirst.model.Child;
+import com.thinkfirst.model.QueryFingerprint;
+import com.thinkfirst.model.Subject;
+import com.thinkfirst.repository.ChatMessageRepository;
+import com.thinkfirst.repository.ChatSessionRepository;
+import com.thinkfirst.repository.ChildRepository;
+import com.thinkfirst.repository.SubjectRepository;
+import com.thinkfirst.repository.UnlockedAnswerRepository;
+import com.thinkfirst.service.ai.AIProviderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for keyset-paginated (and archived) history, session listing, unlocked-answer reuse
+ * and speculative answers in ChatService
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 16, 0);
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private ChatSessionRepository chatSessionRepository;
+
+    @Mock
+    private ChildRepository childRepository;
+
+    @Mock
+    private UnlockedAnswerRepository unlockedAnswerRepository;
+
+    @Mock
+    private SubjectRepository subjectRepository;
+
+    @Mock
+    private ContentModerationService contentModerationService;
+
+    @Mock
+    private AIProviderService aiProviderService;
+
+    @Mock
+    private ActivityTracker activityTracker;
+
+    @Mock
+    private ChatArchiveService chatArchiveService;
+
+    @Mock
+    private ProgressTrackingService progressTrackingService;
+
+    @Mock
+    private SpeculativeResponseService speculativeResponseService;
+
+    @Spy
+    private AnswerReuseProperties answerReuseProperties = new AnswerReuseProperties();
+
+    @InjectMocks
+    private ChatService chatService;
+
+    @Test
+    void testHistoryPage_ReturnsLatestMessagesInChronologicalOrder() {
+        // Repository answers newest first, with one row beyond the limit
+        when(chatMessageRepository.findLatestInSession(7L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(message(5, 5), message(4, 4), message(3, 3)));
+
+        CursorPage<ChatMessageView> page = chatService.getChatHistoryPage(7L, null, 2);
+
+        assertThat(page.getItems()).extracting(ChatMessageView::id).containsExactly(4L, 5L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(PageCursor.decode(page.getNextCursor()))
+                .contains(new PageCursor(T0.plusMinutes(4), 4L));
+    }
+
+    @Test
+    void testHistoryPage_CursorContinuesFromOldestMessage() {
+        PageCursor cursor = new PageCursor(T0.plusMinutes(4), 4L);
+        when(chatMessageRepository.findInSessionBefore(7L, cursor.timestamp(), 4L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(message(3, 3), message(2, 2)));
+
+        CursorPage<ChatMessageView> page = chatService.getChatHistoryPage(7L, cursor, 2);
+
+        assertThat(page.getItems()).extracting(ChatMessageView::id).containsExactly(2L, 3L);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        verify(chatMessageRepository, never()).findLatestInSession(any(), any());
+    }
+
+    @Test
+    void testHistoryPage_ArchivedSessionPagesThroughArchive() {
+        PageCursor cursor = new PageCursor(T0.plusMinutes(4), 4L);
+        when(chatMessageRepository.findInSessionBefore(7L, cursor.timestamp(), 4L, PageRequest.of(0, 3)))
+                .thenReturn(List.of());
+        when(chatArchiveService.findArchivedMessages(7L))
+                .thenReturn(Optional.of(List.of(message(1, 1), message(2, 2), message(3, 3), message(4, 4), message(5, 5))));
+
+        CursorPage<ChatMessageView> page = chatService.getChatHistoryPage(7L, cursor, 2);
+
+        assertThat(page.getItems()).extracting(ChatMessageView::id).containsExactly(2L, 3L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(PageCursor.decode(page.getNextCursor()))
+                .contains(new PageCursor(T0.plusMinutes(2), 2L));
+    }
+
+    @Test
+    void testSessionsPage_UsesUpdatedAtCursor() {
+        ChatSessionView recent = session(12L, T0.plusDays(2));
+        ChatSessionView older = session(9L, T0.plusDays(1));
+        when(chatSessionRepository.findLatestForChild(eq(1L), any()))
+                .thenReturn(List.of(recent, older));
+
+        CursorPage<ChatSessionView> page = chatService.getChildSessionsPage(1L, null, 1);
+
+        assertThat(page.getItems()).containsExactly(recent);
+        assertThat(PageCursor.decode(page.getNextCursor()))
+                .contains(new PageCursor(T0.plusDays(2), 12L));
+    }
+
+    @Test
+    void testPageCursor_RejectsForeignValues() {
+        assertThat(PageCursor.decode("not-a-cursor")).isEmpty();
+        assertThat(PageCursor.decode("")).isEmpty();
+    }
+
+    @Test
+    void testProcessQuery_RepeatedUnlockedQuestionSkipsModerationAndAI() {
+        Child child = Child.builder().id(1L).build();
+        ChatSession session = ChatSession.builder().id(7L).child(child).build();
+        when(childRepository.findById(1L)).thenReturn(Optional.of(child));
+        when(chatSessionRepository.findById(7L)).thenReturn(Optional.of(session));
+        when(unlockedAnswerRepository.findAnswerContent(eq(1L), eq(QueryFingerprint.of("why is the sky blue?")), any()))
+                .thenReturn(Optional.of("Sunlight scatters off air molecules..."));
+
+        ChatResponse response = chatService.processQuery(ChatRequest.builder()
+                .childId(1L).sessionId(7L).query("  Why is the SKY   blue? ").build());
+
+        assertThat(response.getResponseType()).isEqualTo(ChatResponse.ResponseType.FULL_ANSWER);
+        assertThat(response.getMessage()).isEqualTo("Sunlight scatters off air molecules...");
+        assertThat(response.getQuiz()).isNull();
+        verify(chatMessageRepository, times(2)).save(any(ChatMessage.class));
+        verifyNoInteractions(contentModerationService, aiProviderService);
+    }
+
+    @Test
+    void testProcessQuery_FlaggedQueryDiscardsSpeculativeAnswer() {
+        Child child = Child.builder().id(1L).age(9).build();
+        Subject subject = Subject.builder().id(2L).name("General").build();
+        ChatSession session = ChatSession.builder().id(7L).child(child).subject(subject).build();
+        SpeculativeResponseService.Speculation speculation = mock(SpeculativeResponseService.Speculation.class);
+        when(childRepository.findById(1L)).thenReturn(Optional.of(child));
+        when(chatSessionRepository.findById(7L)).thenReturn(Optional.of(session));
+        when(speculativeResponseService.isEnabled()).thenReturn(true);
+        when(progressTrackingService.checkPrerequisite(1L, 2L)).thenReturn(true);
+        when(speculativeResponseService.start("how to pick a lock", 9, "General")).thenReturn(speculation);
+        when(contentModerationService.moderateContent("how to pick a lock"))
+                .thenReturn(ModerationResult.flagged("Illicit content", "illicit"));
+
+        ChatResponse response = chatService.processQuery(ChatRequest.builder()
+                .childId(1L).sessionId(7L).query("how to pick a lock").build());
+
+        assertThat(response.getQuiz()).isNull();
+        verify(speculativeResponseService).discard(speculation, "flagged");
+        verify(speculativeResponseService, never()).discard(speculation, "unused");
+        verify(speculativeResponseService, never()).confirm(any(), anyLong());
+        verifyNoInteractions(aiProviderService);
+    }
+
+    @Test
+    void testProcessQuery_FailureBeforeConfirmDiscardsSpeculativeAnswer() {
+        Child child = Child.builder().id(1L).age(9).build();
+        Subject subject = Subject.builder().id(2L).name("General").build();
+        ChatSession session = ChatSession.builder().id(7L).child(child).subject(subject).build();
+        SpeculativeResponseService.Speculation speculation = mock(SpeculativeResponseService.Speculation.class);
+        when(childRepository.findById(1L)).thenReturn(Optional.of(child));
+        when(chatSessionRepository.findById(7L)).thenReturn(Optional.of(session));
+        when(speculativeResponseService.isEnabled()).thenReturn(true);
+        when(progressTrackingService.checkPrerequisite(1L, 2L)).thenReturn(true);
+        when(speculativeResponseService.start("why is the sky blue?", 9, "General")).thenReturn(speculation);
+        when(contentModerationService.moderateContent("why is the sky blue?")).thenReturn(ModerationResult.approved());
+        when(chatMessageRepository.save(any(ChatMessage.class))).thenThrow(new RuntimeException("Connection reset"));
+
+        assertThatThrownBy(() -> chatService.processQuery(ChatRequest.builder()
+                .childId(1L).sessionId(7L).query("why is the sky blue?").build()))
+                .hasMessage("Connection reset");
+
+        verify(speculativeResponseService).discard(speculation, "unused");
+        verify(speculativeResponseService, never()).confirm(any(), anyLong());
+    }
+
+    @Test
+    void testProcessQuery_FlaggedQueryLeavesNewSessionWithoutSubject() {
+        Child child = Child.builder().id(1L).age(9).build();
+        ChatSession session = ChatSession.builder().id(7L).child(child).build();
+        when(childRepository.findById(1L)).thenReturn(Optional.of(child));
+        when(chatSessionRepository.findById(7L)).thenReturn(Optional.of(session));
+        when(speculativeResponseService.isEnabled()).thenReturn(true);
+        when(subjectRepository.findByName("General"))
+                .thenReturn(Optional.of(Subject.builder().id(2L).name("General").build()));
+        when(progressTrackingService.checkPrerequisite(1L, 2L)).thenReturn(true);
+        when(contentModerationService.moderateContent("how to pick a lock"))
+                .thenReturn(ModerationResult.flagged("Illicit content", "illicit"));
+
+        chatService.processQuery(ChatRequest.builder()
+                .childId(1L).sessionId(7L).query("how to pick a lock").build());
+
+        verify(speculativeResponseService).start("how to pick a lock", 9, "General");
+        assertThat(session.getSubject()).isNull();
+    }
+
+    private static ChatMessageView message(long id, int minute) {
+        return new ChatMessageView(id, ChatMessage.MessageRole.USER, "Why is the sky blue?", null, false,
+                "APPROVED", T0.plusMinutes(minute));
+    }
+
+    private static ChatSessionView session(long id, LocalDateTime updatedAt) {
+        return new ChatSessionView(id, 1L, null, "New Chat", 0, false, T0, updatedAt);
+    }
+}
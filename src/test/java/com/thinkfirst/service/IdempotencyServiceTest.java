@@ -0,0 +1,206 @@
+package com.thinkfirst.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.IdempotencyProperties;
+import com.thinkfirst.dto.QuizResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IdempotencyService, with Redis values kept in an in-memory map
+ */
+@SuppressWarnings("unchecked")
+class IdempotencyServiceTest {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private RedisTemplate<String, String> redisTemplate;
+    private ValueOperations<String, String> valueOperations;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(inv -> values.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        when(valueOperations.get(anyString())).thenAnswer(inv -> values.get(inv.getArgument(0)));
+        // The claim scripts act only while the key holds the claim passed as ARGV[1]
+        when(redisTemplate.execute(eq(IdempotencyService.COMPLETE), anyList(), any(), any(), any()))
+                .thenAnswer(inv -> values.replace(key(inv), inv.getArgument(2), inv.getArgument(3)) ? 1L : 0L);
+        when(redisTemplate.execute(eq(IdempotencyService.RELEASE), anyList(), any()))
+                .thenAnswer(inv -> values.remove(key(inv), inv.getArgument(2)) ? 1L : 0L);
+        when(redisTemplate.execute(eq(IdempotencyService.RENEW), anyList(), any(), any()))
+                .thenAnswer(inv -> inv.getArgument(2).equals(values.get(key(inv))) ? 1L : 0L);
+
+        IdempotencyProperties properties = new IdempotencyProperties();
+        idempotencyService = new IdempotencyService(redisTemplate, new ObjectMapper(), properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testDuplicate_ReplaysStoredResponseWithoutRunning() {
+        ResponseEntity<?> first = idempotencyService.execute("quiz:1", "attempt-7", "answers", this::evaluate);
+        ResponseEntity<?> second = idempotencyService.execute("quiz:1", "attempt-7", "answers", this::evaluate);
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(first.getBody()).isInstanceOf(QuizResult.class);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat((String) second.getBody()).contains("\"score\":80");
+    }
+
+    @Test
+    void testConcurrentDuplicate_GetsConflictQuicklyWhileFirstRuns() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("chat:1", "query-1", "why", () -> {
+                    started.countDown();
+                    await(release);
+                    return evaluate();
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        ResponseEntity<?> duplicate = idempotencyService.execute("chat:1", "query-1", "why", this::evaluate);
+
+        assertThat(duplicate.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(duplicate.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+
+        // Retried after the first request finished: its response is replayed
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.OK);
+        ResponseEntity<?> retried = idempotencyService.execute("chat:1", "query-1", "why", this::evaluate);
+        assertThat(retried.getBody().toString()).contains("\"score\":80");
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testConcurrentDuplicate_ReplaysFastFirstRequestWithinTheWait() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("chat:1", "query-4", "why", () -> {
+                    started.countDown();
+                    sleep(50);
+                    return evaluate();
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ResponseEntity<?> duplicate = idempotencyService.execute("chat:1", "query-4", "why", this::evaluate);
+
+        assertThat(duplicate.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(duplicate.getBody().toString()).contains("\"score\":80");
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailure_ReleasesKeyForRetry() {
+        assertThatThrownBy(() -> idempotencyService.execute("quiz:1", "attempt-8", "answers", () -> {
+            throw new IllegalStateException("Quiz not found");
+        })).isInstanceOf(IllegalStateException.class);
+
+        idempotencyService.execute("quiz:1", "attempt-8", "answers", this::evaluate);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testLostClaim_DoesNotOverwriteTheNewClaimant() {
+        ResponseEntity<?> first = idempotencyService.execute("chat:1", "query-2", "why", () -> {
+            // The claim expires (say, a node stalled past pending-ttl) and a retry takes the key
+            values.remove("idempotency:chat:1:query-2");
+            idempotencyService.execute("chat:1", "query-2", "why", this::evaluate);
+            return ResponseEntity.ok(QuizResult.builder().score(50).build());
+        });
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        ResponseEntity<?> replayed = idempotencyService.execute("chat:1", "query-2", "why", this::evaluate);
+        assertThat((String) replayed.getBody()).contains("\"score\":80");
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testRunningRequest_RenewsItsClaim() {
+        idempotencyService.execute("chat:1", "query-3", "why", () -> {
+            idempotencyService.renewClaims();
+            return evaluate();
+        });
+        idempotencyService.renewClaims(); // finished: nothing left to renew
+
+        verify(redisTemplate, times(1)).execute(eq(IdempotencyService.RENEW),
+                eq(List.of("idempotency:chat:1:query-3")), any(), eq("120000"));
+    }
+
+    @Test
+    void testKeyReusedForDifferentRequest_IsRejected() {
+        idempotencyService.execute("quiz:1", "attempt-9", "answers", this::evaluate);
+
+        ResponseEntity<?> reused = idempotencyService.execute("quiz:1", "attempt-9", "other answers", this::evaluate);
+
+        assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testRedisDown_RunsWithoutDeduplication() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+
+        idempotencyService.execute("quiz:1", "attempt-10", "answers", this::evaluate);
+        idempotencyService.execute("quiz:1", "attempt-10", "answers", this::evaluate);
+
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    private ResponseEntity<?> evaluate() {
+        runs.incrementAndGet();
+        return ResponseEntity.ok(QuizResult.builder().score(80).passed(true).build());
+    }
+
+    private static String key(InvocationOnMock invocation) {
+        return ((List<String>) invocation.getArgument(1)).get(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
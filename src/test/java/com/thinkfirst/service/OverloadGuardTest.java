@@ -0,0 +1,138 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.OverloadProperties;
+import com.thinkfirst.exception.OverloadedException;
+import com.thinkfirst.exception.RateLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Unit tests for the adaptive concurrency limit and its degraded modes
+ */
+class OverloadGuardTest {
+
+    private OverloadProperties properties;
+    private SimpleMeterRegistry registry;
+    private OverloadGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        properties = new OverloadProperties();
+        properties.setInitialLimit(4);
+        registry = new SimpleMeterRegistry();
+        guard = new OverloadGuard(properties, registry);
+    }
+
+    @Test
+    void testModes_StepDownAsRequestsApproachTheLimitThenShed() {
+        List<OverloadGuard.Mode> modes = new ArrayList<>();
+
+        // Nested calls keep the outer ones in flight: 1, 2, 3, 4 of a limit of 4, then a fifth
+        guard.call("chat", first -> {
+            modes.add(first);
+            return guard.call("chat", second -> {
+                modes.add(second);
+                return guard.call("quiz", third -> {
+                    modes.add(third);
+                    return guard.call("chat", fourth -> {
+                        modes.add(fourth);
+                        assertThat(guard.currentLevel()).isEqualTo(OverloadGuard.Mode.SHED);
+                        assertThatThrownBy(() -> guard.call("quiz", mode -> "never runs"))
+                                .isInstanceOf(OverloadedException.class);
+                        return null;
+                    });
+                });
+            });
+        });
+
+        assertThat(modes).containsExactly(OverloadGuard.Mode.NORMAL, OverloadGuard.Mode.NORMAL,
+                OverloadGuard.Mode.NO_HINTS, OverloadGuard.Mode.CACHE_ONLY);
+        assertThat(guard.currentLevel()).isEqualTo(OverloadGuard.Mode.NORMAL);
+        assertThat(guard.snapshot()).containsEntry("inflight", 0)
+                .containsEntry("shed", Map.of("quiz", 1.0));
+    }
+
+    @Test
+    void testCacheOnlyShedding_IsCountedButNotALatencySample() {
+        properties.setTargetLatency(Duration.ZERO);
+
+        assertThatThrownBy(() -> guard.call("chat", mode -> {
+            throw new OverloadedException("cache miss");
+        })).isInstanceOf(OverloadedException.class);
+
+        assertThat(guard.limit()).isEqualTo(4.0);
+        assertThat(registry.counter("overload.shed", "endpoint", "chat", "mode", "NORMAL").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testLimit_ShrinksOnSlowRequestsOncePerCooldownAndNotBelowMinimum() {
+        properties.setTargetLatency(Duration.ZERO);
+        properties.setDecreaseCooldown(Duration.ZERO);
+        properties.setMinLimit(2);
+
+        guard.call("chat", mode -> "slow");
+        assertThat(guard.limit()).isEqualTo(3.6, offset(1e-9));
+
+        for (int i = 0; i < 20; i++) {
+            guard.call("chat", mode -> "slow");
+        }
+        assertThat(guard.limit()).isEqualTo(2.0);
+
+        properties.setDecreaseCooldown(Duration.ofHours(1));
+        OverloadGuard cooled = new OverloadGuard(properties, new SimpleMeterRegistry());
+        cooled.call("chat", mode -> "slow");
+        cooled.call("chat", mode -> "slow");
+        assertThat(cooled.limit()).isEqualTo(3.6, offset(1e-9));
+    }
+
+    @Test
+    void testLimit_GrowsOnlyWhileInUse() {
+        properties.setInitialLimit(2);
+        guard = new OverloadGuard(properties, registry);
+
+        guard.call("chat", mode -> "fast"); // 1 of 2 in flight: at least half in use
+        assertThat(guard.limit()).isEqualTo(2.5);
+
+        properties.setInitialLimit(10);
+        OverloadGuard idle = new OverloadGuard(properties, new SimpleMeterRegistry());
+        idle.call("chat", mode -> "fast"); // 1 of 10
+        assertThat(idle.limit()).isEqualTo(10.0);
+    }
+
+    @Test
+    void testLimit_DoesNotGrowOnFastFailures() {
+        properties.setInitialLimit(2);
+        guard = new OverloadGuard(properties, registry);
+
+        // A burst of requests rejected by the chat rate limit before reaching a provider
+        for (int i = 0; i < 20; i++) {
+            assertThatThrownBy(() -> guard.call("chat", mode -> {
+                throw new RateLimitException("chat", "Daily chat limit reached");
+            })).isInstanceOf(RateLimitException.class);
+        }
+
+        assertThat(guard.limit()).isEqualTo(2.0);
+        assertThat(guard.snapshot()).containsEntry("inflight", 0);
+    }
+
+    @Test
+    void testLimit_ShrinksOnSlowFailures() {
+        properties.setTargetLatency(Duration.ZERO);
+
+        assertThatThrownBy(() -> guard.call("chat", mode -> {
+            throw new IllegalStateException("provider timed out");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(guard.limit()).isEqualTo(3.6, offset(1e-9));
+    }
+}
@@ -8,13 +8,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -32,12 +38,14 @@ class RateLimitServiceTest {
     @Mock
     private ValueOperations<String, String> valueOperations;
 
+    private static final List<String> CHAT_LIMIT_KEYS = List.of("rate_limit:chat:1", "rate_limit:daily_questions:1");
+
     @InjectMocks
     private RateLimitService rateLimitService;
 
     @BeforeEach
     void setUp() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
     }
 
     // Chat Rate Limit Tests (100 requests/hour)
@@ -205,6 +213,114 @@ class RateLimitServiceTest {
                 .hasMessageContaining("Daily question limit exceeded");
     }
 
+    // Combined Chat Limit Tests (100 chat requests/hour and 50 questions/day, read in one MGET,
+    // incremented in one pipeline)
+
+    @Test
+    void testChatLimits_FirstRequest_IncrementsBothAndSetsExpiration() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenReturn(Arrays.asList(null, null));
+        runPipelineAgainstMocks();
+
+        // Act & Assert - Should not throw exception
+        rateLimitService.checkChatLimits(childId);
+
+        // Verify
+        verify(redisTemplate).executePipelined(any(SessionCallback.class));
+        verify(valueOperations).increment("rate_limit:chat:1");
+        verify(valueOperations).increment("rate_limit:daily_questions:1");
+        verify(redisTemplate).expire("rate_limit:chat:1", Duration.ofHours(1));
+        verify(redisTemplate).expire("rate_limit:daily_questions:1", Duration.ofDays(1));
+    }
+
+    @Test
+    void testChatLimits_WithinLimits_IncrementsWithoutResettingExpiration() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenReturn(List.of("99", "49"));
+        runPipelineAgainstMocks();
+
+        // Act & Assert - Should not throw exception
+        rateLimitService.checkChatLimits(childId);
+
+        // Verify
+        verify(valueOperations).increment("rate_limit:chat:1");
+        verify(valueOperations).increment("rate_limit:daily_questions:1");
+        verify(redisTemplate, never()).expire(anyString(), any(Duration.class));
+    }
+
+    @Test
+    void testChatLimits_OnlyDailyCounterIsNew_SetsOnlyItsExpiration() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenReturn(Arrays.asList("12", null));
+        runPipelineAgainstMocks();
+
+        // Act
+        rateLimitService.checkChatLimits(childId);
+
+        // Verify
+        verify(redisTemplate).expire("rate_limit:daily_questions:1", Duration.ofDays(1));
+        verify(redisTemplate, never()).expire(eq("rate_limit:chat:1"), any(Duration.class));
+    }
+
+    @Test
+    void testChatLimits_HourlyLimitReached_ShouldThrowWithoutIncrementing() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenReturn(List.of("100", "3"));
+        when(redisTemplate.getExpire("rate_limit:chat:1", TimeUnit.SECONDS)).thenReturn(1200L);
+
+        // Act & Assert
+        assertThatThrownBy(() -> rateLimitService.checkChatLimits(childId))
+                .isInstanceOf(RateLimitException.class)
+                .hasMessageContaining("Chat requests rate limit exceeded")
+                .hasMessageContaining("Try again in 1200 seconds");
+
+        // Verify - a refused request is not counted
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testChatLimits_DailyLimitReached_ShouldThrowWithoutIncrementing() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenReturn(List.of("3", "50"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> rateLimitService.checkChatLimits(childId))
+                .isInstanceOf(RateLimitException.class)
+                .hasMessageContaining("Daily questions rate limit exceeded");
+
+        // Verify
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testChatLimits_RedisDown_ShouldFailOpen() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenThrow(new RuntimeException("Connection refused"));
+
+        // Act & Assert - Should not throw exception
+        rateLimitService.checkChatLimits(childId);
+
+        // Verify
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testChatLimits_PipelineFails_ShouldFailOpen() {
+        // Arrange
+        Long childId = 1L;
+        when(valueOperations.multiGet(CHAT_LIMIT_KEYS)).thenReturn(List.of("5", "5"));
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenThrow(new RuntimeException("Connection reset"));
+
+        // Act & Assert - Should not throw exception
+        rateLimitService.checkChatLimits(childId);
+    }
+
     // TTL Expiration Tests
 
     @Test
@@ -220,6 +336,27 @@ class RateLimitServiceTest {
         verify(redisTemplate, never()).expire(anyString(), any(Duration.class));
     }
 
+    // Chat Limit Refund Tests (a query shed after it was counted)
+
+    @Test
+    void testRefundChatLimits_DecrementsBothCountersInOneScript() {
+        // Act
+        rateLimitService.refundChatLimits(1L);
+
+        // Verify
+        verify(redisTemplate).execute(any(RedisScript.class),
+                eq(List.of("rate_limit:chat:1", "rate_limit:daily_questions:1")));
+    }
+
+    @Test
+    void testRefundChatLimits_RedisDown_ShouldNotThrow() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList())).thenThrow(new RuntimeException("Connection refused"));
+
+        // Act & Assert - Should not throw exception
+        rateLimitService.refundChatLimits(1L);
+    }
+
     // Multiple Children Tests
 
     @Test
@@ -267,5 +404,15 @@ class RateLimitServiceTest {
         verify(valueOperations).increment("rate_limit:auth:" + ip1);
         verify(valueOperations).increment("rate_limit:auth:" + ip2);
     }
-}
 
+    /**
+     * Run the pipelined callback directly against the mocks, so its commands can be verified
+     */
+    private void runPipelineAgainstMocks() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenAnswer(inv -> {
+                    inv.<SessionCallback<Object>>getArgument(0).execute(redisTemplate);
+                    return List.of();
+                });
+    }
+}
@@ -0,0 +1,137 @@
+package com.thinkfirst.service;
+
+import com.thinkfirst.config.AIProviderConfig;
+import com.thinkfirst.config.SpeculationProperties;
+import com.thinkfirst.exception.UnusableResponseException;
+import com.thinkfirst.service.ai.AIProviderService;
+import com.thinkfirst.service.ai.DeepSeekService;
+import com.thinkfirst.service.ai.GeminiService;
+import com.thinkfirst.service.ai.GroqService;
+import com.thinkfirst.service.ai.OpenAIProviderService;
+import com.thinkfirst.service.cache.AICacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SpeculativeResponseService
+ */
+class SpeculativeResponseServiceTest {
+
+    private AIProviderService aiProviderService;
+    private SimpleMeterRegistry registry;
+    private SpeculativeResponseService service;
+
+    @BeforeEach
+    void setUp() {
+        aiProviderService = mock(AIProviderService.class);
+        registry = new SimpleMeterRegistry();
+        service = new SpeculativeResponseService(aiProviderService, new SpeculationProperties(), registry);
+    }
+
+    @Test
+    void testConfirm_CachesGeneratedAnswerOnlyAfterApproval() {
+        when(aiProviderService.peekCachedResponse("why is the sky blue?", 9, "General")).thenReturn(Optional.empty());
+        when(aiProviderService.regenerateResponse(eq("why is the sky blue?"), eq(9), eq("General"), any()))
+                .thenReturn("Rayleigh scattering...");
+
+        SpeculativeResponseService.Speculation speculation = service.start("why is the sky blue?", 9, "General");
+        verify(aiProviderService, timeout(1000)).regenerateResponse(eq("why is the sky blue?"), eq(9), eq("General"), any());
+        verify(aiProviderService, never()).cacheResponse(anyString(), anyInt(), anyString(), anyString());
+
+        String answer = service.confirm(speculation, TimeUnit.MILLISECONDS.toNanos(300));
+
+        assertThat(answer).isEqualTo("Rayleigh scattering...");
+        verify(aiProviderService).cacheResponse("why is the sky blue?", 9, "General", "Rayleigh scattering...");
+        assertThat(registry.timer("chat.speculation.hidden").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testDiscard_CancelsInFlightGenerationAndKeepsNothing() throws Exception {
+        CountDownLatch generating = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(aiProviderService.peekCachedResponse(any(), anyInt(), any())).thenReturn(Optional.empty());
+        when(aiProviderService.regenerateResponse(any(), anyInt(), any(), any())).thenAnswer(invocation -> {
+            generating.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "never used";
+        });
+
+        SpeculativeResponseService.Speculation speculation = service.start("how to pick a lock", 9, "General");
+        assertThat(generating.await(1, TimeUnit.SECONDS)).isTrue();
+        service.discard(speculation, "flagged");
+
+        assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        verify(aiProviderService, never()).cacheResponse(any(), anyInt(), any(), any());
+        assertThat(registry.counter("chat.speculation.wasted", "reason", "flagged", "cancelled", "true").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testConfirm_RecordsCacheHitOnlyAfterApproval() {
+        when(aiProviderService.peekCachedResponse("why is the sky blue?", 9, "General"))
+                .thenReturn(Optional.of("Rayleigh scattering..."));
+        when(aiProviderService.findCachedResponse("why is the sky blue?", 9, "General"))
+                .thenReturn(Optional.of("Rayleigh scattering..."));
+
+        SpeculativeResponseService.Speculation speculation = service.start("why is the sky blue?", 9, "General");
+        verify(aiProviderService, timeout(1000)).peekCachedResponse("why is the sky blue?", 9, "General");
+        verify(aiProviderService, never()).findCachedResponse(any(), anyInt(), any());
+
+        assertThat(service.confirm(speculation, 0)).isEqualTo("Rayleigh scattering...");
+        verify(aiProviderService).findCachedResponse("why is the sky blue?", 9, "General");
+        verify(aiProviderService, never()).regenerateResponse(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void testFlaggedQuery_LeavesNoCacheOrNegativeCacheState() throws Exception {
+        AICacheService cacheService = mock(AICacheService.class);
+        GeminiService gemini = mock(GeminiService.class);
+        when(gemini.isAvailable()).thenReturn(true);
+        when(gemini.getProviderName()).thenReturn("gemini");
+        when(gemini.generateEducationalResponse(any(), anyInt(), any()))
+                .thenThrow(new UnusableResponseException("gemini", "Blocked by safety filters: SAFETY"));
+        when(cacheService.peekCachedResponse(any(), anyInt(), any())).thenReturn(Optional.empty());
+        when(cacheService.getProviderFailure(any(), any())).thenReturn(Optional.empty());
+        AIProviderConfig config = new AIProviderConfig();
+        config.setProviderPriority(List.of("gemini"));
+        service = new SpeculativeResponseService(new AIProviderService(gemini, mock(GroqService.class),
+                mock(DeepSeekService.class), mock(OpenAIProviderService.class), config, cacheService),
+                new SpeculationProperties(), registry);
+
+        SpeculativeResponseService.Speculation flagged = service.start("how to pick a lock", 9, "General");
+        verify(gemini, timeout(1000)).generateEducationalResponse(eq("how to pick a lock"), anyInt(), eq("General"));
+        Thread.sleep(100); // let the worker finish failing
+        service.discard(flagged, "flagged");
+
+        // Read-only: no access recorded, nothing cached, no negative-cache entry
+        verify(cacheService).peekCachedResponse("how to pick a lock", 9, "General");
+        verify(cacheService, never()).getCachedResponse(any(), anyInt(), any());
+        verify(cacheService, never()).cacheResponse(any(), anyInt(), any(), any());
+        verify(cacheService, never()).cacheProviderFailure(any(), any(), anyInt(), any());
+
+        // The same failure on an approved query is remembered
+        SpeculativeResponseService.Speculation approved = service.start("how to pick a lock", 9, "General");
+        assertThatThrownBy(() -> service.confirm(approved, 0)).isInstanceOf(UnusableResponseException.class);
+        verify(cacheService).cacheProviderFailure(eq("generateEducationalResponse"), any(), eq(1),
+                contains("SAFETY"));
+    }
+}
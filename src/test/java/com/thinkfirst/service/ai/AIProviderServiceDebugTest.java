@@ -2,8 +2,11 @@ package com.thinkfirst.service.ai;
 
 import com.thinkfirst.config.AIProviderConfig;
 import com.thinkfirst.exception.AIProviderException;
+import com.thinkfirst.exception.RateLimitException;
+import com.thinkfirst.exception.UnusableResponseException;
 import com.thinkfirst.model.Question;
 import com.thinkfirst.service.cache.AICacheService;
+import com.thinkfirst.service.cache.ProviderFailureCache;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -516,6 +519,59 @@ class AIProviderServiceDebugTest {
         log.info("✅ TEST 16 PASSED: Generic exception handled with fallback");
     }
 
+    @Test
+    @Order(17)
+    @DisplayName("Test 17: Unusable output from every provider is remembered")
+    void testUnusableOutputFromAllProviders_IsCached() {
+        log.info("\n>>> TEST 17: Unusable output from every provider");
+
+        // Arrange
+        when(geminiService.isAvailable()).thenReturn(true);
+        when(groqService.isAvailable()).thenReturn(true);
+        when(cacheService.getCachedHint(anyString(), anyString(), anyInt())).thenReturn(Optional.empty());
+        when(geminiService.generateHint(anyString(), anyString(), anyInt()))
+            .thenThrow(new AIProviderException("Gemini", "Failed to call Gemini API",
+                new UnusableResponseException("Gemini", "Unexpected response format")));
+        when(groqService.generateHint(anyString(), anyString(), anyInt()))
+            .thenThrow(new UnusableResponseException("Groq", "Failed to parse response"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> aiProviderService.generateHint("What is algebra?", "Mathematics", 12))
+            .isInstanceOf(UnusableResponseException.class);
+        verify(cacheService).cacheProviderFailure(eq("generateHint"), anyList(), eq(2), eq("Failed to parse response"));
+
+        log.info("✅ TEST 17 PASSED: Failure cached after {} provider calls", 2);
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("Test 18: Recently failed input fails fast, rate limits are not cached")
+    void testRecentlyFailedInput_SkipsProviders() {
+        log.info("\n>>> TEST 18: Recently failed input");
+
+        // Arrange
+        when(geminiService.isAvailable()).thenReturn(true);
+        when(cacheService.getCachedHint(anyString(), anyString(), anyInt())).thenReturn(Optional.empty());
+        when(cacheService.getProviderFailure(eq("generateHint"), anyList()))
+            .thenReturn(Optional.of(new ProviderFailureCache.Failure(2, "Failed to parse response")));
+
+        // Act & Assert
+        assertThatThrownBy(() -> aiProviderService.generateHint("What is algebra?", "Mathematics", 12))
+            .isInstanceOf(UnusableResponseException.class)
+            .hasMessageContaining("recently failed");
+        verify(geminiService, never()).generateHint(anyString(), anyString(), anyInt());
+
+        when(cacheService.getProviderFailure(anyString(), anyList())).thenReturn(Optional.empty());
+        when(geminiService.generateEducationalResponse(anyString(), anyInt(), anyString()))
+            .thenThrow(new RateLimitException("Gemini", "Rate limit exceeded"));
+        assertThatThrownBy(() -> aiProviderService.generateEducationalResponse("What is algebra?", 12, "Mathematics"))
+            .isInstanceOf(AIProviderException.class)
+            .isNotInstanceOf(UnusableResponseException.class);
+        verify(cacheService, never()).cacheProviderFailure(anyString(), anyList(), anyInt(), anyString());
+
+        log.info("✅ TEST 18 PASSED: Providers skipped for a recently failed input");
+    }
+
     // ========== HELPER METHODS ==========
 
     private List<Question> createMockQuestions() {
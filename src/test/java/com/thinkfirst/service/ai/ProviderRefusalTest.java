@@ -0,0 +1,111 @@
+package com.thinkfirst.service.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.AIProviderConfig;
+import com.thinkfirst.exception.AIProviderException;
+import com.thinkfirst.exception.UnusableResponseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Provider refusals (safety blocks, policy errors) fail as unusable responses, so the
+ * negative cache covers them; other client errors stay ordinary failures
+ */
+class ProviderRefusalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AIProviderConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new AIProviderConfig();
+        AIProviderConfig.GeminiConfig gemini = new AIProviderConfig.GeminiConfig();
+        gemini.setEnabled(true);
+        gemini.setApiKey("test-key");
+        gemini.setBaseUrl("http://gemini.test");
+        gemini.setModels(Map.of("default", "gemini-test"));
+        gemini.setMaxTokens(100);
+        gemini.setTemperature(0.5);
+        gemini.setTimeoutSeconds(5);
+        config.setGemini(gemini);
+        AIProviderConfig.GroqConfig groq = new AIProviderConfig.GroqConfig();
+        groq.setEnabled(true);
+        groq.setApiKey("test-key");
+        groq.setBaseUrl("http://groq.test");
+        groq.setModels(Map.of("default", "groq-test"));
+        groq.setMaxTokens(100);
+        groq.setTemperature(0.5);
+        groq.setTimeoutSeconds(5);
+        config.setGroq(groq);
+    }
+
+    @Test
+    void testGemini_SafetyBlockedCandidateIsUnusable() {
+        GeminiService gemini = gemini(HttpStatus.OK,
+                "{\"candidates\":[{\"finishReason\":\"SAFETY\",\"safetyRatings\":[]}]}");
+
+        assertThatThrownBy(() -> gemini.generateEducationalResponse("how to pick a lock", 9, "General"))
+                .isInstanceOf(UnusableResponseException.class)
+                .hasMessageContaining("SAFETY");
+    }
+
+    @Test
+    void testGemini_BlockedPromptIsUnusable() {
+        GeminiService gemini = gemini(HttpStatus.OK, "{\"promptFeedback\":{\"blockReason\":\"PROHIBITED_CONTENT\"}}");
+
+        assertThatThrownBy(() -> gemini.generateHint("how to pick a lock", "General", 9))
+                .isInstanceOf(UnusableResponseException.class);
+    }
+
+    @Test
+    void testGroq_PolicyErrorIsUnusable() {
+        GroqService groq = groq(HttpStatus.BAD_REQUEST,
+                "{\"error\":{\"message\":\"Request refused\",\"code\":\"content_policy_violation\"}}");
+
+        assertThatThrownBy(() -> groq.generateEducationalResponse("how to pick a lock", 9, "General"))
+                .isInstanceOf(UnusableResponseException.class);
+    }
+
+    @Test
+    void testGroq_ContentFilteredAnswerIsUnusable() {
+        GroqService groq = groq(HttpStatus.OK,
+                "{\"choices\":[{\"finish_reason\":\"content_filter\",\"message\":{\"content\":\"\"}}]}");
+
+        assertThatThrownBy(() -> groq.generateEducationalResponse("how to pick a lock", 9, "General"))
+                .isInstanceOf(UnusableResponseException.class);
+    }
+
+    @Test
+    void testOtherClientErrorsStayRetryable() {
+        GroqService groq = groq(HttpStatus.UNAUTHORIZED, "{\"error\":{\"message\":\"Invalid API Key\"}}");
+
+        assertThatThrownBy(() -> groq.generateEducationalResponse("why is the sky blue?", 9, "General"))
+                .isInstanceOf(AIProviderException.class)
+                .isNotInstanceOf(UnusableResponseException.class);
+    }
+
+    private GeminiService gemini(HttpStatus status, String body) {
+        return new GeminiService(respondingWith(status, body), config, objectMapper, new PromptOptimizer());
+    }
+
+    private GroqService groq(HttpStatus status, String body) {
+        return new GroqService(respondingWith(status, body), config, objectMapper);
+    }
+
+    private static WebClient.Builder respondingWith(HttpStatus status, String body) {
+        return WebClient.builder().exchangeFunction(request -> Mono.just(ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build()));
+    }
+}
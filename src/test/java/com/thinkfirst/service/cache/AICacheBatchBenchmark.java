@@ -0,0 +1,214 @@
+package com.thinkfirst.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.config.ContentProperties;
+import com.thinkfirst.config.OverloadProperties;
+import com.thinkfirst.config.RedisConfig;
+import com.thinkfirst.model.Question;
+import com.thinkfirst.service.OverloadGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Cache lookups per chat request, sequential versus batched, against a real Redis reached
+ * through a loopback proxy that adds latency to every request.
+ *
+ * Opt-in: {@code mvn test -Pbenchmark}, with Redis at benchmark.redis.host / benchmark.redis.port
+ * (default localhost:6379) and the added latency in benchmark.redis.latency-ms (default 2).
+ * Results are logged; nothing is asserted about timing.
+ */
+@Tag("benchmark")
+class AICacheBatchBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(AICacheBatchBenchmark.class);
+
+    private static final int ROUNDS = 200;
+
+    private LatencyProxy proxy;
+    private LettuceConnectionFactory connectionFactory;
+    private AICacheService cacheService;
+    private LocalCacheTier localTier;
+    private long latencyMillis;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        String host = System.getProperty("benchmark.redis.host", "localhost");
+        int port = Integer.getInteger("benchmark.redis.port", 6379);
+        latencyMillis = Long.getLong("benchmark.redis.latency-ms", 2);
+        assumeTrue(reachable(host, port), "No Redis at " + host + ":" + port);
+
+        proxy = new LatencyProxy(host, port, latencyMillis);
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", proxy.port()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        RedisTemplate<String, byte[]> valueTemplate = new RedisConfig().binaryRedisTemplate(connectionFactory);
+        valueTemplate.afterPropertiesSet();
+
+        AICacheProperties properties = new AICacheProperties();
+        properties.getAdmission().setEnabled(false);
+        ContentProperties contentProperties = new ContentProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CacheNamespace namespace = new CacheNamespace(redisTemplate, properties);
+        CacheMetrics metrics = new CacheMetrics(registry);
+        VersionedCacheCodec codec = new VersionedCacheCodec(new ObjectMapper(), properties);
+        localTier = new LocalCacheTier(properties);
+        CachePopularity popularity = new CachePopularity(redisTemplate, new ObjectMapper(), properties);
+        cacheService = new AICacheService(redisTemplate, valueTemplate, codec, localTier, namespace, metrics,
+                new SemanticCacheIndex(redisTemplate, namespace, contentProperties, properties),
+                new CacheRefresher(redisTemplate, metrics, properties, new OverloadGuard(new OverloadProperties(), registry)),
+                new QuizVariantPool(redisTemplate, valueTemplate, codec, localTier, properties),
+                popularity, new CacheAdmission(popularity, metrics, properties),
+                new CacheKeyPolicy(contentProperties, properties),
+                new LocalContentStore(properties, registry),
+                new ProviderFailureCache(redisTemplate, properties), properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (proxy != null) {
+            proxy.close();
+        }
+    }
+
+    @Test
+    void batchedVersusSequentialLookups() {
+        List<Question> quiz = List.of(Question.builder().questionText("Which part of the plant makes food?").build());
+        for (int i = 0; i < ROUNDS; i++) {
+            cacheService.cacheResponse("benchmark question " + i, 9, "Science", "Plants make food from sunlight");
+            cacheService.cacheQuiz("benchmark topic " + i, "Science", 1, "BEGINNER", quiz, 9);
+        }
+
+        long[] sequential = new long[ROUNDS];
+        long[] batched = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            // Distinct keys per round so L1 never answers
+            String query = "benchmark question " + i;
+            String topic = "benchmark topic " + i;
+            evictLocal(query, topic);
+
+            long start = System.nanoTime();
+            cacheService.getCachedResponse(query, 9, "Science");
+            cacheService.getCachedQuiz(topic, "Science", 1, "BEGINNER", 9);
+            sequential[i] = System.nanoTime() - start;
+
+            evictLocal(query, topic);
+            start = System.nanoTime();
+            try (CacheBatch.Scope batch = cacheService.batch()
+                    .response(query, 9, "Science")
+                    .quiz(topic, "Science", 1, "BEGINNER", 9)
+                    .open()) {
+                cacheService.getCachedResponse(query, 9, "Science");
+                cacheService.getCachedQuiz(topic, "Science", 1, "BEGINNER", 9);
+            }
+            batched[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(sequential);
+        Arrays.sort(batched);
+
+        log.info("Cache lookups per request with {} ms added latency: sequential p50 {} ms p99 {} ms; "
+                        + "batched p50 {} ms p99 {} ms", latencyMillis,
+                millis(sequential[ROUNDS / 2]), millis(sequential[ROUNDS * 99 / 100]),
+                millis(batched[ROUNDS / 2]), millis(batched[ROUNDS * 99 / 100]));
+    }
+
+    private void evictLocal(String query, String topic) {
+        localTier.invalidate(cacheService.generateResponseCacheKey(query, 9, "Science"));
+        localTier.invalidate(cacheService.generateQuizCacheKey(topic, "Science", 1, "BEGINNER", 9));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    private static boolean reachable(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 500);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Forwards loopback connections to Redis, holding each chunk sent to Redis for the given delay
+     */
+    private static final class LatencyProxy implements AutoCloseable {
+
+        private final ServerSocket server;
+
+        LatencyProxy(String host, int port, long delayMillis) throws IOException {
+            server = new ServerSocket(0);
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket client = server.accept();
+                        Socket upstream = new Socket(host, port);
+                        client.setTcpNoDelay(true);
+                        upstream.setTcpNoDelay(true);
+                        pump(client, upstream, delayMillis);
+                        pump(upstream, client, 0);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "redis-latency-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        private static void pump(Socket from, Socket to, long delayMillis) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (delayMillis > 0) {
+                            Thread.sleep(delayMillis);
+                        }
+                        out.write(buffer, 0, read);
+                        out.flush();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // connection closed
+                }
+            }, "redis-latency-proxy-pump");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
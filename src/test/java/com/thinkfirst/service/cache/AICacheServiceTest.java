@@ -0,0 +1,682 @@
+package com.thinkfirst.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.config.ContentProperties;
+import com.thinkfirst.config.OverloadProperties;
+import com.thinkfirst.dto.QuizGenerationResult;
+import com.thinkfirst.model.Question;
+import com.thinkfirst.service.OverloadGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AICacheService tiering (L1 in-process, L2 Redis)
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AICacheServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisTemplate<String, byte[]> valueTemplate;
+
+    @Mock
+    private ValueOperations<String, byte[]> byteValues;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> byteHashes;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private AICacheService cacheService;
+    private VersionedCacheCodec codec;
+    private CacheWarmer warmer;
+    private LocalCacheTier localTier;
+    private AICacheProperties properties;
+    private ContentProperties contentProperties;
+    private CacheNamespace namespace;
+    private CacheMetrics metrics;
+    private CacheRefresher refresher;
+    private CachePopularity popularity;
+
+    @TempDir
+    Path contentStoreDirectory;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(valueTemplate.opsForValue()).thenReturn(byteValues);
+        when(valueTemplate.opsForHash()).thenReturn(byteHashes);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        properties = new AICacheProperties();
+        properties.getAdmission().setEnabled(false); // enabled by the admission tests
+        contentProperties = new ContentProperties();
+        ContentProperties.AgeGroup elementary = new ContentProperties.AgeGroup();
+        elementary.setName("Elementary");
+        elementary.setMinAge(6);
+        elementary.setMaxAge(10);
+        contentProperties.getAgeGroups().add(elementary);
+
+        namespace = new CacheNamespace(redisTemplate, properties);
+        metrics = new CacheMetrics(new SimpleMeterRegistry());
+        codec = new VersionedCacheCodec(new ObjectMapper(), properties);
+        localTier = new LocalCacheTier(properties);
+        refresher = new CacheRefresher(redisTemplate, metrics, properties,
+                new OverloadGuard(new OverloadProperties(), new SimpleMeterRegistry()));
+        popularity = new CachePopularity(redisTemplate, new ObjectMapper(), properties);
+        cacheService = newCacheService(new LocalContentStore(properties, new SimpleMeterRegistry()));
+        warmer = new CacheWarmer(popularity, valueTemplate, codec, localTier, namespace, refresher,
+                cacheService, properties);
+    }
+
+    @Test
+    void testResponseRedisHit_IsPromotedToL1() {
+        // Entry written before the binary codec existed (plain UTF-8, no header)
+        when(byteValues.get(startsWith("response:"))).thenReturn("Plants make food from sunlight".getBytes(StandardCharsets.UTF_8));
+
+        Optional<String> first = cacheService.getCachedResponse("What is photosynthesis?", 9, "Science");
+        Optional<String> second = cacheService.getCachedResponse("what is  photosynthesis?", 9, "Science");
+
+        assertThat(first).contains("Plants make food from sunlight");
+        assertThat(second).contains("Plants make food from sunlight");
+        verify(byteValues, times(1)).get(startsWith("response:"));
+
+        AICacheService.TierStats stats = cacheService.getTierStats();
+        assertThat(stats.l1Hits()).isEqualTo(1);
+        assertThat(stats.l2Hits()).isEqualTo(1);
+        assertThat(stats.misses()).isZero();
+    }
+
+    @Test
+    void testCachedQuiz_ReturnsDetachedCopies() {
+        Question original = Question.builder()
+                .id(42L)
+                .questionText("What do plants need to make food?")
+                .type(Question.QuestionType.MULTIPLE_CHOICE)
+                .options(List.of("Sunlight", "Sand", "Plastic", "Metal"))
+                .correctOptionIndex(0)
+                .correctAnswer("Sunlight")
+                .build();
+
+        cacheService.cacheQuiz("photosynthesis", "Science", 1, "BEGINNER", List.of(original), 9);
+        original.setId(99L); // caller keeps using its own instance
+
+        List<Question> first = cacheService.getCachedQuiz("photosynthesis", "Science", 1, "BEGINNER", 9).orElseThrow();
+        List<Question> second = cacheService.getCachedQuiz("photosynthesis", "Science", 1, "BEGINNER", 9).orElseThrow();
+
+        assertThat(first.get(0).getId()).isNull();
+        assertThat(first.get(0).getQuestionText()).isEqualTo("What do plants need to make food?");
+        assertThat(first.get(0)).isNotSameAs(second.get(0));
+        verify(byteValues, never()).get(startsWith("quiz:"));
+    }
+
+    @Test
+    void testInvalidateAllQuizzes_ClearsL1AndPublishes() {
+        cacheService.cacheResponse("volcano", 10, "Science", "Hot rock");
+        cacheService.cacheQuiz("volcano", "Science", 0, "BEGINNER", List.of(), 10);
+
+        cacheService.invalidateAllQuizzes();
+
+        assertThat(cacheService.getCachedResponse("volcano", 10, "Science")).contains("Hot rock");
+        assertThat(cacheService.getCachedQuiz("volcano", "Science", 0, "BEGINNER", 10)).isEmpty();
+        verify(redisTemplate).convertAndSend(eq("thinkfirst:cache:invalidate"), eq("QUIZ"));
+    }
+
+    @Test
+    void testInvalidateAllQuizzes_BumpsGenerationWithoutKeys() {
+        when(valueOperations.increment("cache:gen:quiz")).thenReturn(3L);
+
+        cacheService.invalidateAllQuizzes();
+        cacheService.getCachedQuiz("volcano", "Science", 3, "BEGINNER", 10);
+
+        verify(redisTemplate, never()).keys(anyString());
+        verify(byteValues).get(cacheService.generateQuizCacheKey("volcano", "Science", 3, "BEGINNER", 10));
+        assertThat(cacheService.generateQuizCacheKey("volcano", "Science", 3, "BEGINNER", 10)).startsWith("quiz:v3:");
+    }
+
+    @Test
+    void testNewEntry_IsCountedIncrementally() {
+        when(valueTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L);
+        when(valueOperations.increment(startsWith("cache:count:hint:v0:"))).thenReturn(1L);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("4", null, "2"));
+
+        cacheService.cacheHint("fractions", "Mathematics", 9, "Think of pizza slices");
+        AICacheService.CacheStats stats = cacheService.getCacheStats();
+
+        verify(valueOperations).increment(startsWith("cache:count:hint:v0:"));
+        verify(redisTemplate, never()).keys(anyString());
+        assertThat(stats.hintCount()).isEqualTo(6);
+    }
+
+    @Test
+    void testEntryCount_UsesConfiguredHardTtl() {
+        properties.getRefresh().getTtl().put("hint", new AICacheProperties.TtlConfig(Duration.ofDays(1), Duration.ofDays(3)));
+
+        cacheService.getCacheStats();
+
+        verify(valueOperations).multiGet(argThat((List<String> keys) ->
+                keys.size() == 3 && keys.get(0).startsWith("cache:count:hint:")));
+    }
+
+    @Test
+    void testMetrics_TrackMissesErrorsAndSavedCalls() {
+        when(byteValues.get(startsWith("hint:"))).thenThrow(new RuntimeException("Unable to connect to Redis"));
+
+        cacheService.getCachedResponse("how do volcanoes erupt?", 11, "Science");
+        cacheService.getCachedHint("fractions", "Mathematics", 9);
+        cacheService.recordApiCallSaved("generateHint");
+        cacheService.recordApiCallSaved("generateHint");
+
+        AICacheService.CacheStats stats = cacheService.getCacheStats();
+        assertThat(stats.types().get(CacheType.RESPONSE).misses()).isEqualTo(1);
+        assertThat(stats.types().get(CacheType.HINT).errors()).isEqualTo(1);
+        assertThat(stats.apiCallsSaved()).containsEntry("generateHint", 2L);
+    }
+
+    @Test
+    void testNearDuplicateQuery_HitsWithinAgeBand() {
+        cacheService.cacheResponse("What is photosynthesis?", 9, "Science", "Plants make food from sunlight");
+
+        assertThat(cacheService.getCachedResponse("What's photosynthesis", 7, "Science"))
+                .contains("Plants make food from sunlight");
+        assertThat(cacheService.getCachedResponse("explain photosynthesis please", 10, "Science"))
+                .contains("Plants make food from sunlight");
+        assertThat(cacheService.getCachedResponse("What is photosynthesis?", 12, "Science")).isEmpty();
+        assertThat(cacheService.getCachedResponse("What is photosynthesis?", 9, "History")).isEmpty();
+        verify(hashOperations).put(startsWith("semantic:response:v0:science|elementary"), startsWith("response:"),
+                eq("What is photosynthesis?"));
+
+        CacheMetrics.TypeSnapshot response = cacheService.getCacheStats().types().get(CacheType.RESPONSE);
+        assertThat(response.semanticHits()).isEqualTo(2);
+        assertThat(response.semanticHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testNearDuplicateQuery_RequiresSameNumbers() {
+        cacheService.cacheResponse("what is 12 times 3", 9, "Mathematics", "36");
+
+        assertThat(cacheService.getCachedResponse("What's 12 * 3?", 9, "Mathematics")).contains("36");
+        assertThat(cacheService.getCachedResponse("what is 3 times 12", 9, "Mathematics")).isEmpty();
+        assertThat(cacheService.getCachedResponse("what is 12 times 4", 9, "Mathematics")).isEmpty();
+    }
+
+    @Test
+    void testBandedKeys_AgesInBandShareOneEntry() {
+        cacheService.cacheResponse("What is photosynthesis?", 7, "Science", "Plants make food from sunlight");
+
+        assertThat(cacheService.generateResponseCacheKey("What is photosynthesis?", 9, "Science"))
+                .isEqualTo(cacheService.generateResponseCacheKey("What is photosynthesis?", 7, "Science"));
+        assertThat(cacheService.generateResponseCacheKey("What is photosynthesis?", 12, "Science"))
+                .isNotEqualTo(cacheService.generateResponseCacheKey("What is photosynthesis?", 7, "Science"));
+        assertThat(cacheService.getCachedResponse("What is photosynthesis?", 9, "Science"))
+                .contains("Plants make food from sunlight");
+        assertThat(cacheService.promptAge(CacheType.RESPONSE, 9)).isEqualTo(8);
+        assertThat(cacheService.promptAge(CacheType.RESPONSE, 12)).isEqualTo(12); // outside every band
+    }
+
+    @Test
+    void testDualRead_MigratesExactAgeEntryToBandKey() {
+        String bandKey = cacheService.generateResponseCacheKey("What is gravity?", 9, "Science");
+        List<String> bandKeys = List.of(bandKey, cacheService.generateResponseCacheKey("What is magnetism?", 9, "Science"));
+        when(byteValues.get(startsWith("response:"))).thenAnswer(invocation ->
+                bandKeys.contains(invocation.<String>getArgument(0)) ? null : stampedText("Things fall down", Duration.ofHours(1)));
+
+        assertThat(cacheService.getCachedResponse("What is gravity?", 9, "Science")).contains("Things fall down");
+        verify(valueTemplate).execute(any(RedisScript.class), eq(List.of(bandKey)), any(), any());
+
+        properties.getKeyGranularity().setDualRead(false);
+        assertThat(cacheService.getCachedResponse("What is magnetism?", 9, "Science")).isEmpty();
+    }
+
+    @Test
+    void testDualRead_ExactAgeKeysAreFetchedWithTheBatch() {
+        String bandKey = cacheService.generateResponseCacheKey("What is gravity?", 9, "Science");
+        String exactKey = cacheService.exactResponseKey("What is gravity?", 9, "Science");
+        assertThat(exactKey).isNotNull().isNotEqualTo(bandKey);
+        when(byteValues.multiGet(List.of(bandKey, exactKey)))
+                .thenReturn(Arrays.asList(null, stampedText("Things fall down", Duration.ofHours(1))));
+        when(valueTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.of(1L));
+
+        try (CacheBatch.Scope batch = cacheService.batch()
+                .response("What is gravity?", 9, "Science")
+                .open()) {
+            assertThat(cacheService.getCachedResponse("What is gravity?", 9, "Science")).contains("Things fall down");
+        }
+
+        verify(byteValues, never()).get(anyString());
+        verify(valueTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any());
+        verify(valueTemplate).executePipelined(any(SessionCallback.class)); // the migrated copy, on close
+        assertThat(localTier.<String>get(bandKey)).contains("Things fall down");
+    }
+
+    @Test
+    void testPeekCachedResponse_LeavesNoState() {
+        CacheRefreshSource source = mock(CacheRefreshSource.class);
+        cacheService.registerRefreshSource(source);
+        String bandKey = cacheService.generateResponseCacheKey("What is gravity?", 9, "Science");
+        when(byteValues.get(startsWith("response:"))).thenAnswer(invocation ->
+                bandKey.equals(invocation.getArgument(0)) ? null : stampedText("Things fall down", Duration.ofDays(4)));
+
+        assertThat(cacheService.peekCachedResponse("What is gravity?", 9, "Science")).contains("Things fall down");
+        popularity.flush();
+
+        // No migration of the exact-age entry, refresh, popularity count or L1 copy
+        verify(valueTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any());
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(valueOperations, never()).setIfAbsent(startsWith("cache:refresh:"), anyString(), any(Duration.class));
+        verifyNoInteractions(source);
+        assertThat(localTier.<String>get(bandKey)).isEmpty();
+        assertThat(cacheService.getTierStats().l2Hits()).isZero();
+    }
+
+    @Test
+    void testContentStore_ServesRestartedNodeWithoutRedis() {
+        properties.getContentStore().setEnabled(true);
+        properties.getContentStore().setDirectory(contentStoreDirectory.toString());
+        LocalContentStore store = new LocalContentStore(properties, new SimpleMeterRegistry());
+        newCacheService(store).cacheResponse("What is gravity?", 9, "Science", "Things fall down");
+        store.close();
+
+        // Restarted node: empty L1 and Redis unreachable
+        localTier = new LocalCacheTier(properties);
+        when(byteValues.get(anyString())).thenThrow(new RedisConnectionFailureException("Connection refused"));
+        LocalContentStore reopened = new LocalContentStore(properties, new SimpleMeterRegistry());
+        AICacheService restarted = newCacheService(reopened);
+
+        assertThat(restarted.getCachedResponse("What is gravity?", 9, "Science")).contains("Things fall down");
+        assertThat(restarted.getTierStats().diskHits()).isEqualTo(1);
+        verify(byteValues, never()).get(anyString());
+        reopened.close();
+    }
+
+    @Test
+    void testProviderFailure_IsRememberedPerNormalizedInput() {
+        cacheService.cacheProviderFailure("generateHint", List.of("Why is  the sky green?", "Science", 9), 3,
+                "Failed to parse response");
+
+        assertThat(cacheService.getProviderFailure("generateHint", List.of("why is the sky green?", "Science", 9)))
+                .hasValueSatisfying(failure -> assertThat(failure.providerCalls()).isEqualTo(3));
+        assertThat(cacheService.getProviderFailure("generateHint", List.of("why is the sky green?", "Science", 12)))
+                .isEmpty();
+        assertThat(cacheService.getProviderFailure("analyzeQuerySubject", List.of("why is the sky green?")))
+                .isEmpty();
+        verify(valueOperations).set(startsWith("negative:generateHint:"), eq("3|Failed to parse response"),
+                eq(Duration.ofMinutes(10)));
+        assertThat(cacheService.getCacheStats().failedCallsAvoided()).containsEntry("generateHint", 3L);
+    }
+
+    @Test
+    void testStaleHint_IsServedAndRefreshedOnce() {
+        CacheRefreshSource source = mock(CacheRefreshSource.class);
+        when(source.regenerateHint("fractions", "Mathematics", 9)).thenReturn("Think of sharing a pizza");
+        cacheService.registerRefreshSource(source);
+        when(byteValues.get(startsWith("hint:"))).thenReturn(stampedText("Think of pizza slices", Duration.ofDays(4)));
+        when(valueOperations.setIfAbsent(startsWith("cache:refresh:hint:"), eq("1"), any(Duration.class))).thenReturn(true);
+
+        Optional<String> first = cacheService.getCachedHint("fractions", "Mathematics", 9);
+        Optional<String> second = cacheService.getCachedHint("fractions", "Mathematics", 9);
+
+        assertThat(first).contains("Think of pizza slices");
+        assertThat(second).isPresent();
+        verify(source, timeout(2000).times(1)).regenerateHint("fractions", "Mathematics", 9);
+        verify(valueTemplate, timeout(2000)).execute(any(RedisScript.class), argThat(keyStartingWith("hint:")), any(),
+                aryEq(ttlMillis(Duration.ofDays(7))));
+        verify(valueOperations, times(1)).setIfAbsent(startsWith("cache:refresh:"), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void testStaleHint_IsNotRefreshedWhileOverloaded() {
+        OverloadGuard overloadGuard = mock(OverloadGuard.class);
+        when(overloadGuard.currentLevel()).thenReturn(OverloadGuard.Mode.NO_HINTS);
+        refresher = new CacheRefresher(redisTemplate, metrics, properties, overloadGuard);
+        cacheService = newCacheService(new LocalContentStore(properties, new SimpleMeterRegistry()));
+        CacheRefreshSource source = mock(CacheRefreshSource.class);
+        cacheService.registerRefreshSource(source);
+        when(byteValues.get(startsWith("hint:"))).thenReturn(stampedText("Think of pizza slices", Duration.ofDays(4)));
+
+        assertThat(cacheService.getCachedHint("fractions", "Mathematics", 9)).contains("Think of pizza slices");
+
+        verifyNoInteractions(source);
+        verify(valueOperations, never()).setIfAbsent(startsWith("cache:refresh:"), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void testFreshHint_IsNotRefreshed() {
+        CacheRefreshSource source = mock(CacheRefreshSource.class);
+        cacheService.registerRefreshSource(source);
+        when(byteValues.get(startsWith("hint:"))).thenReturn(stampedText("Think of pizza slices", Duration.ofHours(1)));
+
+        assertThat(cacheService.getCachedHint("fractions", "Mathematics", 9)).contains("Think of pizza slices");
+
+        verifyNoInteractions(source);
+        verify(valueOperations, never()).setIfAbsent(startsWith("cache:refresh:"), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void testQuizWithSubject_ReturnsSubjectAndQuestions() {
+        Question question = Question.builder()
+                .questionText("What is 3 x 4?")
+                .type(Question.QuestionType.MULTIPLE_CHOICE)
+                .options(List.of("7", "12", "34", "1"))
+                .correctOptionIndex(1)
+                .build();
+
+        cacheService.cacheQuizWithSubject("times tables", 1, "BEGINNER", 8, "Mathematics", List.of(question));
+        Optional<QuizGenerationResult> cached = cacheService.getCachedQuizWithSubject("Times  tables", 1, "BEGINNER", 8);
+
+        assertThat(cached).isPresent();
+        assertThat(cached.get().getDetectedSubject()).isEqualTo("Mathematics");
+        assertThat(cached.get().getQuestions()).extracting(Question::getQuestionText).containsExactly("What is 3 x 4?");
+        assertThat(cached.get().getQuestions().get(0)).isNotSameAs(question);
+    }
+
+    @Test
+    void testQuizWithSubject_MigratesLegacyPerSubjectEntry() throws Exception {
+        List<Question> legacy = List.of(Question.builder().questionText("What do plants need?").build());
+        byte[] legacyJson = new ObjectMapper().writeValueAsBytes(legacy);
+        // Probe order follows app.cache.legacy-quiz.subjects: Mathematics, Science, ...
+        when(byteValues.multiGet(anyList())).thenReturn(Arrays.asList(null, legacyJson, null, null, null, null, null, null, null));
+
+        Optional<QuizGenerationResult> first = cacheService.getCachedQuizWithSubject("photosynthesis", 1, "BEGINNER", 9);
+        Optional<QuizGenerationResult> second = cacheService.getCachedQuizWithSubject("photosynthesis", 1, "BEGINNER", 9);
+
+        assertThat(first).isPresent();
+        assertThat(first.get().getDetectedSubject()).isEqualTo("Science");
+        assertThat(second.get().getQuestions()).hasSize(1);
+        verify(byteValues, times(1)).multiGet(anyList());
+        verify(valueTemplate).execute(any(RedisScript.class), argThat(keyStartingWith("quiz:")), any(),
+                aryEq(ttlMillis(Duration.ofDays(30))));
+    }
+
+    @Test
+    void testQuizWithSubject_ProbesLegacyEntriesUnderExactAgeKeys() throws Exception {
+        List<String> exactKeys = properties.getLegacyQuiz().getSubjects().stream()
+                .map(subject -> cacheService.exactQuizKey("photosynthesis", subject, 1, "BEGINNER", 9))
+                .toList();
+        assertThat(exactKeys).doesNotContainNull()
+                .doesNotContain(cacheService.generateQuizCacheKey("photosynthesis", "Science", 1, "BEGINNER", 9));
+        List<byte[]> values = new ArrayList<>(Collections.nCopies(exactKeys.size(), (byte[]) null));
+        values.set(properties.getLegacyQuiz().getSubjects().indexOf("Science"),
+                new ObjectMapper().writeValueAsBytes(List.of(Question.builder().questionText("What do plants need?").build())));
+        when(byteValues.multiGet(exactKeys)).thenReturn(values);
+
+        Optional<QuizGenerationResult> migrated = cacheService.getCachedQuizWithSubject("photosynthesis", 1, "BEGINNER", 9);
+
+        assertThat(migrated).isPresent();
+        assertThat(migrated.get().getDetectedSubject()).isEqualTo("Science");
+        assertThat(migrated.get().getQuestions()).extracting(Question::getQuestionText)
+                .containsExactly("What do plants need?");
+    }
+
+    @Test
+    void testQuizVariant_PrefersVariantChildHasNotSeen() throws Exception {
+        Map<Object, Object> pool = new LinkedHashMap<>();
+        pool.put("a", codec.encodeQuestions(List.of(Question.builder().questionText("Seen question").build())));
+        pool.put("b", codec.encodeQuestions(List.of(Question.builder().questionText("New question").build())));
+        when(byteHashes.entries(endsWith(":pool"))).thenReturn(pool);
+        when(hashOperations.entries(contains(":served:7"))).thenReturn(Map.of("a", "1700000000000"));
+        when(valueOperations.increment(endsWith(":requests"))).thenReturn(1L);
+
+        Optional<List<Question>> variant = cacheService.getCachedQuizVariant("volcano", "Science", 1, "BEGINNER", 10, 7L);
+
+        assertThat(variant).isPresent();
+        assertThat(variant.get().get(0).getQuestionText()).isEqualTo("New question");
+        verify(hashOperations).put(contains(":served:7"), eq("b"), anyString());
+    }
+
+    @Test
+    void testQuizVariant_PopularKeyIsToppedUp() throws Exception {
+        CacheRefreshSource source = mock(CacheRefreshSource.class);
+        List<Question> generated = List.of(Question.builder().questionText("Fresh variant").build());
+        when(source.regenerateQuestions("volcano", "Science", 1, "BEGINNER", 10)).thenReturn(generated);
+        cacheService.registerRefreshSource(source);
+        Map<Object, Object> pool = new LinkedHashMap<>();
+        pool.put("a", codec.encodeQuestions(List.of(Question.builder().questionText("Only variant").build())));
+        when(byteHashes.entries(endsWith(":pool"))).thenReturn(pool);
+        when(byteHashes.size(endsWith(":pool"))).thenReturn(1L);
+        when(valueOperations.increment(endsWith(":requests"))).thenReturn(10L);
+        when(valueOperations.setIfAbsent(startsWith("cache:refresh:"), eq("1"), any(Duration.class))).thenReturn(true);
+
+        assertThat(cacheService.getCachedQuizVariant("volcano", "Science", 1, "BEGINNER", 10, 7L)).isPresent();
+
+        verify(source, timeout(2000)).regenerateQuestions("volcano", "Science", 1, "BEGINNER", 10);
+        verify(byteHashes, timeout(2000)).put(endsWith(":pool"), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void testQuizVariant_NearDuplicateHitIsServedButNotPooled() {
+        List<Question> questions = List.of(Question.builder().questionText("What do plants need?").build());
+        cacheService.cacheQuiz("What is photosynthesis?", "Science", 1, "BEGINNER", questions, 9);
+        String neighbourKey = cacheService.generateQuizCacheKey("What's photosynthesis", "Science", 1, "BEGINNER", 9);
+
+        Optional<List<Question>> variant = cacheService.getCachedQuizVariant("What's photosynthesis", "Science", 1,
+                "BEGINNER", 9, 7L);
+
+        assertThat(variant).hasValueSatisfying(q -> assertThat(q.get(0).getQuestionText()).isEqualTo("What do plants need?"));
+        verify(byteHashes, never()).put(eq(neighbourKey + ":pool"), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void testQuizVariant_SeedingGoesThroughAdmission() throws Exception {
+        properties.getAdmission().setEnabled(true);
+        when(byteValues.get(startsWith("quiz:"))).thenReturn(
+                codec.encodeQuestions(List.of(Question.builder().questionText("Only quiz").build())));
+        when(valueOperations.increment(endsWith(":requests"))).thenReturn(1L);
+
+        assertThat(cacheService.getCachedQuizVariant("volcano", "Science", 1, "BEGINNER", 10, 7L)).isPresent();
+        verify(byteHashes, never()).put(endsWith(":pool"), anyString(), any(byte[].class));
+
+        assertThat(cacheService.getCachedQuizVariant("volcano", "Science", 1, "BEGINNER", 10, 7L)).isPresent();
+        verify(byteHashes).put(endsWith(":pool"), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void testWarmup_PreloadsHotHintsAndRegeneratesMissingOnes() {
+        CacheRefreshSource source = mock(CacheRefreshSource.class);
+        when(source.regenerateHint("decimals", "Mathematics", 9)).thenReturn("Think of money");
+        cacheService.registerRefreshSource(source);
+        when(zSetOperations.reverseRange(eq("cache:popular:hint"), anyLong(), anyLong()))
+                .thenReturn(new LinkedHashSet<>(List.of("hint:aaa", "hint:bbb")));
+        when(byteValues.multiGet(List.of("hint:aaa", "hint:bbb")))
+                .thenReturn(Arrays.asList(stampedText("Think of pizza slices", Duration.ofHours(1)), null));
+        when(hashOperations.multiGet(eq("cache:popular:hint:meta"), anyCollection())).thenReturn(Arrays.asList(
+                "{\"query\":\"fractions\",\"subject\":\"Mathematics\",\"age\":9}",
+                "{\"query\":\"decimals\",\"subject\":\"Mathematics\",\"age\":9}"));
+        when(valueOperations.setIfAbsent(startsWith("cache:refresh:"), eq("1"), any(Duration.class))).thenReturn(true);
+
+        Map<CacheType, CacheWarmer.WarmupResult> report = warmer.warmup();
+
+        assertThat(report.get(CacheType.HINT)).isEqualTo(new CacheWarmer.WarmupResult(1, 1, 1));
+        assertThat(localTier.<String>get("hint:aaa")).contains("Think of pizza slices");
+        verify(source, timeout(2000)).regenerateHint("decimals", "Mathematics", 9);
+        verify(source, never()).regenerateHint("fractions", "Mathematics", 9);
+    }
+
+    @Test
+    void testAdmission_OneOffResponseOnlyRefreshesExistingEntry() {
+        properties.getAdmission().setEnabled(true);
+
+        cacheService.cacheResponse("Why is the sky green today?", 9, "Science", "It is not - it is blue");
+
+        verify(byteValues).setIfPresent(startsWith("response:"), any(byte[].class), any(Duration.class));
+        verify(valueTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any());
+        verify(hashOperations, never()).put(startsWith("semantic:"), anyString(), anyString());
+        assertThat(cacheService.getCachedResponse("Why is the sky green today?", 9, "Science"))
+                .contains("It is not - it is blue"); // still served from L1 on this node
+        CacheMetrics.TypeSnapshot snapshot = cacheService.getCacheStats().types().get(CacheType.RESPONSE);
+        assertThat(snapshot.rejected()).isEqualTo(1);
+        assertThat(snapshot.admitted()).isZero();
+    }
+
+    @Test
+    void testAdmission_OneOffResponseStaysOffDiskUnlessAlreadyCached() {
+        properties.getAdmission().setEnabled(true);
+        properties.getContentStore().setEnabled(true);
+        properties.getContentStore().setDirectory(contentStoreDirectory.toString());
+        LocalContentStore store = new LocalContentStore(properties, new SimpleMeterRegistry());
+        cacheService = newCacheService(store);
+
+        cacheService.cacheResponse("Why is the sky green today?", 9, "Science", "It is not - it is blue");
+        assertThat(store.entries()).isZero();
+
+        // A refresh of an entry Redis already holds (SET XX succeeds) follows it onto disk
+        when(byteValues.setIfPresent(startsWith("response:"), any(byte[].class), any(Duration.class))).thenReturn(true);
+        cacheService.cacheResponse("Why is the sea blue?", 9, "Science", "It reflects the sky");
+        assertThat(store.entries()).isEqualTo(1);
+        store.close();
+    }
+
+    @Test
+    void testAdmission_RepeatedQueryIsStored() {
+        properties.getAdmission().setEnabled(true);
+
+        cacheService.getCachedResponse("What is photosynthesis?", 9, "Science");
+        cacheService.getCachedResponse("What is photosynthesis?", 9, "Science");
+        cacheService.cacheResponse("What is photosynthesis?", 9, "Science", "Plants make food from sunlight");
+
+        verify(valueTemplate).execute(any(RedisScript.class), argThat(keyStartingWith("response:")), any(), any());
+        assertThat(cacheService.getCacheStats().types().get(CacheType.RESPONSE).admitted()).isEqualTo(1);
+    }
+
+    @Test
+    void testBatch_AnswersLookupsAndBuffersWritesInOneRoundTripEach() {
+        when(byteValues.multiGet(anyList())).thenReturn(Arrays.asList(
+                stampedText("Plants make food from sunlight", Duration.ofHours(1)), null, null, null)); // band keys, then exact-age keys
+        when(valueTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.of(1L));
+
+        try (CacheBatch.Scope batch = cacheService.batch()
+                .response("What is photosynthesis?", 9, "Science")
+                .quiz("photosynthesis", "Science", 3, "BEGINNER", 9)
+                .open()) {
+            assertThat(cacheService.getCachedResponse("What is photosynthesis?", 9, "Science"))
+                    .contains("Plants make food from sunlight");
+            assertThat(cacheService.getCachedQuiz("photosynthesis", "Science", 3, "BEGINNER", 9)).isEmpty();
+            cacheService.cacheHint("fractions", "Mathematics", 9, "Think of pizza slices");
+            verify(valueTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any());
+        }
+
+        verify(byteValues, times(1)).multiGet(anyList());
+        verify(byteValues, never()).get(anyString());
+        verify(valueTemplate).executePipelined(any(SessionCallback.class));
+        AICacheService.TierStats stats = cacheService.getTierStats();
+        assertThat(stats.l2Hits()).isEqualTo(1);
+        assertThat(stats.l1Hits()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatch_ReadsVariantPoolAheadAndQueuesItsWrites() throws Exception {
+        StringRedisSerializer strings = StringRedisSerializer.UTF_8;
+        doReturn(strings).when(redisTemplate).getHashValueSerializer();
+        Map<String, byte[]> pool = new LinkedHashMap<>();
+        pool.put("seen", codec.encodeQuestions(List.of(Question.builder().questionText("Seen before").build())));
+        pool.put("fresh", codec.encodeQuestions(List.of(Question.builder().questionText("Not seen yet").build())));
+        Map<String, byte[]> served = Map.of("seen", strings.serialize(String.valueOf(System.currentTimeMillis())));
+        when(valueTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(List.of(Arrays.asList(null, null, "4".getBytes(StandardCharsets.UTF_8)), pool, served))
+                .thenReturn(List.of());
+
+        try (CacheBatch.Scope batch = cacheService.batch()
+                .quizVariant("volcano", "Science", 1, "BEGINNER", 10, 7L)
+                .open()) {
+            assertThat(cacheService.getCachedQuizVariant("volcano", "Science", 1, "BEGINNER", 10, 7L))
+                    .hasValueSatisfying(q -> assertThat(q.get(0).getQuestionText()).isEqualTo("Not seen yet"));
+        }
+
+        verify(byteHashes, never()).entries(anyString());
+        verify(hashOperations, never()).entries(anyString());
+        verify(hashOperations, never()).put(anyString(), any(), any());
+        verify(valueOperations, never()).increment(anyString());
+        ArgumentCaptor<SessionCallback<Object>> pipelines = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(valueTemplate, times(2)).executePipelined(pipelines.capture());
+
+        // The close pipeline records the serve and counts the request
+        RedisOperations<String, byte[]> operations = mock(RedisOperations.class);
+        HashOperations<String, Object, Object> queuedHashes = mock(HashOperations.class);
+        ValueOperations<String, byte[]> queuedValues = mock(ValueOperations.class);
+        when(operations.opsForHash()).thenReturn(queuedHashes);
+        when(operations.opsForValue()).thenReturn(queuedValues);
+        pipelines.getAllValues().get(1).execute(operations);
+        String quizKey = cacheService.generateQuizCacheKey("volcano", "Science", 1, "BEGINNER", 10);
+        verify(queuedHashes).put(eq(quizKey + ":served:7"), eq("fresh"), any(byte[].class));
+        verify(queuedValues).increment(quizKey + ":requests");
+    }
+
+    private AICacheService newCacheService(LocalContentStore contentStore) {
+        return new AICacheService(redisTemplate, valueTemplate, codec, localTier, namespace, metrics,
+                new SemanticCacheIndex(redisTemplate, namespace, contentProperties, properties),
+                refresher,
+                new QuizVariantPool(redisTemplate, valueTemplate, codec, localTier, properties),
+                popularity, new CacheAdmission(popularity, metrics, properties),
+                new CacheKeyPolicy(contentProperties, properties), contentStore,
+                new ProviderFailureCache(redisTemplate, properties), properties);
+    }
+
+    private static ArgumentMatcher<List<String>> keyStartingWith(String prefix) {
+        return keys -> keys != null && keys.size() == 1 && keys.get(0).startsWith(prefix);
+    }
+
+    private static byte[] ttlMillis(Duration ttl) {
+        return Long.toString(ttl.toMillis()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Version 2 codec frame written the given time ago
+     */
+    private static byte[] stampedText(String text, Duration age) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(11 + utf8.length);
+        buffer.put(VersionedCacheCodec.MAGIC).put(VersionedCacheCodec.VERSION_2).put((byte) 0);
+        buffer.putLong(System.currentTimeMillis() - age.toMillis());
+        buffer.put(utf8);
+        return buffer.array();
+    }
+}
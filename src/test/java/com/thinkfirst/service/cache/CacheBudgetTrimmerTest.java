@@ -0,0 +1,105 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for per-type memory budgets and LFU trimming
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CacheBudgetTrimmerTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private CachePopularity popularity;
+
+    @Mock
+    private Cursor<String> cursor;
+
+    private CacheMetrics metrics;
+    private CacheBudgetTrimmer trimmer;
+
+    @BeforeEach
+    void setUp() {
+        AICacheProperties properties = new AICacheProperties();
+        properties.getBudget().getMaxSize().put("response", DataSize.ofBytes(2000));
+        properties.getBudget().getMaxSize().put("quiz", DataSize.ofBytes(2000));
+        metrics = new CacheMetrics(new SimpleMeterRegistry());
+        trimmer = new CacheBudgetTrimmer(redisTemplate, new CacheNamespace(redisTemplate, properties), popularity,
+                new LocalCacheTier(properties), metrics, properties);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+    }
+
+    @Test
+    void testOverBudget_TrimsLeastFrequentlyUsedFirst() {
+        scan("response:aaa", "response:bbb", "response:ccc", "response:ddd:extra");
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(1000L, 1000L, 1000L));
+        when(popularity.scores(CacheType.RESPONSE)).thenReturn(Map.of("response:aaa", 9.0, "response:ccc", 4.0));
+        when(redisTemplate.unlink(anyCollection())).thenAnswer(invocation -> (long) invocation.<List<?>>getArgument(0).size());
+
+        long removed = trimmer.trim(CacheType.RESPONSE);
+
+        assertThat(removed).isEqualTo(2);
+        verify(redisTemplate).unlink(List.of("response:bbb", "response:ccc"));
+        CacheMetrics.TypeSnapshot snapshot = metrics.snapshot(CacheType.RESPONSE);
+        assertThat(snapshot.trimmed()).isEqualTo(2);
+        assertThat(snapshot.memoryBytes()).isEqualTo(1012);
+    }
+
+    @Test
+    void testWithinBudget_OnlyMeasures() {
+        scan("response:aaa");
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(800L));
+
+        assertThat(trimmer.trim(CacheType.RESPONSE)).isZero();
+
+        verify(redisTemplate, never()).unlink(anyCollection());
+        assertThat(metrics.snapshot(CacheType.RESPONSE).memoryBytes()).isEqualTo(812);
+    }
+
+    @Test
+    void testVariantPools_CountTowardsQuizBudgetAndAreTrimmedWithTheirKey() {
+        scan("quiz:aaa", "quiz:aaa:pool", "quiz:aaa:requests", "quiz:bbb");
+        // The pool alone puts the type over budget
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(300L, 2500L, 2L, 300L));
+        when(popularity.scores(CacheType.QUIZ)).thenReturn(Map.of("quiz:aaa", 2.0, "quiz:bbb", 9.0));
+        when(redisTemplate.unlink(anyCollection())).thenAnswer(invocation -> (long) invocation.<List<?>>getArgument(0).size());
+
+        long removed = trimmer.trim(CacheType.QUIZ);
+
+        assertThat(removed).isEqualTo(3);
+        verify(redisTemplate).unlink(List.of("quiz:aaa", "quiz:aaa:pool", "quiz:aaa:requests"));
+        assertThat(metrics.snapshot(CacheType.QUIZ).memoryBytes()).isEqualTo(308);
+    }
+
+    private void scan(String... keys) {
+        Boolean[] more = new Boolean[keys.length];
+        Arrays.fill(more, true);
+        more[keys.length - 1] = false;
+        when(cursor.hasNext()).thenReturn(true, more);
+        when(cursor.next()).thenReturn(keys[0], Arrays.copyOfRange(keys, 1, keys.length));
+    }
+}
@@ -0,0 +1,77 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for reclaiming keys of old cache generations
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CacheSweeperTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private Cursor<String> cursor;
+
+    private CacheSweeper sweeper;
+    private final List<String> unlinked = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        AICacheProperties properties = new AICacheProperties();
+        sweeper = new CacheSweeper(redisTemplate, new CacheNamespace(redisTemplate, properties), properties);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(redisTemplate.unlink(anyCollection())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(0);
+            unlinked.addAll(keys); // the sweeper reuses its batch list
+            return (long) keys.size();
+        });
+    }
+
+    @Test
+    void testSweep_UnlinksOnlyOlderGenerations() {
+        when(valueOperations.get("cache:gen:response")).thenReturn("3");
+        when(cursor.hasNext()).thenReturn(true, true, true, true, false);
+        when(cursor.next()).thenReturn("response:1a2b", "response:v2:3c4d", "response:v3:5e6f", "response:v3:5e6f:pool");
+
+        assertThat(sweeper.sweep(CacheType.RESPONSE)).isEqualTo(2);
+
+        assertThat(unlinked).containsExactly("response:1a2b", "response:v2:3c4d");
+    }
+
+    @Test
+    void testSweep_KeepsNewerGenerationThanLocal() {
+        // Another node bumped to generation 4 after this one read 3; its keys are live
+        when(valueOperations.get("cache:gen:response")).thenReturn("3");
+        when(cursor.hasNext()).thenReturn(true, true, true, false);
+        when(cursor.next()).thenReturn("response:v4:7a8b", "response:v3:5e6f", "response:v2:3c4d");
+
+        assertThat(sweeper.sweep(CacheType.RESPONSE)).isEqualTo(1);
+
+        assertThat(unlinked).containsExactly("response:v2:3c4d");
+    }
+}
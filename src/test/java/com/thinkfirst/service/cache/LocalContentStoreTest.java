@@ -0,0 +1,145 @@
+package com.thinkfirst.service.cache;
+
+import com.thinkfirst.config.AICacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the memory-mapped node-local content store
+ */
+class LocalContentStoreTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @TempDir
+    Path directory;
+
+    private AICacheProperties properties;
+    private LocalContentStore store;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AICacheProperties();
+        AICacheProperties.ContentStoreConfig config = properties.getContentStore();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentSize(DataSize.ofBytes(512));
+        config.setIndexCapacity(16);
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testEntries_SurviveRestart() {
+        store.put(CacheType.RESPONSE, "response:aaa", bytes("Plants make food from sunlight"), now() + HOUR);
+        store.put(CacheType.RESPONSE, "response:bbb", bytes("Expired"), now() - 1);
+        store.put(CacheType.SUBJECT, "subject:ccc", bytes("Science"), now() + HOUR); // type not stored
+
+        store.close();
+        store = open();
+
+        assertThat(store.get(CacheType.RESPONSE, "response:aaa")).hasValueSatisfying(
+                value -> assertThat(text(value)).isEqualTo("Plants make food from sunlight"));
+        assertThat(store.get(CacheType.RESPONSE, "response:bbb")).isEmpty();
+        assertThat(store.get(CacheType.SUBJECT, "subject:ccc")).isEmpty();
+        assertThat(store.entries()).isEqualTo(1);
+    }
+
+    @Test
+    void testRecovery_DiscardsTornRecord() throws IOException {
+        store.put(CacheType.HINT, "hint:aaa", bytes("Think of pizza slices"), now() + HOUR);
+        store.put(CacheType.HINT, "hint:bbb", bytes("Count the sides"), now() + HOUR);
+        store.close();
+
+        // Corrupt the second record's value, as if the node died while writing it
+        int second = 24 + "hint:aaa".length() + "Think of pizza slices".length();
+        try (FileChannel channel = FileChannel.open(segmentFiles()[0], StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), second + 24 + "hint:bbb".length());
+        }
+
+        store = open();
+        assertThat(store.get(CacheType.HINT, "hint:aaa")).isPresent();
+        assertThat(store.get(CacheType.HINT, "hint:bbb")).isEmpty();
+
+        store.put(CacheType.HINT, "hint:ccc", bytes("Draw it"), now() + HOUR);
+        store.close();
+        store = open();
+        assertThat(store.get(CacheType.HINT, "hint:aaa")).isPresent();
+        assertThat(store.get(CacheType.HINT, "hint:ccc")).hasValueSatisfying(
+                value -> assertThat(text(value)).isEqualTo("Draw it"));
+    }
+
+    @Test
+    void testCompaction_RewritesMostlyOverwrittenSegments() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            store.put(CacheType.QUIZ, "quiz:aaa", bytes("variant " + i + " of a forty byte quiz value"), now() + HOUR);
+        }
+        store.put(CacheType.QUIZ, "quiz:bbb", bytes("kept"), now() + HOUR);
+        int before = segmentFiles().length;
+
+        assertThat(store.compact()).isGreaterThan(0);
+
+        assertThat(segmentFiles().length).isLessThan(before);
+        assertThat(store.get(CacheType.QUIZ, "quiz:aaa")).hasValueSatisfying(
+                value -> assertThat(text(value)).isEqualTo("variant 19 of a forty byte quiz value"));
+        assertThat(store.get(CacheType.QUIZ, "quiz:bbb")).isPresent();
+        assertThat(store.sizeBytes()).isLessThan(512);
+    }
+
+    @Test
+    void testSizeCap_DropsOldestSegments() throws IOException {
+        store.close();
+        properties.getContentStore().setMaxSize(DataSize.ofBytes(1024));
+        store = open();
+
+        for (int i = 0; i < 40; i++) {
+            store.put(CacheType.RESPONSE, "response:" + i, bytes("an answer of about forty bytes, no. " + i), now() + HOUR);
+        }
+
+        assertThat(store.sizeBytes()).isLessThanOrEqualTo(1024);
+        assertThat(store.get(CacheType.RESPONSE, "response:0")).isEmpty();
+        assertThat(store.get(CacheType.RESPONSE, "response:39")).isPresent();
+        assertThat(segmentFiles().length).isLessThanOrEqualTo(3);
+    }
+
+    private LocalContentStore open() {
+        return new LocalContentStore(properties, new SimpleMeterRegistry());
+    }
+
+    private Path[] segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toArray(Path[]::new);
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,138 @@
+package com.thinkfirst.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkfirst.config.AICacheProperties;
+import com.thinkfirst.model.Question;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the versioned binary cache codec, including a size/time comparison
+ * against the legacy JSON format
+ */
+class VersionedCacheCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private VersionedCacheCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        codec = new VersionedCacheCodec(objectMapper, new AICacheProperties());
+    }
+
+    @Test
+    void testQuestions_RoundTrip() throws Exception {
+        List<Question> questions = sampleQuiz(5);
+
+        List<Question> decoded = codec.decodeQuestions(codec.encodeQuestions(questions));
+
+        assertThat(decoded).hasSize(5);
+        Question first = decoded.get(0);
+        assertThat(first.getQuestionText()).isEqualTo(questions.get(0).getQuestionText());
+        assertThat(first.getType()).isEqualTo(Question.QuestionType.MULTIPLE_CHOICE);
+        assertThat(first.getOptions()).containsExactlyElementsOf(questions.get(0).getOptions());
+        assertThat(first.getCorrectOptionIndex()).isEqualTo(2);
+        assertThat(first.getExplanation()).isEqualTo(questions.get(0).getExplanation());
+        assertThat(first.getId()).isNull();
+        assertThat(decoded.get(4).getCorrectOptionIndex()).isNull();
+        assertThat(decoded.get(4).getExplanation()).isNull();
+    }
+
+    @Test
+    void testLegacyEntries_StayReadable() throws Exception {
+        List<Question> questions = sampleQuiz(3);
+        byte[] legacyJson = objectMapper.writeValueAsBytes(questions);
+
+        assertThat(codec.decodeQuestions(legacyJson)).hasSize(3);
+        assertThat(codec.decodeText("Plants make food".getBytes(StandardCharsets.UTF_8))).isEqualTo("Plants make food");
+        assertThat(codec.decodeText(new byte[]{VersionedCacheCodec.MAGIC, VersionedCacheCodec.VERSION_1, 0, 'h', 'i'}))
+                .isEqualTo("hi");
+        assertThat(codec.writtenAt(legacyJson)).isZero();
+    }
+
+    @Test
+    void testWriteTimestamp_IsRecorded() throws Exception {
+        long before = System.currentTimeMillis();
+
+        byte[] encoded = codec.encodeText("Think of pizza slices");
+
+        assertThat(codec.writtenAt(encoded)).isBetween(before, System.currentTimeMillis());
+        assertThat(codec.decodeText(encoded)).isEqualTo("Think of pizza slices");
+    }
+
+    @Test
+    void testLargeText_IsCompressedWithHeader() throws Exception {
+        String response = "Photosynthesis is how plants use sunlight, water and air to make food. ".repeat(40);
+
+        byte[] encoded = codec.encodeText(response);
+
+        assertThat(encoded[0]).isEqualTo(VersionedCacheCodec.MAGIC);
+        assertThat(encoded[1]).isEqualTo(VersionedCacheCodec.VERSION_2);
+        assertThat(encoded.length).isLessThan(response.length() / 4);
+        assertThat(codec.decodeText(encoded)).isEqualTo(response);
+    }
+
+    @Test
+    void testUnknownVersion_IsRejected() {
+        byte[] future = {VersionedCacheCodec.MAGIC, 9, 0, 'x'};
+
+        assertThatThrownBy(() -> codec.decodeText(future)).hasMessageContaining("version 9");
+    }
+
+    @Test
+    void testBenchmark_BinaryVersusJson() throws Exception {
+        List<Question> quiz = sampleQuiz(5);
+        byte[] json = objectMapper.writeValueAsBytes(quiz);
+        byte[] binary = codec.encodeQuestions(quiz);
+
+        int rounds = 2000;
+        long jsonNanos = time(rounds, () -> objectMapper.readValue(objectMapper.writeValueAsBytes(quiz),
+                objectMapper.getTypeFactory().constructCollectionType(List.class, Question.class)));
+        long binaryNanos = time(rounds, () -> codec.decodeQuestions(codec.encodeQuestions(quiz)));
+
+        System.out.printf("Quiz cache entry: json %d bytes, %.1f us/op; binary %d bytes, %.1f us/op%n",
+                json.length, jsonNanos / 1000.0 / rounds, binary.length, binaryNanos / 1000.0 / rounds);
+        assertThat(binary.length).isLessThan(json.length / 2);
+    }
+
+    private static long time(int rounds, ThrowingRunnable op) throws Exception {
+        for (int i = 0; i < rounds; i++) {
+            op.run(); // warm up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            op.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private static List<Question> sampleQuiz(int count) {
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean last = i == count - 1;
+            questions.add(Question.builder()
+                    .id(100L + i)
+                    .questionText("Question " + i + ": Which part of the plant makes food using sunlight?")
+                    .type(last ? Question.QuestionType.SHORT_ANSWER : Question.QuestionType.MULTIPLE_CHOICE)
+                    .options(last ? new ArrayList<>() : new ArrayList<>(List.of("Roots", "Stem", "Leaves", "Flowers")))
+                    .correctOptionIndex(last ? null : 2)
+                    .correctAnswer("Leaves")
+                    .explanation(last ? null : "Leaves contain chlorophyll, which captures sunlight for photosynthesis.")
+                    .displayOrder(i)
+                    .build());
+        }
+        return questions;
+    }
+}